@@ -4,6 +4,8 @@ import face_recognition
 import numpy as np
 from io import BytesIO
 from PIL import Image , ImageOps
+from collections import OrderedDict
+from threading import Lock
 
 app = Flask(__name__)
 CORS(app)
@@ -12,6 +14,25 @@ COMPANY_LATITUDE = 10.8003328
 COMPANY_LONGITUDE = 106.7450368
 MAX_DISTANCE_KM = 10.0  # 1 km
 
+# Cache encoding của ảnh gốc (avatar) theo known_key do server Java gửi (đổi avatar => key mới)
+KNOWN_CACHE_SIZE = 2000
+_known_cache = OrderedDict()
+_known_lock = Lock()
+
+def _known_get(key):
+    with _known_lock:
+        enc = _known_cache.get(key)
+        if enc is not None:
+            _known_cache.move_to_end(key)
+        return enc
+
+def _known_put(key, enc):
+    with _known_lock:
+        _known_cache[key] = enc
+        _known_cache.move_to_end(key)
+        while len(_known_cache) > KNOWN_CACHE_SIZE:
+            _known_cache.popitem(last=False)
+
 def haversine(lat1, lon1, lat2, lon2):
     from math import radians, sin, cos, sqrt, atan2
     R = 6371
@@ -35,7 +56,8 @@ def face_verify():
     # Có thể linh hoạt nhận 'image' hoặc 'imageFile' nếu FE gửi khác key
     live_file = request.files.get('image') or request.files.get('imageFile')
     known_file = request.files.get('known_image')
-    if not live_file or not known_file:
+    known_key = request.form.get('known_key')
+    if not live_file or (not known_file and not known_key):
         print("DEBUG: missing files. got keys:", list(request.files.keys()))
         return jsonify({'error': 'Missing image or known_image files'}), 400
 
@@ -52,13 +74,15 @@ def face_verify():
     if distance > MAX_DISTANCE_KM:
         return jsonify({'error': 'Out of allowed location range', 'distance_km': distance}), 403
 
+    # Chỉ có known_key mà chưa có trong cache (service vừa khởi động lại...): báo để bên gọi gửi kèm known_image
+    known_cached = _known_get(known_key) if known_key and not known_file else None
+    if not known_file and known_cached is None:
+        return jsonify({'error': 'Unknown known_key'}), 409
+
     # Đọc ảnh
     live_np = _to_rgb_np(live_file)
     if live_np is None:
         return jsonify({'error': 'Invalid live image data'}), 400
-    known_np = _to_rgb_np(known_file)
-    if known_np is None:
-        return jsonify({'error': 'Invalid known image data'}), 400
 
     # Encode khuôn mặt
     live_enc = face_recognition.face_encodings(live_np)
@@ -66,13 +90,20 @@ def face_verify():
         print("DEBUG: no face in LIVE image")
         return jsonify({'error': 'No face found in live image'}), 400
 
-    known_enc = face_recognition.face_encodings(known_np)
-    if not known_enc:
-        print("DEBUG: no face in KNOWN image")
-        return jsonify({'error': 'No face found in known image'}), 400
+    if known_cached is None:
+        known_np = _to_rgb_np(known_file)
+        if known_np is None:
+            return jsonify({'error': 'Invalid known image data'}), 400
+        known_enc = face_recognition.face_encodings(known_np)
+        if not known_enc:
+            print("DEBUG: no face in KNOWN image")
+            return jsonify({'error': 'No face found in known image'}), 400
+        known_cached = known_enc[0]
+        if known_key:
+            _known_put(known_key, known_cached)
 
     # So khớp
-    match = face_recognition.compare_faces([known_enc[0]], live_enc[0], tolerance=0.6)[0]
+    match = face_recognition.compare_faces([known_cached], live_enc[0], tolerance=0.6)[0]
 
     return jsonify({
         'match': bool(match),
@@ -5,11 +5,15 @@ import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.scheduling.annotation.EnableAsync;
 import org.springframework.scheduling.annotation.EnableScheduling;
 
+import javax.imageio.ImageIO;
+
 @SpringBootApplication
 @EnableAsync
 @EnableScheduling
 public class ServerApplication {
   public static void main(String[] args) {
+    // ImageIO.read/write đệm stream trong bộ nhớ thay vì file tạm trong java.io.tmpdir (ảnh upload, chữ ký)
+    ImageIO.setUseCache(false);
     SpringApplication.run(ServerApplication.class, args);
   }
 }
@@ -10,6 +10,7 @@ import org.springframework.security.core.Authentication;
 import org.springframework.security.web.authentication.logout.LogoutHandler;
 import server.models.Token;
 import server.repositories.TokenRepository;
+import server.utils.TokenValidityCache;
 
 import java.io.IOException;
 
@@ -17,6 +18,7 @@ import java.io.IOException;
 @RequiredArgsConstructor
 public class CustomLogoutHandler implements LogoutHandler {
     private final TokenRepository tokenRepository;
+    private final TokenValidityCache tokenValidityCache;
 
     @Override
     public void logout(HttpServletRequest request,
@@ -38,6 +40,7 @@ public class CustomLogoutHandler implements LogoutHandler {
         }
 
         tokenRepository.delete(storedToken);
+        tokenValidityCache.evict(storedToken.getAccount() != null ? storedToken.getAccount().getId() : null, token);
     }
 
     private void sendErrorResponse(HttpServletResponse response) {
@@ -6,6 +6,7 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import server.dtos.FaceVerifyResponse;
 import server.dtos.GetAttendancePageDto;
 import server.models.Account;
 import server.models.Attendance;
@@ -15,6 +16,7 @@ import server.repositories.AttendanceRepository;
 import server.services.AttendanceService;
 import server.services.AuthService;
 import server.utils.ApiResponse;
+import server.utils.FaceVerifyClient;
 
 import java.io.IOException;
 import java.security.Principal;
@@ -32,14 +34,24 @@ public class AttendanceController {
     private final AccountRepository accountRepository;
     private final AttendanceRepository attendanceRepository;
     private final AuthService authService;
+    private final FaceVerifyClient faceVerifyClient;
 
     public AttendanceController(AttendanceService attendanceService,
                                 AccountRepository accountRepository,
-                                AttendanceRepository attendanceRepository, AuthService authService) {
+                                AttendanceRepository attendanceRepository, AuthService authService,
+                                FaceVerifyClient faceVerifyClient) {
         this.attendanceService = attendanceService;
         this.accountRepository = accountRepository;
         this.attendanceRepository = attendanceRepository;
         this.authService = authService;
+        this.faceVerifyClient = faceVerifyClient;
+    }
+
+    // Độ trễ, số lỗi và trạng thái circuit breaker của service nhận diện khuôn mặt
+    @GetMapping("/face-verify/stats")
+    @PreAuthorize("hasAuthority('ADMIN')")
+    public ApiResponse<FaceVerifyClient.Stats> getFaceVerifyStats() {
+        return ApiResponse.success(faceVerifyClient.stats(), "get-face-verify-stats-success");
     }
 
 
@@ -65,9 +77,16 @@ public class AttendanceController {
 
             String knownImagePath = account.getEmployee().getAvatar();
 
-            var verifyResult = attendanceService.callPythonFaceVerifyAPI(image, knownImagePath, latitude, longitude);
-            String savedImagePath = attendanceService.saveCheckInImage(image);
-            Attendance attendance = attendanceService.saveAttendanceRecord(account, savedImagePath, verifyResult);
+            // Lưu ảnh + lấy bản thu nhỏ trong 1 lượt đọc; verify lỗi thì xóa ảnh vừa lưu như trước đây chưa lưu
+            AttendanceService.LiveImage liveImage = attendanceService.storeLiveImage(image);
+            FaceVerifyResponse verifyResult;
+            try {
+                verifyResult = attendanceService.callPythonFaceVerifyAPI(liveImage.resource(), knownImagePath, latitude, longitude);
+            } catch (Exception e) {
+                attendanceService.deleteLiveImage(liveImage);
+                throw e;
+            }
+            Attendance attendance = attendanceService.saveAttendanceRecord(account, liveImage.path(), verifyResult);
 
             return ResponseEntity.ok(attendance);
         } catch (Exception e) {
@@ -3,6 +3,9 @@ package server.controllers;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.*;
@@ -10,6 +13,7 @@ import server.dtos.ChangePasswordDto;
 import server.dtos.LoginDto;
 import server.services.AuthService;
 import server.utils.ApiResponse;
+import server.utils.ProfileCache;
 
 @RestController
 @RequestMapping("/auth")
@@ -44,10 +48,31 @@ public class AuthController {
     }
 
     @GetMapping("/fetch-data")
-    public ResponseEntity<?> fetchData(HttpServletRequest request) {
+    public ResponseEntity<?> fetchData(HttpServletRequest request,
+                                       @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
         try {
-            ApiResponse<?> response = authService.fetchData(request);
-            return ResponseEntity.status(response.getStatus()).body(response);
+            ApiResponse<ProfileCache.CachedProfile> profile = authService.fetchProfile(request);
+            if (profile.getData() == null) {
+                return ResponseEntity.status(profile.getStatus()).body(profile);
+            }
+
+            // Profile không đổi kể từ lần trước thì trả 304, client dùng lại bản đã có
+            String etag = profile.getData().etag();
+            CacheControl cacheControl = CacheControl.noCache().cachePrivate();
+            if (etag.equals(ifNoneMatch)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                        .eTag(etag)
+                        .cacheControl(cacheControl)
+                        .varyBy(HttpHeaders.AUTHORIZATION)
+                        .build();
+            }
+
+            ApiResponse<?> response = ApiResponse.success(profile.getData().profile(), "");
+            return ResponseEntity.status(response.getStatus())
+                    .eTag(etag)
+                    .cacheControl(cacheControl)
+                    .varyBy(HttpHeaders.AUTHORIZATION)
+                    .body(response);
         } catch (Exception e) {
             ApiResponse<?> response = ApiResponse.errorServer(e.getMessage());
             return ResponseEntity.status(response.getStatus()).body(response);
@@ -0,0 +1,26 @@
+package server.controllers;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import server.utils.ApiResponse;
+import server.utils.BackgroundExecutors;
+import server.utils.InstrumentedExecutor;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/executors")
+@RequiredArgsConstructor
+public class ExecutorController {
+    private final BackgroundExecutors backgroundExecutors;
+
+    // Số liệu các pool chạy nền (hàng đợi, task bị từ chối, thời gian chờ/chạy)
+    @GetMapping("/stats")
+    @PreAuthorize("hasAuthority('ADMIN')")
+    public ApiResponse<List<InstrumentedExecutor.Stats>> getStats() {
+        return ApiResponse.success(backgroundExecutors.stats(), "get-executor-stats-success");
+    }
+}
@@ -12,9 +12,12 @@ import server.dtos.leave_requests.LeaveRequestResponse;
 import server.models.Account;
 import server.models.LeaveRequest;
 import server.models.SignatureSample;
+import server.models.enums.LeaveStatus;
+import server.models.enums.Role;
 import server.repositories.LeaveRequestRepository;
 import server.repositories.SignatureSampleRepository;
 import server.services.AuthService;
+import server.services.LeaveExportService;
 import server.services.LeaveRequestService;
 import server.utils.ApiResponse;
 import server.dtos.leave_requests.LeaveRequestApproveRequest;
@@ -22,6 +25,7 @@ import server.dtos.leave_requests.LeaveCancelRequest;
 
 
 import java.io.IOException;
+import java.time.YearMonth;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -32,6 +36,7 @@ import java.util.Optional;
 public class LeaveRequestController {
 
     private final LeaveRequestService leaveRequestService;
+    private final LeaveExportService leaveExportService;
     private final AuthService authService;
     private final LeaveRequestRepository leaveRequestRepository;
     private final SignatureSampleRepository signatureSampleRepository;
@@ -106,7 +111,7 @@ public class LeaveRequestController {
         // Nếu không phải nghỉ ngắt quãng, truyền null hoặc Collections.emptyList()
         Map<String, String> data = leaveRequestService.prepareLeaveRequestDataForWord(leave, splitLeaves);
         String signature = leave.getSignature(); // nếu chưa có thì truyền ""
-        byte[] docxBytes = leaveRequestService.exportDocumentToWord(data, signature);
+        byte[] docxBytes = leaveRequestService.exportDocumentToWord(data, LeaveRequestService.signatureKey(leave), signature);
 
         response.setContentType(MediaType.APPLICATION_OCTET_STREAM_VALUE);
         response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=leaveRequest.docx");
@@ -114,14 +119,59 @@ public class LeaveRequestController {
         response.getOutputStream().flush();
     }
 
+    // EXPORT ZIP: Xuất hàng loạt đơn nghỉ phép của 1 phòng ban trong 1 tháng (HR / ADMIN)
+    @GetMapping("/export-zip")
+    public void exportLeaveRequestsZip(
+            HttpServletRequest request,
+            @RequestParam Long departmentId,
+            @RequestParam String month, // format: yyyy-MM
+            @RequestParam(required = false, defaultValue = "APPROVED") LeaveStatus status,
+            HttpServletResponse response
+    ) throws IOException {
+        Account current = authService.getCurrentAccount(request);
+        if (current.getRole() != Role.HR && current.getRole() != Role.ADMIN) {
+            response.setStatus(HttpServletResponse.SC_FORBIDDEN);
+            response.getWriter().write("Forbidden");
+            return;
+        }
+        YearMonth ym;
+        try {
+            ym = YearMonth.parse(month);
+        } catch (Exception ex) {
+            response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            response.getWriter().write("month must be yyyy-MM");
+            return;
+        }
+
+        List<LeaveRequest> leaves = leaveExportService.findLeaves(departmentId, ym, status);
+        if (leaves.isEmpty()) {
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            response.getWriter().write("No leave requests found");
+            return;
+        }
+
+        response.setContentType("application/zip");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                "attachment; filename=leave-requests_" + departmentId + "_" + ym + ".zip");
+        leaveExportService.writeZip(leaves, response.getOutputStream());
+    }
+
     @GetMapping("/pending-to-approve")
-    public ApiResponse<?> getPendingToApprove(HttpServletRequest request) {
-        return leaveRequestService.listMyPendingToApprove(request);
+    public ApiResponse<?> getPendingToApprove(
+            HttpServletRequest request,
+            @RequestParam(required = false) Integer page,
+            @RequestParam(required = false) Integer size
+    ) {
+        return leaveRequestService.listMyPendingToApprove(request, page, size);
     }
 
     @GetMapping("/my-pending")
-    public ApiResponse<?> getMyPendingSent(HttpServletRequest request) {
-        return leaveRequestService.listMyPendingSent(request);
+    public ApiResponse<?> getMyPendingSent(
+            HttpServletRequest request,
+            @RequestParam(required = false) Integer page,
+            @RequestParam(required = false) Integer size
+    ) {
+        return leaveRequestService.listMyPendingSent(request, page, size);
     }
 
     @GetMapping("/{id}")
@@ -145,6 +195,19 @@ public class LeaveRequestController {
         return leaveRequestService.getLeaveBalance(request, month);
     }
 
+    @GetMapping("/leave-balance/company")
+    public ApiResponse<?> getCompanyLeaveBalances(
+            HttpServletRequest request,
+            @RequestParam String month // format: yyyy-MM
+    ) {
+        return leaveRequestService.getCompanyLeaveBalances(request, month);
+    }
+
+    @PostMapping("/leave-balance/recompute")
+    public ApiResponse<?> recomputeLeaveBalances(HttpServletRequest request) {
+        return leaveRequestService.recomputeLeaveBalances(request);
+    }
+
     @GetMapping("/my-signature-sample")
     public ApiResponse<String> getMySignatureSample(HttpServletRequest request) {
         Account current = authService.getCurrentAccount(request);
@@ -189,8 +252,12 @@ public class LeaveRequestController {
 
     // Danh sách đơn đang chờ HR xác nhận
     @GetMapping("/pending-hr")
-    public ApiResponse<?> listAwaitingHr(HttpServletRequest request) {
-        return leaveRequestService.listAwaitingHr(request);
+    public ApiResponse<?> listAwaitingHr(
+            HttpServletRequest request,
+            @RequestParam(required = false) Integer page,
+            @RequestParam(required = false) Integer size
+    ) {
+        return leaveRequestService.listAwaitingHr(request, page, size);
     }
 
     // Nhân viên gửi yêu cầu HỦY đơn nghỉ phép (gửi mail cho Người duyệt + HR)
@@ -1,13 +1,19 @@
 package server.controllers;
 
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import server.dtos.NotificationFeedResponse;
 import server.dtos.NotificationResponse;
+import server.models.Account;
+import server.services.AuthService;
 import server.services.NotificationService;
 import server.utils.ApiResponse;
 
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/notifications")
@@ -15,12 +21,23 @@ import java.util.List;
 public class NotificationController {
 
     private final NotificationService notificationService;
+    private final AuthService authService;
 
+    // Không truyền cursor/size: trả toàn bộ như cũ; có thì trả feed phân trang keyset kèm nextCursor + unreadCount
     @GetMapping("/{recipientUsername}")
-    public ResponseEntity<?> getByRecipient(@PathVariable String recipientUsername) {
+    public ResponseEntity<?> getByRecipient(@PathVariable String recipientUsername,
+                                            @RequestParam(required = false) String cursor,
+                                            @RequestParam(required = false) Integer size) {
         try {
-            List<NotificationResponse> list = notificationService.getByRecipient(recipientUsername);
-            return ResponseEntity.ok(ApiResponse.success(list, "Fetched notifications successfully"));
+            if (cursor == null && size == null) {
+                List<NotificationResponse> list = notificationService.getByRecipient(recipientUsername);
+                return ResponseEntity.ok(ApiResponse.success(list, "Fetched notifications successfully"));
+            }
+            NotificationFeedResponse feed = notificationService.getFeed(recipientUsername, cursor, size != null ? size : 20);
+            return ResponseEntity.ok(ApiResponse.success(feed, "Fetched notifications successfully"));
+        } catch (IllegalArgumentException e) {
+            ApiResponse<?> response = ApiResponse.badRequest(e.getMessage());
+            return ResponseEntity.status(response.getStatus()).body(response);
         } catch (Exception e) {
             ApiResponse<?> response = ApiResponse.errorServer(e.getMessage());
             return ResponseEntity.status(response.getStatus()).body(response);
@@ -37,4 +54,42 @@ public class NotificationController {
             return ResponseEntity.status(response.getStatus()).body(response);
         }
     }
+
+    // Badge trên header: chỉ đọc 1 dòng bộ đếm
+    @GetMapping("/unread-count")
+    public ResponseEntity<?> getUnreadCount(HttpServletRequest request) {
+        try {
+            Account current = authService.getCurrentAccount(request);
+            long count = notificationService.getUnreadCount(current);
+            return ResponseEntity.ok(ApiResponse.success(Map.of("unreadCount", count), "Fetched unread count successfully"));
+        } catch (Exception e) {
+            ApiResponse<?> response = ApiResponse.errorServer(e.getMessage());
+            return ResponseEntity.status(response.getStatus()).body(response);
+        }
+    }
+
+    // Đếm lại bộ đếm chưa đọc của mọi account (công cụ sửa lệch, ADMIN)
+    @PostMapping("/unread-count/rebuild")
+    @PreAuthorize("hasAuthority('ADMIN')")
+    public ResponseEntity<?> rebuildUnreadCounts() {
+        try {
+            int accounts = notificationService.rebuildUnreadCounts();
+            return ResponseEntity.ok(ApiResponse.success(Map.of("accounts", accounts), "Unread counters rebuilt"));
+        } catch (Exception e) {
+            ApiResponse<?> response = ApiResponse.errorServer(e.getMessage());
+            return ResponseEntity.status(response.getStatus()).body(response);
+        }
+    }
+
+    @PutMapping("/read-all")
+    public ResponseEntity<?> markAllAsRead(HttpServletRequest request) {
+        try {
+            Account current = authService.getCurrentAccount(request);
+            int updated = notificationService.markAllAsRead(current);
+            return ResponseEntity.ok(ApiResponse.success(Map.of("updated", updated), "All notifications marked as read"));
+        } catch (Exception e) {
+            ApiResponse<?> response = ApiResponse.errorServer(e.getMessage());
+            return ResponseEntity.status(response.getStatus()).body(response);
+        }
+    }
 }
@@ -0,0 +1,31 @@
+package server.controllers;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+import server.dtos.OutboxFailureView;
+import server.services.OutboxService;
+import server.utils.ApiResponse;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/outbox")
+@RequiredArgsConstructor
+public class OutboxController {
+    private final OutboxService outboxService;
+
+    // Email / push đã hết số lần thử (dead letter)
+    @GetMapping("/failed")
+    @PreAuthorize("hasAuthority('ADMIN')")
+    public ApiResponse<List<OutboxFailureView>> getFailed(@RequestParam(defaultValue = "100") int limit) {
+        return ApiResponse.success(outboxService.getFailed(limit), "get-outbox-failed-success");
+    }
+
+    // Body rỗng: gửi lại toàn bộ dead letter
+    @PostMapping("/failed/retry")
+    @PreAuthorize("hasAuthority('ADMIN')")
+    public ApiResponse<Integer> retryFailed(@RequestBody(required = false) List<Long> ids) {
+        return ApiResponse.success(outboxService.requeueFailed(ids), "retry-outbox-failed-success");
+    }
+}
@@ -0,0 +1,9 @@
+package server.dtos;
+
+import java.time.LocalDateTime;
+
+// Khóa (createdAt, id) của 1 notification, dùng để duyệt theo batch trong job dọn notification
+public interface NotificationKeyView {
+    Long getId();
+    LocalDateTime getCreatedAt();
+}
@@ -0,0 +1,16 @@
+package server.dtos;
+
+import server.models.enums.OutboxChannel;
+
+import java.time.LocalDateTime;
+
+// Dòng outbox đã FAILED (không kèm payload), để admin xem và gửi lại
+public interface OutboxFailureView {
+    Long getId();
+    OutboxChannel getChannel();
+    String getDestination();
+    int getAttempts();
+    String getLastError();
+    LocalDateTime getCreatedAt();
+    LocalDateTime getNextAttemptAt();
+}
@@ -0,0 +1,35 @@
+package server.dtos;
+
+import server.models.enums.Gender;
+import server.models.enums.Role;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+// Projection phẳng cho /auth/fetch-data: 1 query lấy đủ account, employee, department và HOD
+public interface ProfileView {
+    Long getId();
+    String getUsername();
+    Role getRole();
+    LocalDateTime getCreatedAt();
+
+    Long getEmployeeId();
+    String getFirstName();
+    String getLastName();
+    String getEmail();
+    String getPhone();
+    String getAddress();
+    Gender getGender();
+    LocalDate getDateBirth();
+    String getAvatar();
+
+    Long getDepartmentId();
+    String getDepartmentName();
+    String getHodDepartmentName();
+
+    Long getHodId();
+    String getHodFirstName();
+    String getHodLastName();
+    Long getHodAccountId();
+    Role getHodAccountRole();
+}
@@ -0,0 +1,7 @@
+package server.dtos;
+
+// Số notification theo người nhận trong 1 batch của job dọn (để trừ bộ đếm chưa đọc)
+public interface RecipientCountView {
+    Long getRecipientId();
+    Long getTotal();
+}
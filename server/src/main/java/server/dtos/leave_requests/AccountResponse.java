@@ -10,4 +10,5 @@ public class AccountResponse {
     private String fullName;     // Employee full name
     private String email;        // Employee email (optional)
     private String phone;
+    private String departmentName; // Phòng ban của employee (optional)
 }
@@ -0,0 +1,9 @@
+package server.dtos.leave_requests;
+
+import java.time.LocalDate;
+
+// Một ngày nghỉ ngắt quãng (bảng leave_days) kèm id đơn, dùng để gom daysOff cho cả trang 1 lần
+public interface LeaveDayView {
+    Long getLeaveRequestId();
+    LocalDate getDay();
+}
@@ -0,0 +1,42 @@
+package server.dtos.leave_requests;
+
+import server.models.enums.LeaveStatus;
+import server.models.enums.LeaveType;
+import server.models.enums.Role;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+
+// Projection phẳng cho các hộp đơn chờ duyệt: 1 query lấy đơn + sender/receiver + employee + department
+public interface LeaveRequestInboxView {
+    Long getId();
+    String getReason();
+    LocalDate getStartDate();
+    LocalDate getEndDate();
+    LeaveStatus getStatus();
+    LocalDateTime getCreatedAt();
+    LocalDateTime getUpdatedAt();
+    String getSignature();
+    LeaveType getLeaveType();
+    LocalTime getStartTime();
+    LocalTime getEndTime();
+
+    Long getSenderId();
+    String getSenderUsername();
+    Role getSenderRole();
+    String getSenderFirstName();
+    String getSenderLastName();
+    String getSenderEmail();
+    String getSenderPhone();
+    String getSenderDepartmentName();
+
+    Long getReceiverId();
+    String getReceiverUsername();
+    Role getReceiverRole();
+    String getReceiverFirstName();
+    String getReceiverLastName();
+    String getReceiverEmail();
+    String getReceiverPhone();
+    String getReceiverDepartmentName();
+}
@@ -1,19 +1,25 @@
 package server.filters;
 
+import io.jsonwebtoken.Claims;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpHeaders;
+import org.springframework.security.authentication.AbstractAuthenticationToken;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
+import server.models.Account;
+import server.repositories.AccountRepository;
 import server.services.AccountDetailService;
 import server.utils.JwtUtil;
+import server.utils.LazyAccountAuthentication;
+import server.utils.RequestAuthContext;
 
 import java.io.IOException;
 
@@ -22,6 +28,7 @@ import java.io.IOException;
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
     private final JwtUtil jwtUtil;
     private final AccountDetailService accountDetailService;
+    private final AccountRepository accountRepository;
 
     @Override
     protected void doFilterInternal(HttpServletRequest request,
@@ -46,7 +53,9 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         }
 
         String token = authHeader.substring(7);
-        String username = jwtUtil.extractUsername(token);
+        // Parse + verify chữ ký đúng 1 lần cho cả request
+        Claims claims = jwtUtil.extractAllClaims(token);
+        String username = claims.getSubject();
 
         // Nếu username không hợp lệ hoặc security đã xác thực account thì return không xử lý thêm
         if (username == null || SecurityContextHolder.getContext().getAuthentication() != null) {
@@ -54,16 +63,27 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
             return;
         }
 
-        UserDetails userDetails = accountDetailService.loadUserByUsername(username);
+        // Stateless principal: dựng principal từ claims, không load Account (token cũ thiếu claim thì vẫn load DB)
+        Account statelessAccount = jwtUtil.isStatelessPrincipal() ? jwtUtil.principalFromClaims(claims) : null;
+        if (statelessAccount != null && !statelessAccount.isEnabled()) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+        UserDetails userDetails = statelessAccount != null
+                ? statelessAccount
+                : accountDetailService.loadUserByUsername(username);
 
         // nếu token hợp lệ
-        if(jwtUtil.isValidAccessToken(token, userDetails)) {
-            // Tạo đối tượng với thông tin người dùng và quyền hạn (authorities)
-            UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(
-                    userDetails,
-                    null,
-                    userDetails.getAuthorities()
-            );
+        if(jwtUtil.isValidAccessToken(token, claims, userDetails)) {
+            Account account = (Account) userDetails;
+            // Gắn context vào request để service/controller dùng lại, không parse token hay query account lần nữa
+            RequestAuthContext context = RequestAuthContext.from(account, token, claims);
+            context.bind(request);
+
+            // Stateless: principal chỉ được load khi có code gọi getPrincipal(), account rút gọn không lộ ra ngoài
+            AbstractAuthenticationToken authentication = statelessAccount != null
+                    ? new LazyAccountAuthentication(statelessAccount, accountRepository::findById)
+                    : new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
             // Thiết lập chi tiết xác thực dựa trên thông tin của yêu cầu HTTP
             authentication.setDetails(
                     new WebAuthenticationDetailsSource().buildDetails(request)
@@ -9,7 +9,8 @@ import server.models.enums.AttendanceStatus;
 import java.time.LocalDateTime;
 @JsonIgnoreProperties({"hibernateLazyInitializer", "handler"})
 @Entity
-@Table(name = "attendance")
+@Table(name = "attendance",
+        indexes = @Index(name = "ix_attendance_status_check_in", columnList = "status, check_in_time"))
 @Getter
 @Setter
 @NoArgsConstructor
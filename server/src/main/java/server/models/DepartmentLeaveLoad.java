@@ -0,0 +1,33 @@
+package server.models;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDate;
+
+/**
+ * Số đơn nghỉ đã APPROVED theo (phòng ban, ngày), phục vụ lịch ngày bận của phòng ban.
+ * Tăng/giảm khi đơn được HR xác nhận / bị hủy; job rebuild tính lại từ leave_day mỗi đêm.
+ */
+@Entity
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Table(name = "department_leave_load",
+        uniqueConstraints = @UniqueConstraint(name = "ux_department_leave_load", columnNames = {"department_id", "day"}))
+public class DepartmentLeaveLoad {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "department_id", nullable = false)
+    private Long departmentId;
+
+    @Column(nullable = false)
+    private LocalDate day;
+
+    @Column(name = "leave_count", nullable = false)
+    private int leaveCount;
+}
@@ -0,0 +1,40 @@
+package server.models;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Sổ ghi các lần chạy job định kỳ: mỗi (jobName, period) chỉ có 1 dòng,
+ * nên restart hay nhiều node cùng chạy cũng không xử lý lại cùng 1 kỳ.
+ */
+@Entity
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Table(name = "job_run",
+        uniqueConstraints = @UniqueConstraint(name = "ux_job_run_name_period", columnNames = {"job_name", "period"}))
+public class JobRun {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "job_name", nullable = false, length = 64)
+    private String jobName;
+
+    // Kỳ đã xử lý, vd "2025-07"
+    @Column(nullable = false, length = 32)
+    private String period;
+
+    private Integer affectedCount;
+
+    // Thời gian chạy của lần xử lý kỳ này
+    private Long durationMs;
+
+    // Lúc hoàn tất; với job nhiều transaction, khi durationMs còn NULL thì là lúc giành quyền / heartbeat gần nhất
+    @Column(nullable = false)
+    private LocalDateTime completedAt;
+}
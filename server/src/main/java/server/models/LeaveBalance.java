@@ -0,0 +1,35 @@
+package server.models;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+/**
+ * Sổ phép: tổng số phút nghỉ đã được duyệt của mỗi account theo (năm, tháng).
+ * Cập nhật cùng transaction khi đơn được HR xác nhận / bị hủy.
+ */
+@Entity
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Table(name = "leave_balance",
+        uniqueConstraints = @UniqueConstraint(name = "ux_leave_balance", columnNames = {"account_id", "leave_year", "leave_month"}),
+        indexes = @Index(name = "ix_leave_balance_year_month", columnList = "leave_year, leave_month"))
+public class LeaveBalance {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "account_id", nullable = false)
+    private Long accountId;
+
+    @Column(name = "leave_year", nullable = false)
+    private int year;
+
+    @Column(name = "leave_month", nullable = false)
+    private int month;
+
+    @Column(name = "used_minutes", nullable = false)
+    private long usedMinutes;
+}
@@ -0,0 +1,63 @@
+package server.models;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDate;
+
+/**
+ * Bảng chiếm dụng theo ngày của đơn nghỉ phép: mỗi (đơn, ngày nghỉ) là 1 dòng.
+ * Chỉ giữ các đơn còn hiệu lực (PENDING, PENDING_HR, APPROVED, WAITING_TO_CANCEL),
+ * đơn bị từ chối / hủy / hết hạn sẽ bị xóa khỏi bảng.
+ *
+ * slotMask: MORNING (08-12), LUNCH (12-13), AFTERNOON (13-17); startMinute/endMinute là khung giờ
+ * chính xác tính theo phút trong ngày [start, end).
+ */
+@Entity
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Table(name = "leave_day", indexes = {
+        @Index(name = "ix_leave_day_account_day", columnList = "account_id, day"),
+        @Index(name = "ix_leave_day_leave_request", columnList = "leave_request_id")
+})
+public class LeaveDay {
+    public static final int MORNING = 1;
+    public static final int LUNCH = 2;
+    public static final int AFTERNOON = 4;
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "account_id", nullable = false)
+    private Long accountId;
+
+    @Column(name = "leave_request_id", nullable = false)
+    private Long leaveRequestId;
+
+    @Column(nullable = false)
+    private LocalDate day;
+
+    @Column(nullable = false)
+    private int slotMask;
+
+    @Column(nullable = false)
+    private int startMinute;
+
+    @Column(nullable = false)
+    private int endMinute;
+
+    // Số phút nghỉ thực tế trong ngày, không tính giờ nghỉ trưa 12:00-13:00
+    public int workMinutes() {
+        int lunchOverlap = Math.max(0, Math.min(endMinute, 13 * 60) - Math.max(startMinute, 12 * 60));
+        return Math.max(0, endMinute - startMinute - lunchOverlap);
+    }
+
+    // Trùng khi có chung ít nhất 1 buổi và khung phút giao nhau
+    public boolean overlaps(int otherMask, int otherStart, int otherEnd) {
+        return (slotMask & otherMask) != 0 && startMinute < otherEnd && otherStart < endMinute;
+    }
+}
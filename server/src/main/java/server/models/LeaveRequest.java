@@ -16,7 +16,11 @@ import java.time.LocalTime;
 
 
 @Entity
-@Table(name = "leave_request")
+@Table(name = "leave_request", indexes = {
+        @Index(name = "ix_leave_request_receiver_status", columnList = "receiver_id, status, created_at"),
+        @Index(name = "ix_leave_request_sender_status", columnList = "sender_id, status, created_at"),
+        @Index(name = "ix_leave_request_status_created", columnList = "status, created_at")
+})
 @Getter
 @Setter
 @AllArgsConstructor
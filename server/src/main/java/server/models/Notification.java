@@ -7,7 +7,11 @@ import server.models.enums.NotificationType;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "notifications")
+@Table(name = "notifications",
+        indexes = {
+                @Index(name = "ix_notification_recipient_created", columnList = "recipient_id, created_at, id"),
+                @Index(name = "ix_notification_created", columnList = "created_at")
+        })
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -0,0 +1,46 @@
+package server.models;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Notification đã đọc quá hạn giữ (mặc định 90 ngày) được chuyển từ bảng notifications sang đây,
+ * giữ nguyên id gốc. Chỉ dùng để tra cứu/đối soát, feed không đọc bảng này.
+ */
+@Entity
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Table(name = "notifications_archive",
+        indexes = @Index(name = "ix_notification_archive_recipient_created", columnList = "recipient_id, created_at"))
+public class NotificationArchive {
+    @Id
+    private Long id;
+
+    private String title;
+
+    private String content;
+
+    @Column(name = "recipient_id")
+    private Long recipientId;
+
+    @Column(name = "created_by_id")
+    private Long createdById;
+
+    @Column(name = "`read`")
+    private boolean read;
+
+    private LocalDateTime createdAt;
+
+    @Column(length = 32)
+    private String type;
+
+    private Long referenceId;
+
+    @Column(nullable = false)
+    private LocalDateTime archivedAt;
+}
@@ -0,0 +1,29 @@
+package server.models;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+/**
+ * Số notification chưa đọc của từng account (badge trên header).
+ * Tăng khi tạo notification, giảm khi đánh dấu đã đọc hoặc khi job dọn xóa notification chưa đọc;
+ * NotificationUnreadService.rebuild() đếm lại từ bảng notifications khi cần sửa lệch.
+ */
+@Entity
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Table(name = "notification_unread",
+        uniqueConstraints = @UniqueConstraint(name = "ux_notification_unread_account", columnNames = "account_id"))
+public class NotificationUnread {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "account_id", nullable = false)
+    private Long accountId;
+
+    @Column(name = "unread_count", nullable = false)
+    private long unreadCount;
+}
@@ -0,0 +1,57 @@
+package server.models;
+
+import jakarta.persistence.*;
+import lombok.*;
+import server.models.enums.OutboxChannel;
+import server.models.enums.OutboxStatus;
+
+import java.time.LocalDateTime;
+
+/**
+ * Tin nhắn chờ gửi ra ngoài (STOMP / email), ghi cùng transaction với thay đổi nghiệp vụ.
+ * OutboxDispatcher gửi xong thì xóa dòng; lỗi thì thử lại với backoff, quá số lần thì để FAILED.
+ *
+ * payload: STOMP = JSON của message, EMAIL = nội dung MIME (RFC 822) đầy đủ kể cả file đính kèm.
+ * Với SENDING, nextAttemptAt là hạn giữ chỗ: node gửi bị tắt giữa chừng thì dòng tự được gửi lại.
+ */
+@Entity
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Table(name = "outbox_message",
+        indexes = @Index(name = "ix_outbox_status_next_attempt", columnList = "status, next_attempt_at"))
+public class OutboxMessage {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private OutboxChannel channel;
+
+    // topic STOMP hoặc địa chỉ người nhận email
+    @Column(nullable = false, length = 512)
+    private String destination;
+
+    @Lob
+    @Column(nullable = false, columnDefinition = "LONGBLOB")
+    private byte[] payload;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private OutboxStatus status;
+
+    @Column(nullable = false)
+    private int attempts;
+
+    @Column(name = "next_attempt_at", nullable = false)
+    private LocalDateTime nextAttemptAt;
+
+    @Column(length = 1000)
+    private String lastError;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+}
@@ -7,11 +7,16 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.hibernate.annotations.CreationTimestamp;
 import org.hibernate.annotations.UpdateTimestamp;
+import server.utils.HashUtils;
 
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "tokens")
+@Table(name = "tokens", indexes = {
+        @Index(name = "ux_tokens_access_token_hash", columnList = "access_token_hash", unique = true),
+        @Index(name = "ux_tokens_refresh_token_hash", columnList = "refresh_token_hash", unique = true),
+        @Index(name = "ix_tokens_expires_at", columnList = "expires_at")
+})
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
@@ -26,6 +31,17 @@ public class Token {
     @Column(name = "refresh_token")
     private String refreshToken;
 
+    // SHA-256 (hex) của token, cột cố định 64 ký tự có unique index dùng để tra cứu
+    @Column(name = "access_token_hash", length = 64)
+    private String accessTokenHash;
+
+    @Column(name = "refresh_token_hash", length = 64)
+    private String refreshTokenHash;
+
+    // Thời điểm refresh token hết hạn, sau mốc này phiên đăng nhập bị dọn khỏi bảng
+    @Column(name = "expires_at")
+    private LocalDateTime expiresAt;
+
     @ManyToOne
     @JoinColumn(name = "account_id")
     @JsonIgnoreProperties("tokens")
@@ -40,4 +56,11 @@ public class Token {
 
     @UpdateTimestamp
     private LocalDateTime updatedAt;
+
+    @PrePersist
+    @PreUpdate
+    private void computeHashes() {
+        accessTokenHash = accessToken != null ? HashUtils.sha256Hex(accessToken) : null;
+        refreshTokenHash = refreshToken != null ? HashUtils.sha256Hex(refreshToken) : null;
+    }
 }
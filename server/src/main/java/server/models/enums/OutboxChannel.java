@@ -0,0 +1,6 @@
+package server.models.enums;
+
+public enum OutboxChannel {
+    STOMP,
+    EMAIL,
+}
@@ -0,0 +1,7 @@
+package server.models.enums;
+
+public enum OutboxStatus {
+    PENDING,
+    SENDING,
+    FAILED,
+}
@@ -2,7 +2,10 @@ package server.repositories;
 
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import server.dtos.ProfileView;
 import server.models.Account;
 import server.models.enums.Role;
 
@@ -31,4 +34,23 @@ public interface AccountRepository extends JpaRepository<Account, Long>, JpaSpec
     List<Account> findByRoleAndEnabledTrue(Role role);
     Optional<Account> findFirstByRoleAndEnabledTrueOrderByIdAsc(Role role);
     List<Account> findByRoleInAndEnabledTrue(List<Role> roles);
+
+    // Dựng toàn bộ ProfileDto trong 1 round-trip (không đi qua các quan hệ lazy/eager của entity)
+    @Query("""
+        SELECT a.id AS id, a.username AS username, a.role AS role, a.createdAt AS createdAt,
+               e.id AS employeeId, e.firstName AS firstName, e.lastName AS lastName, e.email AS email,
+               e.phone AS phone, e.address AS address, e.gender AS gender, e.dateBirth AS dateBirth,
+               e.avatar AS avatar,
+               d.id AS departmentId, d.name AS departmentName, hd.name AS hodDepartmentName,
+               h.id AS hodId, h.firstName AS hodFirstName, h.lastName AS hodLastName,
+               ha.id AS hodAccountId, ha.role AS hodAccountRole
+          FROM Account a
+          LEFT JOIN a.employee e
+          LEFT JOIN e.department d
+          LEFT JOIN e.hodDepartment hd
+          LEFT JOIN d.hod h
+          LEFT JOIN h.account ha
+         WHERE a.id = :id
+    """)
+    Optional<ProfileView> findProfileById(@Param("id") Long id);
 }
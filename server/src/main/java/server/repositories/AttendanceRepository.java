@@ -1,6 +1,9 @@
 package server.repositories;
 
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
@@ -10,6 +13,7 @@ import server.models.Document;
 import server.models.enums.AttendanceStatus;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 public interface AttendanceRepository extends JpaRepository<Attendance, Long>, JpaSpecificationExecutor<Attendance> {
@@ -34,5 +38,29 @@ public interface AttendanceRepository extends JpaRepository<Attendance, Long>, J
     List<Attendance> findAllByCheckInTimeBetweenAndStatus(LocalDateTime checkInTimeAfter, LocalDateTime checkInTimeBefore, AttendanceStatus status);
     List<Attendance> findByStatusAndCheckInTimeBetween(AttendanceStatus status, LocalDateTime from, LocalDateTime to);
 
+    // Kèm account (người nhận thông báo) trong 1 query, cho các job nhắc check-out
+    @Query("SELECT a FROM Attendance a JOIN FETCH a.account " +
+            "WHERE a.status = :status AND a.checkInTime BETWEEN :from AND :to ORDER BY a.id")
+    List<Attendance> findWithAccountByStatusAndCheckInTimeBetween(@Param("status") AttendanceStatus status,
+                                                                  @Param("from") LocalDateTime from,
+                                                                  @Param("to") LocalDateTime to);
+
+    // Id các bản ghi cần chốt, khóa dòng để check-out xảy ra giữa lúc đọc và UPDATE không bị ghi đè / bỏ sót
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT a.id FROM Attendance a " +
+            "WHERE a.status = :status AND a.checkInTime BETWEEN :from AND :to ORDER BY a.id")
+    List<Long> lockIdsByStatusAndCheckInTimeBetween(@Param("status") AttendanceStatus status,
+                                                    @Param("from") LocalDateTime from,
+                                                    @Param("to") LocalDateTime to);
+
+    @Query("SELECT a FROM Attendance a JOIN FETCH a.account WHERE a.id IN :ids ORDER BY a.id")
+    List<Attendance> findWithAccountByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Modifying
+    @Query("UPDATE Attendance a SET a.status = :to WHERE a.id IN :ids AND a.status = :from")
+    int updateStatusByIds(@Param("ids") Collection<Long> ids,
+                          @Param("from") AttendanceStatus from,
+                          @Param("to") AttendanceStatus to);
+
     // Tìm attendance theo id và status
 }
\ No newline at end of file
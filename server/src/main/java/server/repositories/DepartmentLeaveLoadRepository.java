@@ -0,0 +1,42 @@
+package server.repositories;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import server.models.DepartmentLeaveLoad;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Repository
+public interface DepartmentLeaveLoadRepository extends JpaRepository<DepartmentLeaveLoad, Long> {
+    List<DepartmentLeaveLoad> findByDepartmentIdAndDayBetween(Long departmentId, LocalDate from, LocalDate to);
+
+    // Cộng/trừ bộ đếm nguyên tử (MySQL upsert), không cần đọc trước rồi ghi
+    @Modifying
+    @Query(value = """
+        INSERT INTO department_leave_load (department_id, day, leave_count)
+        VALUES (:departmentId, :day, GREATEST(:delta, 0))
+        ON DUPLICATE KEY UPDATE leave_count = GREATEST(leave_count + :delta, 0)
+        """, nativeQuery = true)
+    int addLoad(@Param("departmentId") Long departmentId, @Param("day") LocalDate day, @Param("delta") int delta);
+
+    @Modifying
+    @Query(value = "DELETE FROM department_leave_load", nativeQuery = true)
+    int deleteAllLoads();
+
+    // Tính lại toàn bộ từ leave_day (mỗi dòng là 1 ngày nghỉ của 1 đơn) cho các đơn APPROVED
+    @Modifying
+    @Query(value = """
+        INSERT INTO department_leave_load (department_id, day, leave_count)
+        SELECT e.department_id, d.day, COUNT(*)
+          FROM leave_day d
+          JOIN leave_request lr ON lr.id = d.leave_request_id
+          JOIN employees e ON e.account_id = d.account_id
+         WHERE lr.status = 'APPROVED' AND e.department_id IS NOT NULL
+         GROUP BY e.department_id, d.day
+        """, nativeQuery = true)
+    int insertLoadsFromLeaveDays();
+}
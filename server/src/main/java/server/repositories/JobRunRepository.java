@@ -0,0 +1,62 @@
+package server.repositories;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import server.models.JobRun;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+@Repository
+public interface JobRunRepository extends JpaRepository<JobRun, Long> {
+    boolean existsByJobNameAndPeriod(String jobName, String period);
+
+    boolean existsByJobNameAndPeriodAndDurationMsIsNotNull(String jobName, String period);
+
+    /**
+     * Giành quyền chạy 1 kỳ: trả về 1 nếu chèn được, 0 nếu node khác / lần chạy trước đã ghi.
+     * Gọi trong cùng transaction với phần xử lý để lỗi thì rollback cả dòng ledger.
+     */
+    @Modifying
+    @Query(value = """
+        INSERT IGNORE INTO job_run (job_name, period, completed_at)
+        VALUES (:jobName, :period, :now)
+        """, nativeQuery = true)
+    int claim(@Param("jobName") String jobName, @Param("period") String period, @Param("now") LocalDateTime now);
+
+    /**
+     * Job chạy qua nhiều transaction (claim trước, xử lý từng batch, complete sau cùng):
+     * chừng nào chưa complete (duration_ms NULL) thì completed_at là lúc giành quyền / heartbeat gần nhất.
+     * Nếu node đang chạy chết giữa chừng, quá {@code staleBefore} mà không heartbeat thì node khác giành lại để chạy tiếp.
+     */
+    @Modifying
+    @Query(value = """
+        UPDATE job_run SET completed_at = :now
+        WHERE job_name = :jobName AND period = :period AND duration_ms IS NULL AND completed_at < :staleBefore
+        """, nativeQuery = true)
+    int reclaim(@Param("jobName") String jobName, @Param("period") String period,
+                @Param("now") LocalDateTime now, @Param("staleBefore") LocalDateTime staleBefore);
+
+    // Heartbeat sau mỗi batch để lần chạy đang sống không bị node khác giành lại
+    @Modifying
+    @Query(value = """
+        UPDATE job_run SET completed_at = :now
+        WHERE job_name = :jobName AND period = :period AND duration_ms IS NULL
+        """, nativeQuery = true)
+    int renew(@Param("jobName") String jobName, @Param("period") String period, @Param("now") LocalDateTime now);
+
+    // Giành kỳ mới, hoặc kỳ đã giành nhưng bị bỏ dở quá lease; gọi trong 1 transaction ngắn riêng
+    default boolean claimOrResume(String jobName, String period, LocalDateTime now, Duration lease) {
+        return claim(jobName, period, now) > 0 || reclaim(jobName, period, now, now.minus(lease)) > 0;
+    }
+
+    @Modifying
+    @Query("UPDATE JobRun j SET j.affectedCount = :affected, j.durationMs = :durationMs, j.completedAt = :now " +
+            "WHERE j.jobName = :jobName AND j.period = :period")
+    int complete(@Param("jobName") String jobName, @Param("period") String period,
+                 @Param("affected") int affected, @Param("durationMs") long durationMs,
+                 @Param("now") LocalDateTime now);
+}
@@ -0,0 +1,52 @@
+package server.repositories;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import server.models.LeaveBalance;
+
+import java.util.List;
+
+@Repository
+public interface LeaveBalanceRepository extends JpaRepository<LeaveBalance, Long> {
+    List<LeaveBalance> findByAccountIdAndYear(Long accountId, int year);
+
+    // Sổ phép cả công ty trong 1 query: {accountId, phút đã nghỉ trong năm, phút đã nghỉ trong tháng}
+    @Query("""
+        SELECT b.accountId, SUM(b.usedMinutes),
+               SUM(CASE WHEN b.month = :month THEN b.usedMinutes ELSE 0 END)
+          FROM LeaveBalance b
+         WHERE b.year = :year
+         GROUP BY b.accountId
+        """)
+    List<Object[]> sumByAccountForYear(@Param("year") int year, @Param("month") int month);
+
+    @Modifying
+    @Query(value = """
+        INSERT INTO leave_balance (account_id, leave_year, leave_month, used_minutes)
+        VALUES (:accountId, :year, :month, GREATEST(:delta, 0))
+        ON DUPLICATE KEY UPDATE used_minutes = GREATEST(used_minutes + :delta, 0)
+        """, nativeQuery = true)
+    int addMinutes(@Param("accountId") Long accountId, @Param("year") int year,
+                   @Param("month") int month, @Param("delta") long delta);
+
+    @Modifying
+    @Query(value = "DELETE FROM leave_balance", nativeQuery = true)
+    int deleteAllBalances();
+
+    // Tính lại từ leave_day của các đơn APPROVED (trừ giờ nghỉ trưa 720-780 phút)
+    @Modifying
+    @Query(value = """
+        INSERT INTO leave_balance (account_id, leave_year, leave_month, used_minutes)
+        SELECT d.account_id, YEAR(d.day), MONTH(d.day),
+               SUM(GREATEST(0, d.end_minute - d.start_minute
+                   - GREATEST(0, LEAST(d.end_minute, 780) - GREATEST(d.start_minute, 720))))
+          FROM leave_day d
+          JOIN leave_request lr ON lr.id = d.leave_request_id
+         WHERE lr.status = 'APPROVED'
+         GROUP BY d.account_id, YEAR(d.day), MONTH(d.day)
+        """, nativeQuery = true)
+    int insertBalancesFromLeaveDays();
+}
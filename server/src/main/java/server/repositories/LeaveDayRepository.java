@@ -0,0 +1,24 @@
+package server.repositories;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import server.models.LeaveDay;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface LeaveDayRepository extends JpaRepository<LeaveDay, Long> {
+    // 1 range scan trên index (account_id, day)
+    List<LeaveDay> findByAccountIdAndDayBetween(Long accountId, LocalDate from, LocalDate to);
+
+    boolean existsByLeaveRequestId(Long leaveRequestId);
+
+    @Modifying
+    @Query("DELETE FROM LeaveDay d WHERE d.leaveRequestId IN :leaveRequestIds")
+    int deleteByLeaveRequestIdIn(@Param("leaveRequestIds") Collection<Long> leaveRequestIds);
+}
@@ -1,10 +1,17 @@
 package server.repositories;
 
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import server.dtos.leave_requests.LeaveDayView;
+import server.dtos.leave_requests.LeaveRequestInboxView;
 import server.models.Account;
 import server.models.LeaveRequest;
 import server.models.enums.LeaveStatus;
@@ -24,18 +31,66 @@ public interface LeaveRequestRepository
 
     List<LeaveRequest> findBySenderIdAndStatus(Long senderId, LeaveStatus status);
 
+    Page<LeaveRequest> findByStatusIn(Collection<LeaveStatus> statuses, Pageable pageable);
+
+    // Các hộp đơn chờ duyệt: lọc theo (receiver_id, status) / (sender_id, status) / status ngay trong DB,
+    // trả projection phẳng để không kéo theo các quan hệ EAGER của Account/Employee
+    String INBOX_SELECT = """
+        SELECT lr.id AS id, lr.reason AS reason, lr.startDate AS startDate, lr.endDate AS endDate,
+               lr.status AS status, lr.createdAt AS createdAt, lr.updatedAt AS updatedAt,
+               lr.signature AS signature, lr.leaveType AS leaveType,
+               lr.startTime AS startTime, lr.endTime AS endTime,
+               s.id AS senderId, s.username AS senderUsername, s.role AS senderRole,
+               se.firstName AS senderFirstName, se.lastName AS senderLastName,
+               se.email AS senderEmail, se.phone AS senderPhone, sd.name AS senderDepartmentName,
+               r.id AS receiverId, r.username AS receiverUsername, r.role AS receiverRole,
+               re.firstName AS receiverFirstName, re.lastName AS receiverLastName,
+               re.email AS receiverEmail, re.phone AS receiverPhone, rd.name AS receiverDepartmentName
+          FROM LeaveRequest lr
+          JOIN lr.sender s
+          LEFT JOIN s.employee se
+          LEFT JOIN se.department sd
+          LEFT JOIN lr.receiver r
+          LEFT JOIN r.employee re
+          LEFT JOIN re.department rd
+        """;
+
+    @Query(value = INBOX_SELECT + " WHERE r.id = :receiverId AND lr.status = :status ORDER BY lr.createdAt DESC, lr.id DESC",
+            countQuery = "SELECT COUNT(lr) FROM LeaveRequest lr WHERE lr.receiver.id = :receiverId AND lr.status = :status")
+    Page<LeaveRequestInboxView> findInboxByReceiver(@Param("receiverId") Long receiverId,
+                                                    @Param("status") LeaveStatus status,
+                                                    Pageable pageable);
+
+    @Query(value = INBOX_SELECT + " WHERE s.id = :senderId AND lr.status = :status ORDER BY lr.createdAt DESC, lr.id DESC",
+            countQuery = "SELECT COUNT(lr) FROM LeaveRequest lr WHERE lr.sender.id = :senderId AND lr.status = :status")
+    Page<LeaveRequestInboxView> findInboxBySender(@Param("senderId") Long senderId,
+                                                  @Param("status") LeaveStatus status,
+                                                  Pageable pageable);
+
+    @Query(value = INBOX_SELECT + " WHERE lr.status = :status ORDER BY lr.createdAt DESC, lr.id DESC",
+            countQuery = "SELECT COUNT(lr) FROM LeaveRequest lr WHERE lr.status = :status")
+    Page<LeaveRequestInboxView> findInboxByStatus(@Param("status") LeaveStatus status, Pageable pageable);
+
+    // daysOff của cả trang trong 1 query thay vì lazy-load từng đơn
+    @Query("SELECT lr.id AS leaveRequestId, d AS day FROM LeaveRequest lr JOIN lr.daysOff d WHERE lr.id IN :ids")
+    List<LeaveDayView> findDaysOffByLeaveRequestIds(@Param("ids") Collection<Long> ids);
+
     List<LeaveRequest> findByBatchIdOrderByStartDateAsc(String batchId);
 
-    @Query("SELECT lr FROM LeaveRequest lr " +
-            "WHERE lr.sender.employee.department.id = :departmentId " +
-            "AND lr.status = 'APPROVED' " +
-            "AND lr.endDate >= :startDate " +
-            "AND lr.startDate <= :endDate")
-    List<LeaveRequest> findApprovedInMonth(
-            @Param("departmentId") Long departmentId,
-            @Param("startDate") LocalDate startDate,
-            @Param("endDate") LocalDate endDate
-    );
+    List<LeaveRequest> findByBatchIdInOrderByStartDateAsc(Collection<String> batchIds);
+
+    // Đơn của 1 phòng ban giao với khoảng [start, end], dùng cho xuất ZIP hàng loạt
+    @Query("""
+       SELECT lr FROM LeaveRequest lr
+       WHERE lr.sender.employee.department.id = :departmentId
+         AND lr.status = :status
+         AND lr.endDate >= :start AND lr.startDate <= :end
+       ORDER BY lr.startDate, lr.id
+       """)
+    List<LeaveRequest> findForDepartmentExport(@Param("departmentId") Long departmentId,
+                                               @Param("status") LeaveStatus status,
+                                               @Param("start") LocalDate start,
+                                               @Param("end") LocalDate end);
 
     List<LeaveRequest> findByStatusInAndCreatedAtBetween(
             List<LeaveStatus> statuses,
@@ -43,14 +98,35 @@ public interface LeaveRequestRepository
             LocalDateTime endExclusive
     );
 
+    // Id các đơn còn treo trong kỳ, khóa dòng để bulk UPDATE ngay sau đó không đụng đơn vừa đổi trạng thái
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
     @Query("""
-       SELECT lr FROM LeaveRequest lr
+       SELECT lr.id FROM LeaveRequest lr
        WHERE lr.createdAt >= :start AND lr.createdAt < :end
          AND lr.status IN :statuses
+       ORDER BY lr.id
        """)
-    List<LeaveRequest> findForExpiry(LocalDateTime start,
-                                     LocalDateTime end,
-                                     Collection<LeaveStatus> statuses);
+    List<Long> findIdsForExpiry(@Param("start") LocalDateTime start,
+                                @Param("end") LocalDateTime end,
+                                @Param("statuses") Collection<LeaveStatus> statuses);
+
+    // Đơn kèm người gửi / người duyệt (và employee để hiển thị tên) cho thông báo theo lô
+    @Query("""
+       SELECT lr FROM LeaveRequest lr
+       JOIN FETCH lr.sender
+       LEFT JOIN FETCH lr.receiver r
+       LEFT JOIN FETCH r.employee
+       WHERE lr.id IN :ids
+       ORDER BY lr.id
+       """)
+    List<LeaveRequest> findWithAccountsByIdIn(@Param("ids") Collection<Long> ids);
+
+    // Bulk UPDATE không qua @UpdateTimestamp nên phải set updatedAt thủ công (countMyStatusUpdatedInMonth dùng cột này)
+    @Modifying
+    @Query("UPDATE LeaveRequest lr SET lr.status = :status, lr.updatedAt = :now WHERE lr.id IN :ids")
+    int updateStatusByIds(@Param("ids") Collection<Long> ids,
+                          @Param("status") LeaveStatus status,
+                          @Param("now") LocalDateTime now);
 
     @Query("""
        SELECT COUNT(lr) FROM LeaveRequest lr
@@ -1,14 +1,90 @@
 package server.repositories;
 
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import server.dtos.NotificationKeyView;
+import server.dtos.RecipientCountView;
 import server.models.Notification;
 import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface NotificationRepository extends JpaRepository<Notification, Long> {
     @Query("SELECT n FROM Notification n JOIN FETCH n.recipient WHERE n.recipient.username = :username ORDER BY n.createdAt DESC")
     List<Notification> findByRecipientUsernameWithJoinFetch(@Param("username") String username);
+
+    String FEED_SELECT = """
+        SELECT n FROM Notification n
+          JOIN FETCH n.recipient r
+          LEFT JOIN FETCH n.createdBy c
+          LEFT JOIN FETCH c.employee
+         WHERE r.id = :recipientId
+        """;
+
+    // Trang đầu của feed (keyset theo createdAt, id giảm dần; dùng index (recipient_id, created_at, id))
+    @Query(FEED_SELECT + " ORDER BY n.createdAt DESC, n.id DESC")
+    List<Notification> findFeed(@Param("recipientId") Long recipientId, Pageable limit);
+
+    // Các trang sau: bắt đầu ngay sau notification cuối của trang trước
+    @Query(FEED_SELECT + """
+           AND (n.createdAt < :createdAt OR (n.createdAt = :createdAt AND n.id < :id))
+         ORDER BY n.createdAt DESC, n.id DESC
+        """)
+    List<Notification> findFeedAfter(@Param("recipientId") Long recipientId,
+                                     @Param("createdAt") LocalDateTime createdAt,
+                                     @Param("id") Long id,
+                                     Pageable limit);
+
+    // Trả về 1 nếu notification vừa chuyển từ chưa đọc sang đã đọc (để giảm bộ đếm đúng 1 lần)
+    @Modifying
+    @Query("UPDATE Notification n SET n.read = true WHERE n.id = :id AND n.read = false")
+    int markReadIfUnread(@Param("id") Long id);
+
+    @Modifying
+    @Query("UPDATE Notification n SET n.read = true WHERE n.recipient.id = :recipientId AND n.read = false")
+    int markAllRead(@Param("recipientId") Long recipientId);
+
+    // Batch tiếp theo cho job dọn: notification theo trạng thái đọc, tạo trước cutoff, sau khóa (createdAt, id) của batch trước
+    @Query("""
+        SELECT n.id AS id, n.createdAt AS createdAt FROM Notification n
+         WHERE n.read = :read AND n.createdAt < :cutoff
+           AND (n.createdAt > :lastCreatedAt OR (n.createdAt = :lastCreatedAt AND n.id > :lastId))
+         ORDER BY n.createdAt, n.id
+        """)
+    List<NotificationKeyView> findRetentionBatch(@Param("read") boolean read,
+                                                 @Param("cutoff") LocalDateTime cutoff,
+                                                 @Param("lastCreatedAt") LocalDateTime lastCreatedAt,
+                                                 @Param("lastId") Long lastId,
+                                                 Pageable limit);
+
+    // Chép sang bảng archive (giữ id gốc, chạy lại không bị trùng)
+    @Modifying
+    @Query(value = """
+        INSERT IGNORE INTO notifications_archive
+            (id, title, content, recipient_id, created_by_id, `read`, created_at, type, reference_id, archived_at)
+        SELECT n.id, n.title, n.content, n.recipient_id, n.created_by_id, n.`read`, n.created_at, n.type, n.reference_id, :now
+          FROM notifications n
+         WHERE n.id IN (:ids)
+        """, nativeQuery = true)
+    int copyToArchive(@Param("ids") Collection<Long> ids, @Param("now") LocalDateTime now);
+
+    // Khóa các notification chưa đọc của batch sắp xóa và đếm theo người nhận (gọi trong transaction xóa)
+    @Query(value = """
+        SELECT n.recipient_id AS recipientId, COUNT(*) AS total
+          FROM notifications n
+         WHERE n.id IN (:ids) AND n.`read` = false AND n.recipient_id IS NOT NULL
+         GROUP BY n.recipient_id
+           FOR UPDATE
+        """, nativeQuery = true)
+    List<RecipientCountView> lockUnreadCountsByRecipient(@Param("ids") Collection<Long> ids);
+
+    @Modifying
+    @Query(value = "DELETE FROM notifications WHERE id IN (:ids)", nativeQuery = true)
+    int deleteByIds(@Param("ids") Collection<Long> ids);
 }
@@ -0,0 +1,41 @@
+package server.repositories;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import server.models.NotificationUnread;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface NotificationUnreadRepository extends JpaRepository<NotificationUnread, Long> {
+    Optional<NotificationUnread> findByAccountId(Long accountId);
+
+    // Cộng/trừ bộ đếm nguyên tử (MySQL upsert), không xuống dưới 0
+    @Modifying
+    @Query(value = """
+        INSERT INTO notification_unread (account_id, unread_count)
+        VALUES (:accountId, GREATEST(:delta, 0))
+        ON DUPLICATE KEY UPDATE unread_count = GREATEST(unread_count + :delta, 0)
+        """, nativeQuery = true)
+    int addUnread(@Param("accountId") Long accountId, @Param("delta") long delta);
+
+    // Lô account tiếp theo cho rebuild, theo khóa id
+    @Query(value = "SELECT a.id FROM accounts a WHERE a.id > :afterId ORDER BY a.id LIMIT :limit", nativeQuery = true)
+    List<Long> findAccountIdBatch(@Param("afterId") long afterId, @Param("limit") int limit);
+
+    // Đếm lại bộ đếm của 1 lô account từ bảng notifications (ghi đè giá trị cũ)
+    @Modifying
+    @Query(value = """
+        INSERT INTO notification_unread (account_id, unread_count)
+        SELECT a.id, (SELECT COUNT(*) FROM notifications n WHERE n.recipient_id = a.id AND n.`read` = false)
+          FROM accounts a
+         WHERE a.id IN (:accountIds)
+        ON DUPLICATE KEY UPDATE unread_count = VALUES(unread_count)
+        """, nativeQuery = true)
+    int upsertUnreadFromNotifications(@Param("accountIds") Collection<Long> accountIds);
+}
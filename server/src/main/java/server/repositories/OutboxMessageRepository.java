@@ -0,0 +1,80 @@
+package server.repositories;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import server.dtos.OutboxFailureView;
+import server.models.OutboxMessage;
+import server.models.enums.OutboxStatus;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface OutboxMessageRepository extends JpaRepository<OutboxMessage, Long> {
+    /**
+     * Các dòng đến hạn gửi (PENDING đến giờ thử lại, hoặc SENDING đã quá hạn giữ chỗ).
+     * SKIP LOCKED để nhiều node cùng drain không tranh nhau cùng dòng; gọi trong transaction rồi claim ngay.
+     */
+    @Query(value = """
+        SELECT id FROM outbox_message
+         WHERE status IN ('PENDING', 'SENDING') AND next_attempt_at <= :now
+         ORDER BY id
+         LIMIT :limit
+         FOR UPDATE SKIP LOCKED
+        """, nativeQuery = true)
+    List<Long> lockDueIds(@Param("now") LocalDateTime now, @Param("limit") int limit);
+
+    @Modifying
+    @Query("UPDATE OutboxMessage o SET o.status = :status, o.nextAttemptAt = :leaseUntil WHERE o.id IN :ids")
+    int claim(@Param("ids") Collection<Long> ids,
+              @Param("status") OutboxStatus status,
+              @Param("leaseUntil") LocalDateTime leaseUntil);
+
+    @Modifying
+    @Query("""
+        UPDATE OutboxMessage o
+           SET o.status = :status, o.attempts = :attempts, o.nextAttemptAt = :nextAttemptAt, o.lastError = :lastError
+         WHERE o.id = :id
+        """)
+    int markAttemptFailed(@Param("id") Long id,
+                          @Param("status") OutboxStatus status,
+                          @Param("attempts") int attempts,
+                          @Param("nextAttemptAt") LocalDateTime nextAttemptAt,
+                          @Param("lastError") String lastError);
+
+    @Modifying
+    @Query("DELETE FROM OutboxMessage o WHERE o.id IN :ids")
+    int deleteByIdIn(@Param("ids") Collection<Long> ids);
+
+    // Dead letter mới nhất trước
+    @Query("""
+        SELECT o.id AS id, o.channel AS channel, o.destination AS destination, o.attempts AS attempts,
+               o.lastError AS lastError, o.createdAt AS createdAt, o.nextAttemptAt AS nextAttemptAt
+          FROM OutboxMessage o
+         WHERE o.status = server.models.enums.OutboxStatus.FAILED
+         ORDER BY o.id DESC
+        """)
+    List<OutboxFailureView> findFailed(Pageable pageable);
+
+    // Đưa dead letter về PENDING, đếm lại số lần thử từ đầu
+    @Modifying
+    @Query("""
+        UPDATE OutboxMessage o
+           SET o.status = server.models.enums.OutboxStatus.PENDING, o.attempts = 0, o.nextAttemptAt = :now
+         WHERE o.status = server.models.enums.OutboxStatus.FAILED AND o.id IN :ids
+        """)
+    int requeueFailed(@Param("ids") Collection<Long> ids, @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Query("""
+        UPDATE OutboxMessage o
+           SET o.status = server.models.enums.OutboxStatus.PENDING, o.attempts = 0, o.nextAttemptAt = :now
+         WHERE o.status = server.models.enums.OutboxStatus.FAILED
+        """)
+    int requeueAllFailed(@Param("now") LocalDateTime now);
+}
@@ -1,17 +1,68 @@
 package server.repositories;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import server.models.Account;
 import server.models.Token;
+import server.utils.HashUtils;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface TokenRepository extends JpaRepository<Token, Long> {
-    Optional<Token> findByAccessToken(String accessToken);
-    Optional<Token> findByRefreshToken(String refreshToken);
+    Optional<Token> findByAccessTokenHash(String accessTokenHash);
+    Optional<Token> findByRefreshTokenHash(String refreshTokenHash);
+    boolean existsByAccessTokenHash(String accessTokenHash);
+
+    // Dòng cũ chưa được backfill hash: so nguyên chuỗi, chỉ quét các dòng có hash NULL (qua index của cột hash)
+    Optional<Token> findFirstByAccessTokenHashIsNullAndAccessToken(String accessToken);
+    Optional<Token> findFirstByRefreshTokenHashIsNullAndRefreshToken(String refreshToken);
+    boolean existsByAccessTokenHashIsNullAndAccessToken(String accessToken);
+
+    /**
+     * Tra cứu qua fingerprint (unique index) thay vì so sánh nguyên chuỗi JWT.
+     * Không thấy thì thử các dòng chưa có hash, vì TokenCleanupService.backfillLegacyTokens chỉ chạy sau khi khởi động xong.
+     */
+    default Optional<Token> findByAccessToken(String accessToken) {
+        return findByAccessTokenHash(HashUtils.sha256Hex(accessToken))
+                .or(() -> findFirstByAccessTokenHashIsNullAndAccessToken(accessToken));
+    }
+
+    default Optional<Token> findByRefreshToken(String refreshToken) {
+        return findByRefreshTokenHash(HashUtils.sha256Hex(refreshToken))
+                .or(() -> findFirstByRefreshTokenHashIsNullAndRefreshToken(refreshToken));
+    }
+
+    default boolean existsByAccessToken(String accessToken) {
+        return existsByAccessTokenHash(HashUtils.sha256Hex(accessToken))
+                || existsByAccessTokenHashIsNullAndAccessToken(accessToken);
+    }
+
+    // Các hash đã có trong bảng, để backfill bỏ qua token trùng thay vì vi phạm unique index
+    @Query("SELECT t.accessTokenHash FROM Token t WHERE t.accessTokenHash IN :hashes")
+    List<String> findExistingAccessTokenHashes(@Param("hashes") Collection<String> hashes);
+
+    @Query("SELECT t.refreshTokenHash FROM Token t WHERE t.refreshTokenHash IN :hashes")
+    List<String> findExistingRefreshTokenHashes(@Param("hashes") Collection<String> hashes);
 
     void removeAllByAccount(Account account);
+
+    // Các dòng cũ tạo trước khi có cột hash / expires_at
+    List<Token> findByExpiresAtIsNull(Pageable pageable);
+
+    @Query("SELECT t.id FROM Token t WHERE t.expiresAt < :now ORDER BY t.id")
+    List<Long> findExpiredIds(@Param("now") LocalDateTime now, Pageable pageable);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM Token t WHERE t.id IN :ids")
+    int deleteByIdIn(@Param("ids") List<Long> ids);
 }
@@ -0,0 +1,33 @@
+package server.schedulers;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import server.services.AttendanceReminderService;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+
+@Component
+@RequiredArgsConstructor
+public class AttendanceScheduler {
+    private final AttendanceReminderService attendanceReminderService;
+
+    // Nhắc checkout 17h mỗi ngày
+    @Scheduled(cron = "0 0 17 * * *")
+    public void remindCheckOut() {
+        attendanceReminderService.remindCheckOut(LocalDate.now());
+    }
+
+    // 00:05 mỗi ngày: chốt các bản ghi chưa check-out của ngày hôm qua
+    @Scheduled(cron = "0 5 0 * * *", zone = "Asia/Ho_Chi_Minh")
+    public void finalizeMissingCheckOuts() {
+        attendanceReminderService.finalizeMissingCheckOuts(LocalDate.now().minusDays(1));
+    }
+
+    // 8h sáng ngày 8 hàng tháng: nhắc các bản ghi thiếu check-out của tháng trước
+    @Scheduled(cron = "0 0 8 8 * ?")
+    public void remindMissingCheckOutLastMonth() {
+        attendanceReminderService.remindMissingCheckOuts(YearMonth.now().minusMonths(1));
+    }
+}
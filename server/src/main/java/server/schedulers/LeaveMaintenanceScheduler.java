@@ -0,0 +1,42 @@
+package server.schedulers;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import server.services.LeaveBalanceService;
+import server.services.LeaveDayService;
+import server.services.LeaveExpiryService;
+import server.services.LeaveLoadService;
+
+@Component
+@RequiredArgsConstructor
+public class LeaveMaintenanceScheduler {
+    private final LeaveDayService leaveDayService;
+    private final LeaveLoadService leaveLoadService;
+    private final LeaveBalanceService leaveBalanceService;
+    private final LeaveExpiryService leaveExpiryService;
+
+    // Lần đầu deploy các bảng còn trống: dựng lại từ các đơn hiện có (leave_day trước, bộ đếm và sổ phép tính từ leave_day)
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillLeaveIndexes() {
+        leaveDayService.rebuildIfEmpty();
+        leaveLoadService.rebuildIfEmpty();
+        leaveBalanceService.rebuildIfEmpty();
+        // Bù kỳ hết hạn nếu app tắt đúng lúc sang tháng (đã chạy rồi thì job_run bỏ qua)
+        leaveExpiryService.expireLastMonth();
+    }
+
+    // 00:05 sáng ngày 1 hàng tháng (giờ VN): hết hạn các đơn còn treo của tháng trước.
+    @Scheduled(cron = "0 5 0 1 * ?", zone = "Asia/Ho_Chi_Minh")
+    public void expireUnresolvedLeaveRequests() {
+        leaveExpiryService.expireLastMonth();
+    }
+
+    // Đối soát bộ đếm ngày bận của phòng ban, 02:30 mỗi ngày (giờ VN)
+    @Scheduled(cron = "0 30 2 * * *", zone = "Asia/Ho_Chi_Minh")
+    public void rebuildDepartmentLeaveLoads() {
+        leaveLoadService.rebuild();
+    }
+}
@@ -0,0 +1,28 @@
+package server.schedulers;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import server.services.NotificationRetentionService;
+import server.services.NotificationUnreadService;
+
+@Component
+@RequiredArgsConstructor
+public class NotificationMaintenanceScheduler {
+    private final NotificationUnreadService notificationUnreadService;
+    private final NotificationRetentionService notificationRetentionService;
+
+    // Lần đầu deploy bảng notification_unread còn trống: đếm từ các notification hiện có
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillUnreadCounters() {
+        notificationUnreadService.rebuildIfEmpty();
+    }
+
+    // Chuyển archive / xóa notification cũ, 02:45 mỗi ngày (giờ VN)
+    @Scheduled(cron = "0 45 2 * * *", zone = "Asia/Ho_Chi_Minh")
+    public void applyRetention() {
+        notificationRetentionService.runDaily();
+    }
+}
@@ -0,0 +1,26 @@
+package server.schedulers;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import server.services.OutboxDispatcher;
+
+@Component
+@RequiredArgsConstructor
+public class OutboxDispatchScheduler {
+    private final OutboxDispatcher outboxDispatcher;
+
+    // Gửi các message còn tồn từ lần chạy trước
+    @EventListener(ApplicationReadyEvent.class)
+    public void drainOnStartup() {
+        outboxDispatcher.wakeUp();
+    }
+
+    // Message mới được gửi ngay sau commit; vòng poll này lo các lượt thử lại đến hạn và message của node khác
+    @Scheduled(fixedDelayString = "${app.outbox.poll-interval-ms:5000}")
+    public void pollOutbox() {
+        outboxDispatcher.wakeUp();
+    }
+}
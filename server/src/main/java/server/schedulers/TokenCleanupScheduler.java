@@ -0,0 +1,27 @@
+package server.schedulers;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import server.services.TokenCleanupService;
+
+@Component
+@RequiredArgsConstructor
+public class TokenCleanupScheduler {
+    private final TokenCleanupService tokenCleanupService;
+
+    // Bổ sung hash cho dữ liệu cũ khi app khởi động (job 1 lần trong job_run, chỉ 1 node chạy);
+    // trong lúc chờ, TokenRepository vẫn tra các dòng chưa có hash
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillLegacyTokens() {
+        tokenCleanupService.backfillLegacyTokens();
+    }
+
+    // Chạy 03:00 mỗi ngày (giờ VN).
+    @Scheduled(cron = "0 0 3 * * *", zone = "Asia/Ho_Chi_Minh")
+    public void purgeExpiredTokens() {
+        tokenCleanupService.purgeExpiredTokens();
+    }
+}
@@ -21,6 +21,10 @@ import server.repositories.TokenRepository;
 import server.specification.AccountSpecifications;
 import server.utils.AccountGenerator;
 import server.utils.ApiResponse;
+import server.utils.JwtUtil;
+import server.utils.ProfileCache;
+import server.utils.RoleDirectory;
+import server.utils.TokenValidityCache;
 
 import java.util.*;
 
@@ -32,6 +36,10 @@ public class AccountService {
     private final PasswordEncoder passwordEncoder;
     private final EmailService emailService;
     private final TokenRepository tokenRepository;
+    private final TokenValidityCache tokenValidityCache;
+    private final JwtUtil jwtUtil;
+    private final ProfileCache profileCache;
+    private final RoleDirectory roleDirectory;
 
     public ApiResponse<?> getAccountsPage(GetAccountsPageDto req) {
         int pageSize = 5;
@@ -165,6 +173,7 @@ public class AccountService {
         return ApiResponse.success(responseData, "get-account-success");
     }
 
+    @Transactional
     public ApiResponse<?> updateRole(Long id, Role role) {
         Account account = accountRepository.findById(id).orElse(null);
         if (account == null) {
@@ -182,10 +191,20 @@ public class AccountService {
         }
 
         accountRepository.save(account);
+        // Role của HOD hiển thị trong profile của cả phòng ban
+        profileCache.invalidateAll();
+        roleDirectory.invalidate();
+
+        // Stateless principal: role nằm trong access token nên phải thu hồi token cũ để role mới có hiệu lực
+        if (jwtUtil.isStatelessPrincipal()) {
+            tokenRepository.removeAllByAccount(account);
+            tokenValidityCache.evictAccount(account.getId());
+        }
 
         return ApiResponse.success(null, "update-role-success");
     }
 
+    @Transactional
     public ApiResponse<?> resetPassword(Long id) {
         Account account = accountRepository.findById(id).orElse(null);
         if (account == null) {
@@ -196,6 +215,10 @@ public class AccountService {
         account.setPassword(passwordEncoder.encode(generatedPassword));
         accountRepository.save(account);
 
+        // Giống đổi mật khẩu: các phiên đăng nhập bằng mật khẩu cũ đều bị thu hồi
+        tokenRepository.removeAllByAccount(account);
+        tokenValidityCache.evictAccount(account.getId());
+
         emailService.sendAccountResetPasswordEmail(account.getEmployee().getEmail(), account.getUsername(), generatedPassword);
 
         return ApiResponse.success(null, "reset-password-success");
@@ -210,6 +233,7 @@ public class AccountService {
 
         if (account.isEnabled()) {
             tokenRepository.removeAllByAccount(account);
+            tokenValidityCache.evictAccount(account.getId());
             account.setEnabled(false);
             emailService.sendAccountDisabledEmail(account.getEmployee().getEmail(), account.getEmployee().getFirstName(), account.getEmployee().getLastName(), account.getUsername());
         } else {
@@ -218,6 +242,8 @@ public class AccountService {
         }
 
         accountRepository.save(account);
+        // Account đại diện của role ưu tiên account đang enabled
+        roleDirectory.invalidate();
 
         return ApiResponse.success(null, "change-status-success");
     }
@@ -234,6 +260,7 @@ public class AccountService {
         }
 
         tokenRepository.delete(token);
+        tokenValidityCache.evict(account.getId(), token.getAccessToken());
         return ApiResponse.success(null, "logout-session-success");
     }
 
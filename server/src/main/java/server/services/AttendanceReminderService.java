@@ -0,0 +1,105 @@
+package server.services;
+
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import server.models.Attendance;
+import server.models.enums.AttendanceStatus;
+import server.repositories.AttendanceRepository;
+import server.repositories.JobRunRepository;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Các job nhắc / chốt check-out, mỗi job là 1 transaction gồm: 1 query lấy bản ghi (kèm account),
+ * (chốt ngày hôm qua: khóa id các bản ghi rồi UPDATE theo id), 1 batch INSERT notification, push sau commit.
+ *
+ * Mỗi kỳ chỉ chạy 1 lần nhờ job_run; số bản ghi và thời gian chạy được ghi vào job_run.
+ */
+@Service
+@RequiredArgsConstructor
+public class AttendanceReminderService {
+    public static final String REMIND_TODAY_JOB = "attendance-remind-checkout";
+    public static final String FINALIZE_JOB = "attendance-finalize-checkout";
+    public static final String REMIND_LAST_MONTH_JOB = "attendance-remind-missing";
+
+    private static final int UPDATE_BATCH_SIZE = 500;
+
+    private static final Logger log = LoggerFactory.getLogger(AttendanceReminderService.class);
+
+    private final AttendanceRepository attendanceRepository;
+    private final JobRunRepository jobRunRepository;
+    private final NotificationService notificationService;
+
+    // Nhắc các bản ghi hôm nay còn CHECKED_IN
+    @Transactional
+    public int remindCheckOut(LocalDate day) {
+        String period = day.toString();
+        long startedAt = System.currentTimeMillis();
+        if (!claim(REMIND_TODAY_JOB, period)) {
+            return 0;
+        }
+        List<Attendance> records = attendanceRepository.findWithAccountByStatusAndCheckInTimeBetween(
+                AttendanceStatus.CHECKED_IN, day.atStartOfDay(), day.atTime(LocalTime.MAX));
+        notificationService.notifyAttendanceReminders(records);
+        return complete(REMIND_TODAY_JOB, period, records.size(), startedAt);
+    }
+
+    /**
+     * Chốt ngày {@code day}: khóa các bản ghi còn CHECKED_IN (như LeaveExpiryService), chuyển MISSING_CHECKOUT theo id
+     * rồi thông báo đúng các bản ghi đó. Check-out đến trong lúc chốt sẽ chờ khóa, không bị ghi đè hay báo nhầm.
+     */
+    @Transactional
+    public int finalizeMissingCheckOuts(LocalDate day) {
+        String period = day.toString();
+        long startedAt = System.currentTimeMillis();
+        if (!claim(FINALIZE_JOB, period)) {
+            return 0;
+        }
+        List<Long> ids = attendanceRepository.lockIdsByStatusAndCheckInTimeBetween(
+                AttendanceStatus.CHECKED_IN, day.atStartOfDay(), day.atTime(LocalTime.MAX));
+        int updated = 0;
+        List<Attendance> records = new ArrayList<>(ids.size());
+        for (int i = 0; i < ids.size(); i += UPDATE_BATCH_SIZE) {
+            List<Long> chunk = ids.subList(i, Math.min(i + UPDATE_BATCH_SIZE, ids.size()));
+            updated += attendanceRepository.updateStatusByIds(
+                    chunk, AttendanceStatus.CHECKED_IN, AttendanceStatus.MISSING_CHECKOUT);
+            records.addAll(attendanceRepository.findWithAccountByIdIn(chunk));
+        }
+        notificationService.notifyAttendanceReminders(records);
+        return complete(FINALIZE_JOB, period, updated, startedAt);
+    }
+
+    // Nhắc các bản ghi MISSING_CHECKOUT của tháng {@code month} chưa được giải trình
+    @Transactional
+    public int remindMissingCheckOuts(YearMonth month) {
+        String period = month.toString();
+        long startedAt = System.currentTimeMillis();
+        if (!claim(REMIND_LAST_MONTH_JOB, period)) {
+            return 0;
+        }
+        List<Attendance> records = attendanceRepository.findWithAccountByStatusAndCheckInTimeBetween(
+                AttendanceStatus.MISSING_CHECKOUT, month.atDay(1).atStartOfDay(), month.atEndOfMonth().atTime(LocalTime.MAX));
+        notificationService.notifyAttendanceReminders(records);
+        return complete(REMIND_LAST_MONTH_JOB, period, records.size(), startedAt);
+    }
+
+    private boolean claim(String jobName, String period) {
+        return !jobRunRepository.existsByJobNameAndPeriod(jobName, period)
+                && jobRunRepository.claim(jobName, period, LocalDateTime.now()) > 0;
+    }
+
+    private int complete(String jobName, String period, int affected, long startedAt) {
+        long durationMs = System.currentTimeMillis() - startedAt;
+        jobRunRepository.complete(jobName, period, affected, durationMs, LocalDateTime.now());
+        log.info("[AttendanceJob] {} {}: {} bản ghi, {} ms", jobName, period, affected, durationMs);
+        return affected;
+    }
+}
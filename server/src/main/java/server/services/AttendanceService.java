@@ -1,16 +1,14 @@
 package server.services;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
 import org.springframework.data.jpa.domain.Specification;
-import org.springframework.http.*;
-import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.util.LinkedMultiValueMap;
 import org.springframework.util.MultiValueMap;
-import org.springframework.web.client.HttpClientErrorException;
-import org.springframework.web.client.RestClientException;
-import org.springframework.web.client.RestTemplate;
 import org.springframework.web.multipart.MultipartFile;
 import server.dtos.FaceVerifyResponse;
 import server.dtos.GetAttendancePageDto;
@@ -22,6 +20,9 @@ import server.repositories.AccountRepository;
 import server.repositories.AttendanceRepository;
 import server.specification.AttendanceSpecifications;
 import server.utils.ApiResponse;
+import server.utils.FaceVerifyClient;
+import server.utils.ImageUtils;
+import server.utils.KnownFaceCache;
 import org.springframework.data.domain.*;
 
 import java.io.IOException;
@@ -39,7 +40,11 @@ public class AttendanceService {
     private final AttendanceRepository attendanceRepository;
     private final AccountRepository accountRepository;
     private final UploadFileService uploadFileService;
-    private final RestTemplate restTemplate = new RestTemplate();
+    private final FaceVerifyClient faceVerifyClient;
+    private final KnownFaceCache knownFaceCache;
+
+    @Value("${app.face-verify.live-max-side:1024}")
+    private int liveImageMaxSide;
     private final NotificationService notificationService;
 
     // --- 1. Check-in ---
@@ -79,8 +84,12 @@ public class AttendanceService {
         if (att == null)
             throw new RuntimeException("Bạn chưa check-in hôm nay hoặc đã check-out");
 
-        // Lưu ảnh checkout
-        String checkoutPath = checkoutImage != null ? uploadFileService.storeFile("attendance", checkoutImage) : null;
+        if (checkoutImage == null || checkoutImage.isEmpty())
+            throw new RuntimeException("Thiếu ảnh check-out");
+
+        // Lưu ảnh checkout, đồng thời lấy bản thu nhỏ để gửi verify
+        LiveImage liveImage = storeLiveImage(checkoutImage);
+        String checkoutPath = liveImage.path();
 
         // Lấy ảnh avatar/known image (TUỲ hệ thống của bạn: field avatar đang là path hay URL)
         if (acc.getEmployee() == null || acc.getEmployee().getAvatar() == null || acc.getEmployee().getAvatar().isEmpty()) {
@@ -89,7 +98,7 @@ public class AttendanceService {
         String knownImagePath = acc.getEmployee().getAvatar();
 
         // VERIFY vị trí + khuôn mặt với Python (giống check-in)
-        FaceVerifyResponse verify = callPythonFaceVerifyAPI(checkoutImage, knownImagePath, latitude, longitude);
+        FaceVerifyResponse verify = callPythonFaceVerifyAPI(liveImage.resource(), knownImagePath, latitude, longitude);
         if (!verify.isLocation_ok()) {
             throw new RuntimeException("Bạn đang ở ngoài phạm vi cho phép (~" + verify.getDistance_km() + " km)");
         }
@@ -109,44 +118,53 @@ public class AttendanceService {
     }
 
     // --- 3. Call Python Face Verify API ---
-    public FaceVerifyResponse callPythonFaceVerifyAPI(MultipartFile liveImage, String knownImagePath, double latitude, double longitude) throws IOException {
-        String pythonApiUrl = "http://localhost:5000/api/face-verify";
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.MULTIPART_FORM_DATA);
+    // Gửi known_key trước, service chưa có encoding của avatar này thì mới gửi kèm ảnh (đã thu nhỏ, lấy từ cache)
+    public FaceVerifyResponse callPythonFaceVerifyAPI(Resource liveImage, String knownImagePath, double latitude, double longitude) throws IOException {
+        KnownFaceCache.Reference reference = knownFaceCache.reference(knownImagePath);
 
         MultiValueMap<String, Object> body = new LinkedMultiValueMap<>();
-        ByteArrayResource liveImageResource = new ByteArrayResource(liveImage.getBytes()) {
-            @Override
-            public String getFilename() { return liveImage.getOriginalFilename(); }
-        };
-        ByteArrayResource knownImageResource = uploadFileService.createByteArrayResourceFromFile(knownImagePath);
-
-        body.add("image", liveImageResource);
-        body.add("known_image", knownImageResource);
+        body.add("image", liveImage);
+        body.add("known_key", reference.key());
         body.add("latitude", String.valueOf(latitude));
         body.add("longitude", String.valueOf(longitude));
 
-        HttpEntity<MultiValueMap<String, Object>> requestEntity = new HttpEntity<>(body, headers);
-
         try {
-            ResponseEntity<FaceVerifyResponse> response = restTemplate.postForEntity(pythonApiUrl, requestEntity, FaceVerifyResponse.class);
+            return faceVerifyClient.verify(body);
+        } catch (FaceVerifyClient.UnknownReferenceException e) {
+            body.add("known_image", knownFaceCache.image(reference));
+            return faceVerifyClient.verify(body);
+        }
+    }
 
-            if (!response.getStatusCode().is2xxSuccessful() || response.getBody() == null) {
-                throw new IOException("Failed to verify face from Python service");
-            }
-            return response.getBody();
+    // --- 4. Lưu ảnh check-in / check-out ---
+    // path: file gốc đã lưu; resource: ảnh gửi service verify
+    public record LiveImage(String path, Resource resource) {
+    }
 
-        } catch (HttpClientErrorException.Forbidden e) {
-            String errorMessage = e.getResponseBodyAsString();
-            throw new IOException("Face verification failed with 403 Forbidden: " + errorMessage);
-        } catch (RestClientException e) {
-            throw new IOException("Error calling Python face verification service: " + e.getMessage());
+    /**
+     * Đọc ảnh upload đúng 1 lần: vừa ghi file gốc xuống đĩa, vừa giải mã thu nhỏ (subsampling) thành JPEG
+     * cạnh dài tối đa {@code app.face-verify.live-max-side} để gửi verify, không giữ cả file upload trên heap.
+     * Định dạng ImageIO không đọc được thì gửi thẳng file vừa lưu.
+     */
+    public LiveImage storeLiveImage(MultipartFile file) throws IOException {
+        UploadFileService.Stored<byte[]> stored = uploadFileService.storeFile("attendance", file,
+                in -> ImageUtils.readScaledJpeg(in, liveImageMaxSide, 0.85f));
+        byte[] preview = stored.result();
+        if (preview == null) {
+            return new LiveImage(stored.path(), new FileSystemResource(stored.path()));
         }
+        return new LiveImage(stored.path(), new ByteArrayResource(preview) {
+            @Override
+            public String getFilename() { return "live.jpg"; }
+        });
     }
 
-    // --- 4. Lưu ảnh check-in ---
-    public String saveCheckInImage(MultipartFile file) throws IOException {
-        return uploadFileService.storeFile("attendance", file);
+    public void deleteLiveImage(LiveImage image) {
+        try {
+            uploadFileService.deleteFile(image.path());
+        } catch (IOException ignored) {
+            // file rác, không ảnh hưởng kết quả
+        }
     }
 
     public ApiResponse<?> getMyAttendancePage(GetAttendancePageDto req, String username) {
@@ -212,55 +230,7 @@ public class AttendanceService {
         return ApiResponse.success(response, "Fetched attendances with filter & paging");
     }
 
-    // --- 6. Scheduled: Nhắc checkout 17h mỗi ngày ---
-    @Scheduled(cron = "0 0 17 * * *")
-    public void remindCheckOut() {
-        LocalDate today = LocalDate.now();
-        LocalDateTime startOfDay = today.atStartOfDay();
-        LocalDateTime endOfDay = today.atTime(LocalTime.MAX);
-
-        List<Attendance> list = attendanceRepository
-                .findAllByCheckInTimeBetweenAndStatus(startOfDay, endOfDay, AttendanceStatus.CHECKED_IN);
-
-        for (Attendance att : list) {
-            notificationService.createNotification(NotificationType.ATTENDANCE, att.getId(), false);
-        }
-    }
-
-    @Scheduled(cron = "0 5 0 * * *", zone = "Asia/Ho_Chi_Minh") // 00:05 mỗi ngày
-    public void finalizeMissingCheckOuts() {
-        // xử lý NGÀY HÔM QUA
-        LocalDate target = LocalDate.now().minusDays(1);
-        LocalDateTime startOfDay = target.atStartOfDay();
-        LocalDateTime endOfDay = target.atTime(LocalTime.MAX);
-
-        List<Attendance> list = attendanceRepository
-                .findAllByCheckInTimeBetweenAndStatus(startOfDay, endOfDay, AttendanceStatus.CHECKED_IN);
-
-        for (Attendance att : list) {
-            att.setStatus(AttendanceStatus.MISSING_CHECKOUT);
-            attendanceRepository.save(att);
-
-            // gửi thông báo cho nhân viên/HR tuỳ nhu cầu
-            notificationService.createNotification(NotificationType.ATTENDANCE, att.getId(), false);
-        }
-    }
-
-    @Scheduled(cron = "0 0 8 8 * ?") // 8h sáng ngày 8 hàng tháng
-    public void remindMissingCheckOutOnDay8() {
-        LocalDate today = LocalDate.now(); // ngày hiện tại, ví dụ 8/2
-        LocalDate firstDayOfPrevMonth = today.minusMonths(1).withDayOfMonth(1); // 1/1
-        LocalDate lastDayOfPrevMonth = today.minusMonths(1).withDayOfMonth(today.minusMonths(1).lengthOfMonth()); // 31/1
-
-        LocalDateTime from = firstDayOfPrevMonth.atStartOfDay();
-        LocalDateTime to = lastDayOfPrevMonth.atTime(LocalTime.MAX);
-
-        List<Attendance> missingRecords = getMissingCheckOutRecords(from, to);
-
-        for (Attendance att : missingRecords) {
-            notificationService.createNotification(NotificationType.ATTENDANCE, att.getId(), false);
-        }
-    }
+    // --- 6. Nhắc / chốt check-out: xem AttendanceReminderService + AttendanceScheduler ---
     public List<Attendance> getMissingCheckOutRecords(LocalDateTime from, LocalDateTime to) {
         return attendanceRepository.findByStatusAndCheckInTimeBetween(AttendanceStatus.MISSING_CHECKOUT, from, to);
     }
@@ -1,5 +1,6 @@
 package server.services;
 
+import io.jsonwebtoken.Claims;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
@@ -12,6 +13,7 @@ import org.springframework.validation.BindingResult;
 import server.dtos.ChangePasswordDto;
 import server.dtos.LoginDto;
 import server.dtos.ProfileDto;
+import server.dtos.ProfileView;
 import server.dtos.TokenDto;
 import server.models.Account;
 import server.models.Token;
@@ -19,6 +21,9 @@ import server.repositories.AccountRepository;
 import server.repositories.TokenRepository;
 import server.utils.ApiResponse;
 import server.utils.JwtUtil;
+import server.utils.ProfileCache;
+import server.utils.RequestAuthContext;
+import server.utils.TokenValidityCache;
 
 import java.util.Optional;
 
@@ -29,10 +34,19 @@ public class AuthService {
     private final TokenRepository tokenRepository;
     private final PasswordEncoder passwordEncoder;
     private final JwtUtil jwtUtil;
+    private final TokenValidityCache tokenValidityCache;
+    private final ProfileCache profileCache;
     private final RecaptchaService recaptchaService;
 
     // Phần thêm của Quân
     public Account getCurrentAccount(HttpServletRequest request) {
+        // Filter đã xác thực token: chỉ cần load theo id trong persistence context hiện tại
+        RequestAuthContext context = RequestAuthContext.current(request);
+        if (context != null) {
+            return resolveAccount(context)
+                    .orElseThrow(() -> new RuntimeException("Không tìm thấy tài khoản: " + context.getUsername()));
+        }
+
         String authHeader = request.getHeader(HttpHeaders.AUTHORIZATION);
         if (authHeader == null || !authHeader.startsWith("Bearer ")) {
             throw new RuntimeException("Bạn chưa đăng nhập!");
@@ -44,6 +58,25 @@ public class AuthService {
     }
     // Hết phần thêm
 
+    // Giống getCurrentAccount nhưng trả về Optional để caller tự quyết định lỗi
+    public Optional<Account> findCurrentAccount(HttpServletRequest request) {
+        RequestAuthContext context = RequestAuthContext.current(request);
+        if (context != null) {
+            return resolveAccount(context);
+        }
+        String username = jwtUtil.extractUsernameFromRequest(request);
+        if (username == null) {
+            return Optional.empty();
+        }
+        return accountRepository.findByUsername(username);
+    }
+
+    // Không dùng lại entity của filter (detached): findById trong transaction/open-in-view của caller
+    // để lazy association load được, gọi lặp lại trong cùng context thì first-level cache trả luôn
+    private Optional<Account> resolveAccount(RequestAuthContext context) {
+        return accountRepository.findById(context.getAccountId());
+    }
+
     public ApiResponse<?> login(LoginDto request, BindingResult result) {
 
         if(request.getCaptchaToken() != null) {
@@ -79,6 +112,7 @@ public class AuthService {
         token.setRefreshToken(refreshToken);
         token.setAccount(account.get());
         token.setDeviceName(request.getDeviceName());
+        token.setExpiresAt(jwtUtil.refreshTokenExpiresAt());
         tokenRepository.save(token);
 
         TokenDto tokenDto = new TokenDto();
@@ -96,13 +130,14 @@ public class AuthService {
         }
 
         String refreshToken = authHeader.substring(7);
-        String username = jwtUtil.extractUsername(refreshToken);
+        Claims claims = jwtUtil.extractAllClaims(refreshToken);
+        String username = claims.getSubject();
 
         Optional<Account> account = accountRepository.findByUsername(username);
         if (account.isEmpty()) {
             return ApiResponse.unauthorized();
         }
-        if (!jwtUtil.isValidRefreshToken(refreshToken, account.get())) {
+        if (!jwtUtil.isValidRefreshToken(refreshToken, claims, account.get())) {
             return ApiResponse.unauthorized();
         }
 
@@ -110,8 +145,11 @@ public class AuthService {
         if (token == null) {
             return ApiResponse.unauthorized();
         }
+        // Access token cũ của phiên này hết hiệu lực
+        tokenValidityCache.evict(account.get().getId(), token.getAccessToken());
         token.setAccessToken(jwtUtil.generateAccessToken(account.get()));
         token.setRefreshToken(jwtUtil.generateRefreshToken(account.get()));
+        token.setExpiresAt(jwtUtil.refreshTokenExpiresAt());
         tokenRepository.save(token);
 
         TokenDto tokenDto = new TokenDto();
@@ -121,89 +159,99 @@ public class AuthService {
         return ApiResponse.success(tokenDto, "refresh-token-successfully");
     }
 
-    public ApiResponse<?> fetchData(HttpServletRequest request) {
-        String authHeader = request.getHeader(HttpHeaders.AUTHORIZATION);
+    // Profile kèm ETag, lấy từ cache theo account (miss thì dựng bằng 1 query projection)
+    public ApiResponse<ProfileCache.CachedProfile> fetchProfile(HttpServletRequest request) {
+        Long accountId;
+        RequestAuthContext context = RequestAuthContext.current(request);
+        if (context != null) {
+            // filter đã xác thực token, chỉ cần id (không load entity)
+            accountId = context.getAccountId();
+        } else {
+            String authHeader = request.getHeader(HttpHeaders.AUTHORIZATION);
+
+            if (authHeader == null || !authHeader.startsWith("Bearer ")) {
+                return ApiResponse.unauthorized();
+            }
 
-        if (authHeader == null || !authHeader.startsWith("Bearer ")) {
-            return ApiResponse.unauthorized();
-        }
+            String accessToken = authHeader.substring(7);
+            String username = jwtUtil.extractUsername(accessToken);
 
-        String accessToken = authHeader.substring(7);
-        String username = jwtUtil.extractUsername(accessToken);
+            Optional<Account> accountOptional = accountRepository.findByUsername(username);
+            if (accountOptional.isEmpty()) {
+                return ApiResponse.unauthorized();
+            }
 
-        Optional<Account> accountOptional = accountRepository.findByUsername(username);
-        if (accountOptional.isEmpty()) {
-            return ApiResponse.unauthorized();
+            if (!jwtUtil.isValidAccessToken(accessToken, accountOptional.get())) {
+                return ApiResponse.unauthorized();
+            }
+
+            accountId = accountOptional.get().getId();
         }
 
-        if (!jwtUtil.isValidAccessToken(accessToken, accountOptional.get())) {
+        ProfileCache.CachedProfile cached = profileCache.get(accountId, () -> accountRepository.findProfileById(accountId)
+                .map(this::toProfileDto)
+                .orElse(null));
+        if (cached == null) {
             return ApiResponse.unauthorized();
         }
+        return ApiResponse.success(cached, "");
+    }
 
-        Account account = accountOptional.get();
-
+    private ProfileDto toProfileDto(ProfileView view) {
         ProfileDto profileDto = new ProfileDto();
-        profileDto.setId(account.getId());
-        profileDto.setUsername(username);
+        profileDto.setId(view.getId());
+        profileDto.setUsername(view.getUsername());
 
         // (giữ nguyên) fill các field phẳng sẵn có
-        if (account.getEmployee() != null) {
-            profileDto.setFirstName(account.getEmployee().getFirstName());
-            profileDto.setLastName(account.getEmployee().getLastName());
-            profileDto.setEmail(account.getEmployee().getEmail());
-            profileDto.setPhone(account.getEmployee().getPhone());
-            profileDto.setAddress(account.getEmployee().getAddress());
-            if (account.getEmployee().getGender() != null) {
-                profileDto.setGender(account.getEmployee().getGender().toString());
+        if (view.getEmployeeId() != null) {
+            profileDto.setFirstName(view.getFirstName());
+            profileDto.setLastName(view.getLastName());
+            profileDto.setEmail(view.getEmail());
+            profileDto.setPhone(view.getPhone());
+            profileDto.setAddress(view.getAddress());
+            if (view.getGender() != null) {
+                profileDto.setGender(view.getGender().toString());
             }
-            profileDto.setDateBirth(account.getEmployee().getDateBirth());
-            profileDto.setAvatar(account.getEmployee().getAvatar());
+            profileDto.setDateBirth(view.getDateBirth());
+            profileDto.setAvatar(view.getAvatar());
 
-            if (account.getEmployee().getDepartment() != null) {
-                profileDto.setDepartment(account.getEmployee().getDepartment().getName());
+            if (view.getDepartmentId() != null) {
+                profileDto.setDepartment(view.getDepartmentName());
             }
-            if (account.getEmployee().getHodDepartment() != null) {
-                profileDto.setDepartment(account.getEmployee().getHodDepartment().getName());
+            if (view.getHodDepartmentName() != null) {
+                profileDto.setDepartment(view.getHodDepartmentName());
             }
         }
 
-        profileDto.setRole(account.getRole().toString());
-        profileDto.setCreatedAt(account.getCreatedAt());
+        profileDto.setRole(view.getRole().toString());
+        profileDto.setCreatedAt(view.getCreatedAt());
 
         // === BEGIN: bổ sung node lồng để FE đọc employee.department.hod.account ===
-        if (account.getEmployee() != null) {
-            var emp = account.getEmployee();
-
+        if (view.getEmployeeId() != null) {
             ProfileDto.EmployeeNode empNode = new ProfileDto.EmployeeNode();
-            empNode.setId(emp.getId());
-
-            if (emp.getDepartment() != null) {
-                var dept = emp.getDepartment();
+            empNode.setId(view.getEmployeeId());
 
+            if (view.getDepartmentId() != null) {
                 ProfileDto.DepartmentNode deptNode = new ProfileDto.DepartmentNode();
-                deptNode.setId(dept.getId());
-                deptNode.setName(dept.getName());
-
-                if (dept.getHod() != null) {
-                    var hodEmp = dept.getHod();
+                deptNode.setId(view.getDepartmentId());
+                deptNode.setName(view.getDepartmentName());
 
+                if (view.getHodId() != null) {
                     ProfileDto.HodNode hodNode = new ProfileDto.HodNode();
-                    hodNode.setId(hodEmp.getId());
-                    hodNode.setFirstName(hodEmp.getFirstName());
-                    hodNode.setLastName(hodEmp.getLastName());
+                    hodNode.setId(view.getHodId());
+                    hodNode.setFirstName(view.getHodFirstName());
+                    hodNode.setLastName(view.getHodLastName());
 
                     // fullName để FE dùng luôn
                     String hodFullName = (
-                            (hodEmp.getFirstName() != null ? hodEmp.getFirstName() : "") + " " +
-                                    (hodEmp.getLastName()  != null ? hodEmp.getLastName()  : "")
+                            (view.getHodFirstName() != null ? view.getHodFirstName() : "") + " " +
+                                    (view.getHodLastName()  != null ? view.getHodLastName()  : "")
                     ).trim();
 
-                    if (hodEmp.getAccount() != null) {
-                        var hodAcc = hodEmp.getAccount();
-
+                    if (view.getHodAccountId() != null) {
                         ProfileDto.AccountNode accNode = new ProfileDto.AccountNode();
-                        accNode.setId(hodAcc.getId());
-                        accNode.setRole(hodAcc.getRole() != null ? hodAcc.getRole().name() : null);
+                        accNode.setId(view.getHodAccountId());
+                        accNode.setRole(view.getHodAccountRole() != null ? view.getHodAccountRole().name() : null);
                         accNode.setFullName(hodFullName);
 
                         hodNode.setAccount(accNode);
@@ -219,7 +267,7 @@ public class AuthService {
         }
         // === END: bổ sung node lồng ===
 
-        return ApiResponse.success(profileDto, "");
+        return profileDto;
     }
 
 
@@ -256,6 +304,7 @@ public class AuthService {
         accountRepository.save(account);
 
         tokenRepository.removeAllByAccount(account);
+        tokenValidityCache.evictAccount(account.getId());
 
         return ApiResponse.success(account, "change-password-successfully");
     }
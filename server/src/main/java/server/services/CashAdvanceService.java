@@ -1,9 +1,6 @@
 package server.services;
 
 import lombok.RequiredArgsConstructor;
-import org.apache.poi.util.Units;
-import org.apache.poi.xwpf.usermodel.*;
-import org.springframework.core.io.ClassPathResource;
 import org.springframework.core.io.Resource;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -21,9 +18,10 @@ import server.repositories.AccountRepository;
 import server.repositories.CashAdvanceRequestRepository;
 import server.repositories.TaskRepository;
 import server.utils.ApiResponse;
+import server.utils.DocxTemplateEngine;
+import server.utils.SignatureImageCache;
+import server.utils.RoleDirectory;
 
-import javax.imageio.ImageIO;
-import java.awt.image.BufferedImage;
 import java.io.*;
 import java.time.LocalDateTime;
 import java.util.*;
@@ -37,7 +35,10 @@ public class CashAdvanceService {
     private final UploadFileService uploadFileService;
     private final NotificationService notificationService;
     private final AccountRepository accountRepo;
+    private final RoleDirectory roleDirectory;
     private final EmailService emailService;
+    private final DocxTemplateEngine docxTemplateEngine;
+    private final SignatureImageCache signatureImageCache;
 
     /* ===================== Role checks ===================== */
     private boolean isAccountant(Account a) {
@@ -183,7 +184,7 @@ public class CashAdvanceService {
             r.setApprovedBy(actor);
             repo.save(r);
 
-            var chief = accountRepo.findByRole(Role.CHIEFACCOUNTANT).stream().findFirst().orElse(null);
+            var chief = roleDirectory.find(Role.CHIEFACCOUNTANT).orElse(null);
             notificationService.notifyCashAdvanceApprovedByAccountant(r, actor, chief);
         } else {
             r.setStatus(CashAdvanceStatus.REJECTED);
@@ -216,7 +217,7 @@ public class CashAdvanceService {
 
             repo.save(r);
 
-            var director = accountRepo.findByRole(Role.MANAGER).stream().findFirst().orElse(null);
+            var director = roleDirectory.find(Role.MANAGER).orElse(null);
             notificationService.notifyCashAdvanceApprovedByChief(r, actor, director);
 
             return ApiResponse.success(toDto(r), "chief-approved");
@@ -226,7 +227,7 @@ public class CashAdvanceService {
             r.setRejectNote(note);
             repo.save(r);
 
-            var accountant = accountRepo.findByRole(Role.ACCOUNTANT).stream().findFirst().orElse(null);
+            var accountant = roleDirectory.find(Role.ACCOUNTANT).orElse(null);
             notificationService.notifyCashAdvanceRejectedByChief(r, actor, accountant);
 
             return ApiResponse.success(toDto(r), "chief-rejected");
@@ -281,8 +282,8 @@ public class CashAdvanceService {
             r.setRejectNote(note);
             repo.save(r);
 
-            var accountant = accountRepo.findByRole(Role.ACCOUNTANT).stream().findFirst().orElse(null);
-            var chief = accountRepo.findByRole(Role.CHIEFACCOUNTANT).stream().findFirst().orElse(null);
+            var accountant = roleDirectory.find(Role.ACCOUNTANT).orElse(null);
+            var chief = roleDirectory.find(Role.CHIEFACCOUNTANT).orElse(null);
             notificationService.notifyCashAdvanceRejectedByDirector(r, actor, accountant, chief);
 
             return ApiResponse.success(toDto(r), "director-rejected");
@@ -342,192 +343,66 @@ public class CashAdvanceService {
         CashAdvanceRequest r = repo.findById(advanceId)
                 .orElseThrow(() -> new IllegalArgumentException("not-found"));
 
-        ClassPathResource template = new ClassPathResource("templates/Advance_Payment.docx");
-        try (InputStream is = template.getInputStream();
-             XWPFDocument doc = new XWPFDocument(is)) {
-
-            String number = r.getId() + "/" + r.getCreatedAt().getYear();
-            String amountText = nvl(r.getAmountText(), "[amount in words]");
-            String deadlineStr = nvl(r.getRepaymentDeadlineStr(), "");
-
-            // 🔹 Replace text placeholders
-            replaceText(doc, "{{UNIT_NAME}}", "Công ty Cổ phần Trải nghiệm Doanh nghiệp Next-Gen");
-            replaceText(doc, "{{DEPARTMENT_OR_ADDRESS}}", "181 Cao Thắng, Phường 12, Quận 10, TP.HCM");
-            replaceText(doc, "{{RECIPIENT}}", "Ban Giám đốc Công ty Trải nghiệm Doanh nghiệp Next-Gen");
-            replaceText(doc, "{{REQUESTOR_NAME}}", safeName(r.getCreatedBy()));
-            replaceText(doc, "{{REQUESTOR_TITLE}}", r.getCreatedBy().getEmployee().getDepartment().getName());
-            replaceText(doc, "{{AMOUNT}}", String.format("%,.0f VND", r.getAmount()));
-            replaceTextStrict(doc, "{{AMOUNT_TEXT}}", amountText);
-            replaceText(doc, "{{REASON}}", nvl(r.getReason(), ""));
-            replaceText(doc, "{{DEADLINE}}", deadlineStr);
-            replaceText(doc, "{{DAY}}", String.valueOf(r.getCreatedAt().getDayOfMonth()));
-            replaceText(doc, "{{MONTH}}", String.valueOf(r.getCreatedAt().getMonthValue()));
-            replaceText(doc, "{{YEAR}}", String.valueOf(r.getCreatedAt().getYear()));
-            replaceTextStrict(doc, "{{NUMBER}}", number);
-
-            // 🔹 Replace signatures
-            for (XWPFParagraph p : doc.getParagraphs()) {
-                try { replaceSignaturesInParagraph(p, r); } catch (Exception e) { e.printStackTrace(); }
-            }
-
-// Replace signatures - paragraphs trong bảng
-            for (XWPFTable tbl : doc.getTables()) {
-                for (XWPFTableRow row : tbl.getRows()) {
-                    for (XWPFTableCell cell : row.getTableCells()) {
-                        for (XWPFParagraph p : cell.getParagraphs()) {
-                            try { replaceSignaturesInParagraph(p, r); } catch (Exception e) { e.printStackTrace(); }
-                        }
-                    }
-                }
-            }
-
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            doc.write(baos);
-
-            return ResponseEntity.ok()
-                    .contentType(MediaType.APPLICATION_OCTET_STREAM)
-                    .header("Content-Disposition", "attachment; filename=advance_" + r.getId() + ".docx")
-                    .body(new org.springframework.core.io.ByteArrayResource(baos.toByteArray()));
-        }
+        String number = r.getId() + "/" + r.getCreatedAt().getYear();
+        String amountText = nvl(r.getAmountText(), "[amount in words]");
+        String deadlineStr = nvl(r.getRepaymentDeadlineStr(), "");
+
+        // 🔹 Text placeholders (engine xử lý cả placeholder bị tách nhiều run)
+        Map<String, String> values = new HashMap<>();
+        values.put("{{UNIT_NAME}}", "Công ty Cổ phần Trải nghiệm Doanh nghiệp Next-Gen");
+        values.put("{{DEPARTMENT_OR_ADDRESS}}", "181 Cao Thắng, Phường 12, Quận 10, TP.HCM");
+        values.put("{{RECIPIENT}}", "Ban Giám đốc Công ty Trải nghiệm Doanh nghiệp Next-Gen");
+        values.put("{{REQUESTOR_NAME}}", safeName(r.getCreatedBy()));
+        values.put("{{REQUESTOR_TITLE}}", r.getCreatedBy().getEmployee().getDepartment().getName());
+        values.put("{{AMOUNT}}", String.format("%,.0f VND", r.getAmount()));
+        values.put("{{AMOUNT_TEXT}}", amountText);
+        values.put("{{REASON}}", nvl(r.getReason(), ""));
+        values.put("{{DEADLINE}}", deadlineStr);
+        values.put("{{DAY}}", String.valueOf(r.getCreatedAt().getDayOfMonth()));
+        values.put("{{MONTH}}", String.valueOf(r.getCreatedAt().getMonthValue()));
+        values.put("{{YEAR}}", String.valueOf(r.getCreatedAt().getYear()));
+        values.put("{{NUMBER}}", number);
+
+        // 🔹 Signatures
+        Map<String, DocxTemplateEngine.Image> images = new HashMap<>();
+        putSignature(values, images, PH_EMP, signatureKey(r, "advance.employee"), r.getSignatureDataUrl());
+        putSignature(values, images, PH_CHF, signatureKey(r, "advance.chief"), r.getChiefSignatureDataUrl());
+        putSignature(values, images, PH_DIR, signatureKey(r, "advance.director"), r.getDirectorSignatureDataUrl());
+
+        byte[] bytes = docxTemplateEngine.render(ADVANCE_TEMPLATE, values, images);
+
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .header("Content-Disposition", "attachment; filename=advance_" + r.getId() + ".docx")
+                .body(new org.springframework.core.io.ByteArrayResource(bytes));
     }
 
     /* ===================== Helpers ===================== */
-    private void replaceText(XWPFDocument doc, String placeholder, String value) {
-        replaceInParagraphs(doc.getParagraphs(), placeholder, value);
-        for (XWPFTable tbl : doc.getTables()) {
-            for (XWPFTableRow row : tbl.getRows()) {
-                for (XWPFTableCell cell : row.getTableCells()) {
-                    replaceInParagraphs(cell.getParagraphs(), placeholder, value);
-                }
-            }
-        }
-    }
-
-    private void replaceInParagraphs(List<XWPFParagraph> paragraphs, String placeholder, String value) {
-        for (XWPFParagraph p : paragraphs) {
-            for (XWPFRun run : p.getRuns()) {
-                String text = run.getText(0);
-                if (text != null && text.contains(placeholder)) {
-                    text = text.replace(placeholder, value != null ? value : "");
-                    run.setText(text, 0);
-                }
-            }
-        }
-    }
-
-    private void replaceTextStrict(XWPFDocument doc, String placeholder, String value) {
-        for (XWPFParagraph p : doc.getParagraphs()) {
-            String fullText = p.getText();
-            if (fullText.contains(placeholder)) {
-                for (int i = p.getRuns().size() - 1; i >= 0; i--) {
-                    p.removeRun(i);
-                }
-                p.createRun().setText(fullText.replace(placeholder, value));
-            }
-        }
-        for (XWPFTable tbl : doc.getTables()) {
-            for (XWPFTableRow row : tbl.getRows()) {
-                for (XWPFTableCell cell : row.getTableCells()) {
-                    replaceTextStrictInCell(cell, placeholder, value);
-                }
-            }
-        }
-    }
-
-    private void replaceTextStrictInCell(XWPFTableCell cell, String placeholder, String value) {
-        for (XWPFParagraph p : cell.getParagraphs()) {
-            String fullText = p.getText();
-            if (fullText.contains(placeholder)) {
-                for (int i = p.getRuns().size() - 1; i >= 0; i--) {
-                    p.removeRun(i);
-                }
-                p.createRun().setText(fullText.replace(placeholder, value));
-            }
-        }
-    }
-
     private static final String PH_EMP = "{{SIGN_EMPLOYEE}}";
     private static final String PH_CHF = "{{SIGN_CHIEF}}";
     private static final String PH_DIR = "{{SIGN_DIRECTOR}}";
 
-    private void replaceSignaturesInParagraph(XWPFParagraph p, CashAdvanceRequest r) throws Exception {
-        String full = p.getText();
-        if (full == null) return;
-
-        boolean hasAny = full.contains(PH_EMP) || full.contains(PH_CHF) || full.contains(PH_DIR);
-        if (!hasAny) return;
-
-        // Xóa sạch các run cũ để dựng lại từ đầu
-        for (int i = p.getRuns().size() - 1; i >= 0; i--) p.removeRun(i);
-
-        int pos = 0;
-        while (pos < full.length()) {
-            int iEmp = full.indexOf(PH_EMP, pos);
-            int iChf = full.indexOf(PH_CHF, pos);
-            int iDir = full.indexOf(PH_DIR, pos);
-
-            // tìm placeholder gần nhất
-            int next = Integer.MAX_VALUE;
-            String hit = null;
-            if (iEmp >= 0 && iEmp < next) { next = iEmp; hit = PH_EMP; }
-            if (iChf >= 0 && iChf < next) { next = iChf; hit = PH_CHF; }
-            if (iDir >= 0 && iDir < next) { next = iDir; hit = PH_DIR; }
-
-            if (hit == null) {
-                // không còn placeholder: đổ phần text còn lại
-                if (pos < full.length()) {
-                    XWPFRun run = p.createRun();
-                    run.setText(full.substring(pos));
-                }
-                break;
-            }
-
-            // đổ phần text trước placeholder
-            if (next > pos) {
-                XWPFRun run = p.createRun();
-                run.setText(full.substring(pos, next));
-            }
+    private static final String ADVANCE_TEMPLATE = "Advance_Payment.docx";
 
-            // chèn hình cho placeholder
-            XWPFRun imgRun = p.createRun();
-            if (PH_EMP.equals(hit)) {
-                insertImageRun(imgRun, r.getSignatureDataUrl());
-            } else if (PH_CHF.equals(hit)) {
-                insertImageRun(imgRun, r.getChiefSignatureDataUrl());
-            } else if (PH_DIR.equals(hit)) {
-                insertImageRun(imgRun, r.getDirectorSignatureDataUrl());
-            }
-
-            pos = next + hit.length();
-        }
+    // Mỗi bước ký cập nhật updatedAt của đề nghị -> id + updatedAt là key cache ảnh chữ ký
+    private static SignatureImageCache.Key signatureKey(CashAdvanceRequest r, String owner) {
+        return new SignatureImageCache.Key(owner, r.getId(), r.getUpdatedAt());
     }
 
-
-    private void insertImageRun(XWPFRun run, String dataUrl) throws Exception {
-        if (dataUrl == null || !dataUrl.startsWith("data:image")) return;
-
-        String[] parts = dataUrl.split(",", 2);
-        if (parts.length != 2) return;
-
-        byte[] imageBytes = Base64.getDecoder().decode(parts[1]);
-        if (imageBytes.length < 100) return;
-
-        BufferedImage img = ImageIO.read(new ByteArrayInputStream(imageBytes));
-        if (img == null) return;
-
-        int width = img.getWidth();
-        int height = img.getHeight();
-        int targetW = 120;
-        int targetH = (int) (((double) height / width) * targetW);
-
-        try (InputStream imgStream = new ByteArrayInputStream(imageBytes)) {
-            run.addPicture(
-                    imgStream,
-                    XWPFDocument.PICTURE_TYPE_PNG,
-                    "sig.png",
-                    Units.toEMU(targetW),
-                    Units.toEMU(targetH)
-            );
+    // Chữ ký dạng data URL -> ảnh rộng 120px, cao theo tỉ lệ (decode + scale qua cache); trống/lỗi thì xóa placeholder
+    private void putSignature(Map<String, String> values,
+                              Map<String, DocxTemplateEngine.Image> images,
+                              String placeholder,
+                              SignatureImageCache.Key key,
+                              String dataUrl) {
+        DocxTemplateEngine.Image image = null;
+        if (dataUrl != null && dataUrl.startsWith("data:image") && dataUrl.contains(",")) {
+            image = signatureImageCache.imageScaledToWidth(key, dataUrl, 120, "sig.png");
+        }
+        if (image != null) {
+            images.put(placeholder, image);
+        } else {
+            values.put(placeholder, "");
         }
     }
 }
@@ -6,9 +6,7 @@ import lombok.RequiredArgsConstructor;
 
 import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
 import org.apache.poi.ss.usermodel.*;
-import org.apache.poi.util.Units;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
-import org.apache.poi.xwpf.usermodel.*;
 
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -29,9 +27,10 @@ import server.repositories.ContractRepository;
 import server.repositories.EmployeeRepository;
 import server.repositories.SignatureSampleRepository;
 import server.utils.ApiResponse;
+import server.utils.DocxTemplateEngine;
+import server.utils.SignatureImageCache;
+import server.utils.RoleDirectory;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.InputStream;
 import java.io.IOException;
 
@@ -56,7 +55,10 @@ public class ContractService {
     private final EmployeeRepository employeeRepository;
     private final SignatureSampleRepository signatureSampleRepository;
     private final AccountRepository accountRepository;
+    private final RoleDirectory roleDirectory;
     private final EmailService emailService;
+    private final DocxTemplateEngine docxTemplateEngine;
+    private final SignatureImageCache signatureImageCache;
 
 
     // ===== VALIDATION CONSTANTS =====
@@ -69,6 +71,7 @@ public class ContractService {
             EnumSet.of(ContractStatus.PENDING, ContractStatus.SIGNED_BY_MANAGER, ContractStatus.ACTIVE);
 
     // ===== SIGN TOKENS (trong template Word) =====
+    private static final String CONTRACT_TEMPLATE = "Mau-hop-dong-lao-dong.docx";
     private static final String[] MANAGER_SIGN_TOKENS  = {
             "{giám đốc ký}", "{giam doc ky}", "{ký bên A}", "{ky ben A}", "{ký nsdlđ}", "{ky nsdld}"
     };
@@ -586,9 +589,8 @@ public class ContractService {
             data.put("số điện thoại", "");
         }
 
-        // Bên A – Tên giám đốc (lấy từ bảng account role = MANAGER, ưu tiên id nhỏ nhất)
-        String directorName = accountRepository.findByRole(Role.MANAGER).stream()
-                .sorted(Comparator.comparingLong(a -> a.getId() == null ? Long.MAX_VALUE : a.getId()))
+        // Bên A – Tên giám đốc (account MANAGER đại diện trong RoleDirectory)
+        String directorName = roleDirectory.find(Role.MANAGER)
                 .map(acc -> {
                     Employee e = acc.getEmployee();
                     String first = (e != null && e.getFirstName() != null) ? e.getFirstName().trim() : "";
@@ -598,55 +600,26 @@ public class ContractService {
                             ? (acc.getUsername() != null ? acc.getUsername() : "")
                             : full;
                 })
-                .findFirst()
                 .orElse("");
         data.put("tên giám đốc", directorName);
 
         return data;
     }
 
-    /** Export Word từ template, thay text + chèn ảnh chữ ký; bảo toàn Tab, tránh đè nhau */
-    public byte[] exportContractToWord(Map<String, String> data,
-                                       String managerSignatureBase64,
-                                       String employeeSignatureBase64)
+    /** Export Word từ template, thay text + chèn ảnh chữ ký; giữ nguyên Tab và định dạng run */
+    public byte[] exportContractToWord(Contract c, Map<String, String> data)
             throws IOException, InvalidFormatException {
 
-        try (InputStream template = getClass().getClassLoader()
-                .getResourceAsStream("templates/Mau-hop-dong-lao-dong.docx");
-             XWPFDocument document = new XWPFDocument(template)) {
+        Map<String, String> values = DocxTemplateEngine.tokens(data, "{", "}");
+        Map<String, DocxTemplateEngine.Image> images = new HashMap<>();
+        putSignature(values, images, MANAGER_SIGN_TOKENS,
+                signatureImageCache.image(signatureKey(c, "contract.manager"), c.getManagerSignature(),
+                        120, 50, "manager-sign.png"));
+        putSignature(values, images, EMPLOYEE_SIGN_TOKENS,
+                signatureImageCache.image(signatureKey(c, "contract.employee"), c.getEmployeeSignature(),
+                        120, 50, "employee-sign.png"));
 
-            byte[] managerSig  = decodeBase64Image(managerSignatureBase64);
-            byte[] employeeSig = decodeBase64Image(employeeSignatureBase64);
-
-            Set<Integer> seen = new HashSet<>();
-
-            // Paragraphs ngoài bảng
-            for (XWPFParagraph p : document.getParagraphs()) {
-                int id = System.identityHashCode(p);
-                if (seen.add(id)) {
-                    replaceParagraphTextAndSignKeepTabs(p, data, managerSig, employeeSig);
-                }
-            }
-
-            // Paragraphs trong bảng
-            for (XWPFTable table : document.getTables()) {
-                for (XWPFTableRow row : table.getRows()) {
-                    for (XWPFTableCell cell : row.getTableCells()) {
-                        for (XWPFParagraph p : cell.getParagraphs()) {
-                            int id = System.identityHashCode(p);
-                            if (seen.add(id)) {
-                                replaceParagraphTextAndSignKeepTabs(p, data, managerSig, employeeSig);
-                            }
-                        }
-                    }
-                }
-            }
-
-            try (ByteArrayOutputStream out = new ByteArrayOutputStream()) {
-                document.write(out);
-                return out.toByteArray();
-            }
-        }
+        return docxTemplateEngine.render(CONTRACT_TEMPLATE, values, images);
     }
 
     /** Tiện ích: Export trực tiếp từ contractId (tự lấy chữ ký DB) */
@@ -655,99 +628,28 @@ public class ContractService {
         Contract c = contractRepository.findById(contractId).orElse(null);
         if (c == null) throw new IllegalArgumentException("contract-not-found");
         Map<String, String> data = prepareContractDataForWord(c);
-        return exportContractToWord(data, c.getManagerSignature(), c.getEmployeeSignature());
+        return exportContractToWord(c, data);
     }
 
     // ---------- Private helpers for export ----------
 
-    private void replaceParagraphTextAndSignKeepTabs(XWPFParagraph p,
-                                                     Map<String,String> data,
-                                                     byte[] managerSig,
-                                                     byte[] employeeSig)
-            throws InvalidFormatException, IOException {
-        String text = p.getText();
-        if (text == null) return;
-
-        // 1) Replace text placeholders (ngày/tháng/năm, mã HĐ, tên NV...)
-        String replaced = text;
-        for (Map.Entry<String, String> e : data.entrySet()) {
-            String ph = "{" + e.getKey() + "}";
-            if (replaced.contains(ph)) {
-                replaced = replaced.replace(ph, e.getValue() == null ? "" : e.getValue());
-            }
-        }
-
-        // 2) Tìm tất cả token chữ ký (theo thứ tự xuất hiện)
-        class Tok { int pos; String token; boolean isManager; }
-        List<Tok> toks = new ArrayList<>();
-        // manager
-        for (String t : MANAGER_SIGN_TOKENS) {
-            int idx = replaced.indexOf(t);
-            while (idx != -1) {
-                Tok tk = new Tok(); tk.pos = idx; tk.token = t; tk.isManager = true;
-                toks.add(tk);
-                idx = replaced.indexOf(t, idx + t.length());
+    // Chữ ký bị xóa khi sửa hợp đồng và ký lại sau đó -> updatedAt đổi theo, dùng làm phiên bản của key cache
+    private static SignatureImageCache.Key signatureKey(Contract c, String owner) {
+        return new SignatureImageCache.Key(owner, c.getId(), c.getUpdatedAt());
+    }
+
+    // Gắn ảnh chữ ký cho mọi biến thể token; chưa ký thì xóa token
+    private void putSignature(Map<String, String> values,
+                              Map<String, DocxTemplateEngine.Image> images,
+                              String[] tokens,
+                              DocxTemplateEngine.Image signature) {
+        for (String token : tokens) {
+            if (signature != null) {
+                images.put(token, signature);
+            } else {
+                values.put(token, "");
             }
         }
-        // employee
-        for (String t : EMPLOYEE_SIGN_TOKENS) {
-            int idx = replaced.indexOf(t);
-            while (idx != -1) {
-                Tok tk = new Tok(); tk.pos = idx; tk.token = t; tk.isManager = false;
-                toks.add(tk);
-                idx = replaced.indexOf(t, idx + t.length());
-            }
-        }
-        toks.sort(Comparator.comparingInt(t -> t.pos));
-
-        // 3) Rebuild paragraph (clear runs trước), bảo toàn Tab
-        for (int i = p.getRuns().size() - 1; i >= 0; i--) p.removeRun(i);
-
-        int cur = 0;
-        for (Tok tk : toks) {
-            // phần text trước token
-            if (tk.pos > cur) writeTextWithTabs(p, replaced.substring(cur, tk.pos));
-
-            // chèn ảnh tương ứng
-            byte[] sig = tk.isManager ? managerSig : employeeSig;
-            if (sig != null) {
-                XWPFRun r = p.createRun();
-                r.addPicture(new ByteArrayInputStream(sig),
-                        XWPFDocument.PICTURE_TYPE_PNG,
-                        tk.isManager ? "manager-sign.png" : "employee-sign.png",
-                        Units.toEMU(120),
-                        Units.toEMU(50));
-            }
-            cur = tk.pos + tk.token.length();
-        }
-        // phần text sau token cuối
-        if (cur < replaced.length()) writeTextWithTabs(p, replaced.substring(cur));
-    }
-
-    private void writeTextWithTabs(XWPFParagraph p, String s) {
-        if (s == null || s.isEmpty()) return;
-        String[] parts = s.split("\t", -1);
-        for (int i = 0; i < parts.length; i++) {
-            if (!parts[i].isEmpty()) {
-                XWPFRun r = p.createRun();
-                r.setText(parts[i]);
-            }
-            if (i < parts.length - 1) {
-                XWPFRun tabRun = p.createRun();
-                tabRun.addTab();
-            }
-        }
-    }
-
-    private byte[] decodeBase64Image(String base64) {
-        if (base64 == null || base64.isBlank()) return null;
-        String b64 = base64.trim();
-        if (b64.contains(",")) b64 = b64.substring(b64.indexOf(',') + 1);
-        try {
-            return Base64.getDecoder().decode(b64);
-        } catch (IllegalArgumentException ex) {
-            return null;
-        }
     }
 
     //upload file Excel
@@ -23,6 +23,7 @@ import server.repositories.DepartmentRepository;
 import server.repositories.EmployeeRepository;
 import server.specification.DepartmentSpecifications;
 import server.utils.ApiResponse;
+import server.utils.ProfileCache;
 
 import java.util.HashMap;
 import java.util.List;
@@ -35,6 +36,7 @@ public class DepartmentService {
     private final AccountRepository accountRepository;
     private final EmployeeRepository employeeRepository;
     private final UploadFileService uploadFileService;
+    private final ProfileCache profileCache;
 
     public ApiResponse<?> getDepartmentsPage(GetDepartmentsPageDto req) {
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
@@ -159,6 +161,7 @@ public class DepartmentService {
                 hod.setDepartment(department);
                 employeeRepository.save(hod);
             }
+            profileCache.invalidateAll();
             return ApiResponse.created(null, "create-department-success");
         } catch (Exception e) {
             return ApiResponse.badRequest("error-uploading-file");
@@ -216,6 +219,8 @@ public class DepartmentService {
             department.setHod(hod);
 
             departmentRepository.save(department);
+            // Tên phòng ban / HOD đổi thì profile của mọi thành viên đều cũ
+            profileCache.invalidateAll();
 
             return ApiResponse.success(null, "edit-department-success");
         } catch (Exception e) {
@@ -248,6 +253,7 @@ public class DepartmentService {
             }
         }
         employeeRepository.save(employee);
+        profileCache.invalidate(employee.getAccount() != null ? employee.getAccount().getId() : null);
         return ApiResponse.success(null, "update-department-success");
     }
 
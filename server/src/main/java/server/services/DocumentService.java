@@ -2,10 +2,7 @@
 
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
-import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
-import org.apache.poi.xwpf.usermodel.*;
         import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.io.ClassPathResource;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.stereotype.Service;
@@ -22,9 +19,11 @@ import server.models.enums.*;
 import server.specification.DocumentSpecifications;
 import org.springframework.data.domain.*;
         import server.utils.ApiResponse;
+import server.utils.DocxTemplateEngine;
+import server.utils.SignatureImageCache;
+import server.utils.RoleDirectory;
 
 import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.Files;
@@ -43,11 +42,15 @@ public class DocumentService {
 
     private final DocumentRepository documentRepository;
     private final AccountRepository accountRepository;
+    private final RoleDirectory roleDirectory;
     private final NotificationService notificationService;
     private final UploadFileService uploadFileService;
     private final FundRepository fundRepository;
     private final DocumentHistoryRepository documentHistoryRepository;
+    private final DocxTemplateEngine docxTemplateEngine;
+    private final SignatureImageCache signatureImageCache;
 
+    private static final String SIGN_KEY = "kyTen";
 
     @Getter
     @Value("${app.upload.folder}")
@@ -67,8 +70,7 @@ public class DocumentService {
 
         if (request.getType() == DocumentType.PROJECT) {
             // 1. Người nhận luôn là MANAGER (giám đốc)
-            receiver = accountRepository.findByRole(Role.MANAGER)
-                    .stream().findFirst()
+            receiver = roleDirectory.find(Role.MANAGER)
                     .orElseThrow(() -> new IllegalArgumentException("Manager not found"));
             // 2. PM lấy từ request.pmId
             if (request.getPmId() == null) {
@@ -81,14 +83,11 @@ public class DocumentService {
                 throw new IllegalArgumentException("Selected user is not a Project Manager");
             }
         } else if (request.getType() == DocumentType.ADMINISTRATIVE) {
-            receiver = accountRepository.findByRole(Role.MANAGER)
-                    .stream().findFirst()
+            receiver = roleDirectory.find(Role.MANAGER)
                     .orElseThrow(() -> new IllegalArgumentException("Manager not found"));
 
             // Lấy kế toán để hiển thị sau
-            accountant = accountRepository.findByRole(Role.CHIEFACCOUNTANT)
-                    .stream()
-                    .findFirst()
+            accountant = roleDirectory.find(Role.CHIEFACCOUNTANT)
                     .orElseThrow(() -> new IllegalArgumentException("Accountant not found"));
         }
 
@@ -176,6 +175,7 @@ public class DocumentService {
 
         byte[] wordFile = exportWordFromTemplate(
                 saved.getType() == DocumentType.ADMINISTRATIVE ? "admin_template.docx" : "template.docx",
+                saved.getId(),
                 placeholders
         );
 
@@ -435,7 +435,7 @@ public class DocumentService {
                 ? "admin_template.docx"
                 : "template.docx";
 
-        byte[] wordFile = exportWordFromTemplate(templateName, placeholders);
+        byte[] wordFile = exportWordFromTemplate(templateName, doc.getId(), placeholders);
 
         String logicalFileName = "congvan_" + doc.getId() + ".docx";
         String fileUrl = uploadFileService.storeFileFromBytes("documents", logicalFileName, wordFile);
@@ -490,71 +490,19 @@ public class DocumentService {
         }
     }
 
-    private void replacePlaceholdersInParagraph(XWPFParagraph paragraph, Map<String, String> data) throws IOException, InvalidFormatException {
-        for (XWPFRun run : paragraph.getRuns()) {
-            String runText = run.getText(0);
-            if (runText != null) {
-                boolean isSignatureInserted = false;
-                for (String key : data.keySet()) {
-                    String placeholder = "{{" + key + "}}";
-                    if (runText.contains(placeholder)) {
-                        if ("kyTen".equals(key) && data.get(key) != null && !data.get(key).isEmpty()) {
-                            // Chèn ảnh chữ ký, chỉ làm 1 lần cho đoạn đó
-                            run.setText("", 0);
-                            String imgBase64 = data.get(key);
-                            if (imgBase64.contains(",")) {
-                                imgBase64 = imgBase64.substring(imgBase64.indexOf(",") + 1);
-                            }
-                            byte[] imgBytes = java.util.Base64.getDecoder().decode(imgBase64);
-                            run.addPicture(
-                                    new java.io.ByteArrayInputStream(imgBytes),
-                                    XWPFDocument.PICTURE_TYPE_PNG,
-                                    "signature.png",
-                                    org.apache.poi.util.Units.toEMU(100),
-                                    org.apache.poi.util.Units.toEMU(40)
-                            );
-                            isSignatureInserted = true;
-                            break; // Không cần xử lý tiếp key khác
-                        } else {
-                            // Bình thường: thay bằng text
-                            runText = runText.replace(placeholder, data.get(key));
-                        }
-                    }
-                }
-                // Chỉ set text lại nếu không phải ký tên (vì ký tên đã setText "" ở trên)
-                if (!isSignatureInserted) {
-                    run.setText(runText, 0);
-                }
-            }
-        }
-    }
-
-    public byte[] exportWordFromTemplate(String templateName, Map<String, String> data) throws IOException {
-        try (InputStream template = new ClassPathResource("templates/" + templateName).getInputStream();
-             XWPFDocument document = new XWPFDocument(template)) {
-
-            // Replace outside tables
-            for (XWPFParagraph p : document.getParagraphs()) {
-                replacePlaceholdersInParagraph(p, data);
-            }
-
-            // Replace inside tables
-            for (XWPFTable table : document.getTables()) {
-                for (XWPFTableRow row : table.getRows()) {
-                    for (XWPFTableCell cell : row.getTableCells()) {
-                        for (XWPFParagraph p : cell.getParagraphs()) {
-                            replacePlaceholdersInParagraph(p, data);
-                        }
-                    }
-                }
-            }
+    public byte[] exportWordFromTemplate(String templateName, Long documentId, Map<String, String> data) throws IOException {
+        Map<String, String> values = DocxTemplateEngine.tokens(data, "{{", "}}");
+        Map<String, DocxTemplateEngine.Image> images = new HashMap<>();
 
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            document.write(baos);
-            return baos.toByteArray();
-        } catch (InvalidFormatException e) {
-            throw new RuntimeException("Invalid Word template format", e);
+        // {{kyTen}}: chèn ảnh chữ ký thay cho text; công văn chỉ ký 1 lần (khi NEW) nên key không cần phiên bản
+        DocxTemplateEngine.Image signature = signatureImageCache.image(
+                new SignatureImageCache.Key("document.signature", documentId, null),
+                data.get(SIGN_KEY), 100, 40, "signature.png");
+        if (signature != null) {
+            images.put("{{" + SIGN_KEY + "}}", signature);
+            values.remove("{{" + SIGN_KEY + "}}");
         }
+        return docxTemplateEngine.render(templateName, values, images);
     }
 
     // ------- MAPPER -------
@@ -759,7 +707,7 @@ public class DocumentService {
         }
 
         String templateName = doc.getType() == DocumentType.ADMINISTRATIVE ? "admin_template.docx" : "template.docx";
-        byte[] wordFile = exportWordFromTemplate(templateName, placeholders);
+        byte[] wordFile = exportWordFromTemplate(templateName, doc.getId(), placeholders);
         String logicalFileName = "congvan_" + doc.getId() + ".docx";
         String fileUrl = uploadFileService.storeFileFromBytes("documents", logicalFileName, wordFile);
         doc.setFileUrl(fileUrl);
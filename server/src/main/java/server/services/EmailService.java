@@ -15,8 +15,8 @@ import java.time.format.DateTimeFormatter;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.mail.SimpleMailMessage;
 import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.MimeMailMessage;
 import org.springframework.mail.javamail.MimeMessageHelper;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 import org.thymeleaf.TemplateEngine;
 import org.thymeleaf.context.Context;
@@ -39,9 +39,23 @@ public class EmailService {
 
     private final JavaMailSender mailSender;
     private final TemplateEngine templateEngine;
+    private final OutboxService outboxService;
+
+    /*
+     * Mọi email đều đi qua outbox: ghi cùng transaction của nghiệp vụ, OutboxDispatcher gửi sau khi commit
+     * (có thử lại). Các hàm ...Async giữ tên cũ cho caller, giờ chỉ dựng nội dung rồi xếp hàng nên không cần @Async.
+     */
+    private void deliver(MimeMessage message) {
+        outboxService.enqueueEmail(message);
+    }
+
+    private void deliver(SimpleMailMessage message) {
+        MimeMailMessage mime = new MimeMailMessage(mailSender.createMimeMessage());
+        message.copyTo(mime);
+        deliver(mime.getMimeMessage());
+    }
 
     // ========== GỬI EMAIL TẠO TÀI KHOẢN (HTML) ==========
-    @Async
     public void sendAccountCreatedEmail(String toEmail, String username, String password) {
         try {
             MimeMessage message = mailSender.createMimeMessage();
@@ -59,13 +73,12 @@ public class EmailService {
             helper.setSubject("New account creation notification");
             helper.setText(htmlContent, true);
 
-            mailSender.send(message);
+            deliver(message);
         } catch (MessagingException | UnsupportedEncodingException e) {
             e.printStackTrace();
         }
     }
 
-    @Async
     public void sendAccountResetPasswordEmail(String toEmail, String username, String password) {
         try {
             MimeMessage message = mailSender.createMimeMessage();
@@ -83,13 +96,12 @@ public class EmailService {
             helper.setSubject("Reset account password notification");
             helper.setText(htmlContent, true);
 
-            mailSender.send(message);
+            deliver(message);
         } catch (MessagingException | UnsupportedEncodingException e) {
             e.printStackTrace();
         }
     }
 
-    @Async
     public void sendAccountDisabledEmail(String toEmail, String firstName, String lastName, String username) {
         try {
             MimeMessage message = mailSender.createMimeMessage();
@@ -107,13 +119,12 @@ public class EmailService {
             helper.setSubject("Disabled account notification");
             helper.setText(htmlContent, true);
 
-            mailSender.send(message);
+            deliver(message);
         } catch (MessagingException | UnsupportedEncodingException e) {
             e.printStackTrace();
         }
     }
 
-    @Async
     public void sendAccountEnabledEmail(String toEmail, String firstName, String lastName, String username) {
         try {
             MimeMessage message = mailSender.createMimeMessage();
@@ -131,14 +142,13 @@ public class EmailService {
             helper.setSubject("Enabled account notification");
             helper.setText(htmlContent, true);
 
-            mailSender.send(message);
+            deliver(message);
         } catch (MessagingException | UnsupportedEncodingException e) {
             e.printStackTrace();
         }
     }
 
     // ========== GỬI EMAIL TỪ CHỐI ĐƠN NGHỈ ==========
-    @Async
     public void sendRejectEmailAsync(String to, String applicantName, String reason) {
         sendRejectEmail(to, applicantName, reason);
     }
@@ -151,11 +161,10 @@ public class EmailService {
                 "Đại diện Công Ty TNHH NEX, phòng quản lý nhân sự xin thông báo:\n\n"+
                 "Đơn nghỉ phép của bạn đã bị từ chối với lý do: " + reason + "\n\n" +
                 "Vui lòng liên hệ bộ phận quản lý để biết thêm chi tiết.\n\nTrân trọng!");
-        mailSender.send(message);
+        deliver(message);
     }
 
     // ========== GỬI EMAIL DUYỆT ĐƠN NGHỈ ==========
-    @Async
     public void sendApproveEmailAsync(
             String to,
             String applicantName,
@@ -218,11 +227,10 @@ public class EmailService {
                 + detail + "\n\n"
                 + "Trân trọng!");
 
-        mailSender.send(message);
+        deliver(message);
     }
 
     // ========== LEGACY SUPPORT ==========
-    @Async
     public void sendApproveEmailAsync(String to, String applicantName, String startDate, String endDate) {
         sendApproveEmail(
                 to,
@@ -251,7 +259,6 @@ public class EmailService {
 
 
     // ========== GỬI EMAIL: HỢP ĐỒNG ACTIVE ==========
-    @Async
     public void sendContractActivatedEmailAsync(
             String to,
             String employeeName,
@@ -306,11 +313,10 @@ public class EmailService {
                         "Hệ thống NEX HR"
         );
 
-        mailSender.send(message);
+        deliver(message);
     }
 
     // ========== GỬI EMAIL: HR TỪ CHỐI XÁC NHẬN ==========
-    @Async
     public void sendHrRejectEmailToApplicantAsync(
             String toEmail,
             String applicantName,
@@ -341,10 +347,9 @@ public class EmailService {
                         "Vui lòng liên hệ phòng Nhân sự để biết thêm chi tiết.\n\n" +
                         "Trân trọng!"
         );
-        mailSender.send(message);
+        deliver(message);
     }
 
-    @Async
     public void sendHrRejectEmailToApproverAsync(
             String toEmail,
             String approverName,
@@ -373,7 +378,7 @@ public class EmailService {
                         "Lý do HR từ chối: " + rsn + "\n\n" +
                         "Trân trọng!"
         );
-        mailSender.send(message);
+        deliver(message);
     }
 
     // ===== Helpers cho email xin hủy đơn =====
@@ -431,7 +436,6 @@ public class EmailService {
     }
 
     // ========== GỬI EMAIL: NHÂN VIÊN XIN HỦY ĐƠN (GỬI NGƯỜI DUYỆT) ==========
-    @Async
     public void sendCancelRequestEmailToApproverAsync(
             String toEmail,
             String approverName,
@@ -495,11 +499,10 @@ public class EmailService {
                         "Trân trọng!"
         );
 
-        mailSender.send(message);
+        deliver(message);
     }
 
     // ========== GỬI EMAIL: NHÂN VIÊN XIN HỦY ĐƠN (GỬI HR) ==========
-    @Async
     public void sendCancelRequestEmailToHrAsync(
             String toEmail,
             String hrName,
@@ -568,12 +571,11 @@ public class EmailService {
                         "Trân trọng!"
         );
 
-        mailSender.send(message);
+        deliver(message);
     }
 
     // ========== GỬI EMAIL XÁC NHẬN: NGƯỜI DUYỆT HỦY ==========
 
-    @Async
     public void sendCancelConfirmedByApproverToApplicantAsync(
             String toEmail,
             String applicantName,
@@ -623,13 +625,12 @@ public class EmailService {
                         "Trân trọng!"
         );
 
-        mailSender.send(message);
+        deliver(message);
     }
 
 
 // ========== GỬI EMAIL XÁC NHẬN: HR HỦY ==========
 
-    @Async
     public void sendCancelConfirmedByHrToApplicantAsync(
             String toEmail,
             String applicantName,
@@ -679,12 +680,11 @@ public class EmailService {
                         "Trân trọng!"
         );
 
-        mailSender.send(message);
+        deliver(message);
     }
 
     // ========== NHẮC NHỞ CUỐI THÁNG: ĐƠN CHƯA ĐƯỢC XỬ LÝ (GỬI NGƯỜI DUYỆT/HR) ==========
 
-    @Async
     public void sendMonthEndPendingReminderToApproverAsync(
             String toEmail,
             String approverName,
@@ -735,12 +735,11 @@ public class EmailService {
                         "Tháng sẽ kết thúc trong 2 ngày nữa. Vui lòng xử lý sớm tại: " + url + "\n\n" +
                         "Trân trọng!"
         );
-        mailSender.send(msg);
+        deliver(msg);
     }
 
 // ========== NHẮC NHỞ CUỐI THÁNG MÀ ĐƠN VẪN CHƯA ĐƯỢC DUYỆT: GỬI NGƯỜI NỘP ĐƠN (SENDER) ==========
 
-    @Async
     public void sendMonthEndPendingReminderToApplicantAsync(
             String toEmail,
             String applicantName,
@@ -792,7 +791,7 @@ public class EmailService {
                         "Xem chi tiết: " + url + "\n\n" +
                         "Trân trọng!"
         );
-        mailSender.send(msg);
+        deliver(msg);
     }
     public void sendSalarySlipEmail(String toEmail,
                                    String employeeName,
@@ -812,10 +811,9 @@ public class EmailService {
 
         helper.addAttachment(fileName, new ByteArrayResource(pdf));
 
-        mailSender.send(message);
+        deliver(message);
     }
 
-    @Async
     public void sendCashAdvanceApprovedEmail(
             String toEmail,
             String employeeName,
@@ -842,7 +840,7 @@ public class EmailService {
             helper.addAttachment(fileName, new ByteArrayResource(attachment));
         }
 
-        mailSender.send(message);
+        deliver(message);
     }
 
 }
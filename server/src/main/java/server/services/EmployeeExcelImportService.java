@@ -18,6 +18,7 @@ import server.models.enums.Gender;
 import server.models.enums.Role;
 import server.repositories.EmployeeRepository;
 import server.utils.AccountGenerator;
+import server.utils.RoleDirectory;
 
 import java.io.ByteArrayOutputStream;
 import java.io.InputStream;
@@ -33,6 +34,7 @@ public class EmployeeExcelImportService {
     private final AccountGenerator accountGenerator; // giống nơi bạn đang dùng ở create()
     private final PasswordEncoder passwordEncoder;
     private final EmailService emailService;
+    private final RoleDirectory roleDirectory;
 
     private static final List<String> HEADERS = List.of(
             "firstName","lastName","email","phone","address","gender","dateBirth","role"
@@ -111,6 +113,10 @@ public class EmployeeExcelImportService {
             mails.add(new MailRow(req.getEmail(), username, rawPass));
         }
 
+        if (!toSave.isEmpty()) {
+            roleDirectory.invalidate();
+        }
+
         for (MailRow m : mails) {
             emailService.sendAccountCreatedEmail(m.email(), m.username(), m.rawPassword());
         }
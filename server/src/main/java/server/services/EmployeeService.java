@@ -10,6 +10,7 @@ import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.multipart.MultipartFile;
 import server.dtos.AccountDto;
@@ -24,9 +25,15 @@ import server.models.enums.Role;
 import server.repositories.AccountRepository;
 import server.repositories.DepartmentRepository;
 import server.repositories.EmployeeRepository;
+import server.repositories.TokenRepository;
 import server.specification.EmployeeSpecification;
 import server.utils.AccountGenerator;
 import server.utils.ApiResponse;
+import server.utils.JwtUtil;
+import server.utils.KnownFaceCache;
+import server.utils.ProfileCache;
+import server.utils.RoleDirectory;
+import server.utils.TokenValidityCache;
 
 import java.util.HashMap;
 import java.util.List;
@@ -40,6 +47,12 @@ public class EmployeeService {
     private final AccountRepository accountRepository;
     private final UploadFileService uploadFileService;
     private final EmailService emailService;
+    private final ProfileCache profileCache;
+    private final RoleDirectory roleDirectory;
+    private final KnownFaceCache knownFaceCache;
+    private final TokenRepository tokenRepository;
+    private final TokenValidityCache tokenValidityCache;
+    private final JwtUtil jwtUtil;
 
     // từ nhánh Long/excel-import-employees
     private final AccountGenerator accountGenerator;
@@ -102,11 +115,13 @@ public class EmployeeService {
         employee.setAccount(account);
 
         employeeRepository.save(employee);
+        roleDirectory.invalidate();
         emailService.sendAccountCreatedEmail(request.getEmail(), generatedUsername, generatedPassword);
 
         return ApiResponse.created(null, "employee-created-successfully");
     }
 
+    @Transactional
     public ApiResponse<?> edit(CreateEmployeeDto request, BindingResult result) {
         Employee employee = employeeRepository.findById(request.getId()).orElse(null);
         if (employee == null) {
@@ -127,7 +142,10 @@ public class EmployeeService {
             return ApiResponse.badRequest(result);
         }
 
-        employee.getAccount().setRole(Role.valueOf(request.getRole()));
+        Account account = employee.getAccount();
+        Role newRole = Role.valueOf(request.getRole());
+        boolean roleChanged = account.getRole() != newRole;
+        account.setRole(newRole);
         employee.setFirstName(request.getFirstName());
         employee.setLastName(request.getLastName());
         employee.setEmail(request.getEmail());
@@ -138,6 +156,20 @@ public class EmployeeService {
 
         employeeRepository.save(employee);
 
+        // Stateless principal: role nằm trong access token nên phải thu hồi token cũ để role mới có hiệu lực
+        if (roleChanged && jwtUtil.isStatelessPrincipal()) {
+            tokenRepository.removeAllByAccount(account);
+            tokenValidityCache.evictAccount(account.getId());
+        }
+
+        // HOD đổi tên/role thì profile của cả phòng ban hiển thị HOD đều cũ
+        if (employee.getHodDepartment() != null) {
+            profileCache.invalidateAll();
+        } else {
+            profileCache.invalidate(employee.getAccount().getId());
+        }
+        roleDirectory.invalidate();
+
         return ApiResponse.success(null, "edit-employee-successfully");
     }
 
@@ -162,11 +194,13 @@ public class EmployeeService {
             String filePath = uploadFileService.storeFile("images", file).replace("\\", "/");
 
             if (account.getEmployee().getAvatar() != null) {
+                knownFaceCache.invalidate(account.getEmployee().getAvatar());
                 uploadFileService.deleteFile(account.getEmployee().getAvatar());
             }
 
             account.getEmployee().setAvatar(filePath);
             accountRepository.save(account);
+            profileCache.invalidate(account.getId());
 
             return ApiResponse.success(filePath, "change-avatar-successfully");
         } catch (Exception e) {
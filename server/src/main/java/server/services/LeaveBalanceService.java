@@ -0,0 +1,116 @@
+package server.services;
+
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import server.models.LeaveBalance;
+import server.models.LeaveDay;
+import server.models.LeaveRequest;
+import server.repositories.LeaveBalanceRepository;
+
+import java.time.YearMonth;
+import java.util.*;
+
+/**
+ * Sổ phép theo phút (account, năm, tháng). Nửa ngày = 240 phút, nghỉ theo giờ tính đúng số phút,
+ * Chủ nhật / ngày lễ không tính (xem LeaveDayService.toRows).
+ */
+@Service
+@RequiredArgsConstructor
+public class LeaveBalanceService {
+    public static final int MINUTES_PER_DAY = 8 * 60;
+    public static final int LIMIT_PER_YEAR = 12;
+    public static final int LIMIT_PER_MONTH = 1;
+
+    private static final Logger log = LoggerFactory.getLogger(LeaveBalanceService.class);
+
+    private final LeaveBalanceRepository leaveBalanceRepository;
+    private final LeaveDayService leaveDayService;
+
+    @Transactional
+    public void onApproved(LeaveRequest leave) {
+        apply(leave, 1);
+    }
+
+    @Transactional
+    public void onApprovalRevoked(LeaveRequest leave) {
+        apply(leave, -1);
+    }
+
+    // Số phép đã dùng / còn lại của 1 account (đơn vị ngày, làm tròn 2 chữ số)
+    public Map<String, Object> getBalance(Long accountId, YearMonth ym) {
+        long usedYear = 0;
+        long usedMonth = 0;
+        for (LeaveBalance b : leaveBalanceRepository.findByAccountIdAndYear(accountId, ym.getYear())) {
+            usedYear += b.getUsedMinutes();
+            if (b.getMonth() == ym.getMonthValue()) {
+                usedMonth += b.getUsedMinutes();
+            }
+        }
+        return toBalance(usedYear, usedMonth);
+    }
+
+    // Sổ phép cả công ty trong 1 query, key = accountId
+    public Map<Long, Map<String, Object>> getCompanyBalances(YearMonth ym) {
+        Map<Long, Map<String, Object>> result = new LinkedHashMap<>();
+        for (Object[] row : leaveBalanceRepository.sumByAccountForYear(ym.getYear(), ym.getMonthValue())) {
+            Long accountId = ((Number) row[0]).longValue();
+            long usedYear = row[1] != null ? ((Number) row[1]).longValue() : 0;
+            long usedMonth = row[2] != null ? ((Number) row[2]).longValue() : 0;
+            result.put(accountId, toBalance(usedYear, usedMonth));
+        }
+        return result;
+    }
+
+    /**
+     * Tính lại toàn bộ sổ phép từ leave_day của các đơn APPROVED (backfill lần đầu / đối soát).
+     */
+    @Transactional
+    public int rebuild() {
+        leaveBalanceRepository.deleteAllBalances();
+        int rows = leaveBalanceRepository.insertBalancesFromLeaveDays();
+        log.info("[LeaveBalance] Đã tính lại {} dòng sổ phép", rows);
+        return rows;
+    }
+
+    @Transactional
+    public void rebuildIfEmpty() {
+        if (leaveBalanceRepository.count() == 0) {
+            rebuild();
+        }
+    }
+
+    private void apply(LeaveRequest leave, int sign) {
+        if (leave.getSender() == null) {
+            return;
+        }
+        Map<YearMonth, Long> minutesByMonth = new TreeMap<>();
+        for (LeaveDay day : leaveDayService.toRows(leave)) {
+            minutesByMonth.merge(YearMonth.from(day.getDay()), (long) day.workMinutes(), Long::sum);
+        }
+        minutesByMonth.forEach((ym, minutes) -> leaveBalanceRepository.addMinutes(
+                leave.getSender().getId(), ym.getYear(), ym.getMonthValue(), sign * minutes));
+    }
+
+    private Map<String, Object> toBalance(long usedYearMinutes, long usedMonthMinutes) {
+        double usedYear = toDays(usedYearMinutes);
+        double usedMonth = toDays(usedMonthMinutes);
+
+        Map<String, Object> data = new HashMap<>();
+        data.put("leaveUsedInYear", usedYear);
+        data.put("leaveLeftInYear", toDays((long) LIMIT_PER_YEAR * MINUTES_PER_DAY - usedYearMinutes));
+        data.put("leaveUsedInMonth", usedMonth);
+        data.put("leaveLeftInMonth", toDays((long) LIMIT_PER_MONTH * MINUTES_PER_DAY - usedMonthMinutes));
+        data.put("leaveUsedMinutesInYear", usedYearMinutes);
+        data.put("leaveUsedMinutesInMonth", usedMonthMinutes);
+        data.put("limitPerYear", LIMIT_PER_YEAR);
+        data.put("limitPerMonth", LIMIT_PER_MONTH);
+        return data;
+    }
+
+    private static double toDays(long minutes) {
+        return Math.round(minutes * 100.0 / MINUTES_PER_DAY) / 100.0;
+    }
+}
@@ -0,0 +1,190 @@
+package server.services;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import server.models.LeaveDay;
+import server.models.LeaveRequest;
+import server.models.enums.LeaveStatus;
+import server.models.enums.LeaveType;
+import server.repositories.LeaveDayRepository;
+import server.repositories.LeaveRequestRepository;
+import server.utils.HolidayUtils;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.*;
+
+/**
+ * Duy trì bảng leave_day để kiểm tra trùng đơn nghỉ theo ngày:
+ * tạo đơn thì ghi các ngày nghỉ, đơn bị từ chối / hủy / hết hạn thì xóa.
+ */
+@Service
+@RequiredArgsConstructor
+public class LeaveDayService {
+    // Các trạng thái đơn vẫn còn "giữ chỗ" ngày nghỉ
+    public static final Set<LeaveStatus> OCCUPYING_STATUSES = EnumSet.of(
+            LeaveStatus.PENDING, LeaveStatus.PENDING_HR, LeaveStatus.APPROVED, LeaveStatus.WAITING_TO_CANCEL);
+
+    private static final int MORNING_START = 8 * 60;
+    private static final int MORNING_END = 12 * 60;
+    private static final int AFTERNOON_START = 13 * 60;
+    private static final int AFTERNOON_END = 17 * 60;
+    private static final int REBUILD_BATCH_SIZE = 500;
+
+    private final LeaveDayRepository leaveDayRepository;
+    private final LeaveRequestRepository leaveRequestRepository;
+
+    // Danh sách ngày của đơn: nghỉ ngắt quãng lấy daysOff, còn lại là cả khoảng startDate..endDate
+    public static List<LocalDate> daysOf(LeaveRequest leave) {
+        if (leave.getDaysOff() != null && !leave.getDaysOff().isEmpty()) {
+            return new ArrayList<>(leave.getDaysOff());
+        }
+        List<LocalDate> days = new ArrayList<>();
+        if (leave.getStartDate() == null || leave.getEndDate() == null) {
+            return days;
+        }
+        for (LocalDate d = leave.getStartDate(); !d.isAfter(leave.getEndDate()); d = d.plusDays(1)) {
+            days.add(d);
+        }
+        return days;
+    }
+
+    /**
+     * Tìm ngày bị trùng với các đơn còn hiệu lực của account: 1 query theo khoảng ngày,
+     * sau đó mỗi ngày chỉ so bitmask buổi + khung phút.
+     * Trả về thông báo lỗi, hoặc null nếu không trùng.
+     */
+    public String findConflict(Long accountId, List<LocalDate> days, LeaveType type,
+                               LocalTime startTime, LocalTime endTime) {
+        if (days.isEmpty()) {
+            return null;
+        }
+        int[] slot = slotOf(type, startTime, endTime);
+        LocalDate from = Collections.min(days);
+        LocalDate to = Collections.max(days);
+
+        Map<LocalDate, List<LeaveDay>> occupied = new HashMap<>();
+        for (LeaveDay row : leaveDayRepository.findByAccountIdAndDayBetween(accountId, from, to)) {
+            occupied.computeIfAbsent(row.getDay(), k -> new ArrayList<>()).add(row);
+        }
+
+        for (LocalDate d : days) {
+            for (LeaveDay row : occupied.getOrDefault(d, List.of())) {
+                if (row.overlaps(slot[0], slot[1], slot[2])) {
+                    return conflictMessage(row, d);
+                }
+            }
+        }
+        return null;
+    }
+
+    // Ghi các ngày nghỉ của đơn vừa tạo
+    @Transactional
+    public void occupy(LeaveRequest leave) {
+        if (leave.getId() == null || leave.getSender() == null) {
+            return;
+        }
+        leaveDayRepository.saveAll(toRows(leave));
+    }
+
+    // Giải phóng ngày nghỉ khi đơn chuyển sang REJECTED / CANCELLED / EXPIRED
+    @Transactional
+    public void release(Collection<Long> leaveRequestIds) {
+        if (leaveRequestIds != null && !leaveRequestIds.isEmpty()) {
+            leaveDayRepository.deleteByLeaveRequestIdIn(leaveRequestIds);
+        }
+    }
+
+    public void release(LeaveRequest leave) {
+        release(List.of(leave.getId()));
+    }
+
+    /**
+     * Dựng lại toàn bộ bảng từ leave_request (dữ liệu cũ trước khi có bảng, hoặc khi nghi lệch).
+     */
+    @Transactional
+    public int rebuild() {
+        leaveDayRepository.deleteAllInBatch();
+        int total = 0;
+        int page = 0;
+        Page<LeaveRequest> batch;
+        do {
+            batch = leaveRequestRepository.findByStatusIn(OCCUPYING_STATUSES,
+                    PageRequest.of(page++, REBUILD_BATCH_SIZE, Sort.by("id")));
+            List<LeaveDay> rows = new ArrayList<>();
+            for (LeaveRequest leave : batch) {
+                rows.addAll(toRows(leave));
+            }
+            leaveDayRepository.saveAll(rows);
+            total += rows.size();
+        } while (batch.hasNext());
+        return total;
+    }
+
+    // Chỉ dựng lại khi bảng còn trống mà đã có đơn còn hiệu lực (lần đầu deploy)
+    @Transactional
+    public void rebuildIfEmpty() {
+        if (leaveDayRepository.count() == 0
+                && leaveRequestRepository.findByStatusIn(OCCUPYING_STATUSES, PageRequest.of(0, 1)).hasContent()) {
+            rebuild();
+        }
+    }
+
+    // Các dòng leave_day tương ứng với đơn (chưa lưu), dùng chung cho bộ đếm / sổ phép
+    public List<LeaveDay> toRows(LeaveRequest leave) {
+        int[] slot = slotOf(leave.getLeaveType(), leave.getStartTime(), leave.getEndTime());
+        List<LeaveDay> rows = new ArrayList<>();
+        for (LocalDate d : daysOf(leave)) {
+            // Chủ nhật / ngày lễ không tính là ngày nghỉ phép (đơn cũ có thể trải qua các ngày này)
+            if (HolidayUtils.isWeekend(d) || HolidayUtils.isHoliday(d)) {
+                continue;
+            }
+            rows.add(LeaveDay.builder()
+                    .accountId(leave.getSender().getId())
+                    .leaveRequestId(leave.getId())
+                    .day(d)
+                    .slotMask(slot[0])
+                    .startMinute(slot[1])
+                    .endMinute(slot[2])
+                    .build());
+        }
+        return rows;
+    }
+
+    // {bitmask buổi, phút bắt đầu, phút kết thúc}
+    private static int[] slotOf(LeaveType type, LocalTime startTime, LocalTime endTime) {
+        if (type == LeaveType.HALF_DAY_MORNING) {
+            return new int[]{LeaveDay.MORNING, MORNING_START, MORNING_END};
+        }
+        if (type == LeaveType.HALF_DAY_AFTERNOON) {
+            return new int[]{LeaveDay.AFTERNOON, AFTERNOON_START, AFTERNOON_END};
+        }
+        if (type == LeaveType.CUSTOM_HOURS && startTime != null && endTime != null) {
+            int start = startTime.toSecondOfDay() / 60;
+            int end = endTime.toSecondOfDay() / 60;
+            int mask = 0;
+            if (start < MORNING_END && end > MORNING_START) mask |= LeaveDay.MORNING;
+            if (start < AFTERNOON_START && end > MORNING_END) mask |= LeaveDay.LUNCH;
+            if (start < AFTERNOON_END && end > AFTERNOON_START) mask |= LeaveDay.AFTERNOON;
+            return new int[]{mask, start, end};
+        }
+        return new int[]{LeaveDay.MORNING | LeaveDay.LUNCH | LeaveDay.AFTERNOON, MORNING_START, AFTERNOON_END};
+    }
+
+    private static String conflictMessage(LeaveDay row, LocalDate d) {
+        if (row.getStartMinute() <= MORNING_START && row.getEndMinute() >= AFTERNOON_END) {
+            return "Bạn đã có đơn nghỉ nguyên ngày " + d + ". Không thể xin thêm bất kỳ loại nghỉ nào khác!";
+        }
+        if (row.getStartMinute() == MORNING_START && row.getEndMinute() == MORNING_END) {
+            return "Bạn đã có đơn nghỉ buổi sáng ngày " + d + " (8:00-12:00)";
+        }
+        if (row.getStartMinute() == AFTERNOON_START && row.getEndMinute() == AFTERNOON_END) {
+            return "Bạn đã có đơn nghỉ buổi chiều ngày " + d + " (13:00-17:00)";
+        }
+        return "Bạn đã có đơn nghỉ theo giờ bị trùng khung giờ với ngày " + d;
+    }
+}
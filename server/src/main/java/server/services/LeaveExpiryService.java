@@ -0,0 +1,79 @@
+package server.services;
+
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import server.models.LeaveRequest;
+import server.models.enums.LeaveStatus;
+import server.repositories.JobRunRepository;
+import server.repositories.LeaveRequestRepository;
+
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Chuyển các đơn còn treo (PENDING, PENDING_HR, WAITING_TO_CANCEL) của tháng trước sang EXPIRED
+ * và báo cho người gửi bằng 1 batch INSERT notification (push sau commit).
+ * Mỗi tháng chỉ xử lý 1 lần nhờ job_run; các lần chạy sau trong cùng kỳ chỉ tốn 1 lookup.
+ */
+@Service
+@RequiredArgsConstructor
+public class LeaveExpiryService {
+    public static final String JOB_NAME = "leave-expiry";
+
+    private static final Logger log = LoggerFactory.getLogger(LeaveExpiryService.class);
+    private static final ZoneId ZONE = ZoneId.of("Asia/Ho_Chi_Minh");
+    private static final int UPDATE_BATCH_SIZE = 500;
+    private static final List<LeaveStatus> UNRESOLVED_STATUSES =
+            List.of(LeaveStatus.PENDING, LeaveStatus.PENDING_HR, LeaveStatus.WAITING_TO_CANCEL);
+
+    private final LeaveRequestRepository leaveRequestRepository;
+    private final JobRunRepository jobRunRepository;
+    private final LeaveDayService leaveDayService;
+    private final NotificationService notificationService;
+
+    // Kỳ tính theo giờ VN, cùng zone với cron của LeaveMaintenanceScheduler
+    public int expireLastMonth() {
+        return expire(YearMonth.now(ZONE).minusMonths(1));
+    }
+
+    /**
+     * Hết hạn các đơn tạo trong tháng {@code period} và thông báo cho người gửi trong cùng transaction.
+     * Trả về số đơn đã chuyển EXPIRED (0 nếu kỳ này đã được xử lý).
+     */
+    @Transactional
+    public int expire(YearMonth period) {
+        String periodKey = period.toString();
+        if (jobRunRepository.existsByJobNameAndPeriod(JOB_NAME, periodKey)) {
+            return 0;
+        }
+        long startedAt = System.currentTimeMillis();
+        LocalDateTime now = LocalDateTime.now();
+        if (jobRunRepository.claim(JOB_NAME, periodKey, now) == 0) {
+            return 0; // node khác vừa giành kỳ này
+        }
+
+        LocalDateTime start = period.atDay(1).atStartOfDay();
+        LocalDateTime end = period.plusMonths(1).atDay(1).atStartOfDay(); // exclusive
+
+        List<Long> ids = leaveRequestRepository.findIdsForExpiry(start, end, UNRESOLVED_STATUSES);
+        List<LeaveRequest> expired = new ArrayList<>(ids.size());
+        for (int i = 0; i < ids.size(); i += UPDATE_BATCH_SIZE) {
+            List<Long> chunk = ids.subList(i, Math.min(i + UPDATE_BATCH_SIZE, ids.size()));
+            leaveRequestRepository.updateStatusByIds(chunk, LeaveStatus.EXPIRED, now);
+            leaveDayService.release(chunk);
+            expired.addAll(leaveRequestRepository.findWithAccountsByIdIn(chunk));
+        }
+        notificationService.notifyLeaveRequestsExpired(expired);
+
+        long durationMs = System.currentTimeMillis() - startedAt;
+        jobRunRepository.complete(JOB_NAME, periodKey, ids.size(), durationMs, LocalDateTime.now());
+        log.info("[LeaveExpiry] Kỳ {}: đã chuyển {} đơn sang EXPIRED, {} ms", periodKey, ids.size(), durationMs);
+        return ids.size();
+    }
+}
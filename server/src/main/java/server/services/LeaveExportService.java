@@ -0,0 +1,132 @@
+package server.services;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import server.models.Account;
+import server.models.Employee;
+import server.models.LeaveRequest;
+import server.models.enums.LeaveStatus;
+import server.repositories.LeaveRequestRepository;
+import server.utils.BackgroundExecutors;
+import server.utils.InstrumentedExecutor;
+import server.utils.SignatureImageCache;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.Collectors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Xuất hàng loạt đơn nghỉ phép (donxinnghiphep.docx) của 1 phòng ban trong 1 tháng thành file ZIP.
+ *
+ * Dữ liệu được chuẩn bị trên thread của request (cần session JPA), phần render DOCX chạy song song
+ * trên pool documents của BackgroundExecutors. Chỉ tối đa {@code maxInFlight} file nằm trong bộ nhớ cùng lúc,
+ * mỗi file render xong được ghi thẳng vào ZIP trên output stream của response theo đúng thứ tự.
+ */
+@Service
+@RequiredArgsConstructor
+public class LeaveExportService {
+    private final LeaveRequestRepository leaveRequestRepository;
+    private final LeaveRequestService leaveRequestService;
+    private final BackgroundExecutors backgroundExecutors;
+
+    private record Rendered(String fileName, byte[] bytes) {
+    }
+
+    // Danh sách đơn cần xuất (gọi trước khi ghi header ZIP để còn trả 404/400)
+    public List<LeaveRequest> findLeaves(Long departmentId, YearMonth month, LeaveStatus status) {
+        return leaveRequestRepository.findForDepartmentExport(
+                departmentId, status, month.atDay(1), month.atEndOfMonth());
+    }
+
+    public int writeZip(List<LeaveRequest> leaves, OutputStream out) throws IOException {
+        // Các đơn ngắt quãng cùng batch: lấy hết 1 lần thay vì query theo từng đơn
+        Set<String> batchIds = leaves.stream()
+                .map(LeaveRequest::getBatchId)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        Map<String, List<LeaveRequest>> batches = batchIds.isEmpty()
+                ? Map.of()
+                : leaveRequestRepository.findByBatchIdInOrderByStartDateAsc(batchIds).stream()
+                .collect(Collectors.groupingBy(LeaveRequest::getBatchId, LinkedHashMap::new, Collectors.toList()));
+
+        InstrumentedExecutor pool = backgroundExecutors.documents();
+        int maxInFlight = pool.threads() * 2;
+        Deque<Future<Rendered>> inFlight = new ArrayDeque<>();
+        Set<String> usedNames = new HashSet<>();
+        int written = 0;
+
+        ZipOutputStream zip = new ZipOutputStream(out);
+        try {
+            for (LeaveRequest leave : leaves) {
+                Map<String, String> data = leaveRequestService.prepareLeaveRequestDataForWord(
+                        leave, leave.getBatchId() != null ? batches.get(leave.getBatchId()) : null);
+                String signature = leave.getSignature();
+                SignatureImageCache.Key signatureKey = LeaveRequestService.signatureKey(leave);
+                String fileName = uniqueName(fileNameOf(leave), usedNames);
+
+                inFlight.add(pool.submit(() ->
+                        new Rendered(fileName, leaveRequestService.exportDocumentToWord(data, signatureKey, signature))));
+                if (inFlight.size() >= maxInFlight) {
+                    written += writeEntry(zip, inFlight.poll());
+                }
+            }
+            while (!inFlight.isEmpty()) {
+                written += writeEntry(zip, inFlight.poll());
+            }
+            zip.finish();
+            zip.flush();
+        } finally {
+            // Client ngắt kết nối giữa chừng: hủy các file chưa render
+            inFlight.forEach(f -> f.cancel(true));
+        }
+        return written;
+    }
+
+    private int writeEntry(ZipOutputStream zip, Future<Rendered> future) throws IOException {
+        Rendered rendered;
+        try {
+            rendered = future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Export interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Render leave request failed", e.getCause());
+        } catch (CancellationException e) {
+            // Pool documents cấu hình rejection = DISCARD và đang đầy
+            throw new IOException("Render leave request was rejected, document pool is full", e);
+        }
+        zip.putNextEntry(new ZipEntry(rendered.fileName()));
+        zip.write(rendered.bytes());
+        zip.closeEntry();
+        return 1;
+    }
+
+    private String fileNameOf(LeaveRequest leave) {
+        Account sender = leave.getSender();
+        Employee emp = sender != null ? sender.getEmployee() : null;
+        String name = emp != null
+                ? (emp.getFirstName() + " " + emp.getLastName()).trim()
+                : (sender != null ? sender.getUsername() : "unknown");
+        LocalDate start = leave.getStartDate();
+        return "donxinnghiphep_" + leave.getId() + "_" + sanitize(name) + (start != null ? "_" + start : "") + ".docx";
+    }
+
+    private static String uniqueName(String name, Set<String> used) {
+        String candidate = name;
+        int i = 1;
+        while (!used.add(candidate)) {
+            candidate = name.replace(".docx", "_" + (i++) + ".docx");
+        }
+        return candidate;
+    }
+
+    private static String sanitize(String s) {
+        return s.replaceAll("[\\\\/:*?\"<>|\\s]+", "_");
+    }
+}
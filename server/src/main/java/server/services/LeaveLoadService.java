@@ -0,0 +1,82 @@
+package server.services;
+
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import server.models.DepartmentLeaveLoad;
+import server.models.Employee;
+import server.models.LeaveDay;
+import server.models.LeaveRequest;
+import server.repositories.DepartmentLeaveLoadRepository;
+
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bộ đếm số đơn nghỉ APPROVED theo (phòng ban, ngày) cho getBusyDays.
+ */
+@Service
+@RequiredArgsConstructor
+public class LeaveLoadService {
+    private static final Logger log = LoggerFactory.getLogger(LeaveLoadService.class);
+
+    private final DepartmentLeaveLoadRepository loadRepository;
+    private final LeaveDayService leaveDayService;
+
+    // Đơn vừa được HR xác nhận: +1 cho mỗi ngày nghỉ
+    @Transactional
+    public void onApproved(LeaveRequest leave) {
+        apply(leave, 1);
+    }
+
+    // Đơn APPROVED bị hủy: -1 cho mỗi ngày nghỉ
+    @Transactional
+    public void onApprovalRevoked(LeaveRequest leave) {
+        apply(leave, -1);
+    }
+
+    // Số đơn nghỉ theo từng ngày trong [from, to], ngày không có đơn = 0
+    public Map<LocalDate, Integer> countByDay(Long departmentId, LocalDate from, LocalDate to) {
+        Map<LocalDate, Integer> counts = new LinkedHashMap<>();
+        for (LocalDate d = from; !d.isAfter(to); d = d.plusDays(1)) {
+            counts.put(d, 0);
+        }
+        for (DepartmentLeaveLoad load : loadRepository.findByDepartmentIdAndDayBetween(departmentId, from, to)) {
+            counts.put(load.getDay(), load.getLeaveCount());
+        }
+        return counts;
+    }
+
+    /**
+     * Tính lại toàn bộ bộ đếm từ leave_day + leave_request, sửa mọi lệch do
+     * nhân viên đổi phòng ban hay dữ liệu sửa tay trong DB.
+     */
+    @Transactional
+    public int rebuild() {
+        loadRepository.deleteAllLoads();
+        int rows = loadRepository.insertLoadsFromLeaveDays();
+        log.info("[LeaveLoad] Đã tính lại {} bộ đếm ngày bận", rows);
+        return rows;
+    }
+
+    @Transactional
+    public void rebuildIfEmpty() {
+        if (loadRepository.count() == 0) {
+            rebuild();
+        }
+    }
+
+    private void apply(LeaveRequest leave, int delta) {
+        Employee emp = leave.getSender() != null ? leave.getSender().getEmployee() : null;
+        if (emp == null || emp.getDepartment() == null) {
+            return;
+        }
+        Long departmentId = emp.getDepartment().getId();
+        for (LeaveDay day : leaveDayService.toRows(leave)) {
+            loadRepository.addLoad(departmentId, day.getDay(), delta);
+        }
+    }
+}
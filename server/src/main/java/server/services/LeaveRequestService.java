@@ -3,7 +3,6 @@ package server.services;
 import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
-import org.apache.poi.xwpf.usermodel.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.data.domain.Page;
@@ -18,17 +17,13 @@ import server.models.enums.Role;
 import server.repositories.AccountRepository;
 import server.repositories.EmployeeRepository;
 import server.repositories.LeaveRequestRepository;
-import org.apache.poi.util.Units;
 
-import java.io.ByteArrayInputStream;
 import java.time.LocalDate;
 import java.time.LocalTime;
 import java.time.YearMonth;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
 
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
@@ -38,7 +33,10 @@ import org.springframework.data.jpa.domain.Specification;
 import server.repositories.SignatureSampleRepository;
 import server.utils.ApiResponse;
 import server.models.enums.LeaveStatus;
+import server.utils.DocxTemplateEngine;
 import server.utils.HolidayUtils;
+import server.utils.SignatureImageCache;
+import server.utils.RoleDirectory;
 
 import java.time.LocalDateTime;
 import org.springframework.scheduling.annotation.Scheduled;
@@ -59,14 +57,18 @@ public class LeaveRequestService {
     private final SignatureSampleRepository signatureSampleRepository;
     private final LeaveRequestRepository leaveRequestRepository;
     private final AccountRepository accountRepository;
+    private final RoleDirectory roleDirectory;
     private final AuthService authService;
     private final EmailService emailService;
+    private final LeaveDayService leaveDayService;
+    private final LeaveLoadService leaveLoadService;
+    private final LeaveBalanceService leaveBalanceService;
+    private final DocxTemplateEngine docxTemplateEngine;
+    private final SignatureImageCache signatureImageCache;
     private static final Logger log = LoggerFactory.getLogger(LeaveRequestService.class);
 
-    // Kiểm tra giao giữa 2 khoảng giờ
-    private boolean isTimeOverlap(LocalTime start1, LocalTime end1, LocalTime start2, LocalTime end2) {
-        return !start1.isAfter(end2.minusSeconds(1)) && !start2.isAfter(end1.minusSeconds(1));
-    }
+    private static final String LEAVE_TEMPLATE = "donxinnghiphep.docx";
+    private static final String SIGN_TOKEN = "{ký tên}";
 
     // Tính số phút nghỉ hợp lệ trong ca làm việc (8h-12h, 13h-17h), loại trừ giờ nghỉ trưa
     private long calcValidLeaveMinutes(LocalTime start, LocalTime end) {
@@ -91,6 +93,7 @@ public class LeaveRequestService {
     }
 
     // Tạo đơn nghỉ phép
+    @Transactional
     public ApiResponse<LeaveRequestResponse> create(HttpServletRequest request, LeaveRequestCreateRequest dto) {
         // Thêm log ở đây:
         System.out.println("DTO received: " + dto);
@@ -200,38 +203,11 @@ public class LeaveRequestService {
             }
         }
 
-        // 7. Validate không trùng đơn đã xin trước đó
-        List<LeaveRequest> oldLeaves = leaveRequestRepository.findBySenderIdAndStatus(sender.getId(), LeaveStatus.PENDING);
-        oldLeaves.addAll(leaveRequestRepository.findBySenderIdAndStatus(sender.getId(), LeaveStatus.APPROVED));
-
-        LeaveType newType = dto.getLeaveType();
-        LocalTime newStartTime = dto.getStartTime();
-        LocalTime newEndTime = dto.getEndTime();
-        for (LeaveRequest old : oldLeaves) {
-            for (LocalDate d : ngayNghiList) {
-                if (d.isBefore(old.getStartDate()) || d.isAfter(old.getEndDate())) continue;
-                if (old.getLeaveType() == LeaveType.FULL_DAY) {
-                    return ApiResponse.badRequest("Bạn đã có đơn nghỉ nguyên ngày " + d + ". Không thể xin thêm bất kỳ loại nghỉ nào khác!");
-                }
-                if (old.getLeaveType() == LeaveType.HALF_DAY_MORNING && newType == LeaveType.HALF_DAY_MORNING)
-                    return ApiResponse.badRequest("Bạn đã có đơn nghỉ buổi sáng ngày " + d);
-                if (old.getLeaveType() == LeaveType.HALF_DAY_MORNING && newType == LeaveType.CUSTOM_HOURS &&
-                        isTimeOverlap(newStartTime, newEndTime, LocalTime.of(8, 0), LocalTime.of(12, 0))) {
-                    return ApiResponse.badRequest("Bạn đã có đơn nghỉ buổi sáng ngày " + d + " (8:00-12:00)");
-                }
-                if (old.getLeaveType() == LeaveType.HALF_DAY_AFTERNOON && newType == LeaveType.HALF_DAY_AFTERNOON)
-                    return ApiResponse.badRequest("Bạn đã có đơn nghỉ buổi chiều ngày " + d);
-                if (old.getLeaveType() == LeaveType.HALF_DAY_AFTERNOON && newType == LeaveType.CUSTOM_HOURS &&
-                        isTimeOverlap(newStartTime, newEndTime, LocalTime.of(13, 0), LocalTime.of(17, 0))) {
-                    return ApiResponse.badRequest("Bạn đã có đơn nghỉ buổi chiều ngày " + d + " (13:00-17:00)");
-                }
-                if (old.getLeaveType() == LeaveType.CUSTOM_HOURS && d.equals(old.getStartDate())) {
-                    if (newType == LeaveType.CUSTOM_HOURS &&
-                            isTimeOverlap(newStartTime, newEndTime, old.getStartTime(), old.getEndTime())) {
-                        return ApiResponse.badRequest("Bạn đã có đơn nghỉ theo giờ bị trùng khung giờ với ngày " + d);
-                    }
-                }
-            }
+        // 7. Validate không trùng đơn đã xin trước đó (bảng leave_day: 1 query theo khoảng ngày)
+        String conflict = leaveDayService.findConflict(
+                sender.getId(), ngayNghiList, dto.getLeaveType(), dto.getStartTime(), dto.getEndTime());
+        if (conflict != null) {
+            return ApiResponse.badRequest(conflict);
         }
 
         // --- 8. Phân quyền gửi đơn (cập nhật theo yêu cầu mới) ---
@@ -295,6 +271,7 @@ public class LeaveRequestService {
         // Nếu bạn muốn lưu riêng daysOff (list ngày) thì chỉnh lại entity, còn không thì chỉ cần startDate, endDate.
         entity.setDaysOff(hasDays ? ngayNghiList : null);
         leaveRequestRepository.save(entity);
+        leaveDayService.occupy(entity);
 
         LeaveRequestResponse response = toResponse(entity);
         return ApiResponse.created(response, "Tạo đơn nghỉ phép thành công");
@@ -303,7 +280,7 @@ public class LeaveRequestService {
 
     // Trả về DANH SÁCH đơn cần được bạn duyệt
     // Dành cho HOD / MANAGER / CHIEFACCOUNTANT (đơn PENDING gửi đúng mình)
-    public ApiResponse<?> listMyPendingToApprove(HttpServletRequest request) {
+    public ApiResponse<?> listMyPendingToApprove(HttpServletRequest request, Integer page, Integer size) {
         Account user = authService.getCurrentAccount(request);
         Role role = user.getRole();
 
@@ -311,50 +288,71 @@ public class LeaveRequestService {
             return ApiResponse.success(Collections.emptyList(), "Bạn không có quyền duyệt đơn!");
         }
 
-        List<LeaveRequest> pendingRequests = leaveRequestRepository
-                .findByStatus(LeaveStatus.PENDING)
-                .stream()
-                .filter(lr -> lr.getReceiver().getId().equals(user.getId()))
-                .collect(Collectors.toList());
-
-        List<LeaveRequestResponse> data = pendingRequests.stream()
-                .map(this::toResponse)
-                .collect(Collectors.toList());
+        Page<LeaveRequestInboxView> pending = leaveRequestRepository
+                .findInboxByReceiver(user.getId(), LeaveStatus.PENDING, inboxPageable(page, size));
 
-        return ApiResponse.success(data, "Các đơn chờ bạn duyệt");
+        return ApiResponse.success(toInboxResult(pending, page), "Các đơn chờ bạn duyệt");
     }
 
     // Dành cho HR: đơn đang chờ HR xác nhận
-    public ApiResponse<?> listAwaitingHr(HttpServletRequest request) {
+    public ApiResponse<?> listAwaitingHr(HttpServletRequest request, Integer page, Integer size) {
         Account user = authService.getCurrentAccount(request);
         if (user.getRole() != Role.HR) {
             return ApiResponse.unauthorized();
         }
-        List<LeaveRequestResponse> data = leaveRequestRepository.findByStatus(LeaveStatus.PENDING_HR)
-                .stream()
-                .map(this::toResponse)
-                .collect(Collectors.toList());
+        Page<LeaveRequestInboxView> pending = leaveRequestRepository
+                .findInboxByStatus(LeaveStatus.PENDING_HR, inboxPageable(page, size));
 
-        return ApiResponse.success(data, "Các đơn chờ HR xác nhận");
+        return ApiResponse.success(toInboxResult(pending, page), "Các đơn chờ HR xác nhận");
     }
 
 
 
     //trả về danh sách đơn của bạn mà chưa được duyệt
-    public ApiResponse<?> listMyPendingSent(HttpServletRequest request) {
+    public ApiResponse<?> listMyPendingSent(HttpServletRequest request, Integer page, Integer size) {
         Account user = authService.getCurrentAccount(request);
         // Lấy đơn sender là mình và status là PENDING
-        List<LeaveRequest> myPending = leaveRequestRepository
-                .findByStatus(LeaveStatus.PENDING)
-                .stream()
-                .filter(lr -> lr.getSender().getId().equals(user.getId()))
-                .collect(Collectors.toList());
+        Page<LeaveRequestInboxView> myPending = leaveRequestRepository
+                .findInboxBySender(user.getId(), LeaveStatus.PENDING, inboxPageable(page, size));
 
-        List<LeaveRequestResponse> data = myPending.stream()
-                .map(this::toResponse)
-                .collect(Collectors.toList());
+        return ApiResponse.success(toInboxResult(myPending, page), "Các đơn bạn đã gửi và chưa được duyệt");
+    }
+
+    // Không truyền page => trả nguyên danh sách như trước (client cũ), có page => phân trang
+    private Pageable inboxPageable(Integer page, Integer size) {
+        if (page == null) {
+            return Pageable.unpaged();
+        }
+        int pageIndex = page > 0 ? page - 1 : 0;
+        int pageSize = (size != null && size > 0) ? Math.min(size, 100) : 10;
+        return PageRequest.of(pageIndex, pageSize);
+    }
+
+    private Object toInboxResult(Page<LeaveRequestInboxView> pageData, Integer page) {
+        List<LeaveRequestInboxView> rows = pageData.getContent();
+
+        // Gom daysOff của cả trang bằng 1 query
+        Map<Long, List<LocalDate>> daysOffById = new HashMap<>();
+        List<Long> ids = rows.stream().map(LeaveRequestInboxView::getId).toList();
+        if (!ids.isEmpty()) {
+            for (LeaveDayView day : leaveRequestRepository.findDaysOffByLeaveRequestIds(ids)) {
+                daysOffById.computeIfAbsent(day.getLeaveRequestId(), k -> new ArrayList<>()).add(day.getDay());
+            }
+        }
 
-        return ApiResponse.success(data, "Các đơn bạn đã gửi và chưa được duyệt");
+        List<LeaveRequestResponse> items = rows.stream()
+                .map(row -> toResponse(row, daysOffById.getOrDefault(row.getId(), new ArrayList<>())))
+                .toList();
+
+        if (page == null) {
+            return items;
+        }
+        return new PageResult<>(
+                items,
+                pageData.getTotalPages(),
+                (int) pageData.getTotalElements(),
+                pageData.getNumber() + 1
+        );
     }
 
 
@@ -455,6 +453,7 @@ public class LeaveRequestService {
 
 
     // Duyệt đơn (approve: true=duyệt, false=từ chối)
+    @Transactional
     public ApiResponse<LeaveRequestResponse> approveOrReject(
             HttpServletRequest request,
             Long requestId,
@@ -522,6 +521,7 @@ public class LeaveRequestService {
             // Từ chối -> giữ nguyên như cũ: set REJECTED + gửi email từ chối
             entity.setStatus(LeaveStatus.REJECTED);
             leaveRequestRepository.save(entity);
+            leaveDayService.release(entity);
 
             try {
                 Account sender = entity.getSender();
@@ -543,6 +543,7 @@ public class LeaveRequestService {
     }
 
 
+    @Transactional
     public ApiResponse<LeaveRequestResponse> hrConfirm(HttpServletRequest request, Long requestId) {
         Account current = authService.getCurrentAccount(request);
         if (current.getRole() != Role.HR) {
@@ -561,6 +562,8 @@ public class LeaveRequestService {
 
         entity.setStatus(LeaveStatus.APPROVED);
         leaveRequestRepository.save(entity);
+        leaveLoadService.onApproved(entity);
+        leaveBalanceService.onApproved(entity);
 
         // Gửi email thông báo duyệt (giữ nguyên template đã có)
         try {
@@ -612,6 +615,45 @@ public class LeaveRequestService {
         return dto;
     }
 
+    private LeaveRequestResponse toResponse(LeaveRequestInboxView row, List<LocalDate> daysOff) {
+        LeaveRequestResponse dto = new LeaveRequestResponse();
+        dto.setId(row.getId());
+        dto.setReason(row.getReason());
+        dto.setStartDate(row.getStartDate());
+        dto.setEndDate(row.getEndDate());
+        dto.setStatus(row.getStatus().name());
+        dto.setSender(toAccountResponse(row.getSenderId(), row.getSenderUsername(), row.getSenderRole(),
+                row.getSenderFirstName(), row.getSenderLastName(), row.getSenderEmail(),
+                row.getSenderPhone(), row.getSenderDepartmentName()));
+        dto.setReceiver(toAccountResponse(row.getReceiverId(), row.getReceiverUsername(), row.getReceiverRole(),
+                row.getReceiverFirstName(), row.getReceiverLastName(), row.getReceiverEmail(),
+                row.getReceiverPhone(), row.getReceiverDepartmentName()));
+        dto.setCreatedAt(row.getCreatedAt());
+        dto.setUpdatedAt(row.getUpdatedAt());
+        dto.setSignature(row.getSignature());
+        dto.setLeaveType(row.getLeaveType());
+        dto.setStartTime(row.getStartTime());
+        dto.setEndTime(row.getEndTime());
+        dto.setDaysOff(daysOff);
+        return dto;
+    }
+
+    private AccountResponse toAccountResponse(Long id, String username, Role role, String firstName,
+                                              String lastName, String email, String phone, String departmentName) {
+        if (id == null) return null;
+        AccountResponse dto = new AccountResponse();
+        dto.setId(id);
+        dto.setUsername(username);
+        dto.setRole(role.name());
+        if (firstName != null || lastName != null) {
+            dto.setFullName((firstName + " " + lastName).trim());
+            dto.setEmail(email);
+            dto.setPhone(phone);
+            dto.setDepartmentName(departmentName);
+        }
+        return dto;
+    }
+
     private AccountResponse toAccountResponse(Account account) {
         if (account == null) return null;
         AccountResponse dto = new AccountResponse();
@@ -624,6 +666,7 @@ public class LeaveRequestService {
             dto.setFullName(fullName);
             dto.setEmail(emp.getEmail());
             dto.setPhone(emp.getPhone());
+            dto.setDepartmentName(emp.getDepartment() != null ? emp.getDepartment().getName() : null);
         }
         return dto;
     }
@@ -704,95 +747,24 @@ public class LeaveRequestService {
 
 
 
-    public byte[] exportDocumentToWord(Map<String, String> data, String signatureBase64) throws IOException, InvalidFormatException {
-        try (
-                InputStream template = getClass().getClassLoader().getResourceAsStream("templates/donxinnghiphep.docx");
-                XWPFDocument document = new XWPFDocument(template)
-        ) {
-            // Replace placeholder trong các paragraph ngoài bảng
-            for (XWPFParagraph p : document.getParagraphs()) {
-                for (XWPFRun run : p.getRuns()) {
-                    String runText = run.getText(0);
-                    if (runText != null) {
-                        // Nếu gặp placeholder ký tên thì chèn ảnh
-                        if (runText.contains("{ký tên}")) {
-                            run.setText("", 0); // Xóa text
-                            if (signatureBase64 != null && !signatureBase64.isEmpty()) {
-                                String imgBase64 = signatureBase64.trim();
-                                System.out.println("SIGNATURE RECEIVED: " + signatureBase64);
-                                if (imgBase64.contains(",")) {
-                                    imgBase64 = imgBase64.substring(imgBase64.indexOf(",") + 1);
-                                }
-                                System.out.println("SIGNATURE FOR DECODE: " + imgBase64);
-                                byte[] imgBytes = java.util.Base64.getDecoder().decode(imgBase64);
-                                run.addPicture(
-                                        new java.io.ByteArrayInputStream(imgBytes),
-                                        XWPFDocument.PICTURE_TYPE_PNG,
-                                        "signature.png",
-                                        Units.toEMU(100), // width (px)
-                                        Units.toEMU(40)   // height (px)
-                                );
-                            }
-                        } else {
-                            // Thay thế các placeholder khác
-                            for (String key : data.keySet()) {
-                                String placeholder = "{" + key + "}";
-                                if (runText.contains(placeholder)) {
-                                    runText = runText.replace(placeholder, data.get(key));
-                                }
-                            }
-                            run.setText(runText, 0);
-                        }
-                    }
-                }
-            }
-            // Replace trong các bảng (nếu có)
-            for (XWPFTable table : document.getTables()) {
-                for (XWPFTableRow row : table.getRows()) {
-                    for (XWPFTableCell cell : row.getTableCells()) {
-                        for (XWPFParagraph p : cell.getParagraphs()) {
-                            for (XWPFRun run : p.getRuns()) {
-                                String runText = run.getText(0);
-                                if (runText != null) {
-                                    if (runText.contains("{ký tên}")) {
-                                        run.setText("", 0);
-                                        if (signatureBase64 != null && !signatureBase64.isEmpty()) {
-                                            String imgBase64 = signatureBase64.trim();
-                                            System.out.println("SIGNATURE RECEIVED: " + signatureBase64);
-                                            if (imgBase64.contains(",")) {
-                                                imgBase64 = imgBase64.substring(imgBase64.indexOf(",") + 1);
-                                            }
-                                            System.out.println("SIGNATURE FOR DECODE: " + imgBase64);
-                                            byte[] imgBytes = java.util.Base64.getDecoder().decode(imgBase64);
-
-                                            run.addPicture(
-                                                    new ByteArrayInputStream(imgBytes),
-                                                    XWPFDocument.PICTURE_TYPE_PNG,
-                                                    "signature.png",
-                                                    Units.toEMU(100),
-                                                    Units.toEMU(40)
-                                            );
-                                        }
-                                    } else {
-                                        for (String key : data.keySet()) {
-                                            String placeholder = "{" + key + "}";
-                                            if (runText.contains(placeholder)) {
-                                                runText = runText.replace(placeholder, data.get(key));
-                                            }
-                                        }
-                                        run.setText(runText, 0);
-                                    }
-                                }
-                            }
-                        }
-                    }
-                }
-            }
-            try (ByteArrayOutputStream out = new ByteArrayOutputStream()) {
-                document.write(out);
-                return out.toByteArray();
-            }
+    // Chữ ký của đơn chỉ đổi khi duyệt (updatedAt đổi theo) -> id + updatedAt là key cache ảnh
+    public static SignatureImageCache.Key signatureKey(LeaveRequest leaveRequest) {
+        return new SignatureImageCache.Key("leave.signature", leaveRequest.getId(), leaveRequest.getUpdatedAt());
+    }
+
+    public byte[] exportDocumentToWord(Map<String, String> data, SignatureImageCache.Key signatureKey,
+                                       String signatureBase64) throws IOException, InvalidFormatException {
+        Map<String, String> values = DocxTemplateEngine.tokens(data, "{", "}");
+        Map<String, DocxTemplateEngine.Image> images = new HashMap<>();
+
+        // Placeholder ký tên: chèn ảnh chữ ký (đã decode sẵn trong cache), không có chữ ký thì xóa placeholder
+        DocxTemplateEngine.Image signature = signatureImageCache.image(signatureKey, signatureBase64, 100, 40, "signature.png");
+        if (signature != null) {
+            images.put(SIGN_TOKEN, signature);
+        } else {
+            values.put(SIGN_TOKEN, "");
         }
+        return docxTemplateEngine.render(LEAVE_TEMPLATE, values, images);
     }
 
     // Lấy chi tiết đơn nghỉ phép
@@ -826,20 +798,8 @@ public class LeaveRequestService {
         LocalDate start = ym.atDay(1);
         LocalDate end = ym.atEndOfMonth();
 
-        List<LeaveRequest> approvedLeaves = leaveRequestRepository.findApprovedInMonth(departmentId, start, end);
-
-        Map<LocalDate, Integer> busyDayMap = new LinkedHashMap<>();
-        for (LocalDate d = start; !d.isAfter(end); d = d.plusDays(1)) {
-            busyDayMap.put(d, 0);
-        }
-
-        for (LeaveRequest lr : approvedLeaves) {
-            LocalDate from = lr.getStartDate().isBefore(start) ? start : lr.getStartDate();
-            LocalDate to = lr.getEndDate().isAfter(end) ? end : lr.getEndDate();
-            for (LocalDate d = from; !d.isAfter(to); d = d.plusDays(1)) {
-                busyDayMap.computeIfPresent(d, (k, v) -> v + 1);
-            }
-        }
+        // Đọc bộ đếm (phòng ban, ngày) đã được cập nhật sẵn khi duyệt/hủy đơn
+        Map<LocalDate, Integer> busyDayMap = leaveLoadService.countByDay(departmentId, start, end);
 
         List<Map<String, Object>> busyDays = busyDayMap.entrySet().stream()
                 .map(e -> {
@@ -854,41 +814,38 @@ public class LeaveRequestService {
 
     public ApiResponse<?> getLeaveBalance(HttpServletRequest request, String month) {
         Account user = authService.getCurrentAccount(request);
-        int year = YearMonth.parse(month).getYear();
-        int monthValue = YearMonth.parse(month).getMonthValue();
-
-        // Lấy tất cả đơn nghỉ phép APPROVED của user
-        List<LeaveRequest> leaves = leaveRequestRepository.findBySenderIdAndStatus(user.getId(), LeaveStatus.APPROVED);
-
-        // Tổng ngày phép đã nghỉ trong năm & tháng (cộng từng ngày)
-        int daysUsedYear = 0;
-        int daysUsedMonth = 0;
-        for (LeaveRequest leave : leaves) {
-            LocalDate from = leave.getStartDate();
-            LocalDate to = leave.getEndDate();
-            for (LocalDate date = from; !date.isAfter(to); date = date.plusDays(1)) {
-                if (date.getYear() == year) daysUsedYear++;
-                if (date.getYear() == year && date.getMonthValue() == monthValue) daysUsedMonth++;
-            }
-        }
 
-        int limitPerYear = 12;
-        int limitPerMonth = 1;
-        int leaveLeftInYear = limitPerYear - daysUsedYear;
-        int leaveLeftInMonth = limitPerMonth - daysUsedMonth;
-
-        Map<String, Object> data = new HashMap<>();
-        data.put("leaveUsedInYear", daysUsedYear);
-        data.put("leaveLeftInYear", leaveLeftInYear);
-        data.put("leaveUsedInMonth", daysUsedMonth);
-        data.put("leaveLeftInMonth", leaveLeftInMonth);
-        data.put("limitPerYear", limitPerYear);
-        data.put("limitPerMonth", limitPerMonth);
+        // Đọc sổ phép (account, năm, tháng) đã cộng dồn theo phút khi đơn được duyệt
+        Map<String, Object> data = leaveBalanceService.getBalance(user.getId(), YearMonth.parse(month));
 
         return ApiResponse.success(data, "Leave balance calculated successfully");
     }
 
+    // Sổ phép cả công ty (HR / ADMIN / MANAGER), key = accountId
+    public ApiResponse<?> getCompanyLeaveBalances(HttpServletRequest request, String month) {
+        Account user = authService.getCurrentAccount(request);
+        Role role = user.getRole();
+        if (role != Role.HR && role != Role.ADMIN && role != Role.MANAGER) {
+            return ApiResponse.unauthorized();
+        }
+        return ApiResponse.success(
+                leaveBalanceService.getCompanyBalances(YearMonth.parse(month)),
+                "Leave balances of company"
+        );
+    }
+
+    // Tính lại toàn bộ sổ phép từ các đơn đã duyệt (backfill / đối soát)
+    public ApiResponse<?> recomputeLeaveBalances(HttpServletRequest request) {
+        Account user = authService.getCurrentAccount(request);
+        if (user.getRole() != Role.ADMIN && user.getRole() != Role.HR) {
+            return ApiResponse.unauthorized();
+        }
+        int rows = leaveBalanceService.rebuild();
+        return ApiResponse.success(rows, "Đã tính lại sổ phép");
+    }
+
     // HR từ chối xác nhận đơn (đơn đã được người duyệt ký và đang chờ HR)
+    @Transactional
     public ApiResponse<LeaveRequestResponse> hrReject(
             HttpServletRequest request,
             Long requestId,
@@ -917,6 +874,7 @@ public class LeaveRequestService {
         // Chuyển trạng thái -> REJECTED
         entity.setStatus(LeaveStatus.REJECTED);
         leaveRequestRepository.save(entity);
+        leaveDayService.release(entity);
 
         // Gửi email thông báo cho người làm đơn & người duyệt
         try {
@@ -1004,7 +962,7 @@ public class LeaveRequestService {
                 : (approver != null ? approver.getUsername() : "Người duyệt");
         String approverEmail = (approverEmp != null) ? approverEmp.getEmail() : null;
 
-        Account hrAcc = accountRepository.findByRole(Role.HR).stream().findFirst().orElse(null);
+        Account hrAcc = roleDirectory.find(Role.HR).orElse(null);
         Employee hrEmp = hrAcc != null ? hrAcc.getEmployee() : null;
         String hrEmail = hrEmp != null ? hrEmp.getEmail() : null;
         String hrName = hrEmp != null
@@ -1062,6 +1020,7 @@ public class LeaveRequestService {
 
 
     //hàm hủy đơn nghỉ phép
+    @Transactional
     public ApiResponse<LeaveRequestResponse> hrCancel(HttpServletRequest request, Long requestId) {
         Account current = authService.getCurrentAccount(request);
         if (current.getRole() != Role.HR) {
@@ -1079,8 +1038,14 @@ public class LeaveRequestService {
         }
 
         // Cập nhật trạng thái
+        boolean wasApproved = entity.getStatus() == LeaveStatus.APPROVED;
         entity.setStatus(LeaveStatus.CANCELLED);
         leaveRequestRepository.save(entity);
+        leaveDayService.release(entity);
+        if (wasApproved) {
+            leaveLoadService.onApprovalRevoked(entity);
+            leaveBalanceService.onApprovalRevoked(entity);
+        }
 
         // Gửi email xác nhận hủy tới người nộp đơn (giữ logic cũ)
         try {
@@ -1155,7 +1120,7 @@ public class LeaveRequestService {
         if (list.isEmpty()) return;
 
         // Lấy 1 HR đại diện
-        Account hrAcc = accountRepository.findByRole(Role.HR).stream().findFirst().orElse(null);
+        Account hrAcc = roleDirectory.find(Role.HR).orElse(null);
         Employee hrEmp = hrAcc != null ? hrAcc.getEmployee() : null;
         String hrName = hrEmp != null ? fullName(hrEmp) : "Phòng Nhân sự";
         String hrEmail = hrEmp != null ? hrEmp.getEmail() : null;
@@ -1234,28 +1199,6 @@ public class LeaveRequestService {
     private static boolean notBlank(String s) { return s != null && !s.isBlank(); }
 
 
-    //@Scheduled(cron = "0 5 0 1 * ?") // 00:05 sáng ngày 1 hàng tháng
-    @Scheduled(cron = "0 */1 * * * ?") // mỗi phút
-    @Transactional
-    public void expireUnresolvedRequestsForLastMonth() {
-        YearMonth lastMonth = YearMonth.now().minusMonths(1);
-
-        LocalDateTime start = lastMonth.atDay(1).atStartOfDay();
-        LocalDateTime end   = lastMonth.plusMonths(1).atDay(1).atStartOfDay(); // exclusive
-
-        List<LeaveRequest> targets = leaveRequestRepository.findForExpiry(
-                start, end,
-                List.of(LeaveStatus.PENDING, LeaveStatus.PENDING_HR, LeaveStatus.WAITING_TO_CANCEL)
-        );
-
-        if (!targets.isEmpty()) {
-            for (LeaveRequest lr : targets) {
-                lr.setStatus(LeaveStatus.EXPIRED);
-            }
-            leaveRequestRepository.saveAll(targets);
-        }
-    }
-
     public ApiResponse<Long> getMyExpiredCountThisMonth(HttpServletRequest request, String month) {
         Account current = authService.getCurrentAccount(request);
 
@@ -0,0 +1,139 @@
+package server.services;
+
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import server.dtos.NotificationKeyView;
+import server.dtos.RecipientCountView;
+import server.repositories.JobRunRepository;
+import server.repositories.NotificationRepository;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Giữ bảng notifications gọn cho feed:
+ * - đã đọc quá {@code read-days} ngày: chuyển sang notifications_archive
+ * - chưa đọc quá {@code unread-days} ngày: xóa hẳn
+ *
+ * Duyệt theo khóa (createdAt, id), mỗi batch chạy trong 1 transaction ngắn nên không giữ lock lâu;
+ * batch xóa notification chưa đọc trừ bộ đếm chưa đọc của người nhận ngay trong transaction đó.
+ * Số dòng chuyển/xóa mỗi ngày được ghi vào job_run (job notification-archive / notification-purge),
+ * mỗi ngày chỉ chạy xong 1 lần kể cả khi nhiều node. Mỗi batch gia hạn lease của lần chạy;
+ * node chết giữa chừng thì quá {@code lease-minutes} node khác (hoặc lần chạy sau) giành lại và làm tiếp
+ * phần còn lại (các batch đã xong không còn trong bảng, copy archive dùng INSERT IGNORE).
+ */
+@Service
+@RequiredArgsConstructor
+public class NotificationRetentionService {
+    public static final String ARCHIVE_JOB = "notification-archive";
+    public static final String PURGE_JOB = "notification-purge";
+
+    private static final Logger log = LoggerFactory.getLogger(NotificationRetentionService.class);
+    private static final LocalDateTime MIN_CREATED_AT = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+    private final NotificationRepository notificationRepository;
+    private final JobRunRepository jobRunRepository;
+    private final NotificationUnreadService notificationUnreadService;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${app.notification.retention.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.notification.retention.read-days:90}")
+    private int readDays;
+
+    @Value("${app.notification.retention.unread-days:365}")
+    private int unreadDays;
+
+    @Value("${app.notification.retention.batch-size:1000}")
+    private int batchSize;
+
+    @Value("${app.notification.retention.lease-minutes:10}")
+    private long leaseMinutes;
+
+    /**
+     * Chạy dọn cho hôm nay. Trả về số dòng đã chuyển archive / đã xóa (0 nếu đã chạy trong ngày hoặc bị tắt).
+     */
+    public Map<String, Integer> runDaily() {
+        if (!enabled) {
+            return Map.of(ARCHIVE_JOB, 0, PURGE_JOB, 0);
+        }
+        LocalDateTime now = LocalDateTime.now();
+        String period = LocalDate.now().toString();
+
+        int archived = runOnce(ARCHIVE_JOB, period, now,
+                ids -> {
+                    notificationRepository.copyToArchive(ids, now);
+                    return notificationRepository.deleteByIds(ids);
+                },
+                true, now.minusDays(readDays));
+        int purged = runOnce(PURGE_JOB, period, now,
+                this::purgeUnread,
+                false, now.minusDays(unreadDays));
+
+        return Map.of(ARCHIVE_JOB, archived, PURGE_JOB, purged);
+    }
+
+    private int runOnce(String jobName, String period, LocalDateTime now,
+                        Function<List<Long>, Integer> batchAction, boolean read, LocalDateTime cutoff) {
+        Boolean claimed = transactionTemplate.execute(status ->
+                !jobRunRepository.existsByJobNameAndPeriodAndDurationMsIsNotNull(jobName, period)
+                        && jobRunRepository.claimOrResume(jobName, period, LocalDateTime.now(),
+                        Duration.ofMinutes(leaseMinutes)));
+        if (!Boolean.TRUE.equals(claimed)) {
+            return 0;
+        }
+
+        long startedAt = System.currentTimeMillis();
+        int total = 0;
+        LocalDateTime lastCreatedAt = MIN_CREATED_AT;
+        Long lastId = 0L;
+        while (true) {
+            List<NotificationKeyView> keys = notificationRepository.findRetentionBatch(
+                    read, cutoff, lastCreatedAt, lastId, PageRequest.of(0, Math.max(1, batchSize)));
+            if (keys.isEmpty()) {
+                break;
+            }
+            List<Long> ids = keys.stream().map(NotificationKeyView::getId).toList();
+            Integer affected = transactionTemplate.execute(status -> {
+                int rows = batchAction.apply(ids);
+                jobRunRepository.renew(jobName, period, LocalDateTime.now());
+                return rows;
+            });
+            total += affected != null ? affected : 0;
+
+            NotificationKeyView last = keys.get(keys.size() - 1);
+            lastCreatedAt = last.getCreatedAt();
+            lastId = last.getId();
+        }
+
+        int affectedTotal = total;
+        long durationMs = System.currentTimeMillis() - startedAt;
+        transactionTemplate.executeWithoutResult(status ->
+                jobRunRepository.complete(jobName, period, affectedTotal, durationMs, LocalDateTime.now()));
+        log.info("[NotificationRetention] {} {}: {} dòng (cutoff {}), {} ms",
+                jobName, period, total, cutoff, durationMs);
+        return total;
+    }
+
+    // Khóa + đếm các dòng còn chưa đọc theo người nhận, xóa, rồi trừ đúng số đó khỏi bộ đếm (cùng transaction)
+    private int purgeUnread(List<Long> ids) {
+        Map<Long, Long> removed = new HashMap<>();
+        for (RecipientCountView row : notificationRepository.lockUnreadCountsByRecipient(ids)) {
+            removed.put(row.getRecipientId(), row.getTotal());
+        }
+        int deleted = notificationRepository.deleteByIds(ids);
+        notificationUnreadService.onPurged(removed);
+        return deleted;
+    }
+}
@@ -1,31 +1,58 @@
 package server.services;
 
 import lombok.RequiredArgsConstructor;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import server.dtos.NotificationFeedResponse;
 import server.dtos.NotificationResponse;
 import server.models.*;
 import server.models.enums.*;
 import server.repositories.*;
+import server.utils.NotificationPusher;
+import server.utils.RoleDirectory;
 
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
 
 @Service
 @RequiredArgsConstructor
 public class NotificationService {
+    private static final Logger log = LoggerFactory.getLogger(NotificationService.class);
 
     private final NotificationRepository notificationRepository;
     private final AccountRepository accountRepository;
+    private final RoleDirectory roleDirectory;
     private final DocumentRepository documentRepository;
-    private final SimpMessagingTemplate messagingTemplate;
+    private final NotificationPusher notificationPusher;
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final NotificationUnreadService notificationUnreadService;
     private final LeaveRequestRepository leaveRequestRepository;
     private final AttendanceRepository attendanceRepository;
 
+    // Số dòng mỗi lần gửi batch INSERT (bật rewriteBatchedStatements trên URL MySQL để gộp thành multi-row insert)
+    @Value("${app.notification.batch-size:500}")
+    private int batchSize;
+
+    private static final int MAX_FEED_SIZE = 100;
+
+    private static final String INSERT_SQL = """
+            INSERT INTO notifications (title, content, recipient_id, created_by_id, `read`, created_at, type, reference_id)
+            VALUES (:title, :content, :recipientId, :createdById, false, :createdAt, :type, :referenceId)
+            """;
+
     /* ===================== UTIL: BUILD JSON CONTENT ===================== */
 
     private String toJson(String key, Map<String, Object> params) {
@@ -78,12 +105,97 @@ public class NotificationService {
     /* ===================== CORE HELPERS ===================== */
 
     private void notifyMany(List<Account> recipients, Account sender, String title, String content, NotificationType type, Long referenceId) {
+        saveAndSendAll(recipients, sender, title, content, type, referenceId);
+    }
+
+    // 1 dòng notification chờ ghi
+    private record Draft(Account recipient, Account sender, String title, String content,
+                         NotificationType type, Long referenceId) {
+    }
+
+    /**
+     * Ghi cùng 1 notification cho nhiều người nhận bằng JDBC batch (1 transaction của caller),
+     * WebSocket push xếp vào outbox cùng transaction, gửi sau khi commit.
+     * Người nhận null/trùng bị bỏ qua.
+     */
+    private List<NotificationResponse> saveAndSendAll(
+            Collection<Account> recipients,
+            Account sender,
+            String title,
+            String content,
+            NotificationType type,
+            Long referenceId
+    ) {
+        Map<Long, Account> unique = new LinkedHashMap<>();
         for (Account acc : recipients) {
-            saveAndSendNotification(acc, sender, title, content, type, referenceId);
+            if (acc != null && acc.getId() != null) {
+                unique.putIfAbsent(acc.getId(), acc);
+            }
         }
+        List<Draft> drafts = new ArrayList<>(unique.size());
+        for (Account acc : unique.values()) {
+            drafts.add(new Draft(acc, sender, title, content, type, referenceId));
+        }
+        return saveAndSendDrafts(drafts);
+    }
+
+    // Mỗi draft 1 dòng (nội dung/referenceId có thể khác nhau), INSERT theo chunk batch-size
+    private List<NotificationResponse> saveAndSendDrafts(List<Draft> drafts) {
+        if (drafts.isEmpty()) {
+            return List.of();
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        List<NotificationResponse> responses = new ArrayList<>(drafts.size());
+        int size = Math.max(1, batchSize);
+
+        for (int from = 0; from < drafts.size(); from += size) {
+            List<Draft> chunk = drafts.subList(from, Math.min(from + size, drafts.size()));
+            SqlParameterSource[] params = new SqlParameterSource[chunk.size()];
+            for (int i = 0; i < chunk.size(); i++) {
+                Draft d = chunk.get(i);
+                params[i] = new MapSqlParameterSource()
+                        .addValue("title", d.title())
+                        .addValue("content", d.content())
+                        .addValue("recipientId", d.recipient().getId())
+                        .addValue("createdById", d.sender() != null ? d.sender().getId() : null)
+                        .addValue("createdAt", Timestamp.valueOf(now))
+                        .addValue("type", d.type() != null ? d.type().name() : null)
+                        .addValue("referenceId", d.referenceId());
+            }
+            KeyHolder keys = new GeneratedKeyHolder();
+            jdbcTemplate.batchUpdate(INSERT_SQL, params, keys, new String[]{"id"});
+
+            List<Map<String, Object>> keyList = keys.getKeyList();
+            for (int i = 0; i < chunk.size(); i++) {
+                Draft d = chunk.get(i);
+                Notification noti = Notification.builder()
+                        .id(i < keyList.size() ? toLong(keyList.get(i).values().stream().findFirst().orElse(null)) : null)
+                        .title(d.title())
+                        .content(d.content())
+                        .recipient(d.recipient())
+                        .createdBy(d.sender())
+                        .read(false)
+                        .createdAt(now)
+                        .type(d.type())
+                        .referenceId(d.referenceId())
+                        .build();
+                // Map ngay trên thread hiện tại (còn session JPA cho employee của sender)
+                responses.add(mapToResponse(noti));
+            }
+        }
+
+        // Xếp notification vào outbox trước, số chưa đọc sau: dispatcher gửi theo thứ tự nên badge không nhảy trước notification
+        notificationPusher.pushAfterCommit(responses);
+        notificationUnreadService.onCreated(drafts.stream().map(Draft::recipient).toList());
+        return responses;
+    }
+
+    private static Long toLong(Object key) {
+        return key instanceof Number number ? number.longValue() : null;
     }
 
-    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    @Transactional
     protected NotificationResponse saveAndSendNotification(
             Account recipient,
             Account sender,
@@ -92,6 +204,11 @@ public class NotificationService {
             NotificationType type,
             Long referenceId
     ) {
+        // Thiếu người nhận: bỏ qua notification, không làm hỏng nghiệp vụ của caller (chạy chung transaction)
+        if (recipient == null || recipient.getId() == null) {
+            log.warn("[Notification] Bỏ qua '{}' ({} #{}): không có người nhận", title, type, referenceId);
+            return null;
+        }
         Notification noti = Notification.builder()
                 .title(title)
                 .content(content) // <-- JSON { key, params }
@@ -105,18 +222,89 @@ public class NotificationService {
 
         Notification saved = notificationRepository.save(noti);
 
-        try {
-            messagingTemplate.convertAndSend(
-                    "/topic/notifications/" + recipient.getUsername(),
-                    mapToResponse(saved)
-            );
-        } catch (Exception ignore) {}
-
-        return mapToResponse(saved);
+        NotificationResponse response = mapToResponse(saved);
+        notificationPusher.pushAfterCommit(response);
+        notificationUnreadService.onCreated(List.of(recipient));
+        return response;
     }
 
     /* ===================== PUBLIC APIs ===================== */
 
+    /**
+     * Nhắc check-out cho nhiều bản ghi chấm công (job 17h, 00:05, ngày 8): 1 batch INSERT cho tất cả,
+     * push sau commit. Bản ghi cần được load kèm account.
+     */
+    @Transactional
+    public List<NotificationResponse> notifyAttendanceReminders(List<Attendance> records) {
+        LocalDate today = LocalDate.now();
+        List<Draft> drafts = new ArrayList<>(records.size());
+        for (Attendance att : records) {
+            if (att.getAccount() != null) {
+                drafts.add(attendanceReminder(att, today));
+            }
+        }
+        return saveAndSendDrafts(drafts);
+    }
+
+    /**
+     * Báo cho người gửi các đơn nghỉ phép vừa bị hết hạn (job đầu tháng): 1 batch INSERT cho cả kỳ,
+     * push sau commit. Đơn cần được load kèm sender / receiver.
+     */
+    @Transactional
+    public List<NotificationResponse> notifyLeaveRequestsExpired(List<LeaveRequest> requests) {
+        List<Draft> drafts = new ArrayList<>(requests.size());
+        for (LeaveRequest request : requests) {
+            if (request.getSender() == null) {
+                continue;
+            }
+            String content = toJson("leave.result", Map.of(
+                    "action", "expired",
+                    "approver", getAccountDisplayName(request.getReceiver())
+            ));
+            drafts.add(new Draft(request.getSender(), request.getReceiver(), "leave-request-result", content,
+                    NotificationType.LEAVE_REQUEST, request.getId()));
+        }
+        return saveAndSendDrafts(drafts);
+    }
+
+    // Nội dung nhắc check-out theo ngày check-in so với hôm nay
+    private Draft attendanceReminder(Attendance att, LocalDate today) {
+        LocalDate checkInDate = att.getCheckInTime() != null ? att.getCheckInTime().toLocalDate() : today;
+
+        LocalDate yesterday = today.minusDays(1);
+        LocalDate firstDayPrevMonth = today.minusMonths(1).withDayOfMonth(1);
+        LocalDate lastDayPrevMonth = today.minusMonths(1).withDayOfMonth(today.minusMonths(1).lengthOfMonth());
+
+        String title;
+        String content;
+        if (!checkInDate.isBefore(firstDayPrevMonth) && !checkInDate.isAfter(lastDayPrevMonth)) {
+            title = "reminder-missing-check-out-last-month";
+            content = toJson("attendance.missing.checkout.lastMonth", Map.of(
+                    "date", checkInDate.toString()
+            ));
+        } else if (checkInDate.isEqual(yesterday)) {
+            title = "reminder-missing-check-out-yesterday";
+            content = toJson("attendance.missing.checkout.yesterday", Map.of(
+                    "date", checkInDate.toString()
+            ));
+        } else if (checkInDate.isEqual(today)) {
+            title = "reminder-missing-check-out-today";
+            content = toJson("attendance.missing.checkout.today", Map.of(
+                    "date", checkInDate.toString()
+            ));
+        } else {
+            title = "reminder-missing-check-out";
+            content = toJson("attendance.missing.checkout.generic", Map.of(
+                    "date", checkInDate.toString()
+            ));
+        }
+        return new Draft(att.getAccount(), null, title, content, NotificationType.ATTENDANCE, att.getId());
+    }
+
+    /**
+     * Chạy trong transaction của nghiệp vụ gọi nó: dữ liệu thiếu (không tìm thấy bản ghi, chưa gán người nhận...)
+     * chỉ log và bỏ qua notification, trả về null, không ném lỗi làm rollback thay đổi nghiệp vụ.
+     */
     public NotificationResponse createNotification(NotificationType type, Long referenceId, boolean isResult) {
 
         Account recipient = null;
@@ -126,8 +314,8 @@ public class NotificationService {
 
         switch (type) {
             case PROJECT -> {
-                Document doc = documentRepository.findById(referenceId)
-                        .orElseThrow(() -> new IllegalArgumentException("Document not found"));
+                Document doc = documentRepository.findById(referenceId).orElse(null);
+                if (doc == null) return skip(type, referenceId, "document not found");
 
                 Project project = doc.getProject();
                 if (project == null) return null;
@@ -146,8 +334,8 @@ public class NotificationService {
             }
 
             case DOCUMENT -> {
-                Document doc = documentRepository.findById(referenceId)
-                        .orElseThrow(() -> new IllegalArgumentException("Document not found"));
+                Document doc = documentRepository.findById(referenceId).orElse(null);
+                if (doc == null) return skip(type, referenceId, "document not found");
 
                 String docTitle = doc.getTitle() != null ? doc.getTitle() : "";
 
@@ -199,9 +387,7 @@ public class NotificationService {
                     }
                     return null;
                 } else if (!isResult && doc.getType() == DocumentType.ADMINISTRATIVE) {
-                    if (doc.getReceiver() == null)
-                        throw new IllegalArgumentException("Document has no receiver assigned");
-
+                    // Thiếu người ký / kế toán thì chỉ bỏ notification của người đó (saveAndSendNotification log lại)
                     saveAndSendNotification(
                             doc.getReceiver(),
                             doc.getCreatedBy(),
@@ -211,9 +397,6 @@ public class NotificationService {
                             referenceId
                     );
 
-                    if (doc.getAccountant() == null)
-                        throw new IllegalArgumentException("Document has no accountant assigned");
-
                     saveAndSendNotification(
                             doc.getAccountant(),
                             doc.getCreatedBy(),
@@ -227,7 +410,6 @@ public class NotificationService {
                     return null;
                 } else if (!isResult) {
                     recipient = doc.getReceiver();
-                    if (recipient == null) throw new IllegalArgumentException("Document has no receiver assigned");
                     sender = doc.getCreatedBy();
                     title = "new-document-requires-processing";
                     content = toJson("document.requires-processing", Map.of(
@@ -236,8 +418,8 @@ public class NotificationService {
                 }
             }
             case LEAVE_REQUEST -> {
-                LeaveRequest leaveRequest = leaveRequestRepository.findById(referenceId)
-                        .orElseThrow(() -> new IllegalArgumentException("Leave request not found"));
+                LeaveRequest leaveRequest = leaveRequestRepository.findById(referenceId).orElse(null);
+                if (leaveRequest == null) return skip(type, referenceId, "leave request not found");
 
                 if (isResult) {
                     recipient = leaveRequest.getSender();
@@ -277,38 +459,8 @@ public class NotificationService {
                 if (att == null) return null;
 
                 if (!isResult) {
-                    LocalDate checkInDate = att.getCheckInTime() != null ? att.getCheckInTime().toLocalDate() : LocalDate.now();
-
-                    LocalDate today = LocalDate.now();
-                    LocalDate yesterday = today.minusDays(1);
-                    LocalDate firstDayPrevMonth = today.minusMonths(1).withDayOfMonth(1);
-                    LocalDate lastDayPrevMonth = today.minusMonths(1).withDayOfMonth(today.minusMonths(1).lengthOfMonth());
-
-                    recipient = att.getAccount();
-
-                    if (!checkInDate.isBefore(firstDayPrevMonth) && !checkInDate.isAfter(lastDayPrevMonth)) {
-                        title = "reminder-missing-check-out-last-month";
-                        content = toJson("attendance.missing.checkout.lastMonth", Map.of(
-                                "date", checkInDate.toString()
-                        ));
-                    } else if (checkInDate.isEqual(yesterday)) {
-                        title = "reminder-missing-check-out-yesterday";
-                        content = toJson("attendance.missing.checkout.yesterday", Map.of(
-                                "date", checkInDate.toString()
-                        ));
-                    } else if (checkInDate.isEqual(today)) {
-                        title = "reminder-missing-check-out-today";
-                        content = toJson("attendance.missing.checkout.today", Map.of(
-                                "date", checkInDate.toString()
-                        ));
-                    } else {
-                        title = "reminder-missing-check-out";
-                        content = toJson("attendance.missing.checkout.generic", Map.of(
-                                "date", checkInDate.toString()
-                        ));
-                    }
-
-                    saveAndSendNotification(recipient, sender, title, content, type, referenceId);
+                    Draft draft = attendanceReminder(att, LocalDate.now());
+                    saveAndSendNotification(draft.recipient(), draft.sender(), draft.title(), draft.content(), type, referenceId);
                     return null;
                 } else {
                     recipient = att.getAccount();
@@ -329,16 +481,19 @@ public class NotificationService {
                     }
                 }
             }
-            default -> throw new IllegalArgumentException("Unsupported notification type");
-        }
-
-        if (recipient == null) {
-            throw new IllegalStateException("Recipient must not be null");
+            default -> {
+                return skip(type, referenceId, "unsupported notification type");
+            }
         }
 
         return saveAndSendNotification(recipient, sender, title, content, type, referenceId);
     }
 
+    private NotificationResponse skip(NotificationType type, Long referenceId, String reason) {
+        log.warn("[Notification] Bỏ qua notification {} #{}: {}", type, referenceId, reason);
+        return null;
+    }
+
     /* ===================== DOCUMENT RELATED HELPERS ===================== */
 
     public void notifyManagerNoteAdded(Document doc, Account manager) {
@@ -444,7 +599,7 @@ public class NotificationService {
     }
 
     private Account findHRAccount() {
-        return accountRepository.findByRole(Role.HR).stream().findFirst().orElse(null);
+        return roleDirectory.find(Role.HR).orElse(null);
     }
 
     /* ===================== QUERY & STATE ===================== */
@@ -454,13 +609,84 @@ public class NotificationService {
         return list.stream().map(this::mapToResponse).toList();
     }
 
+    /**
+     * Feed phân trang keyset theo (createdAt, id) giảm dần.
+     * cursor = nextCursor của trang trước (null = trang đầu), trả kèm số chưa đọc hiện tại.
+     */
+    public NotificationFeedResponse getFeed(String username, String cursor, int size) {
+        Account recipient = accountRepository.findByUsername(username).orElse(null);
+        if (recipient == null) {
+            return new NotificationFeedResponse(List.of(), null, 0);
+        }
+        int limit = Math.min(Math.max(size, 1), MAX_FEED_SIZE);
+        // Lấy dư 1 dòng để biết còn trang sau hay không
+        Pageable window = PageRequest.of(0, limit + 1);
+
+        FeedCursor after = FeedCursor.decode(cursor);
+        List<Notification> rows = after == null
+                ? notificationRepository.findFeed(recipient.getId(), window)
+                : notificationRepository.findFeedAfter(recipient.getId(), after.createdAt(), after.id(), window);
+
+        boolean hasMore = rows.size() > limit;
+        List<Notification> page = hasMore ? rows.subList(0, limit) : rows;
+        String nextCursor = null;
+        if (hasMore) {
+            Notification last = page.get(page.size() - 1);
+            nextCursor = new FeedCursor(last.getCreatedAt(), last.getId()).encode();
+        }
+        return new NotificationFeedResponse(
+                page.stream().map(this::mapToResponse).toList(),
+                nextCursor,
+                notificationUnreadService.count(recipient.getId()));
+    }
+
+    public long getUnreadCount(Account account) {
+        return notificationUnreadService.count(account.getId());
+    }
+
+    @Transactional
     public void markAsRead(Long id) {
         notificationRepository.findById(id).ifPresent(n -> {
-            n.setRead(true);
-            notificationRepository.save(n);
+            // Chỉ giảm bộ đếm khi notification thực sự chuyển sang đã đọc (gọi lại nhiều lần không trừ thêm)
+            if (notificationRepository.markReadIfUnread(id) > 0) {
+                notificationUnreadService.onRead(n.getRecipient());
+            }
         });
     }
 
+    // Sửa lệch bộ đếm chưa đọc (gọi tay)
+    public int rebuildUnreadCounts() {
+        return notificationUnreadService.rebuild();
+    }
+
+    @Transactional
+    public int markAllAsRead(Account account) {
+        int updated = notificationRepository.markAllRead(account.getId());
+        notificationUnreadService.onAllRead(account, updated);
+        return updated;
+    }
+
+    // Cursor mờ cho client: base64url của "createdAt|id"
+    private record FeedCursor(LocalDateTime createdAt, Long id) {
+        String encode() {
+            return Base64.getUrlEncoder().withoutPadding()
+                    .encodeToString((createdAt + "|" + id).getBytes(StandardCharsets.UTF_8));
+        }
+
+        static FeedCursor decode(String cursor) {
+            if (cursor == null || cursor.isBlank()) {
+                return null;
+            }
+            try {
+                String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+                int sep = raw.lastIndexOf('|');
+                return new FeedCursor(LocalDateTime.parse(raw.substring(0, sep)), Long.parseLong(raw.substring(sep + 1)));
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Invalid notification cursor");
+            }
+        }
+    }
+
     private NotificationResponse mapToResponse(Notification n) {
         var dto = new NotificationResponse();
         dto.setId(n.getId());
@@ -492,6 +718,7 @@ public class NotificationService {
 
     /* ===================== CASH ADVANCE NOTIFICATIONS ===================== */
 
+    @Transactional
     public void notifyCashAdvanceCreated(CashAdvanceRequest r, Account creator, List<Account> accountants) {
         if (r == null || creator == null || accountants == null || accountants.isEmpty()) return;
         String title = "new-cash-advance-request";
@@ -566,53 +793,57 @@ public class NotificationService {
         );
     }
 
+    @Transactional
     public void notifyProjectMembersAdded(Project project, List<Employee> added, Account sender) {
         if (project == null || added == null || added.isEmpty()) return;
 
         String projectName = safeProjectName(project);
 
+        List<Account> recipients = new ArrayList<>(added.size());
         for (Employee emp : added) {
             Account acc = (emp != null) ? emp.getAccount() : null;
-            if (acc == null) continue;
-
-            saveAndSendNotification(
-                    acc,
-                    sender,
-                    "added-to-project",
-                    toJson("project.member.added", Map.of(
-                            "projectName", projectName
-                    )),
-                    NotificationType.PROJECT,
-                    project.getId()
-            );
+            if (acc != null) recipients.add(acc);
         }
+
+        saveAndSendAll(
+                recipients,
+                sender,
+                "added-to-project",
+                toJson("project.member.added", Map.of(
+                        "projectName", projectName
+                )),
+                NotificationType.PROJECT,
+                project.getId()
+        );
     }
 
+    @Transactional
     public void notifyProjectMembersRemoved(Project project, List<Employee> removed, Account sender) {
         if (project == null || removed == null || removed.isEmpty()) return;
 
         String projectName = safeProjectName(project);
 
+        List<Account> recipients = new ArrayList<>(removed.size());
         for (Employee emp : removed) {
             Account acc = (emp != null) ? emp.getAccount() : null;
-            if (acc == null) continue;
-
-            saveAndSendNotification(
-                    acc,
-                    sender,
-                    "removed-from-project",
-                    toJson("project.member.removed", Map.of(
-                            "projectName", projectName
-                    )),
-                    NotificationType.PROJECT,
-                    project.getId()
-            );
+            if (acc != null) recipients.add(acc);
         }
+
+        saveAndSendAll(
+                recipients,
+                sender,
+                "removed-from-project",
+                toJson("project.member.removed", Map.of(
+                        "projectName", projectName
+                )),
+                NotificationType.PROJECT,
+                project.getId()
+        );
     }
 
     /* ===================== TASK NOTIFICATIONS ===================== */
 
-    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    @Transactional
     public void notifyTaskAssigned(Task task, Account sender) {
         if (task == null || task.getAssignee() == null) return;
 
@@ -637,7 +868,7 @@ public class NotificationService {
         );
     }
 
-    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    @Transactional
     public void notifyAssigneeOnTaskUpdate(Task task, Account actor) {
         if (task == null || task.getAssignee() == null) return;
         Account recipient = task.getAssignee().getAccount();
@@ -669,7 +900,7 @@ public class NotificationService {
         );
     }
 
-    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    @Transactional
     public void  notifyPmOnTaskUpdate(Task task, Account actor) {
         if (task == null || task.getPhase() == null || task.getPhase().getProject() == null) return;
 
@@ -695,7 +926,7 @@ public class NotificationService {
         );
     }
 
-    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    @Transactional
     public void notifyProjectCompleted(Project project, Account actor) {
         if (project == null) return;
 
@@ -705,10 +936,7 @@ public class NotificationService {
         ));
 
         // Manager
-        Account manager = accountRepository.findByRole(Role.MANAGER)
-                .stream()
-                .findFirst()
-                .orElse(null);
+        Account manager = roleDirectory.find(Role.MANAGER).orElse(null);
 
         // PM
         Account pm = project.getProjectManager();
@@ -745,8 +973,7 @@ public class NotificationService {
                 "documentId", doc.getId()
         ));
 
-        Account manager = accountRepository.findByRole(Role.MANAGER)
-                .stream().findFirst().orElse(null);
+        Account manager = roleDirectory.find(Role.MANAGER).orElse(null);
 
         Account creator = doc.getCreatedBy();
 
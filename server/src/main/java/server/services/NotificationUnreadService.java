@@ -0,0 +1,174 @@
+package server.services;
+
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import server.models.Account;
+import server.models.NotificationUnread;
+import server.repositories.NotificationUnreadRepository;
+import server.utils.NotificationPusher;
+
+import java.util.*;
+
+/**
+ * Bộ đếm notification chưa đọc theo account cho badge trên header.
+ * Bộ đếm được giữ đúng ngay khi ghi: cộng khi tạo, trừ đúng số dòng khi đọc / đọc hết / job dọn xóa notification chưa đọc,
+ * cùng transaction với thay đổi trên bảng notifications. rebuild() chỉ còn là công cụ sửa lệch gọi tay.
+ * Mỗi lần bộ đếm đổi, giá trị mới được xếp vào outbox (cùng transaction, sau notification) để đẩy qua STOMP
+ * tới /topic/notifications/{username}/unread.
+ */
+@Service
+@RequiredArgsConstructor
+public class NotificationUnreadService {
+    private static final Logger log = LoggerFactory.getLogger(NotificationUnreadService.class);
+
+    private static final String SELECT_COUNTS_SQL =
+            "SELECT account_id, unread_count FROM notification_unread WHERE account_id IN (:accountIds)";
+
+    // Giống NotificationUnreadRepository.addUnread, dùng cho JDBC batch
+    private static final String ADD_SQL = """
+            INSERT INTO notification_unread (account_id, unread_count)
+            VALUES (:accountId, GREATEST(:delta, 0))
+            ON DUPLICATE KEY UPDATE unread_count = GREATEST(unread_count + :delta, 0)
+            """;
+
+    private final NotificationUnreadRepository unreadRepository;
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final NotificationPusher notificationPusher;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${app.notification.unread-rebuild.batch-size:500}")
+    private int rebuildBatchSize;
+
+    // Mỗi phần tử là 1 notification mới của người đó (1 người có thể xuất hiện nhiều lần), ghi bằng 1 JDBC batch
+    public void onCreated(Collection<Account> recipients) {
+        Map<Long, String> usernames = usernamesOf(recipients);
+        if (usernames.isEmpty()) {
+            return;
+        }
+        Map<Long, Long> added = new HashMap<>();
+        for (Account acc : recipients) {
+            if (acc != null && acc.getId() != null) {
+                added.merge(acc.getId(), 1L, Long::sum);
+            }
+        }
+        add(added);
+        pushCounts(usernames);
+    }
+
+    /**
+     * Job dọn đã xóa các notification chưa đọc này (account id -> số dòng), gọi trong transaction của batch xóa.
+     * Không push: job chạy ban đêm, lần push kế tiếp gửi lại giá trị tuyệt đối đọc từ DB.
+     */
+    public void onPurged(Map<Long, Long> removedByAccountId) {
+        Map<Long, Long> deltas = new HashMap<>();
+        removedByAccountId.forEach((accountId, removed) -> {
+            if (accountId != null && removed != null && removed > 0) {
+                deltas.put(accountId, -removed);
+            }
+        });
+        add(deltas);
+    }
+
+    public void onRead(Account account) {
+        if (account == null || account.getId() == null) {
+            return;
+        }
+        unreadRepository.addUnread(account.getId(), -1);
+        pushCounts(usernamesOf(List.of(account)));
+    }
+
+    // updated: số dòng UPDATE đọc hết vừa đổi; trừ đúng số đó thay vì đặt về 0 để không mất notification tạo xen giữa
+    public void onAllRead(Account account, int updated) {
+        if (account == null || account.getId() == null) {
+            return;
+        }
+        if (updated > 0) {
+            unreadRepository.addUnread(account.getId(), -updated);
+        }
+        pushCounts(usernamesOf(List.of(account)));
+    }
+
+    public long count(Long accountId) {
+        return unreadRepository.findByAccountId(accountId)
+                .map(NotificationUnread::getUnreadCount)
+                .orElse(0L);
+    }
+
+    /**
+     * Đếm lại từ bảng notifications, sửa lệch do update tay trong DB. Không chạy định kỳ, gọi tay qua API admin.
+     * Duyệt account theo khóa id, mỗi lô 1 transaction ngắn và ghi đè từng dòng (không xóa cả bảng),
+     * nên badge không về 0 giữa chừng và không khóa bảng notifications lâu.
+     */
+    public int rebuild() {
+        int accounts = 0;
+        long afterId = 0L;
+        while (true) {
+            List<Long> ids = unreadRepository.findAccountIdBatch(afterId, Math.max(1, rebuildBatchSize));
+            if (ids.isEmpty()) {
+                break;
+            }
+            transactionTemplate.executeWithoutResult(status -> unreadRepository.upsertUnreadFromNotifications(ids));
+            accounts += ids.size();
+            afterId = ids.get(ids.size() - 1);
+        }
+        log.info("[NotificationUnread] Đã đếm lại chưa đọc cho {} account", accounts);
+        return accounts;
+    }
+
+    public void rebuildIfEmpty() {
+        if (unreadRepository.count() == 0) {
+            rebuild();
+        }
+    }
+
+    // Sắp theo account id: các batch chạy song song luôn khóa dòng theo cùng thứ tự, tránh deadlock
+    private void add(Map<Long, Long> deltas) {
+        if (deltas.isEmpty()) {
+            return;
+        }
+        if (deltas.size() == 1) {
+            Map.Entry<Long, Long> only = deltas.entrySet().iterator().next();
+            unreadRepository.addUnread(only.getKey(), only.getValue());
+            return;
+        }
+        SqlParameterSource[] params = new TreeMap<>(deltas).entrySet().stream()
+                .map(e -> new MapSqlParameterSource("accountId", e.getKey()).addValue("delta", e.getValue()))
+                .toArray(SqlParameterSource[]::new);
+        jdbcTemplate.batchUpdate(ADD_SQL, params);
+    }
+
+    /**
+     * Đọc lại bộ đếm ngay sau khi vừa cộng/trừ, trong cùng transaction: dòng đang bị khóa ghi nên giá trị đọc được
+     * chính là giá trị lúc commit (transaction khác sửa cùng dòng phải chờ và xếp message của nó sau).
+     */
+    private void pushCounts(Map<Long, String> usernames) {
+        if (usernames.isEmpty()) {
+            return;
+        }
+        Map<Long, Long> counts = new HashMap<>();
+        jdbcTemplate.query(SELECT_COUNTS_SQL, new MapSqlParameterSource("accountIds", usernames.keySet()),
+                rs -> {
+                    counts.put(rs.getLong("account_id"), rs.getLong("unread_count"));
+                });
+        Map<String, Long> byUsername = new LinkedHashMap<>();
+        usernames.forEach((accountId, username) -> byUsername.put(username, counts.getOrDefault(accountId, 0L)));
+        notificationPusher.pushUnreadCountsAfterCommit(byUsername);
+    }
+
+    private static Map<Long, String> usernamesOf(Collection<Account> accounts) {
+        Map<Long, String> result = new LinkedHashMap<>();
+        for (Account acc : accounts) {
+            if (acc != null && acc.getId() != null) {
+                result.putIfAbsent(acc.getId(), acc.getUsername());
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,302 @@
+package server.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.internet.MimeMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import server.models.OutboxMessage;
+import server.models.enums.OutboxChannel;
+import server.models.enums.OutboxStatus;
+import server.repositories.OutboxMessageRepository;
+import server.utils.BackgroundExecutors;
+import server.utils.NotificationPusher;
+
+import java.io.ByteArrayInputStream;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Gửi các message trong outbox_message: mỗi vòng claim 1 batch dòng đến hạn (SKIP LOCKED),
+ * gửi song song trên pool mail / notifications của BackgroundExecutors, thành công thì xóa, lỗi thì hẹn thử lại với backoff lũy thừa.
+ * Message STOMP của cùng 1 người nhận (notification và số chưa đọc) gửi tuần tự theo thứ tự xếp hàng.
+ * Quá {@code max-attempts} lần thì để FAILED (dead letter) để kiểm tra tay.
+ * Email gửi theo nhóm {@code mail-batch-size}, mỗi nhóm dùng chung 1 kết nối SMTP đã xác thực.
+ *
+ * Chỉ 1 vòng drain chạy cùng lúc trên mỗi node; wakeUp() gọi sau commit và từ scheduler đều dùng chung.
+ */
+@Service
+public class OutboxDispatcher {
+    private static final Logger log = LoggerFactory.getLogger(OutboxDispatcher.class);
+
+    private final OutboxMessageRepository outboxRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final SimpMessagingTemplate messagingTemplate;
+    private final JavaMailSender mailSender;
+    private final ObjectMapper objectMapper;
+
+    private final BackgroundExecutors backgroundExecutors;
+    private final ExecutorService drainExecutor;
+
+    @Value("${app.outbox.batch-size:100}")
+    private int batchSize;
+
+    // Số email gửi chung 1 kết nối SMTP
+    @Value("${app.outbox.mail-batch-size:50}")
+    private int mailBatchSize;
+
+    @Value("${app.outbox.max-attempts:8}")
+    private int maxAttempts;
+
+    @Value("${app.outbox.retry-base-ms:10000}")
+    private long retryBaseMs;
+
+    @Value("${app.outbox.retry-max-ms:3600000}")
+    private long retryMaxMs;
+
+    // Thời gian giữ chỗ 1 dòng đang gửi, quá hạn thì node khác được gửi lại
+    @Value("${app.outbox.lease-ms:300000}")
+    private long leaseMs;
+
+    public OutboxDispatcher(OutboxMessageRepository outboxRepository,
+                            TransactionTemplate transactionTemplate,
+                            SimpMessagingTemplate messagingTemplate,
+                            JavaMailSender mailSender,
+                            ObjectMapper objectMapper,
+                            BackgroundExecutors backgroundExecutors) {
+        this.outboxRepository = outboxRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.messagingTemplate = messagingTemplate;
+        this.mailSender = mailSender;
+        this.objectMapper = objectMapper;
+        this.backgroundExecutors = backgroundExecutors;
+
+        // 1 thread drain, hàng đợi 1 chỗ: đang drain mà có thêm nhiều wakeUp thì chỉ giữ 1 lượt chạy lại
+        this.drainExecutor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(1), daemon("outbox-drain-"), new ThreadPoolExecutor.DiscardPolicy());
+    }
+
+    public void wakeUp() {
+        drainExecutor.execute(this::drain);
+    }
+
+    // Gửi hết các dòng đến hạn, trả về số message đã gửi thành công
+    public int drain() {
+        int sent = 0;
+        try {
+            while (true) {
+                List<OutboxMessage> batch = claimBatch();
+                if (batch.isEmpty()) {
+                    break;
+                }
+                sent += deliver(batch);
+                if (batch.size() < batchSize) {
+                    break;
+                }
+            }
+        } catch (Exception e) {
+            log.warn("[Outbox] Drain dừng giữa chừng: {}", e.getMessage());
+        }
+        return sent;
+    }
+
+    private List<OutboxMessage> claimBatch() {
+        List<OutboxMessage> batch = transactionTemplate.execute(status -> {
+            LocalDateTime now = LocalDateTime.now();
+            List<Long> ids = outboxRepository.lockDueIds(now, Math.max(1, batchSize));
+            if (ids.isEmpty()) {
+                return List.of();
+            }
+            outboxRepository.claim(ids, OutboxStatus.SENDING, now.plus(Duration.ofMillis(leaseMs)));
+            return outboxRepository.findAllById(ids);
+        });
+        return batch == null ? List.of() : batch;
+    }
+
+    private int deliver(List<OutboxMessage> batch) throws InterruptedException {
+        List<OutboxMessage> pushes = new ArrayList<>();
+        List<OutboxMessage> emails = new ArrayList<>();
+        for (OutboxMessage message : batch) {
+            (message.getChannel() == OutboxChannel.EMAIL ? emails : pushes).add(message);
+        }
+
+        // STOMP: mỗi người nhận 1 task trên pool notifications, gửi theo id; email: từng nhóm trên pool mail, mỗi nhóm 1 kết nối SMTP
+        pushes.sort(Comparator.comparing(OutboxMessage::getId));
+        Map<String, List<OutboxMessage>> byRecipient = new LinkedHashMap<>();
+        for (OutboxMessage message : pushes) {
+            byRecipient.computeIfAbsent(recipientTopic(message.getDestination()), k -> new ArrayList<>()).add(message);
+        }
+        List<List<OutboxMessage>> pushGroups = new ArrayList<>(byRecipient.values());
+        List<Future<Map<Long, Exception>>> pushFutures = new ArrayList<>(pushGroups.size());
+        for (List<OutboxMessage> group : pushGroups) {
+            pushFutures.add(backgroundExecutors.notifications().submit(() -> pushInOrder(group)));
+        }
+        int chunkSize = Math.max(1, mailBatchSize);
+        List<List<OutboxMessage>> mailChunks = new ArrayList<>();
+        List<Future<Map<Long, Exception>>> mailFutures = new ArrayList<>();
+        for (int from = 0; from < emails.size(); from += chunkSize) {
+            List<OutboxMessage> chunk = emails.subList(from, Math.min(from + chunkSize, emails.size()));
+            mailChunks.add(chunk);
+            mailFutures.add(backgroundExecutors.mail().submit(() -> sendMails(chunk)));
+        }
+
+        List<Long> done = new ArrayList<>();
+        collect(pushGroups, pushFutures, "notifications", done);
+        collect(mailChunks, mailFutures, "mail", done);
+
+        if (!done.isEmpty()) {
+            transactionTemplate.executeWithoutResult(status -> outboxRepository.deleteByIdIn(done));
+        }
+        return done.size();
+    }
+
+    // Chờ kết quả từng nhóm: message không lỗi vào done, message lỗi hẹn thử lại
+    private void collect(List<List<OutboxMessage>> groups, List<Future<Map<Long, Exception>>> futures,
+                         String pool, List<Long> done) throws InterruptedException {
+        for (int i = 0; i < groups.size(); i++) {
+            Map<Long, Exception> failures;
+            try {
+                failures = futures.get(i).get();
+            } catch (ExecutionException e) {
+                failures = failAll(groups.get(i), e.getCause() instanceof Exception ex ? ex : e);
+            } catch (CancellationException e) {
+                failures = failAll(groups.get(i), rejected(pool));
+            }
+            for (OutboxMessage message : groups.get(i)) {
+                Exception error = failures.get(message.getId());
+                if (error == null) {
+                    done.add(message.getId());
+                } else {
+                    scheduleRetry(message, error);
+                }
+            }
+        }
+    }
+
+    // /topic/notifications/{u} và /topic/notifications/{u}/unread chung 1 nhóm thứ tự
+    private static String recipientTopic(String destination) {
+        return destination.endsWith(NotificationPusher.UNREAD_SUFFIX)
+                ? destination.substring(0, destination.length() - NotificationPusher.UNREAD_SUFFIX.length())
+                : destination;
+    }
+
+    // Gửi lần lượt; 1 message lỗi thì các message sau của người đó cũng để thử lại, không gửi vượt lên trước
+    private Map<Long, Exception> pushInOrder(List<OutboxMessage> group) {
+        for (int i = 0; i < group.size(); i++) {
+            try {
+                push(group.get(i));
+            } catch (Exception e) {
+                return failAll(group.subList(i, group.size()), e);
+            }
+        }
+        return Map.of();
+    }
+
+    private static Map<Long, Exception> failAll(List<OutboxMessage> chunk, Exception error) {
+        Map<Long, Exception> failures = new HashMap<>();
+        for (OutboxMessage message : chunk) {
+            failures.put(message.getId(), error);
+        }
+        return failures;
+    }
+
+    // Pool cấu hình rejection = DISCARD hủy Future của task bị từ chối: message chưa gửi, hẹn thử lại như lỗi gửi
+    private static RejectedExecutionException rejected(String pool) {
+        return new RejectedExecutionException("Executor '" + pool + "' is full, task was discarded");
+    }
+
+    private void push(OutboxMessage message) throws Exception {
+        // Gửi lại dưới dạng JSON tree để converter của STOMP vẫn đặt content-type application/json
+        messagingTemplate.convertAndSend(message.getDestination(), objectMapper.readTree(message.getPayload()));
+    }
+
+    /**
+     * Gửi 1 nhóm email qua cùng 1 kết nối SMTP (JavaMailSenderImpl.send(MimeMessage...) chỉ connect + STARTTLS + AUTH 1 lần).
+     * Trả về lỗi theo id outbox của từng email gửi hỏng; email khác trong nhóm vẫn được tính là đã gửi.
+     */
+    private Map<Long, Exception> sendMails(List<OutboxMessage> chunk) {
+        Map<Long, Exception> failures = new HashMap<>();
+        Map<MimeMessage, Long> idsByMessage = new IdentityHashMap<>();
+        List<MimeMessage> messages = new ArrayList<>(chunk.size());
+        for (OutboxMessage message : chunk) {
+            try {
+                MimeMessage mime = mailSender.createMimeMessage(new ByteArrayInputStream(message.getPayload()));
+                idsByMessage.put(mime, message.getId());
+                messages.add(mime);
+            } catch (MailException e) {
+                failures.put(message.getId(), e);
+            }
+        }
+        if (messages.isEmpty()) {
+            return failures;
+        }
+
+        try {
+            mailSender.send(messages.toArray(new MimeMessage[0]));
+        } catch (MailSendException e) {
+            Map<Object, Exception> failed = e.getFailedMessages();
+            if (failed.isEmpty()) {
+                idsByMessage.values().forEach(id -> failures.put(id, e));
+            } else {
+                failed.forEach((mime, error) -> {
+                    Long id = idsByMessage.get(mime);
+                    if (id != null) {
+                        failures.put(id, error);
+                    }
+                });
+            }
+        } catch (MailException e) {
+            // Lỗi kết nối / xác thực: cả nhóm thử lại sau
+            idsByMessage.values().forEach(id -> failures.put(id, e));
+        }
+        return failures;
+    }
+
+    private void scheduleRetry(OutboxMessage message, Throwable error) {
+        int attempts = message.getAttempts() + 1;
+        boolean dead = attempts >= maxAttempts;
+        long delay = Math.min(retryMaxMs, retryBaseMs * (1L << Math.min(attempts - 1, 20)));
+        String lastError = String.valueOf(error.getMessage());
+        if (lastError.length() > 1000) {
+            lastError = lastError.substring(0, 1000);
+        }
+        String errorText = lastError;
+        transactionTemplate.executeWithoutResult(status -> outboxRepository.markAttemptFailed(
+                message.getId(),
+                dead ? OutboxStatus.FAILED : OutboxStatus.PENDING,
+                attempts,
+                LocalDateTime.now().plus(Duration.ofMillis(delay)),
+                errorText));
+        if (dead) {
+            log.error("[Outbox] {} tới {} thất bại {} lần, chuyển FAILED: {}",
+                    message.getChannel(), message.getDestination(), attempts, errorText);
+        } else {
+            log.warn("[Outbox] {} tới {} lỗi lần {}, thử lại sau {} ms: {}",
+                    message.getChannel(), message.getDestination(), attempts, delay, errorText);
+        }
+    }
+
+    private static ThreadFactory daemon(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, prefix + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        drainExecutor.shutdownNow();
+    }
+}
@@ -0,0 +1,138 @@
+package server.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.mail.Address;
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.MimeMessage;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import server.dtos.OutboxFailureView;
+import server.models.enums.OutboxChannel;
+import server.models.enums.OutboxStatus;
+import server.repositories.OutboxMessageRepository;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Ghi message STOMP / email vào outbox_message trong transaction hiện tại của caller
+ * (không có transaction thì dòng được commit ngay). Rollback thì message cũng biến mất, không gửi nhầm.
+ * Sau commit đánh thức OutboxDispatcher để gửi ngay, không chờ tới lượt poll.
+ */
+@Service
+@RequiredArgsConstructor
+public class OutboxService {
+    public record StompMessage(String destination, Object payload) {
+    }
+
+    private static final String INSERT_SQL = """
+            INSERT INTO outbox_message (channel, destination, payload, status, attempts, next_attempt_at, created_at)
+            VALUES (:channel, :destination, :payload, :status, 0, :now, :now)
+            """;
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final OutboxDispatcher outboxDispatcher;
+    private final OutboxMessageRepository outboxRepository;
+
+    public void enqueueStomp(String destination, Object payload) {
+        enqueueStomp(List.of(new StompMessage(destination, payload)));
+    }
+
+    // Nhiều message (vd fan-out notification) ghi bằng 1 JDBC batch
+    public void enqueueStomp(List<StompMessage> messages) {
+        if (messages == null || messages.isEmpty()) {
+            return;
+        }
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        SqlParameterSource[] params = new SqlParameterSource[messages.size()];
+        for (int i = 0; i < messages.size(); i++) {
+            StompMessage m = messages.get(i);
+            params[i] = row(OutboxChannel.STOMP, m.destination(), toJson(m.payload()), now);
+        }
+        jdbcTemplate.batchUpdate(INSERT_SQL, params);
+        wakeDispatcherAfterCommit();
+    }
+
+    // Lưu nguyên MIME đã dựng (kể cả file đính kèm), dispatcher dựng lại MimeMessage từ bytes này để gửi
+    public void enqueueEmail(MimeMessage message) {
+        byte[] raw;
+        String to;
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            message.writeTo(out);
+            raw = out.toByteArray();
+            Address[] recipients = message.getAllRecipients();
+            to = recipients == null ? "" : Arrays.stream(recipients)
+                    .map(Address::toString)
+                    .collect(Collectors.joining(","));
+        } catch (MessagingException | IOException e) {
+            throw new IllegalStateException("Cannot serialize email for outbox", e);
+        }
+        if (to.length() > 512) {
+            to = to.substring(0, 512);
+        }
+        jdbcTemplate.update(INSERT_SQL, row(OutboxChannel.EMAIL, to, raw, Timestamp.valueOf(LocalDateTime.now())));
+        wakeDispatcherAfterCommit();
+    }
+
+    public List<OutboxFailureView> getFailed(int limit) {
+        return outboxRepository.findFailed(PageRequest.of(0, Math.min(Math.max(limit, 1), 500)));
+    }
+
+    // ids rỗng/null: gửi lại toàn bộ dead letter
+    @Transactional
+    public int requeueFailed(List<Long> ids) {
+        LocalDateTime now = LocalDateTime.now();
+        int requeued = ids == null || ids.isEmpty()
+                ? outboxRepository.requeueAllFailed(now)
+                : outboxRepository.requeueFailed(ids, now);
+        if (requeued > 0) {
+            wakeDispatcherAfterCommit();
+        }
+        return requeued;
+    }
+
+    private MapSqlParameterSource row(OutboxChannel channel, String destination, byte[] payload, Timestamp now) {
+        return new MapSqlParameterSource()
+                .addValue("channel", channel.name())
+                .addValue("destination", destination)
+                .addValue("payload", payload)
+                .addValue("status", OutboxStatus.PENDING.name())
+                .addValue("now", now);
+    }
+
+    private byte[] toJson(Object payload) {
+        try {
+            return objectMapper.writeValueAsBytes(payload);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize STOMP payload for outbox", e);
+        }
+    }
+
+    private void wakeDispatcherAfterCommit() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    outboxDispatcher.wakeUp();
+                }
+            });
+        } else {
+            outboxDispatcher.wakeUp();
+        }
+    }
+}
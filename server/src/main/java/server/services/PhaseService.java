@@ -20,7 +20,6 @@ import server.repositories.AccountRepository;
 import server.repositories.PhaseRepository;
 import server.repositories.ProjectRepository;
 import server.utils.ApiResponse;
-import server.utils.JwtUtil;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
@@ -34,7 +33,7 @@ public class PhaseService {
     private final PhaseRepository phaseRepository;
     private final ProjectRepository projectRepository;
 
-    private final JwtUtil jwtUtil;
+    private final AuthService authService;
     private final AccountRepository accountRepository;
 
     // ================== CREATE ==================
@@ -92,13 +91,13 @@ public class PhaseService {
     public ApiResponse<List<PhaseDto>> getPhasesWithTasksByProject(Long projectId, HttpServletRequest request) {
         var phases = phaseRepository.findByProjectIdWithTasksOrderBySequence(projectId);
 
-        String username = jwtUtil.extractUsernameFromRequest(request);
-        Account me = accountRepository.findByUsername(username).orElse(null);
+        Account me = authService.findCurrentAccount(request).orElse(null);
 
         if (me == null) {
             var fallback = phases.stream().map(this::toDtoWithTasks).toList();
             return ApiResponse.success(fallback, "phases-list-with-tasks");
         }
+        String username = me.getUsername();
 
         boolean isStaff = me.getRole() != null &&
                 (me.getRole().name().equals("EMPLOYEE") || me.getRole().name().equals("HOD"));
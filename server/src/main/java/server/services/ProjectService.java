@@ -42,6 +42,7 @@ public class ProjectService {
     private final DocumentRepository documentRepository;
     private final GitHubRepoService gitHubRepoService;
     private final JwtUtil jwtUtil;
+    private final AuthService authService;
     private final AccountRepository accountRepository;
     private final GitHubTokenService gitHubTokenService;
     private final NotificationService notificationService;
@@ -293,8 +294,7 @@ public class ProjectService {
         Project project = projectRepository.findById(id)
                 .orElseThrow(() -> new IllegalArgumentException("project-not-found"));
 
-        String username = jwtUtil.extractUsernameFromRequest(request);
-        Account me = accountRepository.findByUsername(username)
+        Account me = authService.findCurrentAccount(request)
                 .orElseThrow(() -> new IllegalArgumentException("invalid-account"));
 
         if (project.getProjectManager() == null || !project.getProjectManager().getId().equals(me.getId())) {
@@ -452,8 +452,7 @@ public class ProjectService {
     /* ==================== HELPERS ==================== */
 
     private Account requireViewer(HttpServletRequest request) {
-        String username = jwtUtil.extractUsernameFromRequest(request);
-        return accountRepository.findByUsername(username)
+        return authService.findCurrentAccount(request)
                 .orElseThrow(() -> new IllegalArgumentException("invalid-account"));
     }
 
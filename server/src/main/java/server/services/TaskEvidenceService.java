@@ -11,7 +11,6 @@ import server.models.*;
 import server.models.enums.Role;
 import server.repositories.*;
 import server.utils.ApiResponse;
-import server.utils.JwtUtil;
 
 import java.nio.file.*;
 import java.time.LocalDateTime;
@@ -24,7 +23,7 @@ public class TaskEvidenceService {
     private final TaskRepository taskRepository;
     private final TaskEvidenceRepository evidenceRepository;
     private final AccountRepository accountRepository;
-    private final JwtUtil jwtUtil;
+    private final AuthService authService;
 
     private final String baseDir = "uploads"; // hoặc @Value từ config
 
@@ -35,8 +34,7 @@ public class TaskEvidenceService {
         Task task = taskRepository.findById(taskId)
                 .orElseThrow(() -> new IllegalArgumentException("task-not-found"));
 
-        String username = jwtUtil.extractUsernameFromRequest(req);
-        Account me = accountRepository.findByUsername(username)
+        Account me = authService.findCurrentAccount(req)
                 .orElseThrow(() -> new IllegalArgumentException("invalid-account"));
 
         boolean isAssignee = task.getAssignee()!=null && task.getAssignee().getId().equals(me.getId());
@@ -77,8 +75,7 @@ public class TaskEvidenceService {
         Task task = taskRepository.findById(taskId)
                 .orElseThrow(() -> new IllegalArgumentException("task-not-found"));
 
-        String username = jwtUtil.extractUsernameFromRequest(req);
-        Account me = accountRepository.findByUsername(username)
+        Account me = authService.findCurrentAccount(req)
                 .orElseThrow(() -> new IllegalArgumentException("invalid-account"));
 
         boolean isAssignee = task.getAssignee()!=null && task.getAssignee().getId().equals(me.getId());
@@ -118,8 +115,7 @@ public class TaskEvidenceService {
         TaskEvidence ev = evidenceRepository.findById(evidenceId)
                 .orElseThrow(() -> new IllegalArgumentException("evidence-not-found"));
 
-        String username = jwtUtil.extractUsernameFromRequest(req);
-        Account me = accountRepository.findByUsername(username)
+        Account me = authService.findCurrentAccount(req)
                 .orElseThrow(() -> new IllegalArgumentException("invalid-account"));
 
         Task task = ev.getTask();
@@ -64,7 +64,13 @@ public class TaskOrderService {
         String username = jwtUtil.extractUsername(token);
         Account user = accountRepository.findByUsername(username)
                 .orElseThrow(() -> new IllegalArgumentException("invalid-account"));
+        return sortTasksByUserOrder(tasks, user);
+    }
 
+    /**
+     * Như trên nhưng nhận thẳng account đã xác thực (tránh parse token + query account lần nữa).
+     */
+    public List<Task> sortTasksByUserOrder(List<Task> tasks, Account user) {
         // Load tất cả TaskOrder của user, sắp xếp theo position
         Map<Long, Integer> positionMap = orderRepository.findByUserIdOrderByPosition(user.getId()).stream()
                 .collect(Collectors.toMap(
@@ -16,7 +16,6 @@ import server.models.*;
 import server.models.enums.*;
 import server.repositories.*;
 import server.utils.ApiResponse;
-import server.utils.JwtUtil;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
@@ -33,7 +32,7 @@ public class TaskService {
     private final PhaseRepository phaseRepository;
     private final TaskRepositoryImpl taskQuery;
     private final ProjectStatusService projectStatusService;
-    private final JwtUtil jwtUtil;
+    private final AuthService authService;
     private final AccountRepository accountRepository;
     private final ProjectRepository projectRepository;
     private final TaskOrderService taskOrderService;
@@ -175,9 +174,9 @@ public class TaskService {
      */
     @Transactional(readOnly = true)
     public ApiResponse<List<TaskDto>> getKanbanTasks(Long projectId, HttpServletRequest request) {
-        String username = jwtUtil.extractUsernameFromRequest(request);
-        Account me = accountRepository.findByUsername(username)
+        Account me = authService.findCurrentAccount(request)
                 .orElseThrow(() -> new IllegalArgumentException("invalid-account"));
+        String username = me.getUsername();
         Role role = me.getRole();
 
         Project pr = projectRepository.findById(projectId)
@@ -218,9 +217,7 @@ public class TaskService {
 
         List<Task> tasks = taskStream.collect(Collectors.toList());
 
-        List<Task> sorted = taskOrderService.sortTasksByUserOrder(
-                tasks, request.getHeader(HttpHeaders.AUTHORIZATION)
-        );
+        List<Task> sorted = taskOrderService.sortTasksByUserOrder(tasks, me);
 
         List<TaskDto> dtos = sorted.stream().map(this::toDto).collect(Collectors.toList());
         return ApiResponse.success(dtos, "kanban-tasks");
@@ -266,8 +263,7 @@ public class TaskService {
         Task task = taskRepository.findById(taskId)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "task-not-found"));
 
-        String username = jwtUtil.extractUsernameFromRequest(request);
-        Account me = accountRepository.findByUsername(username)
+        Account me = authService.findCurrentAccount(request)
                 .orElseThrow(() -> new IllegalArgumentException("invalid-account"));
 
         boolean isAssignee =
@@ -374,8 +370,7 @@ public class TaskService {
 
     @Transactional(readOnly = true)
     public ApiResponse<?> getAssignmentLogs(Long taskId, HttpServletRequest request) {
-        String username = jwtUtil.extractUsernameFromRequest(request);
-        Account me = accountRepository.findByUsername(username)
+        Account me = authService.findCurrentAccount(request)
                 .orElseThrow(() -> new IllegalArgumentException("invalid-account"));
         Role role = me.getRole();
         if (!(role == Role.ADMIN || role == Role.MANAGER || role == Role.PM)) {
@@ -424,8 +419,7 @@ public class TaskService {
             return ApiResponse.badRequest("invalid-status");
         }
 
-        String username = jwtUtil.extractUsernameFromRequest(request);
-        Account me = accountRepository.findByUsername(username)
+        Account me = authService.findCurrentAccount(request)
                 .orElseThrow(() -> new IllegalArgumentException("invalid-account"));
         boolean isAssignee =
                 task.getAssignee() != null
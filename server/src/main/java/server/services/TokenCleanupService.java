@@ -0,0 +1,145 @@
+package server.services;
+
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import server.models.Token;
+import server.repositories.JobRunRepository;
+import server.repositories.TokenRepository;
+import server.utils.HashUtils;
+import server.utils.JwtUtil;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+@Service
+@RequiredArgsConstructor
+public class TokenCleanupService {
+    public static final String BACKFILL_JOB = "token-hash-backfill";
+    // Chạy 1 lần cho cả hệ thống; đổi period nếu sau này cần backfill lại
+    private static final String BACKFILL_PERIOD = "v1";
+
+    private static final Logger log = LoggerFactory.getLogger(TokenCleanupService.class);
+
+    private final TokenRepository tokenRepository;
+    private final JwtUtil jwtUtil;
+    private final JobRunRepository jobRunRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${app.jwt.token-cleanup.batch-size:500}")
+    private int batchSize;
+
+    // Lần backfill không heartbeat quá khoảng này (node chết giữa chừng) thì node khác được chạy tiếp
+    @Value("${app.jwt.token-cleanup.backfill-lease-minutes:10}")
+    private long backfillLeaseMinutes;
+
+    /**
+     * Bổ sung fingerprint + expires_at cho các phiên tạo trước khi có 2 cột này.
+     * Hash được tính lại trong @PreUpdate của Token khi save.
+     *
+     * Dữ liệu cũ có thể có nhiều dòng cùng 1 token (token không có jti): cột trùng với dòng đã có hash
+     * (hoặc dòng đứng trước trong batch) được bỏ trống để unique index không lỗi, token đó vẫn tra được qua dòng kia;
+     * dòng trùng cả 2 token thì xóa.
+     *
+     * Là job 1 lần trong job_run (token-hash-backfill): nhiều node khởi động cùng lúc thì chỉ 1 node chạy,
+     * các node sau thấy đã complete thì bỏ qua; node đang chạy chết giữa chừng thì lần khởi động sau chạy tiếp
+     * (các dòng đã xong có expires_at nên không bị xử lý lại).
+     */
+    public int backfillLegacyTokens() {
+        Boolean claimed = transactionTemplate.execute(status -> !isBackfillDone()
+                && jobRunRepository.claimOrResume(BACKFILL_JOB, BACKFILL_PERIOD, LocalDateTime.now(),
+                Duration.ofMinutes(backfillLeaseMinutes)));
+        if (!Boolean.TRUE.equals(claimed)) {
+            return 0;
+        }
+
+        long startedAt = System.currentTimeMillis();
+        int total = 0;
+        List<Token> batch;
+        do {
+            batch = tokenRepository.findByExpiresAtIsNull(PageRequest.of(0, batchSize));
+            Set<String> accessHashes = existing(batch, Token::getAccessTokenHash, Token::getAccessToken,
+                    tokenRepository::findExistingAccessTokenHashes);
+            Set<String> refreshHashes = existing(batch, Token::getRefreshTokenHash, Token::getRefreshToken,
+                    tokenRepository::findExistingRefreshTokenHashes);
+
+            List<Token> updated = new ArrayList<>(batch.size());
+            List<Token> duplicates = new ArrayList<>();
+            for (Token token : batch) {
+                LocalDateTime issuedAt = token.getUpdatedAt() != null ? token.getUpdatedAt() : token.getCreatedAt();
+                if (issuedAt == null) {
+                    issuedAt = LocalDateTime.now();
+                }
+                token.setExpiresAt(issuedAt.plus(Duration.ofMillis(jwtUtil.getRefreshTokenExpire())));
+
+                boolean hadToken = token.getAccessToken() != null || token.getRefreshToken() != null;
+                if (token.getAccessTokenHash() == null && token.getAccessToken() != null
+                        && !accessHashes.add(HashUtils.sha256Hex(token.getAccessToken()))) {
+                    token.setAccessToken(null);
+                }
+                if (token.getRefreshTokenHash() == null && token.getRefreshToken() != null
+                        && !refreshHashes.add(HashUtils.sha256Hex(token.getRefreshToken()))) {
+                    token.setRefreshToken(null);
+                }
+                (hadToken && token.getAccessToken() == null && token.getRefreshToken() == null ? duplicates : updated)
+                        .add(token);
+            }
+            tokenRepository.saveAll(updated);
+            if (!duplicates.isEmpty()) {
+                tokenRepository.deleteAllInBatch(duplicates);
+                log.info("[TokenCleanup] Xóa {} phiên cũ trùng token", duplicates.size());
+            }
+            total += batch.size();
+            transactionTemplate.executeWithoutResult(status ->
+                    jobRunRepository.renew(BACKFILL_JOB, BACKFILL_PERIOD, LocalDateTime.now()));
+        } while (batch.size() == batchSize);
+
+        int affected = total;
+        long durationMs = System.currentTimeMillis() - startedAt;
+        transactionTemplate.executeWithoutResult(status ->
+                jobRunRepository.complete(BACKFILL_JOB, BACKFILL_PERIOD, affected, durationMs, LocalDateTime.now()));
+        log.info("[TokenCleanup] Backfill hash: {} phiên, {} ms", total, durationMs);
+        return total;
+    }
+
+    // Đã complete (có duration) thì không cần chạm tới bảng tokens nữa
+    private boolean isBackfillDone() {
+        return jobRunRepository.existsByJobNameAndPeriodAndDurationMsIsNotNull(BACKFILL_JOB, BACKFILL_PERIOD);
+    }
+
+    // Hash (trong bảng) của các token chưa có hash trong batch
+    private static Set<String> existing(List<Token> batch, Function<Token, String> hash, Function<Token, String> token,
+                                        Function<Collection<String>, List<String>> finder) {
+        Set<String> hashes = batch.stream()
+                .filter(t -> hash.apply(t) == null)
+                .map(token)
+                .filter(Objects::nonNull)
+                .map(HashUtils::sha256Hex)
+                .collect(Collectors.toSet());
+        return hashes.isEmpty() ? new HashSet<>() : new HashSet<>(finder.apply(hashes));
+    }
+
+    /**
+     * Xóa các phiên có refresh token đã hết hạn, mỗi lần tối đa batchSize dòng
+     * trong 1 transaction ngắn để không giữ lock lâu trên bảng tokens.
+     */
+    public int purgeExpiredTokens() {
+        LocalDateTime now = LocalDateTime.now();
+        int total = 0;
+        List<Long> ids;
+        do {
+            ids = tokenRepository.findExpiredIds(now, PageRequest.of(0, batchSize));
+            if (!ids.isEmpty()) {
+                total += tokenRepository.deleteByIdIn(ids);
+            }
+        } while (ids.size() == batchSize);
+        return total;
+    }
+}
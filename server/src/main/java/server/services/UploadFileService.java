@@ -6,10 +6,16 @@ import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.File;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.UUID;
 
 @Service
@@ -30,6 +36,48 @@ public class UploadFileService {
         return filePath;
     }
 
+    // Đọc stream upload song song với lúc ghi xuống đĩa (xem storeFile(supFolder, file, reader))
+    @FunctionalInterface
+    public interface StreamReader<T> {
+        T read(InputStream in) throws IOException;
+    }
+
+    public record Stored<T>(String path, T result) {
+    }
+
+    /**
+     * Như storeFile nhưng chỉ đọc multipart 1 lần: mỗi byte đọc từ request vừa được ghi qua FileChannel,
+     * vừa đưa cho reader (vd giải mã ảnh thu nhỏ). Phần reader không đọc tới vẫn được ghi hết xuống file.
+     */
+    public <T> Stored<T> storeFile(String supFolder, MultipartFile file, StreamReader<T> reader) throws IOException {
+        String exactFolderPath = uploadFolder + File.separator + supFolder;
+        File directory = new File(exactFolderPath);
+        if (!directory.exists()) {
+            directory.mkdirs();
+        }
+        String fileName = UUID.randomUUID().toString() + "_" + file.getOriginalFilename();
+        String filePath = exactFolderPath + File.separator + fileName;
+        Path destination = Paths.get(filePath);
+
+        T result;
+        try (InputStream source = file.getInputStream();
+             FileChannel channel = FileChannel.open(destination, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            TeeInputStream tee = new TeeInputStream(source, channel);
+            try {
+                result = reader.read(tee);
+            } catch (IOException | RuntimeException e) {
+                // Chỉ bỏ qua lỗi giải mã của reader; lỗi đọc request / ghi file được ném lại ngay dưới đây
+                result = null;
+            }
+            tee.rethrowFailure();
+            tee.drain();
+        } catch (IOException e) {
+            Files.deleteIfExists(destination);
+            throw e;
+        }
+        return new Stored<>(filePath, result);
+    }
+
     public String storeFileFromBytes(String supFolder, String fileName, byte[] fileBytes) throws IOException {
         String exactFolderPath = uploadFolder + File.separator + supFolder;
         File directory = new File(exactFolderPath);
@@ -46,17 +94,7 @@ public class UploadFileService {
     }
 
     public ByteArrayResource createByteArrayResourceFromFile(String relativeOrAbsolutePath) throws IOException {
-        String cleanedPath = relativeOrAbsolutePath;
-
-        // Loại bỏ prefix "uploads/" hoặc "uploads\" nếu có để tránh lặp
-        if (cleanedPath.startsWith("uploads/")) {
-            cleanedPath = cleanedPath.substring("uploads/".length());
-        } else if (cleanedPath.startsWith("uploads\\")) {
-            cleanedPath = cleanedPath.substring("uploads\\".length());
-        }
-
-        Path originalPath = Paths.get(cleanedPath);
-        final Path filePath = originalPath.isAbsolute() ? originalPath : Paths.get(uploadFolder).resolve(cleanedPath);
+        final Path filePath = resolvePath(relativeOrAbsolutePath);
 
         if (!Files.exists(filePath) || !Files.isRegularFile(filePath)) {
             throw new IOException("File does not exist: " + filePath.toString());
@@ -72,10 +110,104 @@ public class UploadFileService {
     }
 
 
+    // Đường dẫn lưu trong DB (tương đối "uploads/..." hoặc tuyệt đối) -> file thật trên đĩa
+    public Path resolvePath(String relativeOrAbsolutePath) {
+        String cleanedPath = relativeOrAbsolutePath;
+
+        // Loại bỏ prefix "uploads/" hoặc "uploads\" nếu có để tránh lặp
+        if (cleanedPath.startsWith("uploads/")) {
+            cleanedPath = cleanedPath.substring("uploads/".length());
+        } else if (cleanedPath.startsWith("uploads\\")) {
+            cleanedPath = cleanedPath.substring("uploads\\".length());
+        }
+
+        Path originalPath = Paths.get(cleanedPath);
+        return originalPath.isAbsolute() ? originalPath : Paths.get(uploadFolder).resolve(cleanedPath);
+    }
+
     public void deleteFile(String fileUrl) throws IOException {
         Path path = Paths.get(fileUrl);
         Files.deleteIfExists(path);
     }
 
+    // Ghi lại mọi byte đi qua vào channel; close() của reader không đóng stream gốc.
+    // Lỗi đọc stream gốc / ghi channel được giữ lại để storeFile phân biệt với lỗi giải mã của reader
+    static class TeeInputStream extends FilterInputStream {
+        private final WritableByteChannel sink;
+        private IOException failure;
+
+        TeeInputStream(InputStream in, WritableByteChannel sink) {
+            super(in);
+            this.sink = sink;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            int n = read(one, 0, 1);
+            return n <= 0 ? -1 : one[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (failure != null) {
+                throw failure;
+            }
+            int n;
+            try {
+                n = super.read(b, off, len);
+                if (n > 0) {
+                    write(b, off, n);
+                }
+            } catch (IOException e) {
+                failure = e;
+                throw e;
+            }
+            return n;
+        }
 
+        @Override
+        public long skip(long n) throws IOException {
+            // Phải đọc qua thay vì skip để phần bị bỏ qua vẫn được ghi
+            byte[] buffer = new byte[8192];
+            long skipped = 0;
+            while (skipped < n) {
+                int read = read(buffer, 0, (int) Math.min(buffer.length, n - skipped));
+                if (read < 0) {
+                    break;
+                }
+                skipped += read;
+            }
+            return skipped;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        @Override
+        public void close() {
+        }
+
+        void rethrowFailure() throws IOException {
+            if (failure != null) {
+                throw failure;
+            }
+        }
+
+        void drain() throws IOException {
+            byte[] buffer = new byte[8192];
+            while (read(buffer, 0, buffer.length) >= 0) {
+                // chỉ để ghi phần còn lại xuống file
+            }
+        }
+
+        private void write(byte[] b, int off, int len) throws IOException {
+            ByteBuffer buffer = ByteBuffer.wrap(b, off, len);
+            while (buffer.hasRemaining()) {
+                sink.write(buffer);
+            }
+        }
+    }
 }
@@ -0,0 +1,63 @@
+package server.utils;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Các pool dùng chung cho việc chạy nền, tách riêng để 1 loại việc dồn dập (gửi lương hàng loạt,
+ * tạo account hàng loạt, xuất ZIP) không chiếm hết thread của loại khác hay của Tomcat:
+ * - mail: gửi email từ outbox
+ * - documents: render DOCX
+ * - notifications: push STOMP
+ *
+ * Cấu hình theo app.executors.{tên}.threads / queue / rejection (CALLER_RUNS, ABORT, DISCARD),
+ * app.executors.virtual-threads=true để chạy trên virtual thread khi JDK hỗ trợ.
+ */
+@Component
+public class BackgroundExecutors {
+    private final InstrumentedExecutor mail;
+    private final InstrumentedExecutor documents;
+    private final InstrumentedExecutor notifications;
+
+    public BackgroundExecutors(
+            @Value("${app.executors.virtual-threads:false}") boolean virtualThreads,
+            @Value("${app.executors.mail.threads:${app.outbox.send-threads:4}}") int mailThreads,
+            @Value("${app.executors.mail.queue:100}") int mailQueue,
+            @Value("${app.executors.mail.rejection:CALLER_RUNS}") InstrumentedExecutor.Rejection mailRejection,
+            @Value("${app.executors.documents.threads:${app.export.render-threads:2}}") int documentThreads,
+            @Value("${app.executors.documents.queue:8}") int documentQueue,
+            @Value("${app.executors.documents.rejection:CALLER_RUNS}") InstrumentedExecutor.Rejection documentRejection,
+            @Value("${app.executors.notifications.threads:${app.notification.push-threads:2}}") int notificationThreads,
+            @Value("${app.executors.notifications.queue:${app.notification.push-queue:2000}}") int notificationQueue,
+            @Value("${app.executors.notifications.rejection:CALLER_RUNS}") InstrumentedExecutor.Rejection notificationRejection) {
+        this.mail = new InstrumentedExecutor("mail", mailThreads, mailQueue, mailRejection, virtualThreads);
+        this.documents = new InstrumentedExecutor("documents", documentThreads, documentQueue, documentRejection, virtualThreads);
+        this.notifications = new InstrumentedExecutor("notifications", notificationThreads, notificationQueue, notificationRejection, virtualThreads);
+    }
+
+    public InstrumentedExecutor mail() {
+        return mail;
+    }
+
+    public InstrumentedExecutor documents() {
+        return documents;
+    }
+
+    public InstrumentedExecutor notifications() {
+        return notifications;
+    }
+
+    public List<InstrumentedExecutor.Stats> stats() {
+        return List.of(mail.stats(), documents.stats(), notifications.stats());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        mail.shutdown();
+        documents.shutdown();
+        notifications.shutdown();
+    }
+}
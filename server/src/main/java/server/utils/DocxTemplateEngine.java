@@ -0,0 +1,697 @@
+package server.utils;
+
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.stereotype.Component;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.xml.sax.SAXException;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.transform.OutputKeys;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Engine điền template Word (.docx) trong resources/templates, dùng chung cho đơn nghỉ phép,
+ * hợp đồng, công văn và tạm ứng.
+ *
+ * Mỗi template chỉ đọc + parse 1 lần: giữ các part của file zip dạng bytes, DOM của document.xml
+ * và vị trí các paragraph có placeholder ({key} hoặc {{key}}, kể cả khi Word tách placeholder ra nhiều run).
+ * Khi render chỉ clone DOM đã parse, điền đúng các paragraph đó rồi ghi lại zip; các part khác
+ * (styles, font, header, ảnh có sẵn...) được chép nguyên, không dựng lại cả package OOXML như POI.
+ */
+@Component
+public class DocxTemplateEngine {
+    private static final Pattern TOKEN = Pattern.compile("\\{\\{[^{}]+}}|\\{[^{}]+}");
+
+    private static final String W_NS = "http://schemas.openxmlformats.org/wordprocessingml/2006/main";
+    private static final String WP_NS = "http://schemas.openxmlformats.org/drawingml/2006/wordprocessingDrawing";
+    private static final String A_NS = "http://schemas.openxmlformats.org/drawingml/2006/main";
+    private static final String PIC_NS = "http://schemas.openxmlformats.org/drawingml/2006/picture";
+    private static final String R_NS = "http://schemas.openxmlformats.org/officeDocument/2006/relationships";
+    private static final String PACKAGE_RELS_NS = "http://schemas.openxmlformats.org/package/2006/relationships";
+    private static final String CONTENT_TYPES_NS = "http://schemas.openxmlformats.org/package/2006/content-types";
+    private static final String OFFICE_DOCUMENT_REL = R_NS + "/officeDocument";
+    private static final String IMAGE_REL = R_NS + "/image";
+
+    private static final String CONTENT_TYPES_PART = "[Content_Types].xml";
+    private static final String PACKAGE_RELS_PART = "_rels/.rels";
+    private static final int EMU_PER_PIXEL = 9525;
+    private static final byte[] XML_DECLARATION =
+            "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\r\n".getBytes(StandardCharsets.UTF_8);
+    private static final Pattern DOC_PR_ID = Pattern.compile("docPr\\b[^>]*?\\sid=\"(\\d+)\"");
+
+    // Run nằm trong các phần tử này vẫn thuộc paragraph (giống XWPFParagraph.getRuns())
+    private static final Set<String> RUN_CONTAINERS = Set.of("hyperlink", "smartTag", "ins", "customXml");
+
+    // Ảnh chèn vào vị trí token (chữ ký), kích thước tính theo px
+    public record Image(byte[] bytes, int widthPx, int heightPx, String name) {
+    }
+
+    // Vị trí paragraph: chỉ số node con tính từ phần tử gốc của document.xml
+    private record Slot(int[] path, Set<String> tokens) {
+    }
+
+    /**
+     * Template đã parse. {@code document} / {@code relationships} chỉ được đọc để clone (dưới lock của template),
+     * không bao giờ bị sửa trực tiếp.
+     */
+    private record CompiledTemplate(Map<String, Packed> parts, String mainPart, Document document,
+                                    String relationshipsPart, Document relationships, Set<String> relationshipIds,
+                                    Packed contentTypesWithPng, int maxDrawingId, List<Slot> slots) {
+    }
+
+    // Part đã nén (deflate) kèm CRC / kích thước gốc: ghi thẳng vào zip, không nén lại ở mỗi lần render
+    private record Packed(byte[] data, long crc, int size) {
+    }
+
+    private final Map<String, CompiledTemplate> templates = new ConcurrentHashMap<>();
+    private final DocumentBuilderFactory builderFactory = secureBuilderFactory();
+    private final TransformerFactory transformerFactory = TransformerFactory.newInstance();
+
+    // Bọc key của map dữ liệu thành token đầy đủ, vd "tên" -> "{tên}"
+    public static Map<String, String> tokens(Map<String, String> data, String open, String close) {
+        Map<String, String> result = new HashMap<>();
+        data.forEach((key, value) -> result.put(open + key + close, value == null ? "" : value));
+        return result;
+    }
+
+    public byte[] render(String templateName, Map<String, String> values) throws IOException {
+        return render(templateName, values, Map.of());
+    }
+
+    public byte[] render(String templateName, Map<String, String> values, Map<String, Image> images)
+            throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        render(templateName, values, images, out);
+        return out.toByteArray();
+    }
+
+    public void render(String templateName, Map<String, String> values, Map<String, Image> images,
+                       OutputStream out) throws IOException {
+        CompiledTemplate template = compiled(templateName);
+        List<Slot> slots = new ArrayList<>();
+        for (Slot slot : template.slots()) {
+            if (needsFill(slot, values, images)) {
+                slots.add(slot);
+            }
+        }
+
+        Map<String, Packed> replaced = new HashMap<>();
+        Pictures pictures = null;
+        if (!slots.isEmpty()) {
+            Document document = cloneOf(template, template.document());
+            // Lấy hết paragraph trước khi điền: chèn run vào 1 paragraph làm lệch chỉ số của paragraph lồng bên trong (text box)
+            List<Element> paragraphs = new ArrayList<>(slots.size());
+            for (Slot slot : slots) {
+                paragraphs.add(resolve(document, slot));
+            }
+            pictures = new Pictures(template, document);
+            for (Element paragraph : paragraphs) {
+                fill(paragraph, values, images, pictures);
+            }
+            replaced.put(template.mainPart(), pack(serialize(document)));
+            if (pictures.relationships != null) {
+                replaced.put(template.relationshipsPart(), pack(serialize(pictures.relationships)));
+                replaced.put(CONTENT_TYPES_PART, template.contentTypesWithPng());
+                pictures.media.forEach((name, bytes) -> replaced.put(name, pack(bytes)));
+            }
+        }
+        writePackage(template, replaced, out);
+    }
+
+    // Các token có trong template (tiện kiểm tra template khi đổi file)
+    public Set<String> tokensOf(String templateName) throws IOException {
+        Set<String> result = new LinkedHashSet<>();
+        compiled(templateName).slots().forEach(slot -> result.addAll(slot.tokens()));
+        return result;
+    }
+
+    private CompiledTemplate compiled(String templateName) throws IOException {
+        try {
+            return templates.computeIfAbsent(templateName, name -> {
+                try {
+                    return compile(name);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private CompiledTemplate compile(String templateName) throws IOException {
+        Map<String, byte[]> parts = new LinkedHashMap<>();
+        try (ZipInputStream zip = new ZipInputStream(new ClassPathResource("templates/" + templateName).getInputStream())) {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                if (!entry.isDirectory()) {
+                    parts.put(entry.getName(), zip.readAllBytes());
+                }
+            }
+        }
+
+        String mainPart = mainPartOf(parts, templateName);
+        Document document = parse(parts.get(mainPart), templateName);
+
+        String folder = mainPart.substring(0, mainPart.lastIndexOf('/') + 1);
+        String relationshipsPart = folder + "_rels/" + mainPart.substring(folder.length()) + ".rels";
+        Document relationships = parts.containsKey(relationshipsPart)
+                ? parse(parts.get(relationshipsPart), templateName)
+                : newRelationships();
+        Set<String> relationshipIds = new HashSet<>();
+        for (Element relationship : children(relationships.getDocumentElement(), PACKAGE_RELS_NS, "Relationship")) {
+            relationshipIds.add(relationship.getAttribute("Id"));
+        }
+
+        int maxDrawingId = 0;
+        for (Map.Entry<String, byte[]> part : parts.entrySet()) {
+            if (part.getKey().endsWith(".xml")) {
+                Matcher m = DOC_PR_ID.matcher(new String(part.getValue(), StandardCharsets.UTF_8));
+                while (m.find()) {
+                    maxDrawingId = Math.max(maxDrawingId, Integer.parseInt(m.group(1)));
+                }
+            }
+        }
+
+        List<Slot> slots = new ArrayList<>();
+        NodeList paragraphs = document.getElementsByTagNameNS(W_NS, "p");
+        for (int i = 0; i < paragraphs.getLength(); i++) {
+            Element paragraph = (Element) paragraphs.item(i);
+            Set<String> found = new HashSet<>();
+            Matcher m = TOKEN.matcher(runText(runsOf(paragraph)));
+            while (m.find()) {
+                found.add(m.group());
+            }
+            if (!found.isEmpty()) {
+                slots.add(new Slot(pathOf(paragraph), Set.copyOf(found)));
+            }
+        }
+
+        Map<String, Packed> packed = new LinkedHashMap<>();
+        parts.forEach((name, bytes) -> packed.put(name, pack(bytes)));
+        return new CompiledTemplate(Collections.unmodifiableMap(packed), mainPart, document, relationshipsPart,
+                relationships, Set.copyOf(relationshipIds),
+                pack(contentTypesWithPng(parts.get(CONTENT_TYPES_PART), templateName)), maxDrawingId, List.copyOf(slots));
+    }
+
+    // Part chính (word/document.xml) lấy theo quan hệ officeDocument trong _rels/.rels
+    private String mainPartOf(Map<String, byte[]> parts, String templateName) throws IOException {
+        byte[] rels = parts.get(PACKAGE_RELS_PART);
+        if (rels != null) {
+            for (Element relationship : children(parse(rels, templateName).getDocumentElement(), PACKAGE_RELS_NS, "Relationship")) {
+                if (OFFICE_DOCUMENT_REL.equals(relationship.getAttribute("Type"))) {
+                    String target = relationship.getAttribute("Target");
+                    String name = target.startsWith("/") ? target.substring(1) : target;
+                    if (parts.containsKey(name)) {
+                        return name;
+                    }
+                }
+            }
+        }
+        if (parts.containsKey("word/document.xml")) {
+            return "word/document.xml";
+        }
+        throw new IOException("Invalid Word template format: " + templateName);
+    }
+
+    // [Content_Types].xml có sẵn Default png (thêm nếu thiếu) để dùng khi render có chèn ảnh
+    private byte[] contentTypesWithPng(byte[] contentTypes, String templateName) throws IOException {
+        if (contentTypes == null) {
+            throw new IOException("Invalid Word template format: " + templateName);
+        }
+        Document document = parse(contentTypes, templateName);
+        for (Element type : children(document.getDocumentElement(), CONTENT_TYPES_NS, "Default")) {
+            if ("png".equalsIgnoreCase(type.getAttribute("Extension"))) {
+                return contentTypes;
+            }
+        }
+        Element png = document.createElementNS(CONTENT_TYPES_NS, "Default");
+        png.setAttribute("Extension", "png");
+        png.setAttribute("ContentType", "image/png");
+        Element root = document.getDocumentElement();
+        root.insertBefore(png, root.getFirstChild());
+        return serialize(document);
+    }
+
+    private boolean needsFill(Slot slot, Map<String, String> values, Map<String, Image> images) {
+        for (String token : slot.tokens()) {
+            if (values.containsKey(token) || images.containsKey(token)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int[] pathOf(Element element) {
+        Deque<Integer> path = new ArrayDeque<>();
+        Node node = element;
+        while (node.getParentNode() != null && node.getParentNode().getNodeType() == Node.ELEMENT_NODE) {
+            int index = 0;
+            for (Node sibling = node.getPreviousSibling(); sibling != null; sibling = sibling.getPreviousSibling()) {
+                index++;
+            }
+            path.push(index);
+            node = node.getParentNode();
+        }
+        return path.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private static Element resolve(Document document, Slot slot) {
+        Node node = document.getDocumentElement();
+        for (int index : slot.path()) {
+            node = node.getChildNodes().item(index);
+        }
+        return (Element) node;
+    }
+
+    /**
+     * Điền 1 paragraph: nối text các run để tìm token (kể cả token bị tách nhiều run),
+     * giữ định dạng của run chứa ký tự đầu tiên của token.
+     */
+    private void fill(Element paragraph, Map<String, String> values, Map<String, Image> images, Pictures pictures) {
+        int searchFrom = 0;
+        while (true) {
+            List<Element> runs = runsOf(paragraph);
+            int[] starts = new int[runs.size()];
+            StringBuilder full = new StringBuilder();
+            for (int i = 0; i < runs.size(); i++) {
+                starts[i] = full.length();
+                full.append(textOf(runs.get(i)));
+            }
+
+            Matcher m = TOKEN.matcher(full);
+            if (searchFrom > full.length() || !m.find(searchFrom)) {
+                return;
+            }
+            String token = m.group();
+            Image image = images.get(token);
+            if (image == null && !values.containsKey(token)) {
+                searchFrom = m.end();
+                continue;
+            }
+
+            int first = runAt(starts, m.start());
+            int last = runAt(starts, m.end() - 1);
+            String before = textOf(runs.get(first)).substring(0, m.start() - starts[first]);
+            String after = textOf(runs.get(last)).substring(m.end() - starts[last]);
+
+            // Xóa phần token nằm ở các run phía sau
+            for (int i = first + 1; i <= last; i++) {
+                setText(runs.get(i), i == last ? after : "");
+            }
+
+            Element head = runs.get(first);
+            if (image == null) {
+                String value = values.get(token) == null ? "" : values.get(token);
+                setText(head, first == last ? before + value + after : before + value);
+                searchFrom = m.start() + value.length();
+            } else {
+                setText(head, before);
+                Element pictureRun = styledRunAfter(head, head);
+                pictureRun.appendChild(pictures.drawing(image));
+                if (first == last && !after.isEmpty()) {
+                    Element tail = styledRunAfter(head, pictureRun);
+                    setText(tail, after);
+                }
+                searchFrom = m.start();
+            }
+        }
+    }
+
+    // Các run của paragraph theo thứ tự (bỏ qua paragraph lồng trong text box của run)
+    private static List<Element> runsOf(Element paragraph) {
+        List<Element> runs = new ArrayList<>();
+        collectRuns(paragraph, runs);
+        return runs;
+    }
+
+    private static void collectRuns(Element parent, List<Element> runs) {
+        for (Node node = parent.getFirstChild(); node != null; node = node.getNextSibling()) {
+            if (node instanceof Element element && W_NS.equals(element.getNamespaceURI())) {
+                if ("r".equals(element.getLocalName())) {
+                    runs.add(element);
+                } else if (RUN_CONTAINERS.contains(element.getLocalName())) {
+                    collectRuns(element, runs);
+                }
+            }
+        }
+    }
+
+    private static String runText(List<Element> runs) {
+        StringBuilder sb = new StringBuilder();
+        for (Element run : runs) {
+            sb.append(textOf(run));
+        }
+        return sb.toString();
+    }
+
+    // Text của w:t đầu tiên trong run (giống XWPFRun.getText(0))
+    private static String textOf(Element run) {
+        Element text = child(run, W_NS, "t");
+        return text == null ? "" : text.getTextContent();
+    }
+
+    private static void setText(Element run, String value) {
+        Element text = child(run, W_NS, "t");
+        if (text == null) {
+            text = run.getOwnerDocument().createElementNS(W_NS, "w:t");
+            run.appendChild(text);
+        }
+        text.setTextContent(value);
+        text.setAttributeNS(XMLConstants.XML_NS_URI, "xml:space", "preserve");
+    }
+
+    // Run mới ngay sau {@code anchor}, cùng định dạng (rPr) với {@code styleFrom}
+    private static Element styledRunAfter(Element styleFrom, Element anchor) {
+        Element run = anchor.getOwnerDocument().createElementNS(W_NS, "w:r");
+        Element properties = child(styleFrom, W_NS, "rPr");
+        if (properties != null) {
+            run.appendChild(properties.cloneNode(true));
+        }
+        anchor.getParentNode().insertBefore(run, anchor.getNextSibling());
+        return run;
+    }
+
+    private static int runAt(int[] starts, int offset) {
+        int index = 0;
+        for (int i = 0; i < starts.length; i++) {
+            if (starts[i] <= offset) {
+                index = i;
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Ảnh của 1 lần render: mỗi Image chỉ thêm 1 part media + 1 relationship dù chèn ở nhiều token.
+     * Relationships được clone từ template ở lần chèn ảnh đầu tiên.
+     */
+    private static final class Pictures {
+        private final CompiledTemplate template;
+        private final Document document;
+        private final Map<Image, String> relationshipIds = new IdentityHashMap<>();
+        private final Map<String, byte[]> media = new LinkedHashMap<>();
+        private Document relationships;
+        private int nextImage;
+        private int nextDrawingId;
+
+        private Pictures(CompiledTemplate template, Document document) {
+            this.template = template;
+            this.document = document;
+            this.nextDrawingId = template.maxDrawingId() + 1;
+        }
+
+        private String relationshipId(Image image) {
+            String existing = relationshipIds.get(image);
+            if (existing != null) {
+                return existing;
+            }
+            if (relationships == null) {
+                relationships = cloneOf(template, template.relationships());
+            }
+            String folder = template.mainPart().substring(0, template.mainPart().lastIndexOf('/') + 1);
+            String id;
+            String target;
+            do {
+                nextImage++;
+                id = "rIdImg" + nextImage;
+                target = "media/template-image" + nextImage + ".png";
+            } while (template.relationshipIds().contains(id) || template.parts().containsKey(folder + target));
+
+            Element relationship = relationships.createElementNS(PACKAGE_RELS_NS, "Relationship");
+            relationship.setAttribute("Id", id);
+            relationship.setAttribute("Type", IMAGE_REL);
+            relationship.setAttribute("Target", target);
+            relationships.getDocumentElement().appendChild(relationship);
+
+            media.put(folder + target, image.bytes());
+            relationshipIds.put(image, id);
+            return id;
+        }
+
+        // w:drawing/wp:inline như XWPFRun.addPicture
+        private Element drawing(Image image) {
+            String embed = relationshipId(image);
+            int id = nextDrawingId++;
+            long cx = (long) image.widthPx() * EMU_PER_PIXEL;
+            long cy = (long) image.heightPx() * EMU_PER_PIXEL;
+            String name = image.name() != null ? image.name() : "image" + id + ".png";
+
+            Element drawing = element(W_NS, "w:drawing");
+            drawing.setAttributeNS(XMLConstants.XMLNS_ATTRIBUTE_NS_URI, "xmlns:wp", WP_NS);
+            drawing.setAttributeNS(XMLConstants.XMLNS_ATTRIBUTE_NS_URI, "xmlns:r", R_NS);
+            Element inline = append(drawing, WP_NS, "wp:inline");
+            for (String distance : List.of("distT", "distB", "distL", "distR")) {
+                inline.setAttribute(distance, "0");
+            }
+            extent(append(inline, WP_NS, "wp:extent"), cx, cy);
+            Element docPr = append(inline, WP_NS, "wp:docPr");
+            docPr.setAttribute("id", String.valueOf(id));
+            docPr.setAttribute("name", "Picture " + id);
+            docPr.setAttribute("descr", name);
+
+            Element graphic = append(inline, A_NS, "a:graphic");
+            graphic.setAttributeNS(XMLConstants.XMLNS_ATTRIBUTE_NS_URI, "xmlns:a", A_NS);
+            Element graphicData = append(graphic, A_NS, "a:graphicData");
+            graphicData.setAttribute("uri", PIC_NS);
+            Element pic = append(graphicData, PIC_NS, "pic:pic");
+            pic.setAttributeNS(XMLConstants.XMLNS_ATTRIBUTE_NS_URI, "xmlns:pic", PIC_NS);
+
+            Element nvPicPr = append(pic, PIC_NS, "pic:nvPicPr");
+            Element cNvPr = append(nvPicPr, PIC_NS, "pic:cNvPr");
+            cNvPr.setAttribute("id", "0");
+            cNvPr.setAttribute("name", name);
+            append(nvPicPr, PIC_NS, "pic:cNvPicPr");
+
+            Element blipFill = append(pic, PIC_NS, "pic:blipFill");
+            append(blipFill, A_NS, "a:blip").setAttributeNS(R_NS, "r:embed", embed);
+            append(append(blipFill, A_NS, "a:stretch"), A_NS, "a:fillRect");
+
+            Element spPr = append(pic, PIC_NS, "pic:spPr");
+            Element xfrm = append(spPr, A_NS, "a:xfrm");
+            Element off = append(xfrm, A_NS, "a:off");
+            off.setAttribute("x", "0");
+            off.setAttribute("y", "0");
+            Element ext = append(xfrm, A_NS, "a:ext");
+            ext.setAttribute("cx", String.valueOf(cx));
+            ext.setAttribute("cy", String.valueOf(cy));
+            Element geometry = append(spPr, A_NS, "a:prstGeom");
+            geometry.setAttribute("prst", "rect");
+            append(geometry, A_NS, "a:avLst");
+            return drawing;
+        }
+
+        private Element element(String namespace, String qualifiedName) {
+            return document.createElementNS(namespace, qualifiedName);
+        }
+
+        private Element append(Element parent, String namespace, String qualifiedName) {
+            Element child = element(namespace, qualifiedName);
+            parent.appendChild(child);
+            return child;
+        }
+
+        private void extent(Element element, long cx, long cy) {
+            element.setAttribute("cx", String.valueOf(cx));
+            element.setAttribute("cy", String.valueOf(cy));
+        }
+    }
+
+    /**
+     * Ghi zip: part đã sửa / ảnh mới lấy bản vừa nén, các part khác chép nguyên dữ liệu đã nén sẵn của template
+     * (ZipOutputStream luôn nén lại nên ghi header zip trực tiếp).
+     */
+    private void writePackage(CompiledTemplate template, Map<String, Packed> replaced, OutputStream out)
+            throws IOException {
+        Map<String, Packed> entries = new LinkedHashMap<>(template.parts());
+        entries.putAll(replaced);
+
+        ByteArrayOutputStream directory = new ByteArrayOutputStream();
+        long offset = 0;
+        for (Map.Entry<String, Packed> entry : entries.entrySet()) {
+            byte[] name = entry.getKey().getBytes(StandardCharsets.UTF_8);
+            Packed part = entry.getValue();
+
+            ByteArrayOutputStream header = new ByteArrayOutputStream(30 + name.length);
+            writeInt(header, 0x04034b50);
+            writeEntryFields(header, part, name);
+            header.write(name);
+            header.writeTo(out);
+            out.write(part.data());
+
+            writeInt(directory, 0x02014b50);
+            writeShort(directory, 20); // version made by
+            writeEntryFields(directory, part, name);
+            writeShort(directory, 0); // comment
+            writeShort(directory, 0); // disk
+            writeShort(directory, 0); // internal attributes
+            writeInt(directory, 0); // external attributes
+            writeInt(directory, (int) offset);
+            directory.write(name);
+
+            offset += header.size() + part.data().length;
+        }
+
+        int directorySize = directory.size();
+        writeInt(directory, 0x06054b50);
+        writeShort(directory, 0);
+        writeShort(directory, 0);
+        writeShort(directory, entries.size());
+        writeShort(directory, entries.size());
+        writeInt(directory, directorySize);
+        writeInt(directory, (int) offset);
+        writeShort(directory, 0);
+        directory.writeTo(out);
+        out.flush();
+    }
+
+    // Phần chung của local header và central directory: version, cờ UTF-8, deflate, thời gian, CRC, kích thước, tên
+    private static void writeEntryFields(ByteArrayOutputStream out, Packed part, byte[] name) {
+        writeShort(out, 20); // version needed
+        writeShort(out, 0x0800); // tên UTF-8
+        writeShort(out, ZipEntry.DEFLATED);
+        writeShort(out, 0); // giờ DOS 00:00
+        writeShort(out, (1 << 5) | 1); // ngày DOS 1980-01-01
+        writeInt(out, (int) part.crc());
+        writeInt(out, part.data().length);
+        writeInt(out, part.size());
+        writeShort(out, name.length);
+        writeShort(out, 0); // extra
+    }
+
+    private static void writeShort(ByteArrayOutputStream out, int value) {
+        out.write(value & 0xff);
+        out.write((value >>> 8) & 0xff);
+    }
+
+    private static void writeInt(ByteArrayOutputStream out, int value) {
+        writeShort(out, value & 0xffff);
+        writeShort(out, (value >>> 16) & 0xffff);
+    }
+
+    private static Packed pack(byte[] bytes) {
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        try {
+            deflater.setInput(bytes);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 4 + 64);
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            CRC32 crc = new CRC32();
+            crc.update(bytes);
+            return new Packed(out.toByteArray(), crc.getValue(), bytes.length);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    // DOM của template là dùng chung: clone dưới lock của template vì DOM (Xerces) không đảm bảo đọc đồng thời an toàn
+    private static Document cloneOf(CompiledTemplate template, Document source) {
+        synchronized (template) {
+            return (Document) source.cloneNode(true);
+        }
+    }
+
+    private Document parse(byte[] xml, String templateName) throws IOException {
+        try {
+            DocumentBuilder builder;
+            synchronized (builderFactory) {
+                builder = builderFactory.newDocumentBuilder();
+            }
+            return builder.parse(new ByteArrayInputStream(xml));
+        } catch (ParserConfigurationException | SAXException e) {
+            throw new IOException("Invalid Word template format: " + templateName, e);
+        }
+    }
+
+    private Document newRelationships() throws IOException {
+        try {
+            DocumentBuilder builder;
+            synchronized (builderFactory) {
+                builder = builderFactory.newDocumentBuilder();
+            }
+            Document document = builder.newDocument();
+            document.appendChild(document.createElementNS(PACKAGE_RELS_NS, "Relationships"));
+            return document;
+        } catch (ParserConfigurationException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private byte[] serialize(Document document) throws IOException {
+        try {
+            Transformer transformer;
+            synchronized (transformerFactory) {
+                transformer = transformerFactory.newTransformer();
+            }
+            transformer.setOutputProperty(OutputKeys.ENCODING, "UTF-8");
+            // Khai báo giống file Word lưu ra (Transformer không tự ghi standalone="yes")
+            transformer.setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, "yes");
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            out.write(XML_DECLARATION);
+            transformer.transform(new DOMSource(document), new StreamResult(out));
+            return out.toByteArray();
+        } catch (TransformerException e) {
+            throw new IOException("Cannot write Word document", e);
+        }
+    }
+
+    private static DocumentBuilderFactory secureBuilderFactory() {
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setNamespaceAware(true);
+        factory.setExpandEntityReferences(false);
+        factory.setXIncludeAware(false);
+        try {
+            factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+            factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+            // DOM dựng đầy đủ ngay khi parse (không lazy) vì template được giữ lâu và clone nhiều lần
+            factory.setFeature("http://apache.org/xml/features/dom/defer-node-expansion", false);
+        } catch (ParserConfigurationException e) {
+            throw new IllegalStateException("XML parser does not support secure processing", e);
+        }
+        return factory;
+    }
+
+    private static Element child(Element parent, String namespace, String localName) {
+        for (Node node = parent.getFirstChild(); node != null; node = node.getNextSibling()) {
+            if (node instanceof Element element && namespace.equals(element.getNamespaceURI())
+                    && localName.equals(element.getLocalName())) {
+                return element;
+            }
+        }
+        return null;
+    }
+
+    private static List<Element> children(Element parent, String namespace, String localName) {
+        List<Element> result = new ArrayList<>();
+        for (Node node = parent.getFirstChild(); node != null; node = node.getNextSibling()) {
+            if (node instanceof Element element && namespace.equals(element.getNamespaceURI())
+                    && localName.equals(element.getLocalName())) {
+                result.add(element);
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,224 @@
+package server.utils;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+import server.dtos.FaceVerifyResponse;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Client gọi service Python /api/face-verify, dùng chung 1 HttpClient (giữ kết nối keep-alive để tái sử dụng)
+ * thay cho new RestTemplate() không timeout.
+ *
+ * - Timeout kết nối / đọc cấu hình được, quá hạn thì trả lỗi thay vì giữ thread Tomcat vô thời hạn.
+ * - Giới hạn số request đồng thời: lúc cao điểm check-in, request vượt quá chỉ chờ tối đa acquire-timeout rồi báo bận.
+ * - Circuit breaker: lỗi liên tiếp {@code failure-threshold} lần (timeout, lỗi kết nối, 5xx) thì từ chối ngay
+ *   trong {@code open-ms}, hết hạn cho 1 request thử, thành công thì đóng lại.
+ *
+ * Lỗi 4xx (vd 403 khuôn mặt không hợp lệ) là câu trả lời của service nên không tính vào breaker.
+ */
+@Component
+public class FaceVerifyClient {
+    private static final Logger log = LoggerFactory.getLogger(FaceVerifyClient.class);
+
+    public record Stats(String url, String circuit, int inFlight, int maxConcurrent,
+                        long calls, long succeeded, long failed, long rejectedBusy, long rejectedOpen,
+                        double avgLatencyMs, long maxLatencyMs) {
+    }
+
+    // Service chưa cache encoding của known_key: gọi lại kèm known_image
+    public static class UnknownReferenceException extends IOException {
+        public UnknownReferenceException() {
+            super("Face verification service does not know the reference image");
+        }
+    }
+
+    private final String url;
+    private final int maxConcurrent;
+    private final long acquireTimeoutMs;
+    private final int failureThreshold;
+    private final long openMs;
+
+    private final ExecutorService httpExecutor;
+    private final RestTemplate restTemplate;
+    private final Semaphore permits;
+
+    // Trạng thái breaker: số lỗi liên tiếp, thời điểm được thử lại (0 = đang đóng), cờ đang có request thử
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private final AtomicLong openUntil = new AtomicLong();
+    private final AtomicInteger halfOpenTrial = new AtomicInteger();
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder succeeded = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder rejectedBusy = new LongAdder();
+    private final LongAdder rejectedOpen = new LongAdder();
+    private final LongAdder totalLatencyMs = new LongAdder();
+    private final AtomicLong maxLatencyMs = new AtomicLong();
+
+    public FaceVerifyClient(@Value("${app.face-verify.url:http://localhost:5000/api/face-verify}") String url,
+                            @Value("${app.face-verify.connect-timeout-ms:2000}") long connectTimeoutMs,
+                            @Value("${app.face-verify.read-timeout-ms:10000}") long readTimeoutMs,
+                            @Value("${app.face-verify.max-concurrent:16}") int maxConcurrent,
+                            @Value("${app.face-verify.acquire-timeout-ms:2000}") long acquireTimeoutMs,
+                            @Value("${app.face-verify.failure-threshold:5}") int failureThreshold,
+                            @Value("${app.face-verify.open-ms:30000}") long openMs) {
+        this.url = url;
+        this.maxConcurrent = Math.max(1, maxConcurrent);
+        this.acquireTimeoutMs = Math.max(0, acquireTimeoutMs);
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.openMs = Math.max(0, openMs);
+
+        AtomicInteger counter = new AtomicInteger();
+        this.httpExecutor = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "face-verify-http-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        HttpClient httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+                .executor(httpExecutor)
+                .build();
+        JdkClientHttpRequestFactory requestFactory = new JdkClientHttpRequestFactory(httpClient);
+        requestFactory.setReadTimeout(Duration.ofMillis(readTimeoutMs));
+        this.restTemplate = new RestTemplate(requestFactory);
+        this.permits = new Semaphore(this.maxConcurrent);
+    }
+
+    // body: multipart image, known_key và/hoặc known_image, latitude, longitude như service Python yêu cầu
+    public FaceVerifyResponse verify(MultiValueMap<String, Object> body) throws IOException {
+        calls.increment();
+        if (!allowRequest()) {
+            rejectedOpen.increment();
+            throw new IOException("Face verification service is unavailable, please try again later");
+        }
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(acquireTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            releaseTrial();
+            throw new IOException("Face verification interrupted");
+        }
+        if (!acquired) {
+            rejectedBusy.increment();
+            releaseTrial();
+            throw new IOException("Face verification service is busy, please try again");
+        }
+
+        inFlight.incrementAndGet();
+        long startedAt = System.nanoTime();
+        try {
+            HttpHeaders headers = new HttpHeaders();
+            headers.setContentType(MediaType.MULTIPART_FORM_DATA);
+            ResponseEntity<FaceVerifyResponse> response =
+                    restTemplate.postForEntity(url, new HttpEntity<>(body, headers), FaceVerifyResponse.class);
+            if (!response.getStatusCode().is2xxSuccessful() || response.getBody() == null) {
+                onFailure(null);
+                throw new IOException("Failed to verify face from Python service");
+            }
+            onSuccess();
+            return response.getBody();
+        } catch (HttpClientErrorException.Conflict e) {
+            onSuccess();
+            throw new UnknownReferenceException();
+        } catch (HttpClientErrorException.Forbidden e) {
+            onSuccess();
+            throw new IOException("Face verification failed with 403 Forbidden: " + e.getResponseBodyAsString());
+        } catch (HttpClientErrorException e) {
+            onSuccess();
+            throw new IOException("Face verification rejected: " + e.getStatusCode());
+        } catch (RestClientException e) {
+            onFailure(e);
+            throw new IOException("Error calling Python face verification service: " + e.getMessage());
+        } finally {
+            long latencyMs = (System.nanoTime() - startedAt) / 1_000_000;
+            totalLatencyMs.add(latencyMs);
+            maxLatencyMs.accumulateAndGet(latencyMs, Math::max);
+            inFlight.decrementAndGet();
+            permits.release();
+        }
+    }
+
+    public Stats stats() {
+        long done = succeeded.sum() + failed.sum();
+        return new Stats(url, circuitState(), inFlight.get(), maxConcurrent,
+                calls.sum(), succeeded.sum(), failed.sum(), rejectedBusy.sum(), rejectedOpen.sum(),
+                done == 0 ? 0 : (double) totalLatencyMs.sum() / done, maxLatencyMs.get());
+    }
+
+    private boolean allowRequest() {
+        long until = openUntil.get();
+        if (until == 0) {
+            return true;
+        }
+        if (System.currentTimeMillis() < until) {
+            return false;
+        }
+        // Hết thời gian mở: chỉ 1 request được đi thử
+        return halfOpenTrial.compareAndSet(0, 1);
+    }
+
+    private void onSuccess() {
+        succeeded.increment();
+        consecutiveFailures.set(0);
+        if (openUntil.getAndSet(0) != 0) {
+            log.info("[FaceVerify] Service đã phản hồi lại, đóng circuit");
+        }
+        halfOpenTrial.set(0);
+    }
+
+    private void onFailure(Exception error) {
+        failed.increment();
+        int failures = consecutiveFailures.incrementAndGet();
+        boolean trial = halfOpenTrial.getAndSet(0) == 1;
+        if (trial || failures >= failureThreshold) {
+            openUntil.set(System.currentTimeMillis() + openMs);
+            log.warn("[FaceVerify] {} lỗi liên tiếp, tạm ngừng gọi {} trong {} ms: {}",
+                    failures, url, openMs, error != null ? error.getMessage() : "empty response");
+        }
+    }
+
+    // Request thử bị hủy trước khi gửi thì trả lượt thử cho request sau
+    private void releaseTrial() {
+        if (openUntil.get() != 0) {
+            halfOpenTrial.set(0);
+        }
+    }
+
+    private String circuitState() {
+        long until = openUntil.get();
+        if (until == 0) {
+            return "CLOSED";
+        }
+        return System.currentTimeMillis() < until ? "OPEN" : "HALF_OPEN";
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        httpExecutor.shutdownNow();
+    }
+}
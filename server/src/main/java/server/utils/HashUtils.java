@@ -0,0 +1,24 @@
+package server.utils;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * Băm chuỗi ra key cố định độ dài: fingerprint token, key cache (ảnh khuôn mặt, ETag profile...).
+ */
+public final class HashUtils {
+    private HashUtils() {
+    }
+
+    // SHA-256 (hex) của chuỗi UTF-8
+    public static String sha256Hex(String value) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,242 @@
+package server.utils;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.event.IIOReadProgressListener;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+
+/**
+ * Các thao tác ảnh dùng cho nhận diện khuôn mặt: đọc ảnh đã thu nhỏ, xoay theo EXIF, nén JPEG.
+ */
+public final class ImageUtils {
+    // Đủ chứa segment EXIF (APP1 tối đa 64KB) ở đầu file JPEG
+    private static final int EXIF_HEADER_BYTES = 64 * 1024;
+
+    // Phần đã đọc qua được giữ lại trong cache của stream khi giải mã, phía trước đó bỏ đi
+    private static final int READ_WINDOW_BYTES = 64 * 1024;
+
+    private ImageUtils() {
+    }
+
+    /**
+     * Đọc ảnh từ stream, chỉ giải mã mỗi {@code step} pixel (subsampling) để không phải bung cả ảnh gốc
+     * nhiều megapixel lên heap, rồi xoay theo EXIF và thu nhỏ cạnh dài về maxSide.
+     * Trả về JPEG, hoặc null nếu ImageIO không đọc được định dạng này. Không đọc hết stream.
+     *
+     * Stream ảnh đệm trong bộ nhớ (không tạo file tạm như ImageIO.createImageInputStream khi bật cache),
+     * và trong lúc giải mã chỉ giữ khoảng {@code READ_WINDOW_BYTES} cuối: reader đọc tiến (seekForwardOnly)
+     * nên phần trước đó được flush, cache không phình theo kích thước file upload.
+     */
+    public static byte[] readScaledJpeg(InputStream in, int maxSide, float quality) throws IOException {
+        BufferedInputStream buffered = new BufferedInputStream(in, EXIF_HEADER_BYTES);
+        buffered.mark(EXIF_HEADER_BYTES);
+        byte[] header = buffered.readNBytes(EXIF_HEADER_BYTES);
+        buffered.reset();
+        int orientation = exifOrientation(header);
+
+        BufferedImage image;
+        try (ImageInputStream iis = new MemoryCacheImageInputStream(buffered)) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(iis);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(iis, true, true);
+                reader.addIIOReadProgressListener(new FlushingProgressListener(iis));
+                int longest = Math.max(reader.getWidth(0), reader.getHeight(0));
+                int step = Math.max(1, longest / Math.max(1, maxSide));
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(step, step, 0, 0);
+                image = reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+        return toJpeg(downscale(orient(image, orientation), maxSide), quality);
+    }
+
+    // Thu nhỏ cạnh dài về maxSide (không phóng to), vẽ lên nền trắng RGB vì JPEG không có alpha
+    public static BufferedImage downscale(BufferedImage source, int maxSide) {
+        int width = source.getWidth();
+        int height = source.getHeight();
+        double scale = Math.min(1.0, (double) maxSide / Math.max(width, height));
+        int targetWidth = Math.max(1, (int) Math.round(width * scale));
+        int targetHeight = Math.max(1, (int) Math.round(height * scale));
+
+        BufferedImage target = new BufferedImage(targetWidth, targetHeight, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = target.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.drawImage(source, 0, 0, targetWidth, targetHeight, Color.WHITE, null);
+        } finally {
+            g.dispose();
+        }
+        return target;
+    }
+
+    // Xoay / lật ảnh theo giá trị Orientation EXIF (1..8), 1 = giữ nguyên
+    public static BufferedImage orient(BufferedImage source, int orientation) {
+        if (orientation <= 1 || orientation > 8) {
+            return source;
+        }
+        int w = source.getWidth();
+        int h = source.getHeight();
+        boolean swap = orientation >= 5;
+        AffineTransform t = new AffineTransform();
+        switch (orientation) {
+            case 2 -> { t.translate(w, 0); t.scale(-1, 1); }
+            case 3 -> { t.translate(w, h); t.rotate(Math.PI); }
+            case 4 -> { t.translate(0, h); t.scale(1, -1); }
+            case 5 -> { t.rotate(Math.PI / 2); t.scale(1, -1); }
+            case 6 -> { t.translate(h, 0); t.rotate(Math.PI / 2); }
+            case 7 -> { t.scale(-1, 1); t.translate(-h, 0); t.translate(0, w); t.rotate(3 * Math.PI / 2); }
+            case 8 -> { t.translate(0, w); t.rotate(3 * Math.PI / 2); }
+            default -> { }
+        }
+        BufferedImage target = new BufferedImage(swap ? h : w, swap ? w : h, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = target.createGraphics();
+        try {
+            g.setColor(Color.WHITE);
+            g.fillRect(0, 0, target.getWidth(), target.getHeight());
+            g.drawImage(source, t, null);
+        } finally {
+            g.dispose();
+        }
+        return target;
+    }
+
+    public static byte[] toJpeg(BufferedImage image, float quality) throws IOException {
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName("jpeg");
+        if (!writers.hasNext()) {
+            throw new IOException("No JPEG writer available");
+        }
+        ImageWriter writer = writers.next();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ImageOutputStream ios = new MemoryCacheImageOutputStream(out)) {
+            writer.setOutput(ios);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(quality);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return out.toByteArray();
+    }
+
+    // Mỗi lần reader báo tiến độ, bỏ phần cache cách vị trí đọc hiện tại hơn READ_WINDOW_BYTES
+    private record FlushingProgressListener(ImageInputStream iis) implements IIOReadProgressListener {
+        @Override
+        public void imageProgress(ImageReader source, float percentageDone) {
+            try {
+                long keepFrom = iis.getStreamPosition() - READ_WINDOW_BYTES;
+                if (keepFrom > iis.getFlushedPosition()) {
+                    iis.flushBefore(keepFrom);
+                }
+            } catch (IOException e) {
+                // Chỉ là tối ưu bộ nhớ, lỗi thật sẽ lộ ra ở reader.read
+            }
+        }
+
+        @Override
+        public void sequenceStarted(ImageReader source, int minIndex) {
+        }
+
+        @Override
+        public void sequenceComplete(ImageReader source) {
+        }
+
+        @Override
+        public void imageStarted(ImageReader source, int imageIndex) {
+        }
+
+        @Override
+        public void imageComplete(ImageReader source) {
+        }
+
+        @Override
+        public void thumbnailStarted(ImageReader source, int imageIndex, int thumbnailIndex) {
+        }
+
+        @Override
+        public void thumbnailProgress(ImageReader source, float percentageDone) {
+        }
+
+        @Override
+        public void thumbnailComplete(ImageReader source) {
+        }
+
+        @Override
+        public void readAborted(ImageReader source) {
+        }
+    }
+
+    // Tag Orientation (0x0112) trong IFD0 của segment EXIF, không có / không phải JPEG thì trả 1
+    public static int exifOrientation(byte[] jpeg) {
+        if (jpeg.length < 4 || (jpeg[0] & 0xFF) != 0xFF || (jpeg[1] & 0xFF) != 0xD8) {
+            return 1;
+        }
+        int pos = 2;
+        while (pos + 4 <= jpeg.length && (jpeg[pos] & 0xFF) == 0xFF) {
+            int marker = jpeg[pos + 1] & 0xFF;
+            int length = ((jpeg[pos + 2] & 0xFF) << 8) | (jpeg[pos + 3] & 0xFF);
+            if (marker == 0xDA || length < 2) {
+                break; // bắt đầu dữ liệu ảnh
+            }
+            int start = pos + 4;
+            if (marker == 0xE1 && start + 14 <= jpeg.length && jpeg[start] == 'E' && jpeg[start + 1] == 'x'
+                    && jpeg[start + 2] == 'i' && jpeg[start + 3] == 'f') {
+                int tiff = start + 6;
+                boolean little = jpeg[tiff] == 'I';
+                int ifd = tiff + readInt(jpeg, tiff + 4, little);
+                if (ifd < tiff || ifd + 2 > jpeg.length) {
+                    return 1;
+                }
+                int count = readShort(jpeg, ifd, little);
+                for (int i = 0; i < count; i++) {
+                    int entry = ifd + 2 + i * 12;
+                    if (entry + 10 > jpeg.length) {
+                        break;
+                    }
+                    if (readShort(jpeg, entry, little) == 0x0112) {
+                        return readShort(jpeg, entry + 8, little);
+                    }
+                }
+                return 1;
+            }
+            pos += 2 + length;
+        }
+        return 1;
+    }
+
+    private static int readShort(byte[] b, int offset, boolean little) {
+        return little
+                ? (b[offset] & 0xFF) | ((b[offset + 1] & 0xFF) << 8)
+                : ((b[offset] & 0xFF) << 8) | (b[offset + 1] & 0xFF);
+    }
+
+    private static int readInt(byte[] b, int offset, boolean little) {
+        return little
+                ? readShort(b, offset, true) | (readShort(b, offset + 2, true) << 16)
+                : (readShort(b, offset, false) << 16) | readShort(b, offset + 2, false);
+    }
+}
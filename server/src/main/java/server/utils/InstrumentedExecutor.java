@@ -0,0 +1,217 @@
+package server.utils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Pool có giới hạn (số thread + hàng đợi) kèm số liệu: số task đã nhận/xong/lỗi/bị từ chối,
+ * độ sâu hàng đợi, thời gian chờ trong hàng đợi và thời gian chạy.
+ *
+ * Chế độ virtual thread (cần JDK 21+, phát hiện lúc chạy): mỗi task 1 virtual thread,
+ * semaphore giữ số task chạy đồng thời = threads; JDK cũ hơn thì tự quay về platform thread.
+ *
+ * Cố ý không implement Executor để không làm Spring Boot bỏ applicationTaskExecutor mặc định.
+ */
+public class InstrumentedExecutor {
+    private static final Logger log = LoggerFactory.getLogger(InstrumentedExecutor.class);
+
+    public enum Rejection {
+        CALLER_RUNS, // thread gọi tự chạy task (tự giảm tốc nguồn phát)
+        ABORT,       // ném RejectedExecutionException cho caller
+        DISCARD,     // bỏ task, chỉ đếm rejected
+    }
+
+    public record Stats(String name, String mode, int threads, int queueCapacity,
+                        int active, int queued,
+                        long submitted, long completed, long failed, long rejected,
+                        double avgQueueWaitMs, long maxQueueWaitMs,
+                        double avgRunMs, long maxRunMs) {
+    }
+
+    private final String name;
+    private final int threads;
+    private final int queueCapacity;
+    private final Rejection rejection;
+    private final boolean virtual;
+    private final ExecutorService delegate;
+    private final Semaphore permits; // chỉ dùng ở chế độ virtual
+
+    private final AtomicInteger inFlight = new AtomicInteger(); // đang chờ + đang chạy
+    private final AtomicInteger active = new AtomicInteger();
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder totalWaitMs = new LongAdder();
+    private final LongAdder totalRunMs = new LongAdder();
+    private final AtomicLong maxWaitMs = new AtomicLong();
+    private final AtomicLong maxRunMs = new AtomicLong();
+
+    public InstrumentedExecutor(String name, int threads, int queueCapacity, Rejection rejection, boolean virtualThreads) {
+        this.name = name;
+        this.threads = Math.max(1, threads);
+        this.queueCapacity = Math.max(0, queueCapacity);
+        this.rejection = rejection != null ? rejection : Rejection.CALLER_RUNS;
+
+        ExecutorService virtualExecutor = virtualThreads ? newVirtualThreadExecutor() : null;
+        if (virtualThreads && virtualExecutor == null) {
+            log.warn("[Executor] {}: JDK hiện tại không hỗ trợ virtual thread, dùng platform thread", name);
+        }
+        this.virtual = virtualExecutor != null;
+        if (virtual) {
+            this.delegate = virtualExecutor;
+            this.permits = new Semaphore(this.threads);
+        } else {
+            AtomicInteger counter = new AtomicInteger();
+            this.delegate = new ThreadPoolExecutor(this.threads, this.threads, 60, TimeUnit.SECONDS,
+                    this.queueCapacity == 0 ? new SynchronousQueue<>() : new ArrayBlockingQueue<>(this.queueCapacity),
+                    r -> {
+                        Thread t = new Thread(r, name + "-" + counter.incrementAndGet());
+                        t.setDaemon(true);
+                        return t;
+                    },
+                    new ThreadPoolExecutor.AbortPolicy());
+            this.permits = null;
+        }
+    }
+
+    public void execute(Runnable task) {
+        submitted.increment();
+        Runnable tracked = track(task);
+        if (inFlight.incrementAndGet() > threads + queueCapacity) {
+            inFlight.decrementAndGet();
+            reject(task, tracked);
+            return;
+        }
+        try {
+            delegate.execute(tracked);
+        } catch (RejectedExecutionException e) {
+            inFlight.decrementAndGet();
+            if (delegate.isShutdown()) {
+                rejected.increment();
+                throw e;
+            }
+            reject(task, tracked);
+        }
+    }
+
+    public <T> Future<T> submit(Callable<T> task) {
+        // FutureTask tự giữ exception nên đếm xong/lỗi tại đây thay vì trong track()
+        FutureTask<T> future = new FutureTask<>(task) {
+            @Override
+            protected void set(T value) {
+                completed.increment();
+                super.set(value);
+            }
+
+            @Override
+            protected void setException(Throwable t) {
+                failed.increment();
+                super.setException(t);
+            }
+        };
+        execute(future);
+        return future;
+    }
+
+    public int threads() {
+        return threads;
+    }
+
+    public Stats stats() {
+        long done = completed.sum() + failed.sum();
+        int running = active.get();
+        return new Stats(name, virtual ? "virtual" : "platform", threads, queueCapacity,
+                running, Math.max(0, inFlight.get() - running),
+                submitted.sum(), completed.sum(), failed.sum(), rejected.sum(),
+                done == 0 ? 0 : (double) totalWaitMs.sum() / done, maxWaitMs.get(),
+                done == 0 ? 0 : (double) totalRunMs.sum() / done, maxRunMs.get());
+    }
+
+    public void shutdown() {
+        delegate.shutdown();
+        try {
+            if (!delegate.awaitTermination(5, TimeUnit.SECONDS)) {
+                delegate.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            delegate.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void reject(Runnable task, Runnable tracked) {
+        rejected.increment();
+        switch (rejection) {
+            case CALLER_RUNS -> {
+                inFlight.incrementAndGet();
+                tracked.run();
+            }
+            case DISCARD -> {
+                // Task từ submit(): hủy Future để caller đang chờ get() không bị treo
+                if (task instanceof Future<?> future) {
+                    future.cancel(false);
+                }
+                log.debug("[Executor] {}: hàng đợi đầy, bỏ 1 task", name);
+            }
+            case ABORT -> throw new RejectedExecutionException("Executor " + name + " is saturated");
+        }
+    }
+
+    private Runnable track(Runnable task) {
+        long enqueuedAt = System.nanoTime();
+        return () -> {
+            boolean acquired = false;
+            try {
+                if (permits != null) {
+                    permits.acquire();
+                    acquired = true;
+                }
+                long startedAt = System.nanoTime();
+                record(totalWaitMs, maxWaitMs, (startedAt - enqueuedAt) / 1_000_000);
+                active.incrementAndGet();
+                try {
+                    task.run();
+                    if (!(task instanceof FutureTask<?>)) {
+                        completed.increment();
+                    }
+                } catch (RuntimeException | Error e) {
+                    failed.increment();
+                    throw e;
+                } finally {
+                    active.decrementAndGet();
+                    record(totalRunMs, maxRunMs, (System.nanoTime() - startedAt) / 1_000_000);
+                }
+            } catch (InterruptedException e) {
+                failed.increment();
+                Thread.currentThread().interrupt();
+            } finally {
+                if (acquired) {
+                    permits.release();
+                }
+                inFlight.decrementAndGet();
+            }
+        };
+    }
+
+    private static void record(LongAdder total, AtomicLong max, long valueMs) {
+        total.add(valueMs);
+        max.accumulateAndGet(valueMs, Math::max);
+    }
+
+    // Executors.newVirtualThreadPerTaskExecutor() (JDK 21+), gọi qua reflection vì project build với Java 17
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+}
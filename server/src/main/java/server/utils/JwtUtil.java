@@ -1,9 +1,11 @@
 package server.utils;
 
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.io.Decoders;
 import io.jsonwebtoken.security.Keys;
+import jakarta.annotation.PostConstruct;
 import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
@@ -11,16 +13,27 @@ import org.springframework.http.HttpHeaders;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Component;
 import server.models.Account;
+import server.models.Employee;
+import server.models.enums.Role;
 import server.repositories.TokenRepository;
 
 import javax.crypto.SecretKey;
+import java.time.Duration;
+import java.time.LocalDateTime;
 import java.util.Date;
+import java.util.UUID;
 import java.util.function.Function;
 
 @Component
 @RequiredArgsConstructor
 public class JwtUtil {
+    public static final String CLAIM_ROLE = "role";
+    public static final String CLAIM_ACCOUNT_ID = "aid";
+    public static final String CLAIM_EMPLOYEE_ID = "eid";
+    public static final String CLAIM_ENABLED = "enabled";
+
     private final TokenRepository tokenRepository;
+    private final TokenValidityCache tokenValidityCache;
 
     @Value("${app.jwt.secret-key}")
     private String secretKey;
@@ -31,6 +44,23 @@ public class JwtUtil {
     @Value("${app.jwt.refresh-token-expiration}")
     private long refreshTokenExpire;
 
+    // Bật thì JwtAuthenticationFilter dựng principal từ claims, không load Account từ DB
+    @Value("${app.jwt.stateless-principal:false}")
+    private boolean statelessPrincipal;
+
+    // Khóa ký và parser được dựng 1 lần khi khởi động; JwtParser của jjwt là immutable, dùng chung an toàn giữa các thread
+    private SecretKey signingKey;
+    private JwtParser jwtParser;
+
+    @PostConstruct
+    void init() {
+        byte[] keyBytes = Decoders.BASE64URL.decode(secretKey);
+        signingKey = Keys.hmacShaKeyFor(keyBytes);
+        jwtParser = Jwts.parser()
+                .verifyWith(signingKey)
+                .build();
+    }
+
     public String generateAccessToken(Account account) {
         return generateToken(account, accessTokenExpire);
     }
@@ -39,15 +69,88 @@ public class JwtUtil {
         return generateToken(account, refreshTokenExpire);
     }
 
+    // Mốc hết hạn của refresh token phát hành tại thời điểm hiện tại
+    public LocalDateTime refreshTokenExpiresAt() {
+        return LocalDateTime.now().plus(Duration.ofMillis(refreshTokenExpire));
+    }
+
+    public long getRefreshTokenExpire() {
+        return refreshTokenExpire;
+    }
+
+    public boolean isStatelessPrincipal() {
+        return statelessPrincipal;
+    }
+
+    /**
+     * Dựng Account "rút gọn" (id, username, role, enabled, employee.id) từ claims của access token.
+     * Đây không phải entity đã load: các quan hệ khác đều null. Chỉ dùng để kiểm tra token trong filter,
+     * principal đưa vào SecurityContext là LazyAccountAuthentication (load Account đầy đủ khi được lấy ra).
+     * Trả về null nếu token phát hành trước khi có các claim này.
+     */
+    public Account principalFromClaims(Claims claims) {
+        Long accountId = longClaim(claims, CLAIM_ACCOUNT_ID);
+        String role = claims.get(CLAIM_ROLE, String.class);
+        Boolean enabled = claims.get(CLAIM_ENABLED, Boolean.class);
+        if (accountId == null || role == null || enabled == null) {
+            return null;
+        }
+
+        Account account = Account.builder()
+                .id(accountId)
+                .username(claims.getSubject())
+                .role(Role.valueOf(role))
+                .enabled(enabled)
+                .build();
+
+        Long employeeId = longClaim(claims, CLAIM_EMPLOYEE_ID);
+        if (employeeId != null) {
+            Employee employee = new Employee();
+            employee.setId(employeeId);
+            account.setEmployee(employee);
+        }
+        return account;
+    }
+
+    private Long longClaim(Claims claims, String name) {
+        Object value = claims.get(name);
+        return value instanceof Number number ? number.longValue() : null;
+    }
+
     // Phương thức kiểm tra tính hợp lệ của Access Token
     public boolean isValidAccessToken(String token, UserDetails account) {
-        String username = extractUsername(token);
+        return isValidAccessToken(token, extractAllClaims(token), account);
+    }
+
+    // Kiểm tra Access Token với claims đã parse sẵn (không parse/verify lại chữ ký)
+    public boolean isValidAccessToken(String token, Claims claims, UserDetails account) {
+        String username = claims.getSubject();
+
+        if (!username.equals(account.getUsername()) || claims.getExpiration().before(new Date())) {
+            return false;
+        }
+
+        // Token đã được xác nhận trước đó và chưa bị thu hồi thì không cần tra DB
+        if (tokenValidityCache.isValid(token)) {
+            return true;
+        }
 
-        boolean isValid = tokenRepository.findByAccessToken(token).isPresent();
+        Long accountId = account instanceof Account acc ? acc.getId() : null;
+        long generation = tokenValidityCache.generation(accountId);
+        if (!tokenRepository.existsByAccessToken(token)) {
+            return false;
+        }
 
-        return username.equals(account.getUsername()) && isValid && !isTokenExpired(token);
+        tokenValidityCache.put(token, accountId, claims.getExpiration(), generation);
+        return true;
     }
+
     public String extractUsernameFromRequest(HttpServletRequest request) {
+        // Ưu tiên context đã được JwtAuthenticationFilter dựng sẵn cho request này
+        RequestAuthContext context = RequestAuthContext.current(request);
+        if (context != null) {
+            return context.getUsername();
+        }
         final String authHeader = request.getHeader(HttpHeaders.AUTHORIZATION);
         if (authHeader != null && authHeader.startsWith("Bearer ")) {
             String jwt = authHeader.substring(7);
@@ -57,11 +160,17 @@ public class JwtUtil {
     }
     // Phương thức kiểm tra tính hợp lệ của Refresh Token
     public boolean isValidRefreshToken(String refreshToken, UserDetails account) {
-        String username = extractUsername(refreshToken);
+        return isValidRefreshToken(refreshToken, extractAllClaims(refreshToken), account);
+    }
 
-        boolean isValid = tokenRepository.findByRefreshToken(refreshToken).isPresent();
+    public boolean isValidRefreshToken(String refreshToken, Claims claims, UserDetails account) {
+        String username = claims.getSubject();
 
-        return username.equals(account.getUsername()) && isValid && !isTokenExpired(refreshToken);
+        if (!username.equals(account.getUsername()) || claims.getExpiration().before(new Date())) {
+            return false;
+        }
+
+        return tokenRepository.findByRefreshToken(refreshToken).isPresent();
     }
 
     //lấy username từ token
@@ -69,16 +178,6 @@ public class JwtUtil {
         return extractClaim(token, Claims::getSubject);
     }
 
-    // Phương thức kiểm tra xem token có hết hạn hay chưa
-    private boolean isTokenExpired(String token) {
-        return extractExpiration(token).before(new Date());
-    }
-
-    // Phương thức trích xuất ngày hết hạn từ token
-    private Date extractExpiration(String token) {
-        return extractClaim(token, Claims::getExpiration);
-    }
-
     // Phương thức trích xuất một claim bất kỳ từ token
     public  <T> T extractClaim(String token, Function<Claims, T> resolver) {
         Claims claims = extractAllClaims(token);
@@ -86,28 +185,24 @@ public class JwtUtil {
     }
 
     // Phương thức trích xuất toàn bộ claims từ token
-    private Claims extractAllClaims(String token) {
-        return Jwts
-                .parser()
-                .verifyWith(getSigninKey())
-                .build()
+    public Claims extractAllClaims(String token) {
+        return jwtParser
                 .parseSignedClaims(token)
                 .getPayload();
     }
 
-    private SecretKey getSigninKey() {
-        byte[] keyBytes = Decoders.BASE64URL.decode(secretKey);
-        return Keys.hmacShaKeyFor(keyBytes);
-    }
-
     private String generateToken(Account account, long expireTime) {
         String token = Jwts
                 .builder()
                 .subject(account.getUsername()) // Đặt "subject" là username của người dùng
-                .claim("role", account.getRole()) // Thêm thông tin role của người dùng vào claims
+                .id(UUID.randomUUID().toString()) // jti ngẫu nhiên để 2 lần đăng nhập trong cùng 1 giây không ra trùng token (fingerprint là unique)
+                .claim(CLAIM_ROLE, account.getRole()) // Thêm thông tin role của người dùng vào claims
+                .claim(CLAIM_ACCOUNT_ID, account.getId())
+                .claim(CLAIM_ENABLED, account.isEnabled())
+                .claim(CLAIM_EMPLOYEE_ID, account.getEmployee() != null ? account.getEmployee().getId() : null)
                 .issuedAt(new Date(System.currentTimeMillis())) // Thiết lập ngày phát hành token
                 .expiration(new Date(System.currentTimeMillis() + expireTime)) // Thiết lập ngày hết hạn
-                .signWith(getSigninKey()) // Ký token bằng khóa bí mật
+                .signWith(signingKey) // Ký token bằng khóa bí mật
                 .compact(); // Hoàn tất việc xây dựng và trả về token
         return token;
     }
@@ -0,0 +1,119 @@
+package server.utils;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.stereotype.Component;
+import server.services.UploadFileService;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Ảnh gốc (avatar) dùng để so khớp khuôn mặt khi check-in / check-out.
+ *
+ * - Key gửi cho service Python = fingerprint(đường dẫn + mtime): service tự cache encoding theo key này,
+ *   lần sau chỉ cần gửi key và ảnh chụp, không phải gửi lại avatar.
+ * - Khi service chưa có key (vừa khởi động lại...) mới cần bytes ảnh: cache LRU theo đường dẫn,
+ *   đã thu nhỏ cạnh dài về {@code max-side} và nén JPEG, tự đọc lại khi mtime của file thay đổi.
+ *
+ * EmployeeService.changeAvatar gọi invalidate() với avatar cũ.
+ */
+@Component
+public class KnownFaceCache {
+    public record Reference(String key, Path path) {
+    }
+
+    private record Entry(long modifiedMillis, byte[] bytes, String filename) {
+    }
+
+    private final UploadFileService uploadFileService;
+    private final int maxSide;
+    private final Map<Path, Entry> entries;
+
+    public KnownFaceCache(UploadFileService uploadFileService,
+                          @Value("${app.face-cache.max-entries:1000}") int maxEntries,
+                          @Value("${app.face-cache.max-side:800}") int maxSide) {
+        this.uploadFileService = uploadFileService;
+        this.maxSide = Math.max(64, maxSide);
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Path, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    // Chỉ stat file (không đọc nội dung) để lấy key hiện tại của avatar
+    public Reference reference(String avatarPath) throws IOException {
+        Path path = uploadFileService.resolvePath(avatarPath).toAbsolutePath().normalize();
+        if (!Files.isRegularFile(path)) {
+            throw new IOException("File does not exist: " + path);
+        }
+        long modified = Files.getLastModifiedTime(path).toMillis();
+        return new Reference(HashUtils.sha256Hex(path + "|" + modified), path);
+    }
+
+    public ByteArrayResource image(Reference reference) throws IOException {
+        Path path = reference.path();
+        long modified = Files.getLastModifiedTime(path).toMillis();
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(path);
+        }
+        if (entry == null || entry.modifiedMillis() != modified) {
+            entry = load(path, modified);
+            synchronized (entries) {
+                entries.put(path, entry);
+            }
+        }
+        String filename = entry.filename();
+        return new ByteArrayResource(entry.bytes()) {
+            @Override
+            public String getFilename() {
+                return filename;
+            }
+        };
+    }
+
+    public void invalidate(String avatarPath) {
+        if (avatarPath == null || avatarPath.isBlank()) {
+            return;
+        }
+        Path path = uploadFileService.resolvePath(avatarPath).toAbsolutePath().normalize();
+        synchronized (entries) {
+            entries.remove(path);
+        }
+    }
+
+    private Entry load(Path path, long modified) throws IOException {
+        byte[] original = Files.readAllBytes(path);
+        String filename = path.getFileName().toString();
+        // ImageIO bỏ qua hướng xoay EXIF (service Python có xử lý): ảnh bị xoay thì gửi nguyên file
+        if (ImageUtils.exifOrientation(original) > 1) {
+            return new Entry(modified, original, filename);
+        }
+        BufferedImage source = ImageIO.read(new ByteArrayInputStream(original));
+        if (source == null) {
+            // Định dạng ImageIO không đọc được: gửi nguyên file như trước
+            return new Entry(modified, original, filename);
+        }
+
+        byte[] jpeg = ImageUtils.toJpeg(ImageUtils.downscale(source, maxSide), 0.9f);
+        // Ảnh gốc đã nhỏ và nhẹ hơn bản nén lại thì giữ nguyên
+        if (Math.max(source.getWidth(), source.getHeight()) <= maxSide && jpeg.length >= original.length) {
+            return new Entry(modified, original, filename);
+        }
+        return new Entry(modified, jpeg, stripExtension(filename) + ".jpg");
+    }
+
+    private static String stripExtension(String filename) {
+        int dot = filename.lastIndexOf('.');
+        return dot > 0 ? filename.substring(0, dot) : filename;
+    }
+}
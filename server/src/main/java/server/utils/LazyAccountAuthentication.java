@@ -0,0 +1,45 @@
+package server.utils;
+
+import org.springframework.security.authentication.AbstractAuthenticationToken;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import server.models.Account;
+
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * Authentication của chế độ stateless principal: quyền (role) và username lấy từ claims nên
+ * kiểm tra quyền / getName() không chạm DB; chỉ khi có code lấy getPrincipal() (cast sang Account,
+ * @AuthenticationPrincipal...) mới load Account đầy đủ theo id.
+ * Không giữ lại entity: mỗi lần gọi đều đi qua repository để nhận bản managed của persistence context
+ * hiện tại (open-in-view / transaction của service), lặp lại trong cùng context thì first-level cache trả luôn.
+ */
+public class LazyAccountAuthentication extends AbstractAuthenticationToken {
+    private final String username;
+    private final Long accountId;
+    private final transient Function<Long, Optional<Account>> loader;
+
+    public LazyAccountAuthentication(Account claimsAccount, Function<Long, Optional<Account>> loader) {
+        super(claimsAccount.getAuthorities());
+        this.username = claimsAccount.getUsername();
+        this.accountId = claimsAccount.getId();
+        this.loader = loader;
+        setAuthenticated(true);
+    }
+
+    @Override
+    public Object getPrincipal() {
+        return loader.apply(accountId)
+                .orElseThrow(() -> new UsernameNotFoundException("Account not found"));
+    }
+
+    @Override
+    public Object getCredentials() {
+        return null;
+    }
+
+    @Override
+    public String getName() {
+        return username;
+    }
+}
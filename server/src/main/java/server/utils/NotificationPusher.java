@@ -0,0 +1,49 @@
+package server.utils;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import server.dtos.NotificationResponse;
+import server.services.OutboxService;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Đẩy notification qua WebSocket (/topic/notifications/{username}) sau khi transaction ghi notification commit.
+ *
+ * Notification và số chưa đọc (/topic/notifications/{username}/unread) đều được xếp vào outbox cùng transaction
+ * (OutboxDispatcher gửi, có thử lại), nên client không nhận được gì của transaction bị rollback.
+ * Dispatcher gửi message của cùng 1 người theo thứ tự xếp hàng: badge không cập nhật trước notification.
+ */
+@Component
+@RequiredArgsConstructor
+public class NotificationPusher {
+    public static final String UNREAD_SUFFIX = "/unread";
+
+    private final OutboxService outboxService;
+
+    public void pushAfterCommit(NotificationResponse notification) {
+        pushAfterCommit(List.of(notification));
+    }
+
+    // Ghi vào outbox trong transaction hiện tại, dispatcher gửi sau commit
+    public void pushAfterCommit(List<NotificationResponse> notifications) {
+        if (notifications == null || notifications.isEmpty()) {
+            return;
+        }
+        outboxService.enqueueStomp(notifications.stream()
+                .map(n -> new OutboxService.StompMessage("/topic/notifications/" + n.getRecipient(), n))
+                .toList());
+    }
+
+    // username -> số chưa đọc; gọi sau khi đã xếp notification của transaction vào outbox
+    public void pushUnreadCountsAfterCommit(Map<String, Long> countsByUsername) {
+        if (countsByUsername == null || countsByUsername.isEmpty()) {
+            return;
+        }
+        outboxService.enqueueStomp(countsByUsername.entrySet().stream()
+                .map(e -> new OutboxService.StompMessage("/topic/notifications/" + e.getKey() + UNREAD_SUFFIX,
+                        Map.of("unreadCount", e.getValue())))
+                .toList());
+    }
+}
@@ -0,0 +1,89 @@
+package server.utils;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import server.dtos.ProfileDto;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Cache ProfileDto của /auth/fetch-data theo account, kèm ETag để client gọi lại nhận 304.
+ *
+ * Profile chứa cả thông tin department và HOD nên thay đổi ở employee/department khác cũng có thể làm nó cũ:
+ * - invalidate(accountId): chỉ account đó thay đổi (avatar, thông tin cá nhân, role)
+ * - invalidateAll(): department/HOD thay đổi
+ */
+@Component
+public class ProfileCache {
+    public record CachedProfile(ProfileDto profile, String etag) {
+    }
+
+    private final Map<Long, CachedProfile> entries = new ConcurrentHashMap<>();
+    // Tăng mỗi lần invalidateAll để profile đang dựng dở (đọc DB trước khi invalidate) không được ghi vào cache
+    private final AtomicLong version = new AtomicLong();
+
+    @Value("${app.profile-cache.max-entries:5000}")
+    private int maxEntries;
+
+    public CachedProfile get(Long accountId, Supplier<ProfileDto> loader) {
+        CachedProfile cached = entries.get(accountId);
+        if (cached != null) {
+            return cached;
+        }
+
+        long versionBefore = version.get();
+        ProfileDto profile = loader.get();
+        if (profile == null) {
+            return null;
+        }
+        CachedProfile loaded = new CachedProfile(profile, etagOf(profile));
+
+        if (entries.size() < maxEntries && version.get() == versionBefore) {
+            entries.put(accountId, loaded);
+            // invalidateAll chạy xen giữa thì bỏ entry vừa ghi
+            if (version.get() != versionBefore) {
+                entries.remove(accountId, loaded);
+            }
+        }
+        return loaded;
+    }
+
+    public void invalidate(Long accountId) {
+        if (accountId != null) {
+            evictNowAndAfterCommit(() -> {
+                version.incrementAndGet();
+                entries.remove(accountId);
+            });
+        }
+    }
+
+    public void invalidateAll() {
+        evictNowAndAfterCommit(() -> {
+            version.incrementAndGet();
+            entries.clear();
+        });
+    }
+
+    // Xóa ngay và xóa lại sau khi commit: request khác đọc DB trước lúc commit sẽ dựng lại profile cũ vào cache
+    private void evictNowAndAfterCommit(Runnable eviction) {
+        eviction.run();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    eviction.run();
+                }
+            });
+        }
+    }
+
+    // ETag = SHA-256 nội dung profile (toString của @Data bao gồm cả các node lồng)
+    private String etagOf(ProfileDto profile) {
+        return "\"" + HashUtils.sha256Hex(profile.toString()) + "\"";
+    }
+}
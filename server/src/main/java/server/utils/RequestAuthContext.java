@@ -0,0 +1,54 @@
+package server.utils;
+
+import io.jsonwebtoken.Claims;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.Builder;
+import lombok.Getter;
+import server.models.Account;
+import server.models.enums.Role;
+
+/**
+ * Thông tin xác thực của một request, được JwtAuthenticationFilter dựng một lần
+ * (parse token 1 lần) rồi gắn vào request attribute.
+ * Service/controller đọc lại từ đây thay vì parse JWT thêm lần nữa.
+ *
+ * Chỉ giữ id/role/username, không giữ entity Account: filter chạy ngoài persistence context
+ * nên entity load ở đó là detached (lazy association sẽ lỗi). Ai cần Account thì findById(accountId)
+ * trong transaction/persistence context của mình, first-level cache lo phần gọi lặp lại.
+ */
+@Getter
+@Builder
+public class RequestAuthContext {
+    public static final String REQUEST_ATTRIBUTE = RequestAuthContext.class.getName();
+
+    private final String token;
+    private final Claims claims;
+    private final String username;
+    private final Long accountId;
+    private final Role role;
+    private final Long employeeId;
+
+    public static RequestAuthContext from(Account account, String token, Claims claims) {
+        return RequestAuthContext.builder()
+                .token(token)
+                .claims(claims)
+                .username(account.getUsername())
+                .accountId(account.getId())
+                .role(account.getRole())
+                .employeeId(account.getEmployee() != null ? account.getEmployee().getId() : null)
+                .build();
+    }
+
+    // Lấy context đã được filter gắn vào request (null nếu request chưa xác thực)
+    public static RequestAuthContext current(HttpServletRequest request) {
+        if (request == null) {
+            return null;
+        }
+        Object value = request.getAttribute(REQUEST_ATTRIBUTE);
+        return value instanceof RequestAuthContext context ? context : null;
+    }
+
+    public void bind(HttpServletRequest request) {
+        request.setAttribute(REQUEST_ATTRIBUTE, this);
+    }
+}
@@ -0,0 +1,87 @@
+package server.utils;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import server.models.Account;
+import server.models.enums.Role;
+import server.repositories.AccountRepository;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Account "đại diện" của các role chỉ có 1 người phụ trách (HR, MANAGER, CHIEFACCOUNTANT...),
+ * thay cho findByRole(role).stream().findFirst() vốn tải hết account của role chỉ để lấy 1.
+ *
+ * Chọn cố định: account đang enabled có id nhỏ nhất, không có thì account id nhỏ nhất của role.
+ * Cache chỉ giữ id, mỗi lần lấy là 1 lookup theo khóa chính (trong transaction thì lấy từ persistence context).
+ * AccountService / EmployeeService gọi invalidate() khi role hoặc trạng thái account thay đổi.
+ */
+@Component
+@RequiredArgsConstructor
+public class RoleDirectory {
+    // accountId = null: role hiện không có account nào
+    private record Entry(Long accountId) {
+    }
+
+    private final AccountRepository accountRepository;
+
+    private final Map<Role, Entry> entries = new ConcurrentHashMap<>();
+    // Tăng mỗi lần invalidate để kết quả đọc DB trước lúc invalidate không được ghi vào cache
+    private final AtomicLong version = new AtomicLong();
+
+    public Optional<Account> find(Role role) {
+        Entry entry = entries.get(role);
+        if (entry == null) {
+            entry = load(role);
+        }
+        if (entry.accountId() == null) {
+            return Optional.empty();
+        }
+        Optional<Account> account = accountRepository.findById(entry.accountId());
+        if (account.isEmpty()) {
+            // Account đã bị xóa ngoài luồng AccountService: chọn lại
+            entries.remove(role, entry);
+            Entry reloaded = load(role);
+            return reloaded.accountId() == null ? Optional.empty() : accountRepository.findById(reloaded.accountId());
+        }
+        return account;
+    }
+
+    // Xóa ngay và xóa lại sau khi commit để request đọc DB trước lúc commit không giữ lại lựa chọn cũ
+    public void invalidate() {
+        Runnable eviction = () -> {
+            version.incrementAndGet();
+            entries.clear();
+        };
+        eviction.run();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    eviction.run();
+                }
+            });
+        }
+    }
+
+    private Entry load(Role role) {
+        long versionBefore = version.get();
+        Long accountId = accountRepository.findFirstByRoleAndEnabledTrueOrderByIdAsc(role)
+                .or(() -> accountRepository.findFirstByRoleOrderByIdAsc(role))
+                .map(Account::getId)
+                .orElse(null);
+        Entry entry = new Entry(accountId);
+        if (version.get() == versionBefore) {
+            entries.put(role, entry);
+            if (version.get() != versionBefore) {
+                entries.remove(role, entry);
+            }
+        }
+        return entry;
+    }
+}
@@ -0,0 +1,135 @@
+package server.utils;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.ImageIO;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Cache ảnh chữ ký đã giải mã base64 và chuẩn hóa sẵn thành PNG cho các bộ render Word.
+ *
+ * Chữ ký được copy sang từng đơn/hợp đồng/tạm ứng, nên key là bản ghi chứa chữ ký (loại + trường, id)
+ * cộng phiên bản của bản ghi (updatedAt): không phải hash cả chuỗi base64 ở mỗi lần tra,
+ * và khi chữ ký đổi thì updatedAt đổi theo nên không cần evict, entry cũ tự rơi khỏi LRU.
+ * Xuất lại cùng một đơn/hợp đồng chỉ decode + scale 1 lần.
+ */
+@Component
+public class SignatureImageCache {
+    // Chữ ký hiển thị rộng tối đa 120px trong template, giữ gấp 3 cho rõ nét
+    private static final int MAX_WIDTH_PX = 360;
+
+    // bytes PNG đã chuẩn hóa + kích thước gốc (px) để tính tỉ lệ khi chèn
+    private record Decoded(byte[] png, int width, int height) {
+    }
+
+    /**
+     * owner: loại bản ghi + trường chữ ký (vd "leave.signature", "contract.manager");
+     * version: updatedAt của bản ghi, null nếu trường chỉ ghi 1 lần (công văn ký xong không ký lại).
+     */
+    public record Key(String owner, Long id, LocalDateTime version) {
+    }
+
+    private final Map<Key, Decoded> entries;
+
+    public SignatureImageCache(@Value("${app.signature-cache.max-entries:500}") int maxEntries) {
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Decoded> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    // Ảnh vừa khung cố định widthPx x heightPx (đơn nghỉ phép, công văn, hợp đồng)
+    public DocxTemplateEngine.Image image(Key key, String base64, int widthPx, int heightPx, String name) {
+        Decoded decoded = decode(key, base64);
+        return decoded == null ? null : new DocxTemplateEngine.Image(decoded.png(), widthPx, heightPx, name);
+    }
+
+    // Ảnh rộng widthPx, cao theo tỉ lệ ảnh gốc (tạm ứng)
+    public DocxTemplateEngine.Image imageScaledToWidth(Key key, String base64, int widthPx, String name) {
+        Decoded decoded = decode(key, base64);
+        if (decoded == null || decoded.width() <= 0) {
+            return null;
+        }
+        int heightPx = (int) (((double) decoded.height() / decoded.width()) * widthPx);
+        return new DocxTemplateEngine.Image(decoded.png(), widthPx, heightPx, name);
+    }
+
+    private Decoded decode(Key key, String base64) {
+        if (base64 == null || base64.isBlank()) {
+            return null;
+        }
+        // Bản ghi chưa lưu (chưa có id) thì không cache
+        boolean cacheable = key != null && key.id() != null;
+        if (cacheable) {
+            synchronized (entries) {
+                Decoded cached = entries.get(key);
+                if (cached != null) {
+                    return cached;
+                }
+            }
+        }
+
+        String payload = payloadOf(base64);
+        if (payload == null) {
+            return null;
+        }
+        Decoded decoded;
+        try {
+            decoded = normalize(Base64.getDecoder().decode(payload));
+        } catch (IllegalArgumentException | IOException e) {
+            return null;
+        }
+        if (decoded != null && cacheable) {
+            synchronized (entries) {
+                entries.put(key, decoded);
+            }
+        }
+        return decoded;
+    }
+
+    // Chuyển về PNG, thu nhỏ nếu ảnh quá lớn; ảnh không đọc được thì giữ nguyên bytes như trước
+    private Decoded normalize(byte[] bytes) throws IOException {
+        if (bytes.length == 0) {
+            return null;
+        }
+        BufferedImage img = ImageIO.read(new ByteArrayInputStream(bytes));
+        if (img == null) {
+            return new Decoded(bytes, 0, 0);
+        }
+        int width = img.getWidth();
+        int height = img.getHeight();
+        BufferedImage target = img;
+        if (width > MAX_WIDTH_PX) {
+            int scaledHeight = Math.max(1, (int) ((double) height * MAX_WIDTH_PX / width));
+            target = new BufferedImage(MAX_WIDTH_PX, scaledHeight, BufferedImage.TYPE_INT_ARGB);
+            Graphics2D g = target.createGraphics();
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.drawImage(img, 0, 0, MAX_WIDTH_PX, scaledHeight, null);
+            g.dispose();
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(target, "png", out);
+        return new Decoded(out.toByteArray(), width, height);
+    }
+
+    // Bỏ tiền tố data URL ("data:image/png;base64,")
+    private static String payloadOf(String base64) {
+        String payload = base64.trim();
+        if (payload.contains(",")) {
+            payload = payload.substring(payload.indexOf(',') + 1);
+        }
+        return payload.isEmpty() ? null : payload;
+    }
+}
@@ -0,0 +1,122 @@
+package server.utils;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Allow-list trong bộ nhớ cho access token đã được xác nhận còn tồn tại trong bảng tokens.
+ * Key là SHA-256 của token, entry hết hạn ở exp của JWT hoặc sau max-ttl, tùy cái nào tới trước.
+ *
+ * Mỗi account có 1 "generation": mọi thao tác thu hồi (logout, đổi mật khẩu, khóa account...)
+ * đều tăng generation, và entry chỉ được thêm nếu generation không đổi kể từ lúc bắt đầu tra DB.
+ * Nhờ vậy một request đang đọc DB song song với logout không thể đưa token đã thu hồi trở lại cache.
+ */
+@Component
+public class TokenValidityCache {
+    private record Entry(Long accountId, long expiresAt) {
+    }
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Map<Long, Long> generations = new ConcurrentHashMap<>();
+
+    @Value("${app.jwt.token-cache.max-entries:10000}")
+    private int maxEntries;
+
+    // Giới hạn thời gian sống của entry (ms), 0 = sống tới exp của JWT.
+    // Cache nằm riêng trên từng node, evict chỉ xóa được ở node đang xử lý request thu hồi:
+    // node khác vẫn chấp nhận token đã revoke tối đa max-ttl, nên mặc định chỉ giữ 30 giây.
+    @Value("${app.jwt.token-cache.max-ttl:30000}")
+    private long maxTtl;
+
+    public boolean isValid(String token) {
+        String key = HashUtils.sha256Hex(token);
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return false;
+        }
+        if (entry.expiresAt() <= System.currentTimeMillis()) {
+            entries.remove(key, entry);
+            return false;
+        }
+        return true;
+    }
+
+    // Lấy generation hiện tại của account, gọi TRƯỚC khi tra DB
+    public long generation(Long accountId) {
+        return generations.getOrDefault(accountId, 0L);
+    }
+
+    // Thêm token vào cache nếu account chưa bị thu hồi token nào kể từ lúc lấy generation
+    public void put(String token, Long accountId, Date expiration, long generation) {
+        if (accountId == null || expiration == null) {
+            return;
+        }
+        if (entries.size() >= maxEntries) {
+            purgeExpired();
+            if (entries.size() >= maxEntries) {
+                // Cache đầy thì bỏ qua, request sau sẽ tra DB như bình thường
+                return;
+            }
+        }
+        generations.compute(accountId, (id, current) -> {
+            long value = current == null ? 0L : current;
+            if (value == generation) {
+                long expiresAt = expiration.getTime();
+                if (maxTtl > 0) {
+                    expiresAt = Math.min(expiresAt, System.currentTimeMillis() + maxTtl);
+                }
+                entries.put(HashUtils.sha256Hex(token), new Entry(accountId, expiresAt));
+            }
+            return value;
+        });
+    }
+
+    // Thu hồi 1 access token (logout, refresh token, logout session)
+    public void evict(Long accountId, String token) {
+        Runnable eviction = () -> {
+            if (accountId != null) {
+                generations.merge(accountId, 1L, Long::sum);
+            }
+            entries.remove(HashUtils.sha256Hex(token));
+        };
+        runNowAndAfterCommit(eviction);
+    }
+
+    // Thu hồi toàn bộ access token của account (đổi mật khẩu, khóa account)
+    public void evictAccount(Long accountId) {
+        if (accountId == null) {
+            return;
+        }
+        Runnable eviction = () -> generations.compute(accountId, (id, current) -> {
+            entries.values().removeIf(entry -> accountId.equals(entry.accountId()));
+            return (current == null ? 0L : current) + 1;
+        });
+        runNowAndAfterCommit(eviction);
+    }
+
+    @Scheduled(fixedRate = 10 * 60000) // mỗi 10 phút
+    public void purgeExpired() {
+        long now = System.currentTimeMillis();
+        entries.values().removeIf(entry -> entry.expiresAt() <= now);
+    }
+
+    // Xóa ngay và xóa lại sau khi commit để request đọc DB trước lúc commit không giữ lại token cũ
+    private void runNowAndAfterCommit(Runnable eviction) {
+        eviction.run();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    eviction.run();
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package server.filters;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import server.models.Account;
+import server.models.Department;
+import server.models.Employee;
+import server.models.enums.Role;
+import server.repositories.AccountRepository;
+import server.services.AccountDetailService;
+import server.utils.JwtUtil;
+import server.utils.RequestAuthContext;
+
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+// Chế độ app.jwt.stateless-principal=true: principal lấy từ SecurityContext phải là Account đầy đủ
+class JwtAuthenticationFilterTest {
+    private static final String TOKEN = "access-token";
+
+    private JwtUtil jwtUtil;
+    private AccountDetailService accountDetailService;
+    private AccountRepository accountRepository;
+    private JwtAuthenticationFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        jwtUtil = mock(JwtUtil.class);
+        accountDetailService = mock(AccountDetailService.class);
+        accountRepository = mock(AccountRepository.class);
+        filter = new JwtAuthenticationFilter(jwtUtil, accountDetailService, accountRepository);
+
+        when(jwtUtil.isStatelessPrincipal()).thenReturn(true);
+        when(jwtUtil.principalFromClaims(any())).thenCallRealMethod();
+        when(jwtUtil.isValidAccessToken(eq(TOKEN), any(Claims.class), any())).thenReturn(true);
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void principalIsLoadedByIdWhenCastToAccountLikeControllersDo() throws Exception {
+        when(jwtUtil.extractAllClaims(TOKEN)).thenReturn(claims(true));
+        Department department = new Department();
+        department.setId(3L);
+        Employee employee = Employee.builder().id(70L).firstName("An").lastName("Nguyen").department(department).build();
+        Account full = Account.builder().id(7L).username("alice").role(Role.EMPLOYEE).enabled(true).employee(employee).build();
+        when(accountRepository.findById(7L)).thenReturn(Optional.of(full));
+
+        MockHttpServletRequest request = request();
+        filter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        assertThat(auth).isNotNull();
+        // Kiểm tra quyền / username không cần load account
+        assertThat(auth.getName()).isEqualTo("alice");
+        assertThat(auth.getAuthorities()).extracting(GrantedAuthority::getAuthority).containsExactly("EMPLOYEE");
+        verifyNoInteractions(accountRepository, accountDetailService);
+
+        // Như CashAdvanceController: (Account) auth.getPrincipal() rồi dùng employee/department
+        Account principal = (Account) auth.getPrincipal();
+        assertThat(principal).isSameAs(full);
+        assertThat(principal.getEmployee().getDepartment()).isSameAs(department);
+        assertThat(principal.getEmployee().getFirstName()).isEqualTo("An");
+
+        // Context chỉ giữ id/role, không giữ entity detached; mỗi lần lấy principal đều qua repository
+        // (trong cùng persistence context thì first-level cache trả lại đúng instance đó)
+        RequestAuthContext context = RequestAuthContext.current(request);
+        assertThat(context.getAccountId()).isEqualTo(7L);
+        assertThat(context.getRole()).isEqualTo(Role.EMPLOYEE);
+        verify(accountRepository, times(1)).findById(7L);
+        verifyNoMoreInteractions(accountRepository);
+    }
+
+    @Test
+    void disabledAccountInClaimsIsNotAuthenticated() throws Exception {
+        when(jwtUtil.extractAllClaims(TOKEN)).thenReturn(claims(false));
+
+        filter.doFilter(request(), new MockHttpServletResponse(), new MockFilterChain());
+
+        assertThat(SecurityContextHolder.getContext().getAuthentication()).isNull();
+        verifyNoInteractions(accountRepository);
+    }
+
+    private static MockHttpServletRequest request() {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/cash-advances");
+        request.setServletPath("/cash-advances");
+        request.addHeader(HttpHeaders.AUTHORIZATION, "Bearer " + TOKEN);
+        return request;
+    }
+
+    private static Claims claims(boolean enabled) {
+        return Jwts.claims()
+                .subject("alice")
+                .add(JwtUtil.CLAIM_ACCOUNT_ID, 7L)
+                .add(JwtUtil.CLAIM_EMPLOYEE_ID, 70L)
+                .add(JwtUtil.CLAIM_ROLE, "EMPLOYEE")
+                .add(JwtUtil.CLAIM_ENABLED, enabled)
+                .build();
+    }
+}
@@ -0,0 +1,165 @@
+package server.services;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * SMTP server tối giản chạy trong test (loopback, cổng ngẫu nhiên), không thêm GreenMail vào build.
+ * Hỗ trợ những lệnh JavaMail dùng khi gửi: EHLO/HELO, AUTH LOGIN / PLAIN, MAIL, RCPT, DATA, RSET, NOOP, QUIT.
+ * Đếm số kết nối, số lần AUTH thành công và số mail nhận được (kèm Subject) để test kiểm tra cách gửi theo nhóm.
+ */
+final class EmbeddedSmtpServer implements AutoCloseable {
+    private final ServerSocket serverSocket;
+    private final String username;
+    private final String password;
+    private final Thread acceptor;
+
+    final AtomicInteger connections = new AtomicInteger();
+    final AtomicInteger auths = new AtomicInteger();
+    final List<String> subjects = Collections.synchronizedList(new ArrayList<>());
+
+    EmbeddedSmtpServer(String username, String password) throws IOException {
+        this.username = username;
+        this.password = password;
+        this.serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        this.acceptor = new Thread(this::acceptLoop, "smtp-accept");
+        this.acceptor.setDaemon(true);
+        this.acceptor.start();
+    }
+
+    int port() {
+        return serverSocket.getLocalPort();
+    }
+
+    private void acceptLoop() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                connections.incrementAndGet();
+                Thread session = new Thread(() -> serve(socket), "smtp-session");
+                session.setDaemon(true);
+                session.start();
+            } catch (IOException e) {
+                // Server đã đóng
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (socket;
+             BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.ISO_8859_1));
+             OutputStream out = socket.getOutputStream()) {
+            reply(out, "220 localhost ESMTP test");
+            boolean authenticated = false;
+            String line;
+            while ((line = in.readLine()) != null) {
+                String verb = (line.contains(" ") ? line.substring(0, line.indexOf(' ')) : line).toUpperCase(Locale.ROOT);
+                String arg = line.contains(" ") ? line.substring(line.indexOf(' ') + 1).trim() : "";
+                switch (verb) {
+                    case "EHLO" -> reply(out, "250-localhost\r\n250-AUTH LOGIN PLAIN\r\n250 OK");
+                    case "HELO", "NOOP" -> reply(out, "250 OK");
+                    case "RSET" -> reply(out, "250 OK");
+                    case "AUTH" -> {
+                        authenticated = authenticate(arg, in, out);
+                        if (authenticated) {
+                            auths.incrementAndGet();
+                            reply(out, "235 2.7.0 Authentication successful");
+                        } else {
+                            reply(out, "535 5.7.8 Authentication credentials invalid");
+                        }
+                    }
+                    case "MAIL", "RCPT" -> reply(out, authenticated ? "250 OK" : "530 5.7.0 Authentication required");
+                    case "DATA" -> {
+                        reply(out, "354 End data with <CR><LF>.<CR><LF>");
+                        subjects.add(readMessage(in));
+                        reply(out, "250 OK queued");
+                    }
+                    case "QUIT" -> {
+                        reply(out, "221 Bye");
+                        return;
+                    }
+                    default -> reply(out, "502 Command not implemented");
+                }
+            }
+        } catch (SocketException e) {
+            // Client đóng kết nối
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // AUTH PLAIN [initial-response] hoặc AUTH LOGIN [username]
+    private boolean authenticate(String arg, BufferedReader in, OutputStream out) throws IOException {
+        String[] parts = arg.split(" ", 2);
+        String mechanism = parts[0].toUpperCase(Locale.ROOT);
+        String initial = parts.length > 1 ? parts[1].trim() : null;
+        if (mechanism.equals("PLAIN")) {
+            if (initial == null) {
+                reply(out, "334 ");
+                initial = in.readLine();
+            }
+            String[] fields = decode(initial).split("\u0000", -1);
+            return fields.length == 3 && fields[1].equals(username) && fields[2].equals(password);
+        }
+        if (mechanism.equals("LOGIN")) {
+            if (initial == null) {
+                reply(out, "334 " + encode("Username:"));
+                initial = in.readLine();
+            }
+            String user = decode(initial);
+            reply(out, "334 " + encode("Password:"));
+            String pass = decode(in.readLine());
+            return user.equals(username) && pass.equals(password);
+        }
+        return false;
+    }
+
+    // Đọc tới dòng ".", bỏ dot-stuffing, trả về Subject
+    private static String readMessage(BufferedReader in) throws IOException {
+        String subject = "";
+        boolean headers = true;
+        String line;
+        while ((line = in.readLine()) != null && !line.equals(".")) {
+            if (line.startsWith("..")) {
+                line = line.substring(1);
+            }
+            if (headers && line.isEmpty()) {
+                headers = false;
+            } else if (headers && line.regionMatches(true, 0, "Subject:", 0, 8)) {
+                subject = line.substring(8).trim();
+            }
+        }
+        return subject;
+    }
+
+    private static void reply(OutputStream out, String response) throws IOException {
+        out.write((response + "\r\n").getBytes(StandardCharsets.ISO_8859_1));
+        out.flush();
+    }
+
+    private static String encode(String text) {
+        return Base64.getEncoder().encodeToString(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String decode(String base64) {
+        return base64 == null ? "" : new String(Base64.getDecoder().decode(base64.trim()), StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+    }
+}
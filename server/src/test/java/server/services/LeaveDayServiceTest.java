@@ -0,0 +1,152 @@
+package server.services;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import server.models.Account;
+import server.models.LeaveDay;
+import server.models.LeaveRequest;
+import server.models.enums.LeaveType;
+import server.repositories.LeaveDayRepository;
+import server.repositories.LeaveRequestRepository;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+// Buổi / khung giờ của leave_day và kiểm tra trùng đơn nghỉ
+class LeaveDayServiceTest {
+    private static final long ACCOUNT_ID = 1L;
+    // Tuần 09/03/2026 (thứ 2) - 15/03/2026 (chủ nhật), không có ngày lễ
+    private static final LocalDate MONDAY = LocalDate.of(2026, 3, 9);
+
+    private LeaveDayRepository leaveDayRepository;
+    private LeaveDayService service;
+    private final List<LeaveDay> existing = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        leaveDayRepository = mock(LeaveDayRepository.class);
+        service = new LeaveDayService(leaveDayRepository, mock(LeaveRequestRepository.class));
+        when(leaveDayRepository.findByAccountIdAndDayBetween(eq(ACCOUNT_ID), any(), any())).thenAnswer(inv -> {
+            LocalDate from = inv.getArgument(1);
+            LocalDate to = inv.getArgument(2);
+            return existing.stream().filter(row -> !row.getDay().isBefore(from) && !row.getDay().isAfter(to)).toList();
+        });
+    }
+
+    @Test
+    void fullDayRangeSkipsSundayAndCoversTheWholeDay() {
+        List<LeaveDay> rows = service.toRows(leave(10L, LeaveType.FULL_DAY, MONDAY, MONDAY.plusDays(6)));
+
+        assertThat(rows).hasSize(6);
+        assertThat(rows).extracting(LeaveDay::getDay).doesNotContain(MONDAY.plusDays(6));
+        LeaveDay row = rows.get(0);
+        assertThat(row.getSlotMask()).isEqualTo(LeaveDay.MORNING | LeaveDay.LUNCH | LeaveDay.AFTERNOON);
+        assertThat(row.getStartMinute()).isEqualTo(8 * 60);
+        assertThat(row.getEndMinute()).isEqualTo(17 * 60);
+        assertThat(row.workMinutes()).isEqualTo(8 * 60);
+        assertThat(row.getAccountId()).isEqualTo(ACCOUNT_ID);
+        assertThat(row.getLeaveRequestId()).isEqualTo(10L);
+    }
+
+    @Test
+    void nonContiguousLeaveOnlyOccupiesItsDaysOff() {
+        LeaveRequest leave = leave(10L, LeaveType.FULL_DAY, MONDAY, MONDAY.plusDays(4));
+        leave.setDaysOff(List.of(MONDAY, MONDAY.plusDays(2), MONDAY.plusDays(4)));
+
+        assertThat(service.toRows(leave)).extracting(LeaveDay::getDay)
+                .containsExactly(MONDAY, MONDAY.plusDays(2), MONDAY.plusDays(4));
+    }
+
+    @Test
+    void customHoursMapToTheSlotsTheyTouch() {
+        LeaveDay acrossLunch = single(customHours(10L, MONDAY, LocalTime.of(11, 0), LocalTime.of(14, 0)));
+        assertThat(acrossLunch.getSlotMask()).isEqualTo(LeaveDay.MORNING | LeaveDay.LUNCH | LeaveDay.AFTERNOON);
+        assertThat(acrossLunch.getStartMinute()).isEqualTo(11 * 60);
+        assertThat(acrossLunch.getEndMinute()).isEqualTo(14 * 60);
+        assertThat(acrossLunch.workMinutes()).isEqualTo(2 * 60);
+
+        LeaveDay lunchOnly = single(customHours(11L, MONDAY, LocalTime.of(12, 15), LocalTime.of(12, 45)));
+        assertThat(lunchOnly.getSlotMask()).isEqualTo(LeaveDay.LUNCH);
+        assertThat(lunchOnly.workMinutes()).isZero();
+
+        LeaveDay afternoon = single(leave(12L, LeaveType.HALF_DAY_AFTERNOON, MONDAY, MONDAY));
+        assertThat(afternoon.getSlotMask()).isEqualTo(LeaveDay.AFTERNOON);
+        assertThat(afternoon.getStartMinute()).isEqualTo(13 * 60);
+    }
+
+    @Test
+    void morningAndAfternoonOfTheSameDayDoNotConflict() {
+        existing.addAll(service.toRows(leave(10L, LeaveType.HALF_DAY_MORNING, MONDAY, MONDAY)));
+
+        assertThat(service.findConflict(ACCOUNT_ID, List.of(MONDAY), LeaveType.HALF_DAY_AFTERNOON, null, null)).isNull();
+        assertThat(service.findConflict(ACCOUNT_ID, List.of(MONDAY), LeaveType.FULL_DAY, null, null))
+                .contains("buổi sáng");
+        assertThat(service.findConflict(ACCOUNT_ID, List.of(MONDAY), LeaveType.CUSTOM_HOURS,
+                LocalTime.of(11, 30), LocalTime.of(13, 30))).isNotNull();
+    }
+
+    @Test
+    void overlapChecksAreSymmetric() {
+        // Nguyên ngày đã có thì mọi loại nghỉ khác đều trùng
+        existing.addAll(service.toRows(leave(10L, LeaveType.FULL_DAY, MONDAY, MONDAY)));
+        assertThat(service.findConflict(ACCOUNT_ID, List.of(MONDAY), LeaveType.HALF_DAY_MORNING, null, null))
+                .contains("nguyên ngày");
+        assertThat(service.findConflict(ACCOUNT_ID, List.of(MONDAY), LeaveType.CUSTOM_HOURS,
+                LocalTime.of(15, 0), LocalTime.of(16, 0))).contains("nguyên ngày");
+
+        // Theo giờ đã có thì nửa ngày trùng khung cũng bị chặn
+        existing.clear();
+        existing.addAll(service.toRows(customHours(11L, MONDAY, LocalTime.of(9, 0), LocalTime.of(10, 0))));
+        assertThat(service.findConflict(ACCOUNT_ID, List.of(MONDAY), LeaveType.HALF_DAY_MORNING, null, null))
+                .contains("theo giờ");
+    }
+
+    @Test
+    void adjacentCustomHoursDoNotConflict() {
+        existing.addAll(service.toRows(customHours(10L, MONDAY, LocalTime.of(9, 0), LocalTime.of(10, 0))));
+
+        assertThat(service.findConflict(ACCOUNT_ID, List.of(MONDAY), LeaveType.CUSTOM_HOURS,
+                LocalTime.of(10, 0), LocalTime.of(11, 0))).isNull();
+        assertThat(service.findConflict(ACCOUNT_ID, List.of(MONDAY), LeaveType.CUSTOM_HOURS,
+                LocalTime.of(9, 59), LocalTime.of(11, 0))).isNotNull();
+    }
+
+    @Test
+    void conflictCheckReadsTheDayRangeOnceAndOnlyMatchesRequestedDays() {
+        existing.addAll(service.toRows(leave(10L, LeaveType.FULL_DAY, MONDAY.plusDays(1), MONDAY.plusDays(1))));
+        List<LocalDate> days = List.of(MONDAY, MONDAY.plusDays(2), MONDAY.plusDays(4));
+
+        assertThat(service.findConflict(ACCOUNT_ID, days, LeaveType.FULL_DAY, null, null)).isNull();
+        verify(leaveDayRepository, times(1)).findByAccountIdAndDayBetween(ACCOUNT_ID, MONDAY, MONDAY.plusDays(4));
+    }
+
+    private LeaveDay single(LeaveRequest leave) {
+        List<LeaveDay> rows = service.toRows(leave);
+        assertThat(rows).hasSize(1);
+        return rows.get(0);
+    }
+
+    private static LeaveRequest customHours(Long id, LocalDate day, LocalTime start, LocalTime end) {
+        LeaveRequest leave = leave(id, LeaveType.CUSTOM_HOURS, day, day);
+        leave.setStartTime(start);
+        leave.setEndTime(end);
+        return leave;
+    }
+
+    private static LeaveRequest leave(Long id, LeaveType type, LocalDate start, LocalDate end) {
+        LeaveRequest leave = new LeaveRequest();
+        leave.setId(id);
+        leave.setSender(Account.builder().id(ACCOUNT_ID).build());
+        leave.setLeaveType(type);
+        leave.setStartDate(start);
+        leave.setEndDate(end);
+        return leave;
+    }
+}
@@ -0,0 +1,123 @@
+package server.services;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import server.dtos.NotificationKeyView;
+import server.dtos.RecipientCountView;
+import server.repositories.JobRunRepository;
+import server.repositories.NotificationRepository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+// Job dọn notification: bộ đếm chưa đọc trừ cùng batch xóa, lần chạy bỏ dở được giành lại thay vì coi là xong
+class NotificationRetentionServiceTest {
+    private NotificationRepository notificationRepository;
+    private JobRunRepository jobRunRepository;
+    private NotificationUnreadService notificationUnreadService;
+    private NotificationRetentionService service;
+
+    @BeforeEach
+    void setUp() {
+        notificationRepository = mock(NotificationRepository.class);
+        jobRunRepository = mock(JobRunRepository.class);
+        notificationUnreadService = mock(NotificationUnreadService.class);
+        service = new NotificationRetentionService(notificationRepository, jobRunRepository, notificationUnreadService,
+                new TransactionTemplate(mock(PlatformTransactionManager.class)));
+        ReflectionTestUtils.setField(service, "enabled", true);
+        ReflectionTestUtils.setField(service, "readDays", 90);
+        ReflectionTestUtils.setField(service, "unreadDays", 365);
+        ReflectionTestUtils.setField(service, "batchSize", 2);
+        ReflectionTestUtils.setField(service, "leaseMinutes", 10L);
+        when(jobRunRepository.claimOrResume(any(), any(), any(), any())).thenReturn(true);
+        when(notificationRepository.findRetentionBatch(eq(true), any(), any(), any(), any())).thenReturn(List.of());
+    }
+
+    @Test
+    void purgedUnreadNotificationsAreSubtractedFromCountersInTheDeleteBatch() {
+        when(notificationRepository.findRetentionBatch(eq(false), any(), any(), any(), any()))
+                .thenReturn(List.of(key(1L), key(2L)), List.of(key(3L)), List.of());
+        when(notificationRepository.lockUnreadCountsByRecipient(List.of(1L, 2L)))
+                .thenReturn(List.of(count(7L, 2L)));
+        // Notification 3 đã được đọc sau khi lấy batch: không trừ bộ đếm
+        when(notificationRepository.lockUnreadCountsByRecipient(List.of(3L))).thenReturn(List.of());
+        when(notificationRepository.deleteByIds(List.of(1L, 2L))).thenReturn(2);
+        when(notificationRepository.deleteByIds(List.of(3L))).thenReturn(1);
+
+        Map<String, Integer> result = service.runDaily();
+
+        assertThat(result.get(NotificationRetentionService.PURGE_JOB)).isEqualTo(3);
+        InOrder inOrder = inOrder(notificationRepository, notificationUnreadService, jobRunRepository);
+        inOrder.verify(notificationRepository).lockUnreadCountsByRecipient(List.of(1L, 2L));
+        inOrder.verify(notificationRepository).deleteByIds(List.of(1L, 2L));
+        inOrder.verify(notificationUnreadService).onPurged(Map.of(7L, 2L));
+        inOrder.verify(jobRunRepository).renew(eq(NotificationRetentionService.PURGE_JOB), anyString(), any());
+        inOrder.verify(notificationUnreadService).onPurged(Map.of());
+        verify(jobRunRepository).complete(eq(NotificationRetentionService.PURGE_JOB), anyString(), eq(3), anyLong(), any());
+    }
+
+    @Test
+    void completedPeriodIsSkippedButAnUnfinishedClaimIsResumed() {
+        when(jobRunRepository.existsByJobNameAndPeriodAndDurationMsIsNotNull(
+                eq(NotificationRetentionService.ARCHIVE_JOB), anyString())).thenReturn(true);
+        when(notificationRepository.findRetentionBatch(eq(false), any(), any(), any(), any())).thenReturn(List.of());
+
+        service.runDaily();
+
+        verify(jobRunRepository, never()).claimOrResume(eq(NotificationRetentionService.ARCHIVE_JOB), any(), any(), any());
+        // Dòng purge đã được giành nhưng chưa complete (node trước chết): claimOrResume quyết định, không phải existsBy...
+        verify(jobRunRepository).claimOrResume(eq(NotificationRetentionService.PURGE_JOB), anyString(), any(), any());
+        verify(jobRunRepository, never()).existsByJobNameAndPeriod(any(), any());
+        verify(jobRunRepository).complete(eq(NotificationRetentionService.PURGE_JOB), anyString(), eq(0), anyLong(), any());
+    }
+
+    @Test
+    void runHeldByAnotherLiveNodeIsLeftAlone() {
+        when(jobRunRepository.claimOrResume(any(), any(), any(), any())).thenReturn(false);
+
+        assertThat(service.runDaily()).containsEntry(NotificationRetentionService.PURGE_JOB, 0);
+
+        verify(notificationRepository, never()).findRetentionBatch(anyBoolean(), any(), any(), any(), any());
+        verify(jobRunRepository, never()).complete(any(), any(), anyInt(), anyLong(), any());
+    }
+
+    private static NotificationKeyView key(Long id) {
+        return new NotificationKeyView() {
+            @Override
+            public Long getId() {
+                return id;
+            }
+
+            @Override
+            public LocalDateTime getCreatedAt() {
+                return LocalDateTime.of(2024, 1, 1, 0, 0).plusMinutes(id);
+            }
+        };
+    }
+
+    private static RecipientCountView count(Long recipientId, Long total) {
+        return new RecipientCountView() {
+            @Override
+            public Long getRecipientId() {
+                return recipientId;
+            }
+
+            @Override
+            public Long getTotal() {
+                return total;
+            }
+        };
+    }
+}
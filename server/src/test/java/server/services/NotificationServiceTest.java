@@ -0,0 +1,87 @@
+package server.services;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import server.dtos.NotificationResponse;
+import server.models.Account;
+import server.models.Document;
+import server.models.Notification;
+import server.models.enums.DocumentStatus;
+import server.models.enums.DocumentType;
+import server.models.enums.NotificationType;
+import server.repositories.*;
+import server.utils.NotificationPusher;
+import server.utils.RoleDirectory;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+// Notification chạy chung transaction với nghiệp vụ: dữ liệu thiếu chỉ bỏ qua notification, không ném lỗi gây rollback
+class NotificationServiceTest {
+    private NotificationRepository notificationRepository;
+    private DocumentRepository documentRepository;
+    private LeaveRequestRepository leaveRequestRepository;
+    private NotificationPusher notificationPusher;
+    private NotificationUnreadService notificationUnreadService;
+    private NotificationService service;
+
+    @BeforeEach
+    void setUp() {
+        notificationRepository = mock(NotificationRepository.class);
+        documentRepository = mock(DocumentRepository.class);
+        leaveRequestRepository = mock(LeaveRequestRepository.class);
+        notificationPusher = mock(NotificationPusher.class);
+        notificationUnreadService = mock(NotificationUnreadService.class);
+        service = new NotificationService(notificationRepository, mock(AccountRepository.class), mock(RoleDirectory.class),
+                documentRepository, notificationPusher, mock(NamedParameterJdbcTemplate.class), notificationUnreadService,
+                leaveRequestRepository, mock(AttendanceRepository.class));
+        when(notificationRepository.save(any(Notification.class))).thenAnswer(inv -> inv.getArgument(0));
+    }
+
+    @Test
+    void administrativeDocumentWithoutReceiverStillNotifiesTheAccountant() {
+        Account creator = account(1L, "secretary");
+        Account accountant = account(2L, "accountant");
+        when(documentRepository.findById(10L)).thenReturn(Optional.of(Document.builder()
+                .id(10L).title("Quỹ công đoàn").type(DocumentType.ADMINISTRATIVE).status(DocumentStatus.NEW)
+                .createdBy(creator).accountant(accountant).build()));
+
+        assertThatCode(() -> service.createNotification(NotificationType.DOCUMENT, 10L, false)).doesNotThrowAnyException();
+
+        ArgumentCaptor<Notification> saved = ArgumentCaptor.forClass(Notification.class);
+        verify(notificationRepository).save(saved.capture());
+        assertThat(saved.getValue().getRecipient()).isSameAs(accountant);
+        // Notification vào outbox trước số chưa đọc
+        InOrder inOrder = inOrder(notificationPusher, notificationUnreadService);
+        inOrder.verify(notificationPusher).pushAfterCommit(any(NotificationResponse.class));
+        inOrder.verify(notificationUnreadService).onCreated(List.of(accountant));
+    }
+
+    @Test
+    void missingReferenceIsSkippedInsteadOfThrowing() {
+        when(documentRepository.findById(any())).thenReturn(Optional.empty());
+        when(leaveRequestRepository.findById(any())).thenReturn(Optional.empty());
+
+        assertThat(service.createNotification(NotificationType.DOCUMENT, 99L, true)).isNull();
+        assertThat(service.createNotification(NotificationType.LEAVE_REQUEST, 99L, false)).isNull();
+
+        verify(notificationRepository, never()).save(any());
+        verify(notificationUnreadService, never()).onCreated(anyList());
+    }
+
+    private static Account account(Long id, String username) {
+        Account account = new Account();
+        account.setId(id);
+        account.setUsername(username);
+        return account;
+    }
+}
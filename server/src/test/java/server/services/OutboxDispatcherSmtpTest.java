@@ -0,0 +1,142 @@
+package server.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import server.models.OutboxMessage;
+import server.models.enums.OutboxChannel;
+import server.models.enums.OutboxStatus;
+import server.repositories.OutboxMessageRepository;
+import server.utils.BackgroundExecutors;
+import server.utils.InstrumentedExecutor;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+// Gửi outbox qua JavaMailSenderImpl thật tới SMTP server trong test: mỗi nhóm mail-batch-size chỉ 1 lần connect + AUTH
+class OutboxDispatcherSmtpTest {
+    private static final int MAILS = 200;
+
+    private EmbeddedSmtpServer smtp;
+    private OutboxMessageRepository outboxRepository;
+    private InstrumentedExecutor mailPool;
+    private InstrumentedExecutor notificationPool;
+    private OutboxDispatcher dispatcher;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        smtp = new EmbeddedSmtpServer("outbox", "secret");
+
+        JavaMailSenderImpl mailSender = new JavaMailSenderImpl();
+        mailSender.setHost("127.0.0.1");
+        mailSender.setPort(smtp.port());
+        mailSender.setUsername("outbox");
+        mailSender.setPassword("secret");
+        Properties props = new Properties();
+        props.put("mail.smtp.auth", "true");
+        props.put("mail.smtp.connectiontimeout", "5000");
+        props.put("mail.smtp.timeout", "5000");
+        mailSender.setJavaMailProperties(props);
+
+        outboxRepository = mock(OutboxMessageRepository.class);
+        mailPool = new InstrumentedExecutor("mail", 4, 100, InstrumentedExecutor.Rejection.CALLER_RUNS, false);
+        notificationPool = new InstrumentedExecutor("notifications", 2, 100, InstrumentedExecutor.Rejection.CALLER_RUNS, false);
+        BackgroundExecutors backgroundExecutors = mock(BackgroundExecutors.class);
+        when(backgroundExecutors.mail()).thenReturn(mailPool);
+        when(backgroundExecutors.notifications()).thenReturn(notificationPool);
+
+        dispatcher = new OutboxDispatcher(outboxRepository,
+                new TransactionTemplate(mock(PlatformTransactionManager.class)),
+                mock(SimpMessagingTemplate.class), mailSender, new ObjectMapper(), backgroundExecutors);
+        ReflectionTestUtils.setField(dispatcher, "batchSize", 500);
+        ReflectionTestUtils.setField(dispatcher, "maxAttempts", 3);
+        ReflectionTestUtils.setField(dispatcher, "retryBaseMs", 10_000L);
+        ReflectionTestUtils.setField(dispatcher, "retryMaxMs", 3_600_000L);
+        ReflectionTestUtils.setField(dispatcher, "leaseMs", 300_000L);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        dispatcher.shutdown();
+        mailPool.shutdown();
+        notificationPool.shutdown();
+        smtp.close();
+    }
+
+    @Test
+    void eachMailBatchSizeChunkUsesOneConnectionAndOneAuth() {
+        double batched = drain(50);
+        assertThat(smtp.subjects).hasSize(MAILS).contains("mail-1", "mail-" + MAILS);
+        assertThat(smtp.connections.get()).isEqualTo(4);
+        assertThat(smtp.auths.get()).isEqualTo(4);
+        verify(outboxRepository).deleteByIdIn(argThat(ids -> ids.size() == MAILS));
+        verify(outboxRepository, never()).markAttemptFailed(anyLong(), any(), anyInt(), any(), any());
+
+        // So sánh: mỗi mail 1 kết nối như trước khi gửi theo nhóm
+        resetServerCounters();
+        double perMail = drain(1);
+        assertThat(smtp.connections.get()).isEqualTo(MAILS);
+        assertThat(smtp.auths.get()).isEqualTo(MAILS);
+
+        System.out.printf(Locale.ROOT, "[OutboxDispatcherSmtpTest] %d mail: mail-batch-size=50 %.0f mail/s, mail-batch-size=1 %.0f mail/s%n",
+                MAILS, batched, perMail);
+    }
+
+    // Chạy 1 vòng drain với mail-batch-size cho trước, trả về số mail/giây
+    private double drain(int mailBatchSize) {
+        ReflectionTestUtils.setField(dispatcher, "mailBatchSize", mailBatchSize);
+        givenDue(emails(MAILS));
+
+        long start = System.nanoTime();
+        int sent = dispatcher.drain();
+        long nanos = System.nanoTime() - start;
+
+        assertThat(sent).isEqualTo(MAILS);
+        return sent * 1_000_000_000d / nanos;
+    }
+
+    private void resetServerCounters() {
+        smtp.connections.set(0);
+        smtp.auths.set(0);
+        smtp.subjects.clear();
+    }
+
+    private void givenDue(List<OutboxMessage> batch) {
+        List<Long> ids = batch.stream().map(OutboxMessage::getId).toList();
+        when(outboxRepository.lockDueIds(any(), anyInt())).thenReturn(ids, List.of());
+        when(outboxRepository.findAllById(any())).thenReturn(batch);
+    }
+
+    private static List<OutboxMessage> emails(int count) {
+        List<OutboxMessage> messages = new ArrayList<>();
+        for (long id = 1; id <= count; id++) {
+            String mime = "From: noreply@example.com\r\nTo: user" + id + "@example.com\r\nSubject: mail-" + id
+                    + "\r\nContent-Type: text/plain; charset=UTF-8\r\n\r\nHello\r\n";
+            messages.add(OutboxMessage.builder()
+                    .id(id)
+                    .channel(OutboxChannel.EMAIL)
+                    .destination("user" + id + "@example.com")
+                    .payload(mime.getBytes(StandardCharsets.US_ASCII))
+                    .status(OutboxStatus.SENDING)
+                    .nextAttemptAt(LocalDateTime.now())
+                    .createdAt(LocalDateTime.now())
+                    .build());
+        }
+        return messages;
+    }
+}
@@ -0,0 +1,300 @@
+package server.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Session;
+import jakarta.mail.internet.MimeMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.mail.MailParseException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.MimeMessagePreparator;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import server.models.OutboxMessage;
+import server.models.enums.OutboxChannel;
+import server.models.enums.OutboxStatus;
+import server.repositories.OutboxMessageRepository;
+import server.utils.BackgroundExecutors;
+import server.utils.InstrumentedExecutor;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+// Gửi email theo nhóm: mỗi nhóm 1 lần send(MimeMessage...), email lỗi được thử lại riêng
+class OutboxDispatcherTest {
+    private static final int MAX_ATTEMPTS = 3;
+
+    private OutboxMessageRepository outboxRepository;
+    private RecordingMailSender mailSender;
+    private SimpMessagingTemplate messagingTemplate;
+    private InstrumentedExecutor mailPool;
+    private InstrumentedExecutor notificationPool;
+    private BackgroundExecutors backgroundExecutors;
+    private OutboxDispatcher dispatcher;
+
+    @BeforeEach
+    void setUp() {
+        outboxRepository = mock(OutboxMessageRepository.class);
+        mailSender = new RecordingMailSender();
+        messagingTemplate = mock(SimpMessagingTemplate.class);
+        mailPool = new InstrumentedExecutor("mail", 4, 100, InstrumentedExecutor.Rejection.CALLER_RUNS, false);
+        notificationPool = new InstrumentedExecutor("notifications", 2, 100, InstrumentedExecutor.Rejection.CALLER_RUNS, false);
+        backgroundExecutors = mock(BackgroundExecutors.class);
+        when(backgroundExecutors.mail()).thenReturn(mailPool);
+        when(backgroundExecutors.notifications()).thenReturn(notificationPool);
+
+        dispatcher = new OutboxDispatcher(outboxRepository,
+                new TransactionTemplate(mock(PlatformTransactionManager.class)),
+                messagingTemplate, mailSender, new ObjectMapper(), backgroundExecutors);
+        ReflectionTestUtils.setField(dispatcher, "batchSize", 500);
+        ReflectionTestUtils.setField(dispatcher, "mailBatchSize", 50);
+        ReflectionTestUtils.setField(dispatcher, "maxAttempts", MAX_ATTEMPTS);
+        ReflectionTestUtils.setField(dispatcher, "retryBaseMs", 10_000L);
+        ReflectionTestUtils.setField(dispatcher, "retryMaxMs", 3_600_000L);
+        ReflectionTestUtils.setField(dispatcher, "leaseMs", 300_000L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        dispatcher.shutdown();
+        mailPool.shutdown();
+        notificationPool.shutdown();
+    }
+
+    @Test
+    void sendsEachChunkOfEmailsWithOneSendCall() {
+        List<OutboxMessage> batch = emails(120, 0);
+        givenDue(batch);
+
+        int sent = dispatcher.drain();
+
+        assertThat(sent).isEqualTo(120);
+        assertThat(mailSender.batchSizes).containsExactlyInAnyOrder(50, 50, 20);
+        verify(outboxRepository).deleteByIdIn(argThat(ids -> ids.size() == 120));
+        verify(outboxRepository, never()).markAttemptFailed(anyLong(), any(), anyInt(), any(), any());
+    }
+
+    @Test
+    void failedMessagesInAChunkAreRetriedIndividually() {
+        List<OutboxMessage> batch = emails(10, 0);
+        givenDue(batch);
+        mailSender.failSubjects.addAll(Set.of("mail-3", "mail-7"));
+
+        int sent = dispatcher.drain();
+
+        assertThat(sent).isEqualTo(8);
+        assertThat(mailSender.batchSizes).containsExactly(10);
+        verify(outboxRepository).markAttemptFailed(eq(3L), eq(OutboxStatus.PENDING), eq(1), any(), contains("mailbox full"));
+        verify(outboxRepository).markAttemptFailed(eq(7L), eq(OutboxStatus.PENDING), eq(1), any(), contains("mailbox full"));
+        verify(outboxRepository).deleteByIdIn(argThat(ids -> ids.size() == 8 && !ids.contains(3L) && !ids.contains(7L)));
+    }
+
+    @Test
+    void messageIsMarkedFailedAfterMaxAttempts() {
+        List<OutboxMessage> batch = emails(2, MAX_ATTEMPTS - 1);
+        givenDue(batch);
+        mailSender.failSubjects.add("mail-1");
+
+        dispatcher.drain();
+
+        verify(outboxRepository).markAttemptFailed(eq(1L), eq(OutboxStatus.FAILED), eq(MAX_ATTEMPTS), any(), any());
+        verify(outboxRepository).deleteByIdIn(argThat(ids -> ids.size() == 1 && ids.contains(2L)));
+    }
+
+    @Test
+    void connectionFailureRetriesTheWholeChunk() {
+        List<OutboxMessage> batch = emails(3, 0);
+        givenDue(batch);
+        mailSender.connectionDown = true;
+
+        assertThat(dispatcher.drain()).isZero();
+
+        verify(outboxRepository, times(3)).markAttemptFailed(anyLong(), eq(OutboxStatus.PENDING), eq(1), any(), any());
+        verify(outboxRepository, never()).deleteByIdIn(any());
+    }
+
+    @Test
+    void chunkDiscardedByAFullPoolIsRetriedInsteadOfAbortingTheBatch() throws Exception {
+        InstrumentedExecutor discardPool = new InstrumentedExecutor("mail", 1, 0, InstrumentedExecutor.Rejection.DISCARD, false);
+        when(backgroundExecutors.mail()).thenReturn(discardPool);
+        CountDownLatch busy = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        discardPool.submit(() -> {
+            busy.countDown();
+            return release.await(5, TimeUnit.SECONDS);
+        });
+        assertThat(busy.await(5, TimeUnit.SECONDS)).isTrue();
+
+        List<OutboxMessage> batch = new ArrayList<>(emails(2, 0));
+        batch.add(OutboxMessage.builder()
+                .id(3L)
+                .channel(OutboxChannel.STOMP)
+                .destination("/topic/test")
+                .payload("{\"ok\":true}".getBytes(StandardCharsets.UTF_8))
+                .status(OutboxStatus.SENDING)
+                .nextAttemptAt(LocalDateTime.now())
+                .createdAt(LocalDateTime.now())
+                .build());
+        givenDue(batch);
+        try {
+            assertThat(dispatcher.drain()).isEqualTo(1);
+        } finally {
+            release.countDown();
+            discardPool.shutdown();
+        }
+
+        verify(outboxRepository).markAttemptFailed(eq(1L), eq(OutboxStatus.PENDING), eq(1), any(), contains("discarded"));
+        verify(outboxRepository).markAttemptFailed(eq(2L), eq(OutboxStatus.PENDING), eq(1), any(), contains("discarded"));
+        verify(outboxRepository).deleteByIdIn(argThat(ids -> ids.size() == 1 && ids.contains(3L)));
+        assertThat(mailSender.batchSizes).isEmpty();
+    }
+
+    @Test
+    void unreadCountIsPushedAfterTheNotificationsOfTheSameRecipient() {
+        // findAllById không giữ thứ tự id
+        givenDue(List.of(stomp(2L, "/topic/notifications/alice/unread"), stomp(3L, "/topic/notifications/bob"),
+                stomp(1L, "/topic/notifications/alice"), stomp(4L, "/topic/notifications/alice/unread")));
+
+        assertThat(dispatcher.drain()).isEqualTo(4);
+
+        InOrder alice = inOrder(messagingTemplate);
+        alice.verify(messagingTemplate).convertAndSend(eq("/topic/notifications/alice"), any(Object.class));
+        alice.verify(messagingTemplate, times(2)).convertAndSend(eq("/topic/notifications/alice/unread"), any(Object.class));
+        verify(messagingTemplate).convertAndSend(eq("/topic/notifications/bob"), any(Object.class));
+    }
+
+    @Test
+    void failedNotificationHoldsBackTheUnreadCountOfTheSameRecipient() {
+        doThrow(new IllegalStateException("broker down"))
+                .when(messagingTemplate).convertAndSend(eq("/topic/notifications/alice"), any(Object.class));
+        givenDue(List.of(stomp(1L, "/topic/notifications/alice"), stomp(2L, "/topic/notifications/alice/unread"),
+                stomp(3L, "/topic/notifications/bob")));
+
+        assertThat(dispatcher.drain()).isEqualTo(1);
+
+        verify(messagingTemplate, never()).convertAndSend(eq("/topic/notifications/alice/unread"), any(Object.class));
+        verify(outboxRepository).markAttemptFailed(eq(1L), eq(OutboxStatus.PENDING), eq(1), any(), contains("broker down"));
+        verify(outboxRepository).markAttemptFailed(eq(2L), eq(OutboxStatus.PENDING), eq(1), any(), contains("broker down"));
+        verify(outboxRepository).deleteByIdIn(argThat(ids -> ids.size() == 1 && ids.contains(3L)));
+    }
+
+    private static OutboxMessage stomp(long id, String destination) {
+        return OutboxMessage.builder()
+                .id(id)
+                .channel(OutboxChannel.STOMP)
+                .destination(destination)
+                .payload("{\"unreadCount\":1}".getBytes(StandardCharsets.UTF_8))
+                .status(OutboxStatus.SENDING)
+                .nextAttemptAt(LocalDateTime.now())
+                .createdAt(LocalDateTime.now())
+                .build();
+    }
+
+    private void givenDue(List<OutboxMessage> batch) {
+        List<Long> ids = batch.stream().map(OutboxMessage::getId).toList();
+        when(outboxRepository.lockDueIds(any(), anyInt())).thenReturn(ids, List.of());
+        when(outboxRepository.findAllById(any())).thenReturn(batch);
+    }
+
+    private static List<OutboxMessage> emails(int count, int attempts) {
+        List<OutboxMessage> messages = new ArrayList<>();
+        for (long id = 1; id <= count; id++) {
+            String mime = "To: user" + id + "@example.com\r\nSubject: mail-" + id + "\r\n\r\nHello\r\n";
+            messages.add(OutboxMessage.builder()
+                    .id(id)
+                    .channel(OutboxChannel.EMAIL)
+                    .destination("user" + id + "@example.com")
+                    .payload(mime.getBytes(StandardCharsets.US_ASCII))
+                    .status(OutboxStatus.SENDING)
+                    .attempts(attempts)
+                    .nextAttemptAt(LocalDateTime.now())
+                    .createdAt(LocalDateTime.now())
+                    .build());
+        }
+        return messages;
+    }
+
+    // Thay cho SMTP: ghi lại kích thước từng lần send(MimeMessage...), lỗi theo subject như JavaMailSenderImpl
+    private static class RecordingMailSender implements JavaMailSender {
+        private final Session session = Session.getInstance(new Properties());
+        final List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+        final Set<String> failSubjects = Collections.synchronizedSet(new HashSet<>());
+        volatile boolean connectionDown;
+
+        @Override
+        public MimeMessage createMimeMessage() {
+            return new MimeMessage(session);
+        }
+
+        @Override
+        public MimeMessage createMimeMessage(InputStream contentStream) {
+            try {
+                return new MimeMessage(session, contentStream);
+            } catch (MessagingException e) {
+                throw new MailParseException(e);
+            }
+        }
+
+        @Override
+        public void send(MimeMessage mimeMessage) {
+            send(new MimeMessage[]{mimeMessage});
+        }
+
+        @Override
+        public void send(MimeMessage... mimeMessages) {
+            if (connectionDown) {
+                throw new MailSendException("Connection refused");
+            }
+            batchSizes.add(mimeMessages.length);
+            Map<Object, Exception> failed = new LinkedHashMap<>();
+            for (MimeMessage message : mimeMessages) {
+                try {
+                    if (failSubjects.contains(message.getSubject())) {
+                        failed.put(message, new MessagingException("552 mailbox full"));
+                    }
+                } catch (MessagingException e) {
+                    failed.put(message, e);
+                }
+            }
+            if (!failed.isEmpty()) {
+                throw new MailSendException(failed);
+            }
+        }
+
+        @Override
+        public void send(MimeMessagePreparator mimeMessagePreparator) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void send(MimeMessagePreparator... mimeMessagePreparators) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void send(SimpleMailMessage simpleMessage) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void send(SimpleMailMessage... simpleMessages) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
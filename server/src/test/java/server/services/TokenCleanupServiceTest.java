@@ -0,0 +1,153 @@
+package server.services;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import server.models.Token;
+import server.repositories.JobRunRepository;
+import server.repositories.TokenRepository;
+import server.utils.HashUtils;
+import server.utils.JwtUtil;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+// Dòng tokens cũ (chưa có hash / expires_at): backfill không vi phạm unique index, lookup vẫn thấy trước khi backfill
+class TokenCleanupServiceTest {
+    private TokenRepository tokenRepository;
+    private JobRunRepository jobRunRepository;
+    private TokenCleanupService service;
+
+    @BeforeEach
+    void setUp() {
+        tokenRepository = mock(TokenRepository.class);
+        JwtUtil jwtUtil = mock(JwtUtil.class);
+        when(jwtUtil.getRefreshTokenExpire()).thenReturn(86_400_000L);
+        jobRunRepository = mock(JobRunRepository.class);
+        when(jobRunRepository.claimOrResume(any(), any(), any(), any())).thenReturn(true);
+        service = new TokenCleanupService(tokenRepository, jwtUtil, jobRunRepository,
+                new TransactionTemplate(mock(PlatformTransactionManager.class)));
+        ReflectionTestUtils.setField(service, "batchSize", 10);
+        ReflectionTestUtils.setField(service, "backfillLeaseMinutes", 10L);
+        when(tokenRepository.findExistingAccessTokenHashes(any())).thenReturn(List.of());
+        when(tokenRepository.findExistingRefreshTokenHashes(any())).thenReturn(List.of());
+    }
+
+    @Test
+    void duplicateLegacyTokensAreClearedOrDeletedInsteadOfViolatingTheUniqueIndex() {
+        Token first = legacy(1L, "access-a", "refresh-a");
+        Token sameSession = legacy(2L, "access-a", "refresh-a");
+        Token sharedAccess = legacy(3L, "access-a", "refresh-b");
+        Token clashesWithHashed = legacy(5L, "access-c", "refresh-d");
+        when(tokenRepository.findByExpiresAtIsNull(any()))
+                .thenReturn(new ArrayList<>(List.of(first, sameSession, sharedAccess, clashesWithHashed)));
+        // access-c đã có ở 1 dòng mới (có hash) trong bảng
+        when(tokenRepository.findExistingAccessTokenHashes(any())).thenReturn(List.of(HashUtils.sha256Hex("access-c")));
+
+        assertThat(service.backfillLegacyTokens()).isEqualTo(4);
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<Token>> saved = ArgumentCaptor.forClass(List.class);
+        verify(tokenRepository).saveAll(saved.capture());
+        assertThat(saved.getValue()).containsExactly(first, sharedAccess, clashesWithHashed);
+        assertThat(first.getAccessToken()).isEqualTo("access-a");
+        assertThat(sharedAccess.getAccessToken()).isNull();
+        assertThat(sharedAccess.getRefreshToken()).isEqualTo("refresh-b");
+        assertThat(clashesWithHashed.getAccessToken()).isNull();
+        assertThat(clashesWithHashed.getRefreshToken()).isEqualTo("refresh-d");
+        assertThat(saved.getValue()).allMatch(token -> token.getExpiresAt() != null);
+        verify(tokenRepository).deleteAllInBatch(List.of(sameSession));
+    }
+
+    @Test
+    void backfillIsRecordedInJobRunAndSkippedOnceCompleted() {
+        when(tokenRepository.findByExpiresAtIsNull(any()))
+                .thenReturn(new ArrayList<>(List.of(legacy(1L, "access-a", "refresh-a"))));
+
+        assertThat(service.backfillLegacyTokens()).isEqualTo(1);
+        verify(jobRunRepository).renew(eq(TokenCleanupService.BACKFILL_JOB), anyString(), any());
+        verify(jobRunRepository).complete(eq(TokenCleanupService.BACKFILL_JOB), anyString(), eq(1), anyLong(), any());
+
+        // Node khởi động sau: job đã complete thì không đọc bảng tokens
+        clearInvocations(tokenRepository);
+        when(jobRunRepository.existsByJobNameAndPeriodAndDurationMsIsNotNull(eq(TokenCleanupService.BACKFILL_JOB), anyString()))
+                .thenReturn(true);
+        assertThat(service.backfillLegacyTokens()).isZero();
+        verifyNoInteractions(tokenRepository);
+    }
+
+    @Test
+    void nodeThatLosesTheClaimDoesNotBackfill() {
+        // Node khác đang chạy (chưa quá lease)
+        when(jobRunRepository.claimOrResume(any(), any(), any(), any())).thenReturn(false);
+
+        assertThat(service.backfillLegacyTokens()).isZero();
+        verifyNoInteractions(tokenRepository);
+        verify(jobRunRepository, never()).complete(any(), any(), anyInt(), anyLong(), any());
+    }
+
+    @Test
+    void rowThatAlreadyHasItsHashIsNotTreatedAsADuplicateOfItself() {
+        Token hashed = legacy(1L, "access-a", "refresh-a");
+        hashed.setAccessTokenHash(HashUtils.sha256Hex("access-a"));
+        hashed.setRefreshTokenHash(HashUtils.sha256Hex("refresh-a"));
+        when(tokenRepository.findByExpiresAtIsNull(any())).thenReturn(new ArrayList<>(List.of(hashed)));
+        when(tokenRepository.findExistingAccessTokenHashes(any())).thenReturn(List.of(HashUtils.sha256Hex("access-a")));
+
+        service.backfillLegacyTokens();
+
+        assertThat(hashed.getAccessToken()).isEqualTo("access-a");
+        assertThat(hashed.getRefreshToken()).isEqualTo("refresh-a");
+        verify(tokenRepository, never()).deleteAllInBatch(any());
+    }
+
+    @Test
+    void lookupFallsBackToThePlainColumnUntilTheBackfillHasRun() {
+        Token token = legacy(1L, "access-a", "refresh-a");
+        when(tokenRepository.findByAccessToken(anyString())).thenCallRealMethod();
+        when(tokenRepository.findByRefreshToken(anyString())).thenCallRealMethod();
+        when(tokenRepository.existsByAccessToken(anyString())).thenCallRealMethod();
+        when(tokenRepository.findByAccessTokenHash(anyString())).thenReturn(Optional.empty());
+        when(tokenRepository.findByRefreshTokenHash(anyString())).thenReturn(Optional.empty());
+        when(tokenRepository.findFirstByAccessTokenHashIsNullAndAccessToken("access-a")).thenReturn(Optional.of(token));
+        when(tokenRepository.findFirstByRefreshTokenHashIsNullAndRefreshToken("refresh-a")).thenReturn(Optional.of(token));
+        when(tokenRepository.existsByAccessTokenHashIsNullAndAccessToken("access-a")).thenReturn(true);
+
+        assertThat(tokenRepository.findByAccessToken("access-a")).contains(token);
+        assertThat(tokenRepository.findByRefreshToken("refresh-a")).contains(token);
+        assertThat(tokenRepository.existsByAccessToken("access-a")).isTrue();
+        assertThat(tokenRepository.findByAccessToken("unknown")).isEmpty();
+    }
+
+    @Test
+    void hashLookupDoesNotTouchThePlainColumn() {
+        Token token = legacy(1L, "access-a", "refresh-a");
+        when(tokenRepository.findByAccessToken(anyString())).thenCallRealMethod();
+        when(tokenRepository.findByAccessTokenHash(HashUtils.sha256Hex("access-a"))).thenReturn(Optional.of(token));
+
+        assertThat(tokenRepository.findByAccessToken("access-a")).contains(token);
+        verify(tokenRepository, never()).findFirstByAccessTokenHashIsNullAndAccessToken(anyString());
+    }
+
+    private static Token legacy(Long id, String accessToken, String refreshToken) {
+        Token token = new Token();
+        token.setId(id);
+        token.setAccessToken(accessToken);
+        token.setRefreshToken(refreshToken);
+        token.setCreatedAt(LocalDateTime.now().minusDays(1));
+        return token;
+    }
+}
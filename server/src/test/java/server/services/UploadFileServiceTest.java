@@ -0,0 +1,127 @@
+package server.services;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class UploadFileServiceTest {
+    @TempDir
+    Path uploadDir;
+
+    private UploadFileService service;
+    private final byte[] content = new byte[50_000];
+
+    @BeforeEach
+    void setUp() {
+        service = new UploadFileService();
+        ReflectionTestUtils.setField(service, "uploadFolder", uploadDir.toString());
+        Arrays.fill(content, (byte) 7);
+    }
+
+    @Test
+    void readerErrorStillStoresTheWholeFile() throws IOException {
+        MockMultipartFile file = new MockMultipartFile("image", "live.jpg", "image/jpeg", content);
+
+        UploadFileService.Stored<byte[]> stored = service.storeFile("attendance", file, in -> {
+            in.readNBytes(100);
+            throw new IOException("not an image");
+        });
+
+        assertThat(stored.result()).isNull();
+        assertThat(Files.readAllBytes(Paths.get(stored.path()))).isEqualTo(content);
+    }
+
+    @Test
+    void partiallyReadStreamIsDrainedToDisk() throws IOException {
+        MockMultipartFile file = new MockMultipartFile("image", "live.jpg", "image/jpeg", content);
+
+        UploadFileService.Stored<Integer> stored = service.storeFile("attendance", file, in -> in.readNBytes(10).length);
+
+        assertThat(stored.result()).isEqualTo(10);
+        assertThat(Files.readAllBytes(Paths.get(stored.path()))).isEqualTo(content);
+    }
+
+    @Test
+    void sourceFailureSwallowedByReaderFailsTheUploadAndRemovesTheFile() throws IOException {
+        MockMultipartFile file = new MockMultipartFile("image", "live.jpg", "image/jpeg", content) {
+            @Override
+            public InputStream getInputStream() {
+                return new FailingInputStream(content, 1000);
+            }
+        };
+
+        assertThrows(IOException.class, () -> service.storeFile("attendance", file, in -> {
+            try {
+                return in.readAllBytes();
+            } catch (IOException e) {
+                return null; // reader nuốt lỗi như ImageIO
+            }
+        }));
+
+        try (Stream<Path> files = Files.list(uploadDir.resolve("attendance"))) {
+            assertThat(files).isEmpty();
+        }
+    }
+
+    @Test
+    void sinkFailureIsKeptAndRethrown() throws IOException {
+        WritableByteChannel brokenSink = new WritableByteChannel() {
+            @Override
+            public int write(ByteBuffer src) throws IOException {
+                throw new IOException("disk full");
+            }
+
+            @Override
+            public boolean isOpen() {
+                return true;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        UploadFileService.TeeInputStream tee =
+                new UploadFileService.TeeInputStream(new ByteArrayInputStream(content), brokenSink);
+
+        assertThrows(IOException.class, () -> tee.read(new byte[100], 0, 100));
+        IOException rethrown = assertThrows(IOException.class, tee::rethrowFailure);
+        assertThat(rethrown).hasMessage("disk full");
+        assertThrows(IOException.class, tee::drain);
+    }
+
+    // Trả về {@code failAfter} byte đầu rồi ném lỗi như client ngắt kết nối giữa chừng
+    private static class FailingInputStream extends InputStream {
+        private final byte[] data;
+        private final int failAfter;
+        private int pos;
+
+        FailingInputStream(byte[] data, int failAfter) {
+            this.data = data;
+            this.failAfter = failAfter;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (pos >= failAfter) {
+                throw new IOException("connection reset");
+            }
+            return data[pos++] & 0xFF;
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package server.utils;
+
+import org.apache.poi.util.Units;
+import org.apache.poi.xwpf.usermodel.*;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * So sánh xuất đơn nghỉ phép (templates/donxinnghiphep.docx): cách cũ mở template bằng POI ở mỗi lần xuất
+ * rồi với từng run lặp qua mọi key, cách hiện tại clone DOM đã parse của DocxTemplateEngine.
+ *
+ * Không chạy trong mvn test; chạy riêng: {@code mvn -Dtest=DocxTemplateEngineBenchmark test}
+ */
+class DocxTemplateEngineBenchmark {
+    private static final String TEMPLATE = "donxinnghiphep.docx";
+    private static final String SIGNATURE_KEY = "ký tên";
+
+    @Test
+    void renderThroughput() throws IOException {
+        DocxTemplateEngine engine = new DocxTemplateEngine();
+        byte[] signature = png();
+
+        Map<String, String> data = new HashMap<>();
+        for (String token : engine.tokensOf(TEMPLATE)) {
+            String key = token.substring(1, token.length() - 1);
+            if (!key.equals(SIGNATURE_KEY)) {
+                data.put(key, "Giá trị " + key);
+            }
+        }
+        Map<String, String> values = DocxTemplateEngine.tokens(data, "{", "}");
+        Map<String, DocxTemplateEngine.Image> images = Map.of("{" + SIGNATURE_KEY + "}",
+                new DocxTemplateEngine.Image(signature, 100, 40, "signature.png"));
+
+        // Cả 2 cách phải cho cùng nội dung thì so sánh mới có nghĩa
+        assertThat(text(engine.render(TEMPLATE, values, images))).isEqualTo(text(perKeyLoops(data, signature)));
+
+        MicroBenchmark.report("render " + TEMPLATE,
+                MicroBenchmark.run("POI mở template + lặp từng key (cũ)", 200, 2_000, () -> perKeyLoops(data, signature)),
+                MicroBenchmark.run("DocxTemplateEngine (clone DOM)", 200, 2_000, () -> render(engine, values, images)));
+    }
+
+    private static byte[] render(DocxTemplateEngine engine, Map<String, String> values,
+                                 Map<String, DocxTemplateEngine.Image> images) {
+        try {
+            return engine.render(TEMPLATE, values, images);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Giống LeaveRequestService.exportDocumentToWord trước khi có DocxTemplateEngine
+    private static byte[] perKeyLoops(Map<String, String> data, byte[] signature) {
+        try (InputStream template = DocxTemplateEngineBenchmark.class.getClassLoader()
+                .getResourceAsStream("templates/" + TEMPLATE);
+             XWPFDocument document = new XWPFDocument(template)) {
+            for (XWPFParagraph p : document.getParagraphs()) {
+                replaceRuns(p, data, signature);
+            }
+            for (XWPFTable table : document.getTables()) {
+                for (XWPFTableRow row : table.getRows()) {
+                    for (XWPFTableCell cell : row.getTableCells()) {
+                        for (XWPFParagraph p : cell.getParagraphs()) {
+                            replaceRuns(p, data, signature);
+                        }
+                    }
+                }
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            document.write(out);
+            return out.toByteArray();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void replaceRuns(XWPFParagraph p, Map<String, String> data, byte[] signature) throws Exception {
+        for (XWPFRun run : p.getRuns()) {
+            String runText = run.getText(0);
+            if (runText == null) {
+                continue;
+            }
+            if (runText.contains("{" + SIGNATURE_KEY + "}")) {
+                run.setText("", 0);
+                run.addPicture(new ByteArrayInputStream(signature), XWPFDocument.PICTURE_TYPE_PNG,
+                        "signature.png", Units.toEMU(100), Units.toEMU(40));
+            } else {
+                for (String key : data.keySet()) {
+                    String placeholder = "{" + key + "}";
+                    if (runText.contains(placeholder)) {
+                        runText = runText.replace(placeholder, data.get(key));
+                    }
+                }
+                run.setText(runText, 0);
+            }
+        }
+    }
+
+    private static String text(byte[] docx) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        try (XWPFDocument document = new XWPFDocument(new ByteArrayInputStream(docx))) {
+            List<XWPFParagraph> paragraphs = document.getParagraphs();
+            for (XWPFParagraph paragraph : paragraphs) {
+                for (XWPFRun run : paragraph.getRuns()) {
+                    String text = run.getText(0);
+                    sb.append(text == null ? "" : text);
+                }
+                sb.append('\n');
+            }
+        }
+        return sb.toString();
+    }
+
+    private static byte[] png() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(200, 80, BufferedImage.TYPE_INT_ARGB), "png", out);
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,237 @@
+package server.utils;
+
+import org.apache.poi.xwpf.usermodel.*;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Template dựng tại chỗ bằng POI, đặt vào classpath "templates/" qua context class loader
+class DocxTemplateEngineTest {
+    @TempDir
+    Path classpathRoot;
+
+    private ClassLoader originalLoader;
+    private URLClassLoader templateLoader;
+    private DocxTemplateEngine engine;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        Files.createDirectories(classpathRoot.resolve("templates"));
+        originalLoader = Thread.currentThread().getContextClassLoader();
+        templateLoader = new URLClassLoader(new URL[]{classpathRoot.toUri().toURL()}, originalLoader);
+        Thread.currentThread().setContextClassLoader(templateLoader);
+        engine = new DocxTemplateEngine();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        Thread.currentThread().setContextClassLoader(originalLoader);
+        templateLoader.close();
+    }
+
+    @Test
+    void fillsPlaceholderSplitAcrossRunsKeepingFirstRunStyle() throws IOException {
+        writeTemplate("split.docx", document -> {
+            XWPFParagraph paragraph = document.createParagraph();
+            paragraph.createRun().setText("Họ tên: ");
+            XWPFRun head = paragraph.createRun();
+            head.setBold(true);
+            head.setText("{ho");
+            paragraph.createRun().setText("_ten");
+            paragraph.createRun().setText("} - hết");
+        });
+
+        assertThat(engine.tokensOf("split.docx")).containsExactly("{ho_ten}");
+        try (XWPFDocument result = render("split.docx", Map.of("{ho_ten}", "Nguyễn Văn A"), Map.of())) {
+            XWPFParagraph paragraph = result.getParagraphs().get(0);
+            assertThat(paragraph.getText()).isEqualTo("Họ tên: Nguyễn Văn A - hết");
+            XWPFRun filled = paragraph.getRuns().get(1);
+            assertThat(filled.getText(0)).isEqualTo("Nguyễn Văn A");
+            assertThat(filled.isBold()).isTrue();
+        }
+    }
+
+    @Test
+    void singleAndDoubleBracePlaceholdersAreDistinctTokens() throws IOException {
+        writeTemplate("braces.docx", document ->
+                document.createParagraph().createRun().setText("{{name}} / {name} / {other}"));
+
+        assertThat(engine.tokensOf("braces.docx")).containsExactlyInAnyOrder("{{name}}", "{name}", "{other}");
+        try (XWPFDocument result = render("braces.docx", Map.of("{{name}}", "A", "{name}", "B"), Map.of())) {
+            // Token không có giá trị thì giữ nguyên
+            assertThat(result.getParagraphs().get(0).getText()).isEqualTo("A / B / {other}");
+        }
+    }
+
+    @Test
+    void valueContainingATokenIsNotFilledAgain() throws IOException {
+        writeTemplate("recursive.docx", document ->
+                document.createParagraph().createRun().setText("{a} {b}"));
+
+        try (XWPFDocument result = render("recursive.docx", Map.of("{a}", "{b}", "{b}", "x"), Map.of())) {
+            assertThat(result.getParagraphs().get(0).getText()).isEqualTo("{b} x");
+        }
+    }
+
+    @Test
+    void signatureTokenInTableCellIsReplacedByPicture() throws IOException {
+        writeTemplate("signature.docx", document -> {
+            XWPFTable table = document.createTable(1, 2);
+            table.getRow(0).getCell(0).getParagraphs().get(0).createRun().setText("Người đề nghị");
+            XWPFParagraph cell = table.getRow(0).getCell(1).getParagraphs().get(0);
+            cell.createRun().setText("Ký: {chu_ky} ({ho_ten})");
+        });
+
+        DocxTemplateEngine.Image signature = new DocxTemplateEngine.Image(png(), 120, 40, "chu_ky.png");
+        try (XWPFDocument result = render("signature.docx",
+                Map.of("{ho_ten}", "Trần B"), Map.of("{chu_ky}", signature))) {
+            XWPFParagraph cell = result.getTables().get(0).getRow(0).getCell(1).getParagraphs().get(0);
+            assertThat(runText(cell)).isEqualTo("Ký:  (Trần B)");
+            List<XWPFPicture> pictures = cell.getRuns().stream()
+                    .flatMap(run -> run.getEmbeddedPictures().stream())
+                    .toList();
+            assertThat(pictures).hasSize(1);
+            assertThat(result.getAllPictures()).hasSize(1);
+            assertThat(result.getTables().get(0).getRow(0).getCell(0).getText()).isEqualTo("Người đề nghị");
+        }
+    }
+
+    @Test
+    void renderingTwiceStartsFromTheCachedTemplate() throws IOException {
+        writeTemplate("cached.docx", document -> document.createParagraph().createRun().setText("Số: {so}"));
+
+        try (XWPFDocument first = render("cached.docx", Map.of("{so}", "1"), Map.of());
+             XWPFDocument second = render("cached.docx", Map.of("{so}", "2"), Map.of())) {
+            assertThat(first.getParagraphs().get(0).getText()).isEqualTo("Số: 1");
+            assertThat(second.getParagraphs().get(0).getText()).isEqualTo("Số: 2");
+        }
+    }
+
+    @Test
+    void samePictureForTwoTokensIsStoredOnceWithDistinctDrawingIds() throws IOException {
+        writeTemplate("two-signatures.docx", document -> {
+            document.createParagraph().createRun().setText("Giám đốc: {gd_ky}");
+            document.createParagraph().createRun().setText("Nhân viên: {nv_ky}");
+        });
+
+        DocxTemplateEngine.Image signature = new DocxTemplateEngine.Image(png(), 100, 40, "signature.png");
+        byte[] bytes = engine.render("two-signatures.docx", Map.of(),
+                Map.of("{gd_ky}", signature, "{nv_ky}", signature));
+        try (XWPFDocument result = new XWPFDocument(new ByteArrayInputStream(bytes))) {
+            assertThat(result.getAllPictures()).hasSize(1);
+            for (XWPFParagraph paragraph : result.getParagraphs()) {
+                assertThat(paragraph.getRuns().stream().mapToInt(run -> run.getEmbeddedPictures().size()).sum())
+                        .isEqualTo(1);
+            }
+        }
+        // Mỗi ảnh trong document cần docPr id riêng (Word báo lỗi file nếu trùng)
+        String document = new String(entries(bytes).get("word/document.xml"), StandardCharsets.UTF_8);
+        Matcher docPr = Pattern.compile("<wp:docPr[^>]*\\sid=\"(\\d+)\"").matcher(document);
+        List<String> ids = new ArrayList<>();
+        while (docPr.find()) {
+            ids.add(docPr.group(1));
+        }
+        assertThat(ids).containsExactly("1", "2");
+    }
+
+    @Test
+    void partsWithoutPlaceholdersAreCopiedUnchanged() throws IOException {
+        writeTemplate("copied.docx", document -> {
+            document.createStyles();
+            document.createParagraph().createRun().setText("Số: {so}");
+        });
+        Map<String, byte[]> template = entries(Files.readAllBytes(classpathRoot.resolve("templates/copied.docx")));
+
+        Map<String, byte[]> rendered = entries(engine.render("copied.docx", Map.of("{so}", "7")));
+
+        assertThat(rendered.keySet()).containsExactlyElementsOf(template.keySet());
+        for (String name : template.keySet()) {
+            if (!name.equals("word/document.xml")) {
+                assertThat(rendered.get(name)).as(name).isEqualTo(template.get(name));
+            }
+        }
+        assertThat(rendered.get("word/document.xml")).isNotEqualTo(template.get("word/document.xml"));
+    }
+
+    @Test
+    void placeholderInsideHyperlinkIsFilled() throws IOException {
+        writeTemplate("link.docx", document -> {
+            XWPFParagraph paragraph = document.createParagraph();
+            paragraph.createRun().setText("Xem: ");
+            paragraph.createHyperlinkRun("https://example.com").setText("{link_text}");
+        });
+
+        try (XWPFDocument result = render("link.docx", Map.of("{link_text}", "hồ sơ"), Map.of())) {
+            assertThat(runText(result.getParagraphs().get(0))).isEqualTo("Xem: hồ sơ");
+        }
+    }
+
+    private interface DocumentWriter {
+        void write(XWPFDocument document) throws IOException;
+    }
+
+    private void writeTemplate(String name, DocumentWriter writer) throws IOException {
+        try (XWPFDocument document = new XWPFDocument();
+             OutputStream out = Files.newOutputStream(classpathRoot.resolve("templates").resolve(name))) {
+            writer.write(document);
+            document.write(out);
+        }
+    }
+
+    private XWPFDocument render(String name, Map<String, String> values,
+                                Map<String, DocxTemplateEngine.Image> images) throws IOException {
+        return new XWPFDocument(new ByteArrayInputStream(engine.render(name, values, images)));
+    }
+
+    private static Map<String, byte[]> entries(byte[] docx) throws IOException {
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(docx))) {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                entries.put(entry.getName(), zip.readAllBytes());
+            }
+        }
+        return entries;
+    }
+
+    // Chỉ lấy text của các run (getText() của paragraph có thể kèm mô tả ảnh)
+    private static String runText(XWPFParagraph paragraph) {
+        StringBuilder sb = new StringBuilder();
+        for (XWPFRun run : paragraph.getRuns()) {
+            String text = run.getText(0);
+            if (text != null) {
+                sb.append(text);
+            }
+        }
+        return sb.toString();
+    }
+
+    private static byte[] png() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(12, 4, BufferedImage.TYPE_INT_RGB), "png", out);
+        return out.toByteArray();
+    }
+}
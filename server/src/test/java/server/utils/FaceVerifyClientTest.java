@@ -0,0 +1,187 @@
+package server.utils;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import server.dtos.FaceVerifyResponse;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+// Service Python giả bằng HttpServer của JDK: kiểm tra breaker, mã lỗi 403 / 409 và giới hạn đồng thời
+class FaceVerifyClientTest {
+    private static final String MATCH = "{\"match\":true,\"location_ok\":true,\"distance_km\":0.01}";
+
+    private HttpServer server;
+    private ExecutorService serverExecutor;
+    private final AtomicInteger hits = new AtomicInteger();
+    private volatile int status = 200;
+    private volatile long delayMs;
+    private volatile CountDownLatch entered = new CountDownLatch(0);
+    private volatile CountDownLatch release = new CountDownLatch(0);
+    private FaceVerifyClient client;
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        serverExecutor = Executors.newCachedThreadPool();
+        server.setExecutor(serverExecutor);
+        server.createContext("/api/face-verify", this::handle);
+        server.start();
+    }
+
+    @AfterEach
+    void stopServer() {
+        if (client != null) {
+            client.shutdown();
+        }
+        release.countDown();
+        server.stop(0);
+        serverExecutor.shutdownNow();
+    }
+
+    @Test
+    void circuitOpensAfterConsecutiveServerErrorsAndHalfOpensAfterOpenMs() throws Exception {
+        client = client(5000, 4, 1000, 3, 300);
+        status = 500;
+        for (int i = 0; i < 3; i++) {
+            assertThrows(IOException.class, () -> client.verify(body()));
+        }
+        assertThat(client.stats().circuit()).isEqualTo("OPEN");
+
+        // Đang mở: từ chối ngay, không gọi tới service
+        assertThrows(IOException.class, () -> client.verify(body()));
+        assertThat(hits.get()).isEqualTo(3);
+        assertThat(client.stats().rejectedOpen()).isEqualTo(1);
+
+        Thread.sleep(400);
+        assertThat(client.stats().circuit()).isEqualTo("HALF_OPEN");
+        status = 200;
+        FaceVerifyResponse response = client.verify(body());
+        assertThat(response.isMatch()).isTrue();
+        assertThat(client.stats().circuit()).isEqualTo("CLOSED");
+        assertThat(hits.get()).isEqualTo(4);
+    }
+
+    @Test
+    void failedHalfOpenTrialReopensTheCircuit() throws Exception {
+        client = client(5000, 4, 1000, 1, 200);
+        status = 503;
+        assertThrows(IOException.class, () -> client.verify(body()));
+        assertThat(client.stats().circuit()).isEqualTo("OPEN");
+
+        Thread.sleep(300);
+        assertThrows(IOException.class, () -> client.verify(body()));
+        assertThat(hits.get()).isEqualTo(2);
+        assertThat(client.stats().circuit()).isEqualTo("OPEN");
+    }
+
+    @Test
+    void readTimeoutsCountAsFailures() {
+        client = client(200, 4, 1000, 2, 60_000);
+        delayMs = 1000;
+        for (int i = 0; i < 2; i++) {
+            assertThrows(IOException.class, () -> client.verify(body()));
+        }
+        FaceVerifyClient.Stats stats = client.stats();
+        assertThat(stats.circuit()).isEqualTo("OPEN");
+        assertThat(stats.failed()).isEqualTo(2);
+    }
+
+    @Test
+    void forbiddenAndConflictAreAnswersNotFailures() {
+        client = client(5000, 4, 1000, 1, 60_000);
+
+        status = 403;
+        IOException forbidden = assertThrows(IOException.class, () -> client.verify(body()));
+        assertThat(forbidden).isNotInstanceOf(FaceVerifyClient.UnknownReferenceException.class);
+        assertThat(forbidden.getMessage()).contains("403");
+
+        status = 409;
+        assertThrows(FaceVerifyClient.UnknownReferenceException.class, () -> client.verify(body()));
+
+        FaceVerifyClient.Stats stats = client.stats();
+        assertThat(stats.circuit()).isEqualTo("CLOSED");
+        assertThat(stats.failed()).isZero();
+        assertThat(stats.succeeded()).isEqualTo(2);
+    }
+
+    @Test
+    void callersBeyondMaxConcurrentAreRejectedAfterAcquireTimeout() throws Exception {
+        client = client(5000, 1, 100, 5, 60_000);
+        entered = new CountDownLatch(1);
+        release = new CountDownLatch(1);
+
+        ExecutorService caller = Executors.newSingleThreadExecutor();
+        try {
+            Future<FaceVerifyResponse> first = caller.submit(() -> client.verify(body()));
+            assertThat(entered.await(5, TimeUnit.SECONDS)).isTrue();
+
+            long startedAt = System.nanoTime();
+            IOException busy = assertThrows(IOException.class, () -> client.verify(body()));
+            long waitedMs = (System.nanoTime() - startedAt) / 1_000_000;
+            assertThat(busy.getMessage()).contains("busy");
+            assertThat(waitedMs).isGreaterThanOrEqualTo(90).isLessThan(2000);
+            assertThat(client.stats().rejectedBusy()).isEqualTo(1);
+            assertThat(hits.get()).isEqualTo(1);
+
+            release.countDown();
+            assertThat(first.get(5, TimeUnit.SECONDS).isMatch()).isTrue();
+            assertThat(client.stats().circuit()).isEqualTo("CLOSED");
+        } finally {
+            caller.shutdownNow();
+        }
+    }
+
+    private FaceVerifyClient client(long readTimeoutMs, int maxConcurrent, long acquireTimeoutMs,
+                                    int failureThreshold, long openMs) {
+        String url = "http://127.0.0.1:" + server.getAddress().getPort() + "/api/face-verify";
+        return new FaceVerifyClient(url, 1000, readTimeoutMs, maxConcurrent, acquireTimeoutMs, failureThreshold, openMs);
+    }
+
+    private static MultiValueMap<String, Object> body() {
+        MultiValueMap<String, Object> body = new LinkedMultiValueMap<>();
+        body.add("known_key", "key");
+        body.add("latitude", "21.0");
+        body.add("longitude", "105.8");
+        return body;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            exchange.getRequestBody().readAllBytes();
+            hits.incrementAndGet();
+            entered.countDown();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+                if (delayMs > 0) {
+                    Thread.sleep(delayMs);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            int code = status;
+            byte[] response = (code == 200 ? MATCH : "{\"error\":\"status " + code + "\"}")
+                    .getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(code, response.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(response);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+}
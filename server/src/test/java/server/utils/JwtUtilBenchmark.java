@@ -0,0 +1,97 @@
+package server.utils;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.io.Decoders;
+import io.jsonwebtoken.security.Keys;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import server.models.Account;
+import server.models.Employee;
+import server.models.enums.Role;
+import server.repositories.TokenRepository;
+
+import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Date;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+/**
+ * So sánh throughput phát hành / xác thực JWT: cách cũ dựng SecretKey + JwtParser ở mỗi lần gọi
+ * (getSigninKey() + Jwts.parser()...build()), cách hiện tại dùng signingKey / jwtParser dựng 1 lần trong init().
+ *
+ * Không chạy trong mvn test; chạy riêng: {@code mvn -Dtest=JwtUtilBenchmark test}
+ */
+class JwtUtilBenchmark {
+    private static final String SECRET = Base64.getUrlEncoder().withoutPadding()
+            .encodeToString("benchmark-secret-key-with-at-least-256-bits".getBytes(StandardCharsets.UTF_8));
+
+    private JwtUtil jwtUtil;
+    private Account account;
+    private String token;
+
+    @BeforeEach
+    void setUp() {
+        jwtUtil = new JwtUtil(mock(TokenRepository.class), mock(TokenValidityCache.class));
+        ReflectionTestUtils.setField(jwtUtil, "secretKey", SECRET);
+        ReflectionTestUtils.setField(jwtUtil, "accessTokenExpire", 3_600_000L);
+        ReflectionTestUtils.setField(jwtUtil, "refreshTokenExpire", 86_400_000L);
+        jwtUtil.init();
+
+        Employee employee = new Employee();
+        employee.setId(70L);
+        account = Account.builder().id(7L).username("alice").role(Role.HR).enabled(true).employee(employee).build();
+        token = jwtUtil.generateAccessToken(account);
+    }
+
+    @Test
+    void verifyThroughput() {
+        // Cả 2 cách phải cho cùng claims thì so sánh mới có nghĩa
+        assertThat(verifyPerCall(token).getSubject()).isEqualTo(jwtUtil.extractAllClaims(token).getSubject());
+
+        MicroBenchmark.report("verify access token",
+                MicroBenchmark.run("per-call key + parser (cũ)", () -> verifyPerCall(token)),
+                MicroBenchmark.run("cached jwtParser", () -> jwtUtil.extractAllClaims(token)));
+    }
+
+    @Test
+    void issueThroughput() {
+        assertThat(jwtUtil.extractAllClaims(issuePerCall(account)).getSubject()).isEqualTo("alice");
+
+        MicroBenchmark.report("issue access token",
+                MicroBenchmark.run("per-call key (cũ)", () -> issuePerCall(account)),
+                MicroBenchmark.run("cached signingKey", () -> jwtUtil.generateAccessToken(account)));
+    }
+
+    // Giống JwtUtil trước khi cache: decode secret + dựng key + dựng parser cho từng token
+    private static Claims verifyPerCall(String token) {
+        return Jwts.parser()
+                .verifyWith(perCallKey())
+                .build()
+                .parseSignedClaims(token)
+                .getPayload();
+    }
+
+    private static String issuePerCall(Account account) {
+        return Jwts.builder()
+                .subject(account.getUsername())
+                .id(UUID.randomUUID().toString())
+                .claim(JwtUtil.CLAIM_ROLE, account.getRole())
+                .claim(JwtUtil.CLAIM_ACCOUNT_ID, account.getId())
+                .claim(JwtUtil.CLAIM_ENABLED, account.isEnabled())
+                .claim(JwtUtil.CLAIM_EMPLOYEE_ID, account.getEmployee().getId())
+                .issuedAt(new Date())
+                .expiration(new Date(System.currentTimeMillis() + 3_600_000L))
+                .signWith(perCallKey())
+                .compact();
+    }
+
+    private static SecretKey perCallKey() {
+        return Keys.hmacShaKeyFor(Decoders.BASE64URL.decode(SECRET));
+    }
+}
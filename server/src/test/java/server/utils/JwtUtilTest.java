@@ -0,0 +1,126 @@
+package server.utils;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.Jwts;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import server.models.Account;
+import server.models.Employee;
+import server.models.Token;
+import server.models.enums.Role;
+import server.repositories.TokenRepository;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Date;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.*;
+
+class JwtUtilTest {
+    private TokenRepository tokenRepository;
+    private JwtUtil jwtUtil;
+
+    @BeforeEach
+    void setUp() {
+        tokenRepository = mock(TokenRepository.class);
+        jwtUtil = jwtUtil("test-secret-key-with-at-least-256-bits!!");
+    }
+
+    @Test
+    void parserIsBuiltOnceAtInitAndReused() {
+        JwtUtil fresh = new JwtUtil(tokenRepository, mock(TokenValidityCache.class));
+        configure(fresh, "another-secret-key-with-at-least-256-bits");
+        assertThat(ReflectionTestUtils.getField(fresh, "jwtParser")).isNull();
+
+        fresh.init();
+        JwtParser parser = (JwtParser) ReflectionTestUtils.getField(fresh, "jwtParser");
+        assertThat(parser).isNotNull();
+
+        String token = fresh.generateAccessToken(account());
+        assertThat(fresh.extractUsername(token)).isEqualTo("alice");
+        assertThat(fresh.extractAllClaims(token).getSubject()).isEqualTo("alice");
+        assertThat(ReflectionTestUtils.getField(fresh, "jwtParser")).isSameAs(parser);
+    }
+
+    @Test
+    void accessTokenCarriesThePrincipalClaims() {
+        Claims claims = jwtUtil.extractAllClaims(jwtUtil.generateAccessToken(account()));
+
+        Account principal = jwtUtil.principalFromClaims(claims);
+        assertThat(principal.getId()).isEqualTo(7L);
+        assertThat(principal.getUsername()).isEqualTo("alice");
+        assertThat(principal.getRole()).isEqualTo(Role.HR);
+        assertThat(principal.isEnabled()).isTrue();
+        assertThat(principal.getEmployee().getId()).isEqualTo(70L);
+    }
+
+    @Test
+    void tokenSignedWithAnotherKeyIsRejected() {
+        String foreign = jwtUtil("another-secret-key-with-at-least-256-bits").generateAccessToken(account());
+
+        assertThrows(JwtException.class, () -> jwtUtil.extractAllClaims(foreign));
+    }
+
+    @Test
+    void refreshTokenCheckUsesTheParsedClaims() {
+        when(tokenRepository.findByRefreshToken("opaque-refresh")).thenReturn(Optional.of(new Token()));
+
+        // Chuỗi token không phải JWT: overload này không parse lại, chỉ tra DB
+        assertThat(jwtUtil.isValidRefreshToken("opaque-refresh", claims("alice", 60_000), account())).isTrue();
+        verify(tokenRepository).findByRefreshToken("opaque-refresh");
+    }
+
+    @Test
+    void refreshTokenForAnotherUserOrExpiredIsRejectedWithoutDbLookup() {
+        assertThat(jwtUtil.isValidRefreshToken("opaque-refresh", claims("bob", 60_000), account())).isFalse();
+        assertThat(jwtUtil.isValidRefreshToken("opaque-refresh", claims("alice", -1_000), account())).isFalse();
+        verifyNoInteractions(tokenRepository);
+    }
+
+    @Test
+    void revokedRefreshTokenIsRejected() {
+        String refresh = jwtUtil.generateRefreshToken(account());
+        when(tokenRepository.findByRefreshToken(refresh)).thenReturn(Optional.empty());
+
+        assertThat(jwtUtil.isValidRefreshToken(refresh, account())).isFalse();
+    }
+
+    private JwtUtil jwtUtil(String secret) {
+        JwtUtil util = new JwtUtil(tokenRepository, mock(TokenValidityCache.class));
+        configure(util, secret);
+        util.init();
+        return util;
+    }
+
+    private static void configure(JwtUtil util, String secret) {
+        ReflectionTestUtils.setField(util, "secretKey",
+                Base64.getUrlEncoder().withoutPadding().encodeToString(secret.getBytes(StandardCharsets.UTF_8)));
+        ReflectionTestUtils.setField(util, "accessTokenExpire", 3_600_000L);
+        ReflectionTestUtils.setField(util, "refreshTokenExpire", 86_400_000L);
+    }
+
+    private static Claims claims(String subject, long expiresInMs) {
+        return Jwts.claims()
+                .subject(subject)
+                .expiration(new Date(System.currentTimeMillis() + expiresInMs))
+                .build();
+    }
+
+    private static Account account() {
+        Employee employee = new Employee();
+        employee.setId(70L);
+        return Account.builder()
+                .id(7L)
+                .username("alice")
+                .role(Role.HR)
+                .enabled(true)
+                .employee(employee)
+                .build();
+    }
+}
@@ -0,0 +1,55 @@
+package server.utils;
+
+import java.util.Locale;
+import java.util.function.Supplier;
+
+/**
+ * Micro-benchmark tối giản cho các lớp *Benchmark (không thêm JMH vào build):
+ * chạy warmup cho JIT, đo số lần gọi mỗi giây rồi in ra để so sánh cách cũ / cách mới.
+ * Kết quả mỗi lần gọi được ghi vào {@link #sink} để JIT không bỏ qua phép tính.
+ *
+ * Các lớp *Benchmark không khớp pattern mặc định của surefire nên không chạy trong {@code mvn test};
+ * chạy riêng: {@code mvn -Dtest=JwtUtilBenchmark test}. Số vòng chỉnh qua -Dbenchmark.warmup / -Dbenchmark.iterations.
+ */
+final class MicroBenchmark {
+    static volatile Object sink;
+
+    private MicroBenchmark() {
+    }
+
+    record Result(String name, int iterations, long nanos) {
+        double opsPerSecond() {
+            return iterations * 1_000_000_000d / nanos;
+        }
+
+        double microsPerOp() {
+            return nanos / 1_000d / iterations;
+        }
+    }
+
+    static Result run(String name, Supplier<?> operation) {
+        return run(name, Integer.getInteger("benchmark.warmup", 5_000),
+                Integer.getInteger("benchmark.iterations", 20_000), operation);
+    }
+
+    static Result run(String name, int warmup, int iterations, Supplier<?> operation) {
+        for (int i = 0; i < warmup; i++) {
+            sink = operation.get();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            sink = operation.get();
+        }
+        return new Result(name, iterations, Math.max(1, System.nanoTime() - start));
+    }
+
+    // In bảng so sánh, tỉ lệ tính theo kết quả đầu tiên (cách cũ)
+    static void report(String title, Result... results) {
+        System.out.println("== " + title);
+        double baseline = results[0].opsPerSecond();
+        for (Result result : results) {
+            System.out.println(String.format(Locale.ROOT, "  %-40s %12.0f ops/s %10.2f us/op  x%.2f",
+                    result.name(), result.opsPerSecond(), result.microsPerOp(), result.opsPerSecond() / baseline));
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package server.utils;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import server.dtos.ProfileDto;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Request đọc DB trước lúc transaction sửa profile commit không được để lại bản cũ trong cache
+class ProfileCacheTest {
+    private ProfileCache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new ProfileCache();
+        ReflectionTestUtils.setField(cache, "maxEntries", 100);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void invalidateEvictsAgainAfterCommit() {
+        cache.get(1L, () -> profile("old"));
+
+        TransactionSynchronizationManager.initSynchronization();
+        cache.invalidate(1L);
+        // Request khác chen vào trước commit, đọc DB vẫn thấy bản cũ và ghi lại vào cache
+        cache.get(1L, () -> profile("old"));
+        commit();
+
+        assertThat(cache.get(1L, () -> profile("new")).profile().getAvatar()).isEqualTo("new");
+    }
+
+    @Test
+    void invalidateAllEvictsAgainAfterCommit() {
+        cache.get(1L, () -> profile("old"));
+        cache.get(2L, () -> profile("old"));
+
+        TransactionSynchronizationManager.initSynchronization();
+        cache.invalidateAll();
+        cache.get(2L, () -> profile("old"));
+        commit();
+
+        assertThat(cache.get(1L, () -> profile("new")).profile().getAvatar()).isEqualTo("new");
+        assertThat(cache.get(2L, () -> profile("new")).profile().getAvatar()).isEqualTo("new");
+    }
+
+    @Test
+    void invalidateOutsideTransactionEvictsImmediately() {
+        cache.get(1L, () -> profile("old"));
+        cache.invalidate(1L);
+
+        assertThat(cache.get(1L, () -> profile("new")).profile().getAvatar()).isEqualTo("new");
+    }
+
+    private static void commit() {
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            synchronization.afterCommit();
+        }
+        TransactionSynchronizationManager.clearSynchronization();
+    }
+
+    private static ProfileDto profile(String avatar) {
+        ProfileDto profile = new ProfileDto();
+        profile.setId(1L);
+        profile.setAvatar(avatar);
+        return profile;
+    }
+}